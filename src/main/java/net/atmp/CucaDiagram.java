@@ -40,8 +40,10 @@ import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -130,6 +132,8 @@ public abstract class CucaDiagram extends UmlDiagram implements GroupHierarchy,
 	private boolean visibilityModifierPresent;
 
 	private final List<Link> links = new ArrayList<>();
+	// For each entity, the links that start or end on it, in the order of links
+	private final Map<Entity, List<Link>> linksByEntity = new HashMap<>();
 
 	private final Plasma<Entity> namespace;
 	private final Quark<Entity> root;
@@ -640,19 +644,14 @@ public abstract class CucaDiagram extends UmlDiagram implements GroupHierarchy,
 	}
 
 	final public boolean isStandalone(Entity ent) {
-		for (final Link link : getLinks())
-			if (link.getEntity1() == ent || link.getEntity2() == ent)
-				return false;
-
-		return true;
+		return getLinksOf(ent).isEmpty();
 	}
 
 	final public boolean isStandaloneForArgo(Entity ent) {
-		for (final Link link : getLinks()) {
+		for (final Link link : getLinksOf(ent)) {
 			if (link.isHidden() || link.isInvis())
 				continue;
-			if (link.getEntity1() == ent || link.getEntity2() == ent)
-				return false;
+			return false;
 		}
 
 		return true;
@@ -791,11 +790,9 @@ public abstract class CucaDiagram extends UmlDiagram implements GroupHierarchy,
 			return null;
 		assert note.getLeafType() == LeafType.NOTE;
 		Entity other = null;
-		for (Link link : this.getLinks()) {
+		for (Link link : getLinksOf(note)) {
 			if (link.getType().isInvisible())
 				continue;
-			if (link.contains(note) == false)
-				continue;
 			if (other != null)
 				return null;
 			other = link.getOther(note);
@@ -888,15 +885,47 @@ public abstract class CucaDiagram extends UmlDiagram implements GroupHierarchy,
 		return Collections.unmodifiableList(this.links);
 	}
 
+	/**
+	 * Returns the links that start or end on this entity, in the order they have
+	 * been added.
+	 */
+	public final List<Link> getLinksOf(Entity entity) {
+		final List<Link> result = linksByEntity.get(entity);
+		if (result == null)
+			return Collections.emptyList();
+
+		return Collections.unmodifiableList(result);
+	}
+
 	public void addLink(Link link) {
 		if (link.isSingle() && containsSimilarLink(link))
 			return;
 
 		this.links.add(link);
+		indexLink(link.getEntity1(), link);
+		if (link.getEntity2() != link.getEntity1())
+			indexLink(link.getEntity2(), link);
+
 	}
 
+	private void indexLink(Entity entity, Link link) {
+		List<Link> list = linksByEntity.get(entity);
+		if (list == null) {
+			list = new ArrayList<>();
+			linksByEntity.put(entity, list);
+		}
+		list.add(link);
+	}
+
+	// A similar link touches both entities: only the links of the less connected
+	// one need to be checked
 	private boolean containsSimilarLink(Link other) {
-		for (Link link : this.links)
+		List<Link> candidates = getLinksOf(other.getEntity1());
+		final List<Link> candidates2 = getLinksOf(other.getEntity2());
+		if (candidates2.size() < candidates.size())
+			candidates = candidates2;
+
+		for (Link link : candidates)
 			if (other.sameConnections(link))
 				return true;
 
@@ -908,6 +937,19 @@ public abstract class CucaDiagram extends UmlDiagram implements GroupHierarchy,
 		if (ok == false)
 			throw new IllegalArgumentException();
 
+		unindexLink(link.getEntity1(), link);
+		unindexLink(link.getEntity2(), link);
+	}
+
+	private void unindexLink(Entity entity, Link link) {
+		final List<Link> list = linksByEntity.get(entity);
+		if (list == null)
+			return;
+
+		list.remove(link);
+		if (list.isEmpty())
+			linksByEntity.remove(entity);
+
 	}
 
 	public Collection<Quark<Entity>> quarks() {
@@ -42,6 +42,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.Random;
 import java.util.Set;
@@ -69,6 +70,7 @@ import net.sourceforge.plantuml.klimt.color.HColorGradient;
 import net.sourceforge.plantuml.klimt.color.HColorSet;
 import net.sourceforge.plantuml.klimt.color.HColorSimple;
 import net.sourceforge.plantuml.klimt.color.HColors;
+import net.sourceforge.plantuml.klimt.drawing.DisplayList;
 import net.sourceforge.plantuml.klimt.drawing.LimitFinder;
 import net.sourceforge.plantuml.klimt.drawing.UGraphic;
 import net.sourceforge.plantuml.klimt.drawing.debug.UGraphicDebug;
@@ -90,6 +92,7 @@ import net.sourceforge.plantuml.klimt.shape.TextBlock;
 import net.sourceforge.plantuml.klimt.shape.UDrawable;
 import net.sourceforge.plantuml.klimt.shape.URectangle;
 import net.sourceforge.plantuml.klimt.shape.UText;
+import net.sourceforge.plantuml.png.PngStreamWriter;
 import net.sourceforge.plantuml.preproc.OptionKey;
 import net.sourceforge.plantuml.skin.ColorParam;
 import net.sourceforge.plantuml.skin.CornerParam;
@@ -99,6 +102,8 @@ import net.sourceforge.plantuml.skin.PragmaKey;
 import net.sourceforge.plantuml.skin.SkinParam;
 import net.sourceforge.plantuml.skin.UmlDiagramType;
 import net.sourceforge.plantuml.skin.rose.Rose;
+import net.sourceforge.plantuml.stats.Phase;
+import net.sourceforge.plantuml.stats.PhaseMetrics;
 import net.sourceforge.plantuml.style.ClockwiseTopRightBottomLeft;
 import net.sourceforge.plantuml.style.ISkinParam;
 import net.sourceforge.plantuml.style.PName;
@@ -108,6 +113,7 @@ import net.sourceforge.plantuml.style.StyleSignatureBasic;
 import net.sourceforge.plantuml.text.SvgCharSizeHack;
 import net.sourceforge.plantuml.url.CMapData;
 import net.sourceforge.plantuml.url.Url;
+import net.sourceforge.plantuml.utils.Log;
 import net.sourceforge.plantuml.warning.Warning;
 
 public class ImageBuilder {
@@ -116,6 +122,7 @@ public class ImageBuilder {
 	private HColor backcolor = getDefaultHBackColor();
 
 	private XDimension2D dimension;
+	private DisplayList displayList;
 	private final FileFormatOption fileFormatOption;
 	private UDrawable udrawable;
 	private ClockwiseTopRightBottomLeft margin = ClockwiseTopRightBottomLeft.none();
@@ -247,6 +254,7 @@ public class ImageBuilder {
 	}
 
 	private ImageData writeImageInternal(OutputStream os) throws IOException {
+		final long start = System.nanoTime();
 		XDimension2D dim = getFinalDimension();
 		XDimension2D dimWarning = null;
 		if (warnings.size() > 0) {
@@ -260,8 +268,43 @@ public class ImageBuilder {
 		if (scaleFactor <= 0)
 			throw new IllegalStateException("Bad scaleFactor");
 		WasmLog.log("...image drawing...");
-		UGraphic ug = createUGraphic(dim, scaleFactor, diagram == null ? Pragma.createEmpty() : diagram.getPragma());
+		if (isTiled(dim, scaleFactor)) {
+			// Drawing and encoding are interleaved, so all of it counts as drawing
+			final ImageData result = writeTiledPng(os, dim, dimWarning, scaleFactor);
+			// ::comment when __CORE__
+			PhaseMetrics.getInstance().record(Phase.DRAW, start);
+			// ::done
+			return result;
+		}
+
+		final UGraphic ug = drawAll(
+				createUGraphic(dim, scaleFactor, diagram == null ? Pragma.createEmpty() : diagram.getPragma()), dim,
+				dimWarning);
+		displayList = null;
+		ug.flushUg();
+		// ::comment when __CORE__
+		PhaseMetrics.getInstance().record(Phase.DRAW, start);
+		// ::done
+
+		final long encodeStart = System.nanoTime();
+		ug.writeToStream(os, metadata, 96);
+		os.flush();
+		// ::comment when __CORE__
+		PhaseMetrics.getInstance().record(Phase.ENCODE, encodeStart);
+		// ::done
+
+		if (ug instanceof UGraphicG2d) {
+			final Set<Url> urls = ((UGraphicG2d) ug).getAllUrlsEncountered();
+			if (urls.size() > 0) {
+				final CMapData cmap = CMapData.cmapString(urls, scaleFactor);
+				return new ImageDataComplex(dim, cmap, warningOrError, status);
+			}
+		}
+		return createImageData(dim);
+	}
 
+	// Returns the UGraphic that has been used for the drawable
+	private UGraphic drawAll(UGraphic ug, XDimension2D dim, XDimension2D dimWarning) {
 		if (warnings.size() > 0) {
 			drawWarning(dimWarning, ug.apply(UTranslate.dy(5)), dim.getWidth());
 			ug = ug.apply(UTranslate.dy(dimWarning.getHeight() + 20));
@@ -272,17 +315,66 @@ public class ImageBuilder {
 			drawRandomPoint(ug);
 
 		ug = handwritten(ug.apply(new UTranslate(margin.getLeft(), margin.getTop())));
-		udrawable.drawU(ug);
-		ug.flushUg();
-		ug.writeToStream(os, metadata, 96);
+		if (displayList == null)
+			udrawable.drawU(ug);
+		else
+			displayList.replay(ug);
+
+		return ug;
+	}
+
+	// Images larger than this are drawn band by band, which is only possible when
+	// the drawing has been recorded. It can only happen when PLANTUML_LIMIT_SIZE
+	// is set above its default value.
+	private static final long TILED_THRESHOLD = 4096L * 4096L;
+	private static final int BAND_PIXELS = 4 * 1024 * 1024;
+
+	private boolean isTiled(XDimension2D dim, double scaleFactor) {
+		if (fileFormatOption.getFileFormat() != FileFormat.PNG || displayList == null)
+			return false;
+
+		final long width = EmptyImageBuilder.applyImageLimit("Width", (int) (dim.getWidth() * scaleFactor));
+		final long height = EmptyImageBuilder.applyImageLimit("Height", (int) (dim.getHeight() * scaleFactor));
+		return width * height > TILED_THRESHOLD;
+	}
+
+	/**
+	 * Draws the image in horizontal bands of about 16 MB, each band replaying the
+	 * recorded drawing, and streams the rows to the PNG encoder. The memory used
+	 * depends on the width of the image, not on its surface.
+	 */
+	private ImageData writeTiledPng(OutputStream os, XDimension2D dim, XDimension2D dimWarning, double scaleFactor)
+			throws IOException {
+		final int width = EmptyImageBuilder.applyImageLimit("Width", (int) (dim.getWidth() * scaleFactor));
+		final int height = EmptyImageBuilder.applyImageLimit("Height", (int) (dim.getHeight() * scaleFactor));
+		final int bandHeight = Math.max(1, Math.min(height, BAND_PIXELS / width));
+		final Color pngBackColor = getPngBackColor();
+		Log.info(() -> "Drawing image " + width + "x" + height + " in bands of " + bandHeight + " rows");
+
+		final Set<Url> urls = new HashSet<>();
+		PngStreamWriter writer = null;
+		for (int y = 0; y < height; y += bandHeight) {
+			final int rows = Math.min(bandHeight, height - y);
+			final EmptyImageBuilder builder = new EmptyImageBuilder(fileFormatOption.getWatermark(), width, height,
+					pngBackColor, y, bandHeight);
+			final UGraphicG2d ug = createUGraphicPNG(scaleFactor, builder, width, height, FileFormat.PNG);
+			drawAll(ug, dim, dimWarning).flushUg();
+			urls.addAll(ug.getAllUrlsEncountered());
+
+			final BufferedImage band = builder.getBufferedImage();
+			if (writer == null)
+				writer = new PngStreamWriter(os, width, height, band.getType() == BufferedImage.TYPE_INT_ARGB,
+						metadata, 96);
+
+			writer.writeRows(band, rows);
+		}
+		writer.close();
+		displayList = null;
 		os.flush();
 
-		if (ug instanceof UGraphicG2d) {
-			final Set<Url> urls = ((UGraphicG2d) ug).getAllUrlsEncountered();
-			if (urls.size() > 0) {
-				final CMapData cmap = CMapData.cmapString(urls, scaleFactor);
-				return new ImageDataComplex(dim, cmap, warningOrError, status);
-			}
+		if (urls.size() > 0) {
+			final CMapData cmap = CMapData.cmapString(urls, scaleFactor);
+			return new ImageDataComplex(dim, cmap, warningOrError, status);
 		}
 		return createImageData(dim);
 	}
@@ -356,7 +448,14 @@ public class ImageBuilder {
 	}
 
 	private XDimension2D getFinalDimension() {
-		if (dimension == null) {
+		if (dimension == null && canRecord()) {
+			// The drawable is walked only once: its drawing is recorded here and
+			// replayed on the final UGraphic
+			displayList = DisplayList.record(udrawable, stringBounder, fileFormatOption.getColorMapper(), backcolor,
+					fileFormatOption.getFileFormat() == FileFormat.SVG ? new String[] { "SVG" } : new String[0]);
+			dimension = new XDimension2D(displayList.getMaxX() + 1 + margin.getLeft() + margin.getRight(),
+					displayList.getMaxY() + 1 + margin.getTop() + margin.getBottom());
+		} else if (dimension == null) {
 			final LimitFinder limitFinder = LimitFinder.create(stringBounder, true);
 			udrawable.drawU(limitFinder);
 			dimension = new XDimension2D(limitFinder.getMaxX() + 1 + margin.getLeft() + margin.getRight(),
@@ -365,6 +464,22 @@ public class ImageBuilder {
 		return dimension;
 	}
 
+	// Only for the drivers whose behavior the recorder knows how to mimic
+	private boolean canRecord() {
+		if (backcolor == null)
+			return false;
+
+		switch (fileFormatOption.getFileFormat()) {
+		case PNG:
+		case SVG:
+		case EPS:
+		case EPS_TEXT:
+			return true;
+		default:
+			return false;
+		}
+	}
+
 	private UGraphic handwritten(UGraphic ug) {
 		if (skinParam != null && skinParam.handwritten())
 			return new UGraphicHandwritten(ug);
@@ -447,31 +562,39 @@ public class ImageBuilder {
 
 	private UGraphic createUGraphicPNG(double scaleFactor, final XDimension2D dim, String watermark,
 			FileFormat format) {
-		Color pngBackColor = new Color(0, 0, 0, 0);
-
-		if (this.backcolor instanceof HColorSimple)
-			pngBackColor = this.backcolor.toColor(fileFormatOption.getColorMapper());
-
-		if (GlobalConfig.getInstance().boolValue(GlobalConfigKey.REPLACE_WHITE_BACKGROUND_BY_TRANSPARENT)
-				&& (Color.WHITE.equals(pngBackColor) || Color.BLACK.equals(pngBackColor)))
-			pngBackColor = new Color(0, 0, 0, 0);
-
 		final EmptyImageBuilder builder = new EmptyImageBuilder(watermark, (int) (dim.getWidth() * scaleFactor),
-				(int) (dim.getHeight() * scaleFactor), pngBackColor, stringBounder);
+				(int) (dim.getHeight() * scaleFactor), getPngBackColor(), stringBounder);
+		final BufferedImage im = builder.getBufferedImage();
+		return createUGraphicPNG(scaleFactor, builder, im.getWidth(), im.getHeight(), format);
+	}
+
+	private UGraphicG2d createUGraphicPNG(double scaleFactor, EmptyImageBuilder builder, int width, int height,
+			FileFormat format) {
 		final Graphics2D graphics2D = builder.getGraphics2D();
 
 		final UGraphicG2d ug = new UGraphicG2d(backcolor, fileFormatOption.getColorMapper(), stringBounder, graphics2D,
 				scaleFactor, format);
 
 		ug.setBufferedImage(builder.getBufferedImage());
-		final BufferedImage im = ug.getBufferedImage();
 		if (this.backcolor instanceof HColorGradient)
-			ug.apply(this.backcolor.bg())
-					.draw(URectangle.build(im.getWidth() / scaleFactor, im.getHeight() / scaleFactor));
+			ug.apply(this.backcolor.bg()).draw(URectangle.build(width / scaleFactor, height / scaleFactor));
 
 		return ug;
 	}
 
+	private Color getPngBackColor() {
+		Color pngBackColor = new Color(0, 0, 0, 0);
+
+		if (this.backcolor instanceof HColorSimple)
+			pngBackColor = this.backcolor.toColor(fileFormatOption.getColorMapper());
+
+		if (GlobalConfig.getInstance().boolValue(GlobalConfigKey.REPLACE_WHITE_BACKGROUND_BY_TRANSPARENT)
+				&& (Color.WHITE.equals(pngBackColor) || Color.BLACK.equals(pngBackColor)))
+			pngBackColor = new Color(0, 0, 0, 0);
+
+		return pngBackColor;
+	}
+
 	static private HColor getDefaultHBackColor() {
 		return HColors.WHITE.withDark(HColors.BLACK);
 	}
@@ -69,6 +69,7 @@ import net.sourceforge.plantuml.klimt.geom.HorizontalAlignment;
 import net.sourceforge.plantuml.klimt.geom.VerticalAlignment;
 import net.sourceforge.plantuml.klimt.shape.UText;
 import net.sourceforge.plantuml.preproc.PreprocessingArtifact;
+import net.sourceforge.plantuml.stats.PhaseMetrics;
 import net.sourceforge.plantuml.stats.StatsUtilsIncrement;
 import net.sourceforge.plantuml.style.ClockwiseTopRightBottomLeft;
 import net.sourceforge.plantuml.text.BackSlash;
@@ -209,6 +210,9 @@ public abstract class AbstractPSystem implements Diagram, WarningHandler {
 	final public ImageData exportDiagram(OutputStream os, int index, FileFormatOption fileFormatOption)
 			throws IOException {
 		final long now = System.currentTimeMillis();
+		// ::comment when __CORE__
+		PhaseMetrics.getInstance().enterExport(getClass(), fileFormatOption.getFileFormat());
+		// ::done
 		try {
 //			if (this instanceof TitledDiagram) {
 //				final TitledDiagram titledDiagram = (TitledDiagram) this;
@@ -220,6 +224,7 @@ public abstract class AbstractPSystem implements Diagram, WarningHandler {
 			return exportDiagramNow(os, index, fileFormatOption);
 		} finally {
 			// ::comment when __CORE__
+			PhaseMetrics.getInstance().exitExport();
 			if (GlobalConfig.getInstance().boolValue(GlobalConfigKey.ENABLE_STATS))
 				StatsUtilsIncrement.onceMoreGenerate(System.currentTimeMillis() - now, getClass(),
 						fileFormatOption.getFileFormat());
@@ -61,6 +61,8 @@ import net.sourceforge.plantuml.preproc.FileWithSuffix;
 import net.sourceforge.plantuml.preproc.PreprocessingArtifact;
 import net.sourceforge.plantuml.preproc.ReadLineWithYamlHeader;
 import net.sourceforge.plantuml.regex.Matcher2;
+import net.sourceforge.plantuml.stats.Phase;
+import net.sourceforge.plantuml.stats.PhaseMetrics;
 import net.sourceforge.plantuml.text.BackSlash;
 import net.sourceforge.plantuml.text.StringLocated;
 import net.sourceforge.plantuml.tim.TimLoader;
@@ -79,6 +81,7 @@ public class BlockUml {
 	private final Previous previous;
 	private final Set<FileWithSuffix> included = new HashSet<>();
 	private final PreprocessingArtifact preprocessingArtifact;
+	private long preprocessNanos;
 
 	public Set<FileWithSuffix> getIncluded() {
 		return Collections.unmodifiableSet(included);
@@ -144,6 +147,7 @@ public class BlockUml {
 			this.data = new ArrayList<>(this.rawSource);
 			this.preprocessingArtifact = new PreprocessingArtifact();
 		} else {
+			final long start = System.nanoTime();
 			final TimLoader timLoader = new TimLoader(definitions.getImportedFiles(), defines, charset, definitions,
 					this.rawSource.get(0));
 			this.included.addAll(timLoader.load(this.rawSource));
@@ -154,6 +158,7 @@ public class BlockUml {
 			this.debug = timLoader.getDebug();
 			this.preprocessorError = timLoader.isPreprocessorError();
 			this.preprocessingArtifact = timLoader.getPreprocessingArtifact();
+			this.preprocessNanos = System.nanoTime() - start;
 		}
 	}
 
@@ -192,6 +197,11 @@ public class BlockUml {
 				system = new PSystemErrorPreprocessor(data, debug, preprocessingArtifact);
 			else
 				system = new PSystemBuilder().createPSystem(data, rawSource, previous, preprocessingArtifact);
+
+			// ::comment when __CORE__
+			if (preprocessNanos > 0)
+				PhaseMetrics.getInstance().record(Phase.PREPROCESS, system.getClass(), null, preprocessNanos);
+			// ::done
 		}
 		return system;
 	}
@@ -56,32 +56,36 @@ public class EmptyImageBuilder {
 	private final Graphics2D g2d;
 
 	public EmptyImageBuilder(String watermark, int width, int height, Color background, StringBounder stringBounder) {
+		this(watermark, applyImageLimit("Width", width), applyImageLimit("Height", height), background, 0, 0);
+	}
+
+	/**
+	 * Creates only the rows <code>bandY</code> to <code>bandY + bandHeight</code>
+	 * of an image of <code>width</code> x <code>height</code>. The graphics are
+	 * translated, so the whole image can be drawn on them. A
+	 * <code>bandHeight</code> of 0 means the whole image.
+	 */
+	public EmptyImageBuilder(String watermark, int width, int height, Color background, int bandY, int bandHeight) {
 		if (width <= 0 || height <= 0)
 			throw new IllegalArgumentException("width and height must be positive");
 
-		// ::comment when __CORE__
-		if (width > GraphvizUtils.getenvImageLimit()) {
-			final int width2 = width;
-			Log.info(() -> "Width too large " + width2 + ". You should set PLANTUML_LIMIT_SIZE");
-			width = GraphvizUtils.getenvImageLimit();
-		}
-		if (height > GraphvizUtils.getenvImageLimit()) {
-			final int height2 = height;
-			Log.info(() -> "Height too large " + height2 + ". You should set PLANTUML_LIMIT_SIZE");
-			height = GraphvizUtils.getenvImageLimit();
-		}
-		// ::done
+		if (bandHeight == 0)
+			bandHeight = height;
+
 		final int widthFinal = width;
-		final int heightFinal = height;
+		final int heightFinal = bandHeight;
 		final int type = getType(background);
 		Log.info(() -> "Creating image " + widthFinal + "x" + heightFinal + " type=" + type);
 
-		im = new BufferedImage(width, height, type);
+		im = new BufferedImage(width, bandHeight, type);
 		g2d = im.createGraphics();
+		if (bandY != 0)
+			g2d.translate(0, -bandY);
+
 		UAntiAliasing.ANTI_ALIASING_ON.apply(g2d);
 		if (background != null) {
 			g2d.setColor(background);
-			g2d.fillRect(0, 0, width, height);
+			g2d.fillRect(0, bandY, width, bandHeight);
 		}
 		if (watermark != null) {
 			final int gray = 200;
@@ -90,6 +94,16 @@ public class EmptyImageBuilder {
 		}
 	}
 
+	public static int applyImageLimit(String name, int size) {
+		// ::comment when __CORE__
+		if (size > GraphvizUtils.getenvImageLimit()) {
+			Log.info(() -> name + " too large " + size + ". You should set PLANTUML_LIMIT_SIZE");
+			return GraphvizUtils.getenvImageLimit();
+		}
+		// ::done
+		return size;
+	}
+
 	private int getType(Color background) {
 		if (background == null)
 			return BufferedImage.TYPE_INT_ARGB;
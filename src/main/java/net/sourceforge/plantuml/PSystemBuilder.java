@@ -101,6 +101,8 @@ import net.sourceforge.plantuml.security.SecurityProfile;
 import net.sourceforge.plantuml.security.SecurityUtils;
 import net.sourceforge.plantuml.sequencediagram.SequenceDiagramFactory;
 import net.sourceforge.plantuml.statediagram.StateDiagramFactory;
+import net.sourceforge.plantuml.stats.Phase;
+import net.sourceforge.plantuml.stats.PhaseMetrics;
 import net.sourceforge.plantuml.stats.StatsUtilsIncrement;
 import net.sourceforge.plantuml.sudoku.PSystemSudokuFactory;
 import net.sourceforge.plantuml.text.StringLocated;
@@ -132,6 +134,7 @@ public class PSystemBuilder {
 		WasmLog.log("..compiling diagram...");
 
 		final long now = System.currentTimeMillis();
+		final long start = System.nanoTime();
 
 		Diagram result = null;
 		try {
@@ -174,6 +177,9 @@ public class PSystemBuilder {
 		} finally {
 			WasmLog.log("...parsing ok...");
 			// ::comment when __CORE__
+			if (result != null)
+				PhaseMetrics.getInstance().record(Phase.PARSE, result.getClass(), null, System.nanoTime() - start);
+
 			if (result != null && GlobalConfig.getInstance().boolValue(GlobalConfigKey.ENABLE_STATS)) {
 				StatsUtilsIncrement.onceMoreParse(System.currentTimeMillis() - now, result.getClass());
 			}
@@ -143,26 +143,32 @@ public class PSystemUtils {
 			FileFormatOption fileFormat) throws IOException {
 		final List<FileImageData> result = new ArrayList<>();
 		final int nbImages = system.getNbImages();
-		for (int i = 0; i < nbImages; i++) {
-
-			final SFile f = suggestedFile.getFile(i);
-			if (PSystemUtils.canFileBeWritten(suggestedFile.getFile(i)) == false)
-				return result;
-
-			final OutputStream fos = f.createBufferedOutputStream();
-			ImageData cmap = null;
-			try {
-				cmap = system.exportDiagram(fos, i, fileFormat);
-			} finally {
-				fos.close();
+		// All the pages are drawn from the same layout
+		system.startSharingLayout();
+		try {
+			for (int i = 0; i < nbImages; i++) {
+
+				final SFile f = suggestedFile.getFile(i);
+				if (PSystemUtils.canFileBeWritten(suggestedFile.getFile(i)) == false)
+					return result;
+
+				final OutputStream fos = f.createBufferedOutputStream();
+				ImageData cmap = null;
+				try {
+					cmap = system.exportDiagram(fos, i, fileFormat);
+				} finally {
+					fos.close();
+				}
+				// ::comment when __CORE__
+				if (cmap != null && cmap.containsCMapData())
+					system.exportCmap(suggestedFile, i, cmap);
+
+				Log.info(() -> "File size : " + f.length());
+				// ::done
+				result.add(new FileImageData(f, cmap));
 			}
-			// ::comment when __CORE__
-			if (cmap != null && cmap.containsCMapData())
-				system.exportCmap(suggestedFile, i, cmap);
-
-			Log.info(() -> "File size : " + f.length());
-			// ::done
-			result.add(new FileImageData(f, cmap));
+		} finally {
+			system.stopSharingLayout();
 		}
 		return result;
 	}
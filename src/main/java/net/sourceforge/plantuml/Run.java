@@ -79,6 +79,7 @@ import net.sourceforge.plantuml.png.MetadataTag;
 import net.sourceforge.plantuml.security.SFile;
 import net.sourceforge.plantuml.security.SImageIO;
 import net.sourceforge.plantuml.security.SecurityUtils;
+import net.sourceforge.plantuml.stats.PhaseMetrics;
 import net.sourceforge.plantuml.swing.MainWindow;
 import net.sourceforge.plantuml.syntax.LanguageDescriptor;
 import net.sourceforge.plantuml.utils.Cypher;
@@ -208,6 +209,11 @@ public class Run {
 			if (option.isTrue(CliFlag.SPLASH))
 				Splash.createSplash();
 
+			if (option.isTrue(CliFlag.WATCH)) {
+				new WatchMode(option, charset).watch();
+				return;
+			}
+
 			final Run runner = new Run(option, errorStatus, charset);
 			incTotal(runner.size());
 
@@ -223,6 +229,8 @@ public class Run {
 				final double duration = (System.currentTimeMillis() - start) / 1000.0;
 				Log.error("Duration = " + duration + " seconds");
 			}
+			if (option.isTrue(CliFlag.PHASE_STATS))
+				PhaseMetrics.getInstance().printSummary(System.err);
 		}
 
 		if (errorStatus.hasError() || errorStatus.isEmpty())
@@ -484,7 +492,7 @@ public class Run {
 
 	private static void goPicoweb(CliOptions option) throws IOException {
 		PicoWebServer.startServer(option.getPicowebPort(), option.getPicowebBindAddress(),
-				option.getPicowebEnableStop());
+				option.getPicowebEnableStop(), option.getNbThreads());
 	}
 
 	public static void printFonts() {
@@ -509,7 +517,7 @@ public class Run {
 		ProgressBar.incTotal(nb);
 	}
 
-	private static ISourceFileReader getSourceFileReader(File f, CliOptions option, String charset) throws IOException {
+	static ISourceFileReader getSourceFileReader(File f, CliOptions option, String charset) throws IOException {
 		final ISourceFileReader sourceFileReader;
 		final FileFormatOption fileFormatOption = option.getFileFormatOption();
 
@@ -0,0 +1,392 @@
+/* ========================================================================
+ * PlantUML : a free UML diagram generator
+ * ========================================================================
+ *
+ * (C) Copyright 2009-2024, Arnaud Roques
+ *
+ * Project Info:  https://plantuml.com
+ * 
+ * If you like this project or if you find it useful, you can support us at:
+ * 
+ * https://plantuml.com/patreon (only 1$ per month!)
+ * https://plantuml.com/paypal
+ * 
+ * This file is part of PlantUML.
+ *
+ * PlantUML is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PlantUML distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301,
+ * USA.
+ *
+ *
+ * Original Author:  Arnaud Roques
+ *
+ *
+ */
+package net.sourceforge.plantuml;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import net.sourceforge.plantuml.cli.CliOptions;
+import net.sourceforge.plantuml.file.FileGroup;
+import net.sourceforge.plantuml.log.Logme;
+import net.sourceforge.plantuml.preproc.FileWithSuffix;
+import net.sourceforge.plantuml.utils.Log;
+
+/**
+ * Implementation of the <code>-watch</code> flag.
+ * <p>
+ * Diagrams are rendered once, then the directories holding them and their
+ * includes are watched with a {@link WatchService}. Each rendering records the
+ * files the diagram includes, so that a change to an included file only
+ * regenerates the diagrams that depend on it.
+ * <p>
+ * Events are gathered until no new one has arrived for {@link #QUIET_MS}, so
+ * that the several events produced by a single save, or by a checkout touching
+ * many files, lead to one rendering per diagram. A diagram changed again while
+ * it is being rendered is rendered once more afterwards.
+ */
+public class WatchMode {
+	// ::remove file when __CORE__
+
+	static final long QUIET_MS = 100;
+	static final long MAX_DELAY_MS = 2000;
+
+	private final CliOptions option;
+	private final String charset;
+	private final List<FileGroup> groups = new ArrayList<>();
+	private final ExecutorService executor;
+	private final WatchService watchService;
+
+	// Directories are kept as built from the command line arguments, so that
+	// FileGroup can match the files created in them
+	private final Map<WatchKey, File> directories = new HashMap<>();
+	private final Set<Path> recursiveRoots = new HashSet<>();
+
+	private final Set<Path> diagrams = new LinkedHashSet<>();
+	private final Map<Path, Set<Path>> includes = new HashMap<>();
+	private final Map<Path, Set<Path>> dependents = new HashMap<>();
+
+	private final Set<Path> running = new HashSet<>();
+	private final Set<Path> again = new HashSet<>();
+	private int pending;
+
+	public WatchMode(CliOptions option, String charset) throws IOException {
+		this.option = option;
+		this.charset = charset;
+		this.executor = Executors.newFixedThreadPool(option.getNbThreads());
+		this.watchService = FileSystems.getDefault().newWatchService();
+		for (String s : option.getRemainingArgs())
+			groups.add(new FileGroup(s, option.getExcludes()));
+	}
+
+	/**
+	 * Renders all the diagrams, then waits for changes until the thread is
+	 * interrupted.
+	 */
+	public void watch() throws IOException, InterruptedException {
+		try {
+			start();
+			Log.error("Watching for changes...");
+			while (true)
+				processEvents(watchService.take());
+
+		} catch (ClosedWatchServiceException e) {
+			// close() was called
+		} finally {
+			close();
+		}
+	}
+
+	void start() throws IOException {
+		for (FileGroup group : groups) {
+			final File base = group.getBaseDir();
+			if (group.isRecursive()) {
+				recursiveRoots.add(key(base));
+				registerTree(base);
+			} else {
+				register(base);
+			}
+			for (File f : group.getFiles())
+				addDiagram(f);
+		}
+	}
+
+	public void close() throws IOException {
+		executor.shutdownNow();
+		watchService.close();
+	}
+
+	private void processEvents(WatchKey first) throws IOException, InterruptedException {
+		final Map<Path, File> changed = new LinkedHashMap<>();
+		boolean overflow = collect(first, changed);
+		final long limit = System.currentTimeMillis() + MAX_DELAY_MS;
+		WatchKey key;
+		while (System.currentTimeMillis() < limit && (key = watchService.poll(QUIET_MS, TimeUnit.MILLISECONDS)) != null)
+			overflow |= collect(key, changed);
+
+		if (overflow) {
+			Log.info(() -> "Too many file events, regenerating everything");
+			rescan();
+			return;
+		}
+		final Set<Path> toRender = new LinkedHashSet<>();
+		for (Map.Entry<Path, File> ent : changed.entrySet())
+			affected(ent.getKey(), ent.getValue(), toRender);
+
+		for (Path p : toRender)
+			schedule(p);
+	}
+
+	private boolean collect(WatchKey key, Map<Path, File> changed) {
+		boolean overflow = false;
+		final File dir;
+		synchronized (this) {
+			dir = directories.get(key);
+		}
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW) {
+				overflow = true;
+				continue;
+			}
+			if (dir != null) {
+				final File f = new File(dir, ((Path) event.context()).toString());
+				changed.put(key(f), f);
+			}
+		}
+		if (key.reset() == false)
+			synchronized (this) {
+				directories.remove(key);
+			}
+
+		return overflow;
+	}
+
+	private void affected(Path path, File f, Set<Path> toRender) throws IOException {
+		if (f.isDirectory()) {
+			if (isInRecursiveRoot(path))
+				addTree(f, toRender);
+			return;
+		}
+		synchronized (this) {
+			if (diagrams.contains(path)) {
+				if (f.exists())
+					toRender.add(path);
+				else
+					removeDiagram(path);
+			} else if (f.isFile() && isPartOfGroups(f)) {
+				diagrams.add(path);
+				toRender.add(path);
+			}
+			toRender.addAll(dependents.getOrDefault(path, Collections.<Path>emptySet()));
+		}
+	}
+
+	// A directory created in a watched tree, possibly with files already in it
+	private void addTree(File dir, Set<Path> toRender) throws IOException {
+		register(dir);
+		final File[] children = dir.listFiles();
+		if (children == null)
+			return;
+
+		for (File child : children)
+			if (child.isDirectory())
+				addTree(child, toRender);
+			else if (isPartOfGroups(child))
+				synchronized (this) {
+					if (diagrams.add(key(child)))
+						toRender.add(key(child));
+				}
+	}
+
+	private void rescan() throws IOException {
+		final Set<Path> all = new LinkedHashSet<>();
+		for (FileGroup group : groups) {
+			final FileGroup fresh = new FileGroup(group.getPattern(), option.getExcludes());
+			if (fresh.isRecursive())
+				registerTree(fresh.getBaseDir());
+
+			for (File f : fresh.getFiles())
+				all.add(key(f));
+		}
+		synchronized (this) {
+			for (Path p : new ArrayList<>(diagrams))
+				if (all.contains(p) == false)
+					removeDiagram(p);
+
+			diagrams.addAll(all);
+		}
+		for (Path p : all)
+			schedule(p);
+	}
+
+	private boolean isPartOfGroups(File f) {
+		for (FileGroup group : groups)
+			if (group.matches(f))
+				return true;
+
+		return false;
+	}
+
+	private boolean isInRecursiveRoot(Path path) {
+		for (Path root : recursiveRoots)
+			if (path.startsWith(root))
+				return true;
+
+		return false;
+	}
+
+	private void addDiagram(File f) {
+		final Path path = key(f);
+		synchronized (this) {
+			if (diagrams.add(path) == false)
+				return;
+		}
+		schedule(path);
+	}
+
+	private void removeDiagram(Path path) {
+		diagrams.remove(path);
+		setIncludes(path, Collections.<Path>emptySet());
+	}
+
+	private synchronized void schedule(Path path) {
+		if (running.add(path) == false) {
+			again.add(path);
+			return;
+		}
+		pending++;
+		executor.submit(() -> render(path));
+	}
+
+	private void render(Path path) {
+		try {
+			final File f = path.toFile();
+			final long start = System.currentTimeMillis();
+			final ISourceFileReader sourceFileReader = Run.getSourceFileReader(f, option, charset);
+			final List<GeneratedImage> images = sourceFileReader.getGeneratedImages();
+
+			final Set<Path> newIncludes = new HashSet<>();
+			for (File included : FileWithSuffix
+					.convert(((SourceFileReaderAbstract) sourceFileReader).getIncludedFiles())) {
+				newIncludes.add(key(included));
+				register(included.getAbsoluteFile().getParentFile());
+			}
+			synchronized (this) {
+				if (diagrams.contains(path))
+					setIncludes(path, newIncludes);
+			}
+
+			for (GeneratedImage image : images)
+				if (image.lineErrorRaw() != -1)
+					option.getStdrpt().errorLine(image.lineErrorRaw(), f);
+
+			final long duration = System.currentTimeMillis() - start;
+			Log.error("Generated " + images.size() + " image(s) from " + f.getPath() + " in " + duration + " ms");
+		} catch (Throwable e) {
+			Logme.error(e);
+		} finally {
+			synchronized (this) {
+				if (again.remove(path)) {
+					executor.submit(() -> render(path));
+				} else {
+					running.remove(path);
+					pending--;
+					notifyAll();
+				}
+			}
+		}
+	}
+
+	private synchronized void setIncludes(Path diagram, Set<Path> newIncludes) {
+		final Set<Path> old = includes.remove(diagram);
+		if (old != null)
+			for (Path inc : old) {
+				final Set<Path> users = dependents.get(inc);
+				users.remove(diagram);
+				if (users.isEmpty())
+					dependents.remove(inc);
+			}
+
+		if (newIncludes.isEmpty())
+			return;
+
+		includes.put(diagram, newIncludes);
+		for (Path inc : newIncludes)
+			dependents.computeIfAbsent(inc, k -> new HashSet<>()).add(diagram);
+	}
+
+	synchronized Set<Path> getDependents(File included) {
+		return new HashSet<>(dependents.getOrDefault(key(included), Collections.<Path>emptySet()));
+	}
+
+	synchronized Set<Path> getDiagrams() {
+		return new HashSet<>(diagrams);
+	}
+
+	/**
+	 * Waits until no rendering is running nor scheduled.
+	 */
+	synchronized void awaitIdle() throws InterruptedException {
+		while (pending > 0)
+			wait();
+	}
+
+	private void registerTree(File dir) throws IOException {
+		register(dir);
+		final File[] children = dir.listFiles();
+		if (children != null)
+			for (File child : children)
+				if (child.isDirectory())
+					registerTree(child);
+	}
+
+	private void register(File dir) throws IOException {
+		if (dir == null || dir.isDirectory() == false)
+			return;
+
+		final WatchKey key = dir.toPath().register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+		synchronized (this) {
+			directories.putIfAbsent(key, dir);
+		}
+	}
+
+	static Path key(File f) {
+		return f.getAbsoluteFile().toPath().normalize();
+	}
+
+}
@@ -459,13 +459,12 @@ final public class Entity implements SpecificBackcolorable, Hideable, Removeable
 			return true;
 		}
 
-		for (Link link : this.diagram.getLinks())
-			if (link.contains(this)) {
-				final Entity other = link.getOther(this);
-				final boolean removed = this.diagram.isRemovedIgnoreUnlinked(other);
-				if (removed == false && link.getType().isInvisible() == false)
-					return false;
-			}
+		for (Link link : this.diagram.getLinksOf(this)) {
+			final Entity other = link.getOther(this);
+			final boolean removed = this.diagram.isRemovedIgnoreUnlinked(other);
+			if (removed == false && link.getType().isInvisible() == false)
+				return false;
+		}
 
 		return true;
 	}
@@ -715,9 +714,8 @@ final public class Entity implements SpecificBackcolorable, Hideable, Removeable
 			return false;
 		if (leafs().size() != 0)
 			return false;
-		for (Link link : this.diagram.getLinks())
-			if (link.contains(this))
-				return false;
+		if (this.diagram.getLinksOf(this).size() > 0)
+			return false;
 
 		final Entity child = groups().iterator().next();
 		if (child.countChildren() == 0)
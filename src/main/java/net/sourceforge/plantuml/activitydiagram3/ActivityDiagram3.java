@@ -52,7 +52,6 @@ import net.sourceforge.plantuml.decoration.Rainbow;
 import net.sourceforge.plantuml.decoration.symbol.USymbol;
 import net.sourceforge.plantuml.klimt.color.Colors;
 import net.sourceforge.plantuml.klimt.color.HColor;
-import net.sourceforge.plantuml.klimt.compress.CompressionMode;
 import net.sourceforge.plantuml.klimt.compress.CompressionXorYBuilder;
 import net.sourceforge.plantuml.klimt.creole.Display;
 import net.sourceforge.plantuml.klimt.font.StringBounder;
@@ -219,8 +218,7 @@ public class ActivityDiagram3 extends UmlDiagram {
 
 		// BUG42
 		// COMMENT TO DISABLE COMPRESS
-		result = CompressionXorYBuilder.build(CompressionMode.ON_X, result, stringBounder);
-		result = CompressionXorYBuilder.build(CompressionMode.ON_Y, result, stringBounder);
+		result = CompressionXorYBuilder.buildOnXandY(result, stringBounder);
 
 		result = new TextBlockRecentred(result);
 		return result;
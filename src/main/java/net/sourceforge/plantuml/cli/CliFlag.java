@@ -142,6 +142,9 @@ public enum CliFlag {
 	@CliFlagDoc(value = "Use N threads for processing", usage="-nbthread N|auto",  level = 1)
 	NB_THREAD("-nbthread", Arity.BINARY_NEXT_ARGUMENT_VALUE),
 
+	@CliFlagDoc(value = "Keep running and regenerate diagrams when they or their includes change", level = 0)
+	WATCH("-watch", Arity.UNARY_BOOLEAN),
+
 	// Metadata & assets:
 	@CliFlagDoc(value = "Extract PlantUML source from PNG/SVG with metadata", level = 0, newGroup = "Metadata & assets")
 	RETRIEVE_METADATA("-metadata", Arity.UNARY_BOOLEAN),
@@ -290,6 +293,9 @@ public enum CliFlag {
 	@CliFlagDoc(value = "Generate statistics on the fly", level = 1)
 	REALTIME_STATS("-realtimestats", Arity.UNARY_BOOLEAN, () -> StatsUtils.setRealTimeStats(true)),
 
+	@CliFlagDoc(value = "Print the duration percentiles of each generation phase at the end", level = 1)
+	PHASE_STATS("-phasestats", Arity.UNARY_BOOLEAN),
+
 	@CliFlagDoc(value = "Output general statistics in XML format", level = 1)
 	XML_STATS("-xmlstats", Arity.UNARY_BOOLEAN, () -> StatsUtils.setXmlStats(true)),
 	
@@ -0,0 +1,298 @@
+/* ========================================================================
+ * PlantUML : a free UML diagram generator
+ * ========================================================================
+ *
+ * (C) Copyright 2009-2024, Arnaud Roques
+ *
+ * Project Info:  https://plantuml.com
+ * 
+ * If you like this project or if you find it useful, you can support us at:
+ * 
+ * https://plantuml.com/patreon (only 1$ per month!)
+ * https://plantuml.com/paypal
+ * 
+ * This file is part of PlantUML.
+ *
+ * PlantUML is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PlantUML distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301,
+ * USA.
+ *
+ *
+ * Original Author:  Arnaud Roques
+ * 
+ *
+ */
+package net.sourceforge.plantuml.dot;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sourceforge.plantuml.StringUtils;
+import net.sourceforge.plantuml.log.Logme;
+import net.sourceforge.plantuml.security.SecurityUtils;
+import net.sourceforge.plantuml.utils.Log;
+import net.sourceforge.plantuml.utils.SignatureUtils;
+
+/**
+ * Cache of the SVG produced by Graphviz for a given DOT string.
+ * <p>
+ * Keys are a hash of the exact DOT string and of the Graphviz engine that
+ * lays it out (executable path, size, date and <code>dot -V</code> output),
+ * so the same diagram rendered twice, for example in PNG then in SVG, only
+ * runs Graphviz once. Entries are kept in memory in LRU order, bounded by
+ * their size. When a directory is configured, entries are also written there,
+ * so that they survive a restart and can be shared by several processes; the
+ * directory is bounded by size too, oldest files being deleted first.
+ * <p>
+ * The cache is disabled by default, so that Graphviz runs for every diagram
+ * unless asked otherwise. It is enabled by setting its memory size with
+ * <code>PLANTUML_LAYOUT_CACHE_SIZE</code> (in bytes, <code>0</code> disables
+ * the cache). The directory is set by
+ * <code>PLANTUML_LAYOUT_CACHE_DIR</code> and its size by
+ * <code>PLANTUML_LAYOUT_CACHE_DIR_SIZE</code>; it is only used when the cache
+ * is enabled.
+ */
+public class GraphvizLayoutCache {
+	// ::remove file when __CORE__
+
+	private static final long DEFAULT_MAX_BYTES = 0;
+	private static final long DEFAULT_MAX_DIR_BYTES = 256L * 1024 * 1024;
+	private static final String SUFFIX = ".svg";
+
+	private static GraphvizLayoutCache singleton;
+
+	private final long maxBytes;
+	private final File dir;
+	private final long maxDirBytes;
+
+	private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(16, 0.75F, true);
+	private final LinkedHashMap<String, Long> stored = new LinkedHashMap<>(16, 0.75F, true);
+	private long memoryBytes;
+	private long dirBytes;
+
+	private final Map<String, String> versions = new ConcurrentHashMap<>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong dirHits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public GraphvizLayoutCache(long maxBytes, File dir, long maxDirBytes) {
+		this.maxBytes = maxBytes;
+		this.dir = dir;
+		this.maxDirBytes = maxDirBytes;
+		if (dir != null && maxBytes > 0) {
+			dir.mkdirs();
+			reloadStored();
+		}
+	}
+
+	public static synchronized GraphvizLayoutCache getInstance() {
+		if (singleton == null)
+			singleton = fromEnvironment();
+
+		return singleton;
+	}
+
+	private static GraphvizLayoutCache fromEnvironment() {
+		final long maxBytes = getenvLong("PLANTUML_LAYOUT_CACHE_SIZE", DEFAULT_MAX_BYTES);
+		final long maxDirBytes = getenvLong("PLANTUML_LAYOUT_CACHE_DIR_SIZE", DEFAULT_MAX_DIR_BYTES);
+		final String dir = SecurityUtils.getenv("PLANTUML_LAYOUT_CACHE_DIR");
+		return new GraphvizLayoutCache(maxBytes, StringUtils.isNotEmpty(dir) ? new File(dir) : null, maxDirBytes);
+	}
+
+	private static long getenvLong(String name, long def) {
+		final String value = SecurityUtils.getenv(name);
+		if (StringUtils.isNotEmpty(value) && value.matches("\\d+"))
+			return Long.parseLong(value);
+
+		return def;
+	}
+
+	// Files are reloaded oldest first, so that the LRU order survives a restart
+	private void reloadStored() {
+		final File[] files = dir.listFiles();
+		if (files == null)
+			return;
+
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+		for (File f : files)
+			if (f.getName().endsWith(SUFFIX)) {
+				final String key = f.getName().substring(0, f.getName().length() - SUFFIX.length());
+				stored.put(key, f.length());
+				dirBytes += f.length();
+			}
+	}
+
+	public boolean isEnabled() {
+		return maxBytes > 0;
+	}
+
+	/**
+	 * Returns the key of a layout, or <code>null</code> if this layout cannot be
+	 * cached.
+	 */
+	public String getKey(Graphviz graphviz, String dotString) {
+		if (isEnabled() == false || graphviz.getExeState() != ExeState.OK)
+			return null;
+
+		return SignatureUtils.getSHA512Hex(getEngine(graphviz) + "\n" + dotString);
+	}
+
+	// Running "dot -V" costs a process, so it is done once per executable. The
+	// size and date of the file are part of the key in case Graphviz is upgraded
+	// while we are running.
+	private String getEngine(Graphviz graphviz) {
+		final File exe = graphviz.getDotExe();
+		if (exe == null)
+			return graphviz.dotVersion();
+
+		final String id = exe.getAbsolutePath() + "|" + exe.length() + "|" + exe.lastModified();
+		return id + "|" + versions.computeIfAbsent(id, k -> graphviz.dotVersion());
+	}
+
+	public byte[] get(String key) {
+		if (key == null)
+			return null;
+
+		synchronized (this) {
+			final byte[] result = memory.get(key);
+			if (result != null) {
+				hits.incrementAndGet();
+				log("hit");
+				return result;
+			}
+			if (dir == null) {
+				misses.incrementAndGet();
+				log("miss");
+				return null;
+			}
+		}
+		final byte[] fromDisk = readStored(key);
+		if (fromDisk == null) {
+			misses.incrementAndGet();
+			log("miss");
+			return null;
+		}
+		dirHits.incrementAndGet();
+		log("disk hit");
+		putInMemory(key, fromDisk);
+		return fromDisk;
+	}
+
+	public void put(String key, byte[] svg) {
+		if (key == null || svg.length == 0)
+			return;
+
+		putInMemory(key, svg);
+		if (dir != null)
+			store(key, svg);
+	}
+
+	private synchronized void putInMemory(String key, byte[] svg) {
+		if (svg.length > maxBytes)
+			return;
+
+		final byte[] old = memory.put(key, svg);
+		if (old != null)
+			memoryBytes -= old.length;
+		memoryBytes += svg.length;
+
+		for (Iterator<byte[]> it = memory.values().iterator(); memoryBytes > maxBytes && it.hasNext();) {
+			memoryBytes -= it.next().length;
+			it.remove();
+		}
+	}
+
+	// Files are written under a temporary name then renamed, so that another
+	// process sharing the directory never reads a partial layout
+	private void store(String key, byte[] svg) {
+		final File file = storedFile(key);
+		try {
+			final File tmp = File.createTempFile(key, ".tmp", dir);
+			Files.write(tmp.toPath(), svg);
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			Logme.error(e);
+			return;
+		}
+		synchronized (this) {
+			final Long old = stored.put(key, (long) svg.length);
+			if (old != null)
+				dirBytes -= old;
+			dirBytes += svg.length;
+
+			for (Iterator<Map.Entry<String, Long>> it = stored.entrySet().iterator(); dirBytes > maxDirBytes
+					&& it.hasNext();) {
+				final Map.Entry<String, Long> eldest = it.next();
+				it.remove();
+				dirBytes -= eldest.getValue();
+				storedFile(eldest.getKey()).delete();
+			}
+		}
+	}
+
+	// The file may have been written or evicted by another process sharing the
+	// directory, so the file system is checked even for unknown keys
+	private byte[] readStored(String key) {
+		final File file = storedFile(key);
+		try {
+			final byte[] result = Files.readAllBytes(file.toPath());
+			file.setLastModified(System.currentTimeMillis());
+			synchronized (this) {
+				if (stored.put(key, (long) result.length) == null)
+					dirBytes += result.length;
+			}
+			return result;
+		} catch (IOException e) {
+			synchronized (this) {
+				final Long size = stored.remove(key);
+				if (size != null)
+					dirBytes -= size;
+			}
+			return null;
+		}
+	}
+
+	private File storedFile(String key) {
+		return new File(dir, key + SUFFIX);
+	}
+
+	private void log(String what) {
+		Log.info(() -> "Layout cache " + what + " (hits=" + hits.get() + ", diskHits=" + dirHits.get() + ", misses="
+				+ misses.get() + ")");
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getDirHits() {
+		return dirHits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+}
@@ -0,0 +1,297 @@
+/* ========================================================================
+ * PlantUML : a free UML diagram generator
+ * ========================================================================
+ *
+ * (C) Copyright 2009-2024, Arnaud Roques
+ *
+ * Project Info:  https://plantuml.com
+ * 
+ * If you like this project or if you find it useful, you can support us at:
+ * 
+ * https://plantuml.com/patreon (only 1$ per month!)
+ * https://plantuml.com/paypal
+ * 
+ * This file is part of PlantUML.
+ *
+ * PlantUML is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PlantUML distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301,
+ * USA.
+ *
+ *
+ * Original Author:  Arnaud Roques
+ * 
+ *
+ */
+package net.sourceforge.plantuml.dot;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import net.sourceforge.plantuml.StringUtils;
+import net.sourceforge.plantuml.cli.GlobalConfig;
+import net.sourceforge.plantuml.cli.GlobalConfigKey;
+import net.sourceforge.plantuml.log.Logme;
+import net.sourceforge.plantuml.security.SecurityUtils;
+import net.sourceforge.plantuml.utils.Log;
+
+/**
+ * Pool of long-lived <code>dot -Tsvg</code> processes.
+ * <p>
+ * <code>dot</code> reads several graphs from its standard input and writes the
+ * SVG of each one as soon as it has been read. So instead of starting a new
+ * process for each diagram, graphs are written to an idle worker and its
+ * output is read until the closing <code>&lt;/svg&gt;</code> tag.
+ * <p>
+ * A worker is replaced when it dies (<code>dot</code> stops at the first
+ * syntax error), when a job exceeds <code>GlobalConfigKey.TIMEOUT_MS</code>,
+ * when its output is out of sync, and after
+ * {@value #MAX_JOBS_PER_WORKER} jobs.
+ * <p>
+ * The pool is disabled by default. It is enabled by setting
+ * <code>PLANTUML_DOT_POOL_SIZE</code> to the number of processes.
+ */
+final class GraphvizPool {
+	// ::remove file when __CORE__
+
+	static final int MAX_JOBS_PER_WORKER = 1000;
+	private static final byte[] END_OF_SVG = "</svg>\n".getBytes();
+	private static final byte[] END_OF_STREAM = new byte[0];
+
+	private static final Map<File, GraphvizPool> pools = new ConcurrentHashMap<>();
+
+	private final ProcessFactory processFactory;
+	private final int size;
+	private final BlockingQueue<Worker> idle = new LinkedBlockingDeque<>();
+	private int created;
+
+	interface ProcessFactory {
+		Process start() throws IOException;
+	}
+
+	GraphvizPool(ProcessFactory processFactory, int size) {
+		this.processFactory = processFactory;
+		this.size = size;
+	}
+
+	static int getSize() {
+		final String value = SecurityUtils.getenv("PLANTUML_DOT_POOL_SIZE");
+		if (StringUtils.isNotEmpty(value) && value.matches("\\d+"))
+			return Integer.parseInt(value);
+
+		return 0;
+	}
+
+	static GraphvizPool getInstance(File dotExe) {
+		return pools.computeIfAbsent(dotExe.getAbsoluteFile(),
+				f -> new GraphvizPool(() -> startDot(f), Math.max(1, getSize())));
+	}
+
+	private static Process startDot(File dotExe) throws IOException {
+		Log.info(() -> "Graphviz pool: starting " + dotExe);
+		return new ProcessBuilder(dotExe.getAbsolutePath(), "-Tsvg").start();
+	}
+
+	/**
+	 * Lays out the graph with a pooled process.
+	 *
+	 * @return the state of the job, or <code>null</code> if the pool could not
+	 *         run it, in which case the caller should start its own process.
+	 */
+	ProcessState run(byte[] dotString, OutputStream os) {
+		final long timeoutMs = (Long) GlobalConfig.getInstance().value(GlobalConfigKey.TIMEOUT_MS);
+		Worker worker = null;
+		try {
+			worker = borrow(timeoutMs);
+			if (worker == null)
+				return null;
+
+			final byte[] svg = worker.render(dotString, timeoutMs);
+			if (svg == null) {
+				Log.error("Graphviz pool: timeout, restarting worker");
+				discard(worker);
+				worker = null;
+				return ProcessState.TIMEOUT();
+			}
+			if (svg == END_OF_STREAM) {
+				Log.info(() -> "Graphviz pool: worker died");
+				discard(worker);
+				worker = null;
+				return null;
+			}
+			os.write(svg);
+			release(worker);
+			worker = null;
+			return ProcessState.TERMINATED_OK();
+		} catch (IOException e) {
+			Logme.error(e);
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return ProcessState.EXCEPTION(e);
+		} finally {
+			if (worker != null)
+				discard(worker);
+		}
+	}
+
+	private Worker borrow(long timeoutMs) throws IOException, InterruptedException {
+		while (true) {
+			Worker worker = idle.poll();
+			if (worker == null && reserve())
+				try {
+					return new Worker(processFactory.start());
+				} catch (IOException e) {
+					unreserve();
+					throw e;
+				}
+
+			if (worker == null)
+				worker = idle.poll(timeoutMs, TimeUnit.MILLISECONDS);
+			if (worker == null)
+				return null;
+
+			// Health check: the process must be alive and must not have written
+			// anything since its last job
+			if (worker.isHealthy())
+				return worker;
+
+			discard(worker);
+		}
+	}
+
+	private synchronized boolean reserve() {
+		if (created >= size)
+			return false;
+
+		created++;
+		return true;
+	}
+
+	private synchronized void unreserve() {
+		created--;
+	}
+
+	synchronized int getCreated() {
+		return created;
+	}
+
+	private void release(Worker worker) {
+		if (worker.jobs >= MAX_JOBS_PER_WORKER)
+			discard(worker);
+		else
+			idle.add(worker);
+	}
+
+	private void discard(Worker worker) {
+		worker.destroy();
+		unreserve();
+	}
+
+	static class Worker {
+
+		private final Process process;
+		private final OutputStream stdin;
+		private final BlockingQueue<byte[]> documents = new LinkedBlockingQueue<>();
+		private int jobs;
+
+		Worker(Process process) {
+			this.process = process;
+			this.stdin = process.getOutputStream();
+			startDaemon("graphviz-pool-out", () -> readDocuments(process.getInputStream()));
+			startDaemon("graphviz-pool-err", () -> readErrors(process.getErrorStream()));
+		}
+
+		private static void startDaemon(String name, Runnable runnable) {
+			final Thread thread = new Thread(runnable, name);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		// Splits the standard output into SVG documents
+		private void readDocuments(InputStream is) {
+			final ByteArrayOutputStream current = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[8192];
+			int matched = 0;
+			try {
+				int length;
+				while ((length = is.read(buffer)) != -1) {
+					int start = 0;
+					for (int i = 0; i < length; i++) {
+						if (buffer[i] == END_OF_SVG[matched])
+							matched++;
+						else
+							matched = buffer[i] == END_OF_SVG[0] ? 1 : 0;
+
+						if (matched == END_OF_SVG.length) {
+							current.write(buffer, start, i + 1 - start);
+							documents.add(current.toByteArray());
+							current.reset();
+							start = i + 1;
+							matched = 0;
+						}
+					}
+					current.write(buffer, start, length - start);
+				}
+			} catch (IOException e) {
+				// The process has been destroyed
+			}
+			documents.add(END_OF_STREAM);
+		}
+
+		private static void readErrors(InputStream is) {
+			try (BufferedReader br = new BufferedReader(new InputStreamReader(is))) {
+				String line;
+				while ((line = br.readLine()) != null) {
+					final String s = line;
+					Log.info(() -> "Graphviz pool: " + s);
+				}
+			} catch (IOException e) {
+				// The process has been destroyed
+			}
+		}
+
+		byte[] render(byte[] dotString, long timeoutMs) throws IOException, InterruptedException {
+			jobs++;
+			stdin.write(dotString);
+			stdin.write('\n');
+			stdin.flush();
+			return documents.poll(timeoutMs, TimeUnit.MILLISECONDS);
+		}
+
+		boolean isHealthy() {
+			return process.isAlive() && documents.isEmpty();
+		}
+
+		void destroy() {
+			try {
+				stdin.close();
+			} catch (IOException e) {
+				// Nothing to do
+			}
+			process.destroy();
+		}
+	}
+
+}
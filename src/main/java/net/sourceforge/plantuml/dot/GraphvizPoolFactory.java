@@ -0,0 +1,117 @@
+/* ========================================================================
+ * PlantUML : a free UML diagram generator
+ * ========================================================================
+ *
+ * (C) Copyright 2009-2024, Arnaud Roques
+ *
+ * Project Info:  https://plantuml.com
+ * 
+ * If you like this project or if you find it useful, you can support us at:
+ * 
+ * https://plantuml.com/patreon (only 1$ per month!)
+ * https://plantuml.com/paypal
+ * 
+ * This file is part of PlantUML.
+ *
+ * PlantUML is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PlantUML distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301,
+ * USA.
+ *
+ *
+ * Original Author:  Arnaud Roques
+ * 
+ *
+ */
+package net.sourceforge.plantuml.dot;
+
+import java.io.File;
+import java.io.OutputStream;
+
+import net.sourceforge.plantuml.style.ISkinParam;
+
+/**
+ * Creates {@link Graphviz} instances that use the {@link GraphvizPool} when
+ * <code>PLANTUML_DOT_POOL_SIZE</code> is set.
+ * <p>
+ * Only SVG layouts (the ones used by svek) go through the pool: other formats
+ * are left to the default implementation.
+ * <p>
+ * This factory is not registered as a service, so that builds without it do
+ * not reference a missing class: {@link GraphvizRuntimeEnvironment} tries it
+ * after the registered factories.
+ */
+public class GraphvizPoolFactory implements GraphvizFactory {
+	// ::remove file when __CORE__
+
+	@Override
+	public Graphviz create(ISkinParam skinParam, String dotString, String... type) {
+		if (GraphvizPool.getSize() == 0 || AbstractGraphviz.isWindows())
+			return null;
+
+		if (type.length != 1 || type[0].equals("svg") == false)
+			return null;
+
+		if (GraphvizRuntimeEnvironment.getInstance().useVizJs(skinParam))
+			return null;
+
+		final GraphvizLinux direct = new GraphvizLinux(skinParam, dotString, type);
+		if (direct.getExeState() != ExeState.OK)
+			return null;
+
+		return new Pooled(GraphvizPool.getInstance(direct.getDotExe()), direct, dotString.getBytes());
+	}
+
+	static class Pooled implements Graphviz {
+
+		private final GraphvizPool pool;
+		private final Graphviz direct;
+		private final byte[] dotString;
+
+		Pooled(GraphvizPool pool, Graphviz direct, byte[] dotString) {
+			this.pool = pool;
+			this.direct = direct;
+			this.dotString = dotString;
+		}
+
+		@Override
+		public ProcessState createFile3(OutputStream os) {
+			final ProcessState state = pool.run(dotString, os);
+			if (state != null)
+				return state;
+
+			return direct.createFile3(os);
+		}
+
+		@Override
+		public File getDotExe() {
+			return direct.getDotExe();
+		}
+
+		@Override
+		public String dotVersion() {
+			return direct.dotVersion();
+		}
+
+		@Override
+		public ExeState getExeState() {
+			return direct.getExeState();
+		}
+
+		@Override
+		public boolean graphviz244onWindows() {
+			return false;
+		}
+	}
+
+}
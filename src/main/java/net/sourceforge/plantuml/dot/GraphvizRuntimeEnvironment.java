@@ -173,6 +173,13 @@ public class GraphvizRuntimeEnvironment {
 				return graphviz;
 			}
 		}
+		// ::comment when __CORE__
+		final Graphviz pooled = new GraphvizPoolFactory().create(skinParam, dotString, type);
+		if (pooled != null) {
+			Log.info(() -> "Using " + pooled.getClass().getName() + " created by " + GraphvizPoolFactory.class.getName());
+			return pooled;
+		}
+		// ::done
 		return null;
 	}
 
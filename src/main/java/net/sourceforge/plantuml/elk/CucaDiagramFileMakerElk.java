@@ -117,6 +117,8 @@ import net.sourceforge.plantuml.skin.AlignmentParam;
 import net.sourceforge.plantuml.skin.UmlDiagramType;
 import net.sourceforge.plantuml.skin.VisibilityModifier;
 import net.sourceforge.plantuml.skin.rose.Rose;
+import net.sourceforge.plantuml.stats.Phase;
+import net.sourceforge.plantuml.stats.PhaseMetrics;
 import net.sourceforge.plantuml.stereo.Stereotype;
 import net.sourceforge.plantuml.style.ISkinParam;
 import net.sourceforge.plantuml.style.SName;
@@ -309,6 +311,7 @@ public class CucaDiagramFileMakerElk extends CucaDiagramFileMaker {
 
 		// https://www.eclipse.org/forums/index.php/t/1095737/
 		try {
+			final long start = System.nanoTime();
 			final ElkNode root = ElkGraphUtil.createGraph();
 			root.setProperty(CoreOptions.DIRECTION, Direction.DOWN);
 			root.setProperty(CoreOptions.HIERARCHY_HANDLING, HierarchyHandling.INCLUDE_CHILDREN);
@@ -321,6 +324,7 @@ public class CucaDiagramFileMakerElk extends CucaDiagramFileMaker {
 			this.manageAllEdges(stringBounder);
 
 			new RecursiveGraphLayoutEngine().layout(root, new NullElkProgressMonitor());
+			PhaseMetrics.getInstance().record(Phase.LAYOUT, start);
 
 			final MinMax minMax = TextBlockUtils.getMinMax(
 					new MyElkDrawing(clusterManager, diagram, null, clusters, edges, nodes), stringBounder, false);
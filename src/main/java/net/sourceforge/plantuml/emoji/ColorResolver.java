@@ -59,12 +59,18 @@ public class ColorResolver {
 		return forcedColor == null ? fontColor : forcedColor;
 	}
 
-	public HColor getTrueColor(String code) {
+	// Returns null for "none"
+	public static HColorSimple getColor(String code) {
 		if (code.equalsIgnoreCase("none"))
+			return null;
+
+		return (HColorSimple) HColorSet.instance().getColorOrWhite(code);
+	}
+
+	public HColor getTrueColor(HColorSimple result) {
+		if (result == null)
 			return HColors.none();
 		
-		final HColorSimple result = (HColorSimple) HColorSet.instance().getColorOrWhite(code);
-		
 		if (forcedColor == null)
 			return result;
 		
@@ -41,17 +41,21 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import net.sourceforge.plantuml.klimt.UPath;
+import net.sourceforge.plantuml.klimt.UShape;
 import net.sourceforge.plantuml.klimt.UStroke;
 import net.sourceforge.plantuml.klimt.UTranslate;
 import net.sourceforge.plantuml.klimt.color.ColorMapper;
 import net.sourceforge.plantuml.klimt.color.ColorUtils;
 import net.sourceforge.plantuml.klimt.color.HColor;
 import net.sourceforge.plantuml.klimt.color.HColorSet;
+import net.sourceforge.plantuml.klimt.color.HColorSimple;
 import net.sourceforge.plantuml.klimt.color.HColors;
 import net.sourceforge.plantuml.klimt.drawing.UGraphic;
 import net.sourceforge.plantuml.klimt.font.FontConfiguration;
@@ -131,36 +135,143 @@ public class SvgNanoParser implements Sprite, GrayLevelRange {
 		this.svg = svg;
 	}
 
+	// The svg is compiled once for each scale into shapes that are already
+	// transformed. Only the colors are resolved when drawing, because they depend
+	// on the font color and on the forced color.
+	private static final int START_G = 0;
+	private static final int END_G = 1;
+	private static final int DRAW = 2;
+
+	private static class Paint {
+
+		private final UStroke thickness;
+		private final boolean hasStroke;
+		private final HColorSimple stroke;
+		private final boolean hasFill;
+		private final boolean fillNone;
+		private final HColorSimple fill;
+
+		private Paint(UStroke thickness, String strokeString, String fillString) {
+			this.thickness = thickness;
+			this.hasStroke = strokeString != null;
+			this.stroke = hasStroke ? ColorResolver.getColor(strokeString) : null;
+			this.hasFill = fillString != null;
+			this.fillNone = "none".equals(fillString);
+			this.fill = hasFill && fillNone == false ? ColorResolver.getColor(fillString) : null;
+		}
+
+		private UGraphic apply(UGraphic ug, ColorResolver colorResolver) {
+			if (thickness != null)
+				ug = ug.apply(thickness);
+
+			if (hasStroke) {
+				ug = ug.apply(colorResolver.getTrueColor(stroke));
+				if (hasFill == false)
+					return ug.apply(colorResolver.getDefaultColor().bg());
+			}
+
+			if (fillNone) {
+				ug = ug.apply(HColors.none().bg());
+			} else {
+				final HColor color = hasFill ? colorResolver.getTrueColor(fill) : colorResolver.getDefaultColor();
+
+				if (hasStroke == false)
+					ug = ug.apply(color);
+				ug = ug.apply(color.bg());
+			}
+
+			return ug;
+		}
+	}
+
+	private static class Instruction {
+
+		private final int type;
+		private final Paint paint;
+		private final UTranslate translate;
+		private final UShape shape;
+
+		private Instruction(int type, Paint paint, UTranslate translate, UShape shape) {
+			this.type = type;
+			this.paint = paint;
+			this.translate = translate;
+			this.shape = shape;
+		}
+	}
+
+	private final Map<Double, List<Instruction>> instructions = new HashMap<>();
+
 	public void drawU(UGraphic ug, double scale, HColor fontColor, HColor forcedColor) {
 		final ColorResolver colorResolver = new ColorResolver(fontColor, forcedColor, this);
-		UGraphicWithScale ugs = new UGraphicWithScale(ug, colorResolver, scale);
+		final HColor defaultColor = colorResolver.getDefaultColor();
+		ug = ug.apply(defaultColor).apply(defaultColor.bg());
+
+		final Deque<UGraphic> stack = new ArrayDeque<>();
+		for (Instruction instruction : getInstructions(scale)) {
+			if (instruction.type == END_G) {
+				ug = stack.removeFirst();
+				continue;
+			}
+			UGraphic current = ug;
+			if (instruction.paint != null)
+				current = instruction.paint.apply(current, colorResolver);
+
+			if (instruction.type == START_G) {
+				stack.addFirst(ug);
+				ug = current;
+			} else {
+				if (instruction.translate != null)
+					current = current.apply(instruction.translate);
+				current.draw(instruction.shape);
+			}
+		}
+	}
+
+	private synchronized List<Instruction> getInstructions(double scale) {
+		List<Instruction> result = instructions.get(scale);
+		if (result == null) {
+			result = compile(scale);
+			instructions.put(scale, result);
+		}
+		return result;
+	}
 
-		final List<UGraphicWithScale> stack = new ArrayList<>();
+	private List<Instruction> compile(double scale) {
+		final List<Instruction> result = new ArrayList<>();
+		TransformWithScale transform = new TransformWithScale(scale);
+
+		final Deque<TransformWithScale> stack = new ArrayDeque<>();
 		final Deque<String> stackG = new ArrayDeque<>();
 		for (String s : getData()) {
 			if (s.startsWith("<path ")) {
-				drawPath(ugs, s, stackG);
+				result.add(compilePath(transform, s, stackG));
 			} else if (s.startsWith("</g>")) {
-				ugs = stack.remove(0);
+				transform = stack.removeFirst();
 				stackG.removeFirst();
+				result.add(new Instruction(END_G, null, null, null));
 			} else if (s.startsWith("<g>")) {
-				stack.add(0, ugs);
+				stack.addFirst(transform);
 				stackG.addFirst(s);
+				result.add(new Instruction(START_G, null, null, null));
 			} else if (s.startsWith("<g ")) {
-				stack.add(0, ugs);
+				stack.addFirst(transform);
 				stackG.addFirst(s);
-				ugs = applyFillAndStroke(ugs, s, stackG);
-				ugs = applyTransform(ugs, s);
+				final Paint paint = getPaint(transform, s, stackG);
+				transform = applyTransform(transform, s);
+				result.add(new Instruction(START_G, paint, null, null));
 			} else if (s.startsWith("<circle ")) {
-				drawCircle(ugs, s, stackG);
+				result.add(compileCircle(transform, s, stackG));
 			} else if (s.startsWith("<ellipse ")) {
-				drawEllipse(ugs, s, stackG);
+				result.add(compileEllipse(transform, s, stackG));
 			} else if (s.startsWith("<text ")) {
-				drawText(ugs, s, stackG);
+				final Instruction text = compileText(s, stackG);
+				if (text != null)
+					result.add(text);
 			} else {
 				System.err.println("**?=" + s);
 			}
 		}
+		return Collections.unmodifiableList(result);
 	}
 
 	private synchronized Collection<String> getData() {
@@ -182,45 +293,29 @@ public class SvgNanoParser implements Sprite, GrayLevelRange {
 		return Collections.unmodifiableCollection(data);
 	}
 
-	private UGraphicWithScale applyFillAndStroke(UGraphicWithScale ugs, String s, Deque<String> stackG) {
+	private Paint getPaint(TransformWithScale transform, String s, Deque<String> stackG) {
 		final String fillString = getFillString(s, stackG);
 		final String strokeString = extract(DATA_STROKE, s);
 
+		UStroke thickness = null;
 		final String strokeWidth = extract(DATA_STROKE_WIDTH, s);
 		if (strokeWidth != null) {
-			final double scale = ugs.getEffectiveScale();
-			ugs = ugs.apply(UStroke.withThickness(scale * Double.parseDouble(strokeWidth)));
-		}
-
-		if (strokeString != null) {
-			final HColor stroke = ugs.getTrueColor(strokeString);
-			ugs = ugs.apply(stroke);
-			if (fillString == null)
-				return ugs.apply(ugs.getDefaultColor().bg());
-		}
-
-		if ("none".equals(fillString)) {
-			ugs = ugs.apply(HColors.none().bg());
-		} else {
-			final HColor fill = fillString == null ? ugs.getDefaultColor() : ugs.getTrueColor(fillString);
-
-			if (strokeString == null)
-				ugs = ugs.apply(fill);
-			ugs = ugs.apply(fill.bg());
+			final double scale = transform.getEffectiveScale();
+			thickness = UStroke.withThickness(scale * Double.parseDouble(strokeWidth));
 		}
 
-		return ugs;
+		return new Paint(thickness, strokeString, fillString);
 	}
 
-	private void drawCircle(UGraphicWithScale ugs, String s, Deque<String> stackG) {
-		ugs = applyFillAndStroke(ugs, s, stackG);
-		ugs = applyTransform(ugs, s);
+	private Instruction compileCircle(TransformWithScale transform, String s, Deque<String> stackG) {
+		final Paint paint = getPaint(transform, s, stackG);
+		transform = applyTransform(transform, s);
 
-		final double scalex = ugs.getAffineTransform().getScaleX();
-		final double scaley = ugs.getAffineTransform().getScaleY();
+		final double scalex = transform.getAffineTransform().getScaleX();
+		final double scaley = transform.getAffineTransform().getScaleY();
 
-		final double deltax = ugs.getAffineTransform().getTranslateX();
-		final double deltay = ugs.getAffineTransform().getTranslateY();
+		final double deltax = transform.getAffineTransform().getTranslateX();
+		final double deltay = transform.getAffineTransform().getTranslateY();
 
 		final double cx = Double.parseDouble(extract(DATA_CX, s)) * scalex;
 		final double cy = Double.parseDouble(extract(DATA_CY, s)) * scaley;
@@ -228,13 +323,13 @@ public class SvgNanoParser implements Sprite, GrayLevelRange {
 		final double ry = Double.parseDouble(extract(DATA_R, s)) * scaley;
 
 		final UTranslate translate = new UTranslate(deltax + cx - rx, deltay + cy - ry);
-		ugs.apply(translate).draw(UEllipse.build(rx * 2, ry * 2));
+		return new Instruction(DRAW, paint, translate, UEllipse.build(rx * 2, ry * 2));
 	}
 
-	private void drawEllipse(UGraphicWithScale ugs, String s, Deque<String> stackG) {
+	private Instruction compileEllipse(TransformWithScale transform, String s, Deque<String> stackG) {
 		final boolean debug = false;
-		ugs = applyFillAndStroke(ugs, s, stackG);
-		ugs = applyTransform(ugs, s);
+		final Paint paint = getPaint(transform, s, stackG);
+		transform = applyTransform(transform, s);
 
 		final double cx = Double.parseDouble(extract(DATA_CX, s));
 		final double cy = Double.parseDouble(extract(DATA_CY, s));
@@ -267,13 +362,13 @@ public class SvgNanoParser implements Sprite, GrayLevelRange {
 		path.closePath();
 
 		path = path.translate(cx - rx, cy - ry);
-		path = path.affine(ugs.getAffineTransform(), ugs.getAngle(), ugs.getInitialScale());
+		path = path.affine(transform.getAffineTransform(), transform.getAngle(), transform.getInitialScale());
 
-		ugs.draw(path);
+		return new Instruction(DRAW, paint, null, path);
 
 	}
 
-	private void drawText(UGraphicWithScale ugs, String s, Deque<String> stackG) {
+	private Instruction compileText(String s, Deque<String> stackG) {
 		final double x = Double.parseDouble(extract(DATA_X, s));
 		final double y = Double.parseDouble(extract(DATA_Y, s));
 		final String fontColor = getFillString(s, stackG);
@@ -289,10 +384,9 @@ public class SvgNanoParser implements Sprite, GrayLevelRange {
 			final UFont font = UFont.build(fontFamily, Font.PLAIN, fontSize);
 			final FontConfiguration fc = FontConfiguration.create(font, color, color, null);
 			final UText utext = UText.build(text, fc);
-			UGraphic ug = ugs.getUg();
-			ug = ug.apply(new UTranslate(x, y));
-			ug.draw(utext);
+			return new Instruction(DRAW, null, new UTranslate(x, y), utext);
 		}
+		return null;
 	}
 
 	private String getTextFontFamily(String s, Deque<String> stackG) {
@@ -350,39 +444,39 @@ public class SvgNanoParser implements Sprite, GrayLevelRange {
 		return Integer.parseInt(fontSize);
 	}
 
-	private void drawPath(UGraphicWithScale ugs, String s, Deque<String> stackG) {
+	private Instruction compilePath(TransformWithScale transform, String s, Deque<String> stackG) {
 		s = s.replace("id=\"", "ID=\"");
-		ugs = applyFillAndStroke(ugs, s, stackG);
-		ugs = applyTransform(ugs, s);
+		final Paint paint = getPaint(transform, s, stackG);
+		transform = applyTransform(transform, s);
 
 		final int x1 = s.indexOf("d=\"");
 		final int x2 = s.indexOf('"', x1 + 3);
 		final String tmp = s.substring(x1 + 3, x2);
 
 		final SvgPath svgPath = new SvgPath(tmp, UTranslate.none());
-		svgPath.drawMe(ugs.getUg(), ugs.getAffineTransform());
+		return new Instruction(DRAW, paint, null, svgPath.toUPath(transform.getAffineTransform()));
 
 	}
 
-	private UGraphicWithScale applyTransform(UGraphicWithScale ugs, String s) {
+	private TransformWithScale applyTransform(TransformWithScale current, String s) {
 		final String transform = extract(DATA_TRANSFORM, s);
 		if (transform == null)
-			return ugs;
+			return current;
 
 		if (transform.contains("rotate("))
-			return applyRotate(ugs, transform);
+			return applyRotate(current, transform);
 
 		if (transform.contains("matrix("))
-			return applyMatrix(ugs, transform);
+			return applyMatrix(current, transform);
 
 		final double[] scale = getScale(transform);
 		final UTranslate translate = getTranslate(transform);
-		ugs = ugs.applyTranslate(translate.getDx(), translate.getDy());
+		current = current.applyTranslate(translate.getDx(), translate.getDy());
 
-		return ugs.applyScale(scale[0], scale[1]);
+		return current.applyScale(scale[0], scale[1]);
 	}
 
-	private UGraphicWithScale applyMatrix(UGraphicWithScale ugs, final String transform) {
+	private TransformWithScale applyMatrix(TransformWithScale current, final String transform) {
 		final Matcher m3 = P_MATRIX.matcher(transform);
 		if (m3.find()) {
 			final double v1 = Double.parseDouble(m3.group(1));
@@ -391,22 +485,22 @@ public class SvgNanoParser implements Sprite, GrayLevelRange {
 			final double v4 = Double.parseDouble(m3.group(4));
 			final double v5 = Double.parseDouble(m3.group(5));
 			final double v6 = Double.parseDouble(m3.group(6));
-			ugs = ugs.applyMatrix(v1, v2, v3, v4, v5, v6);
+			current = current.applyMatrix(v1, v2, v3, v4, v5, v6);
 		} else
 			System.err.println("WARNING: " + transform);
-		return ugs;
+		return current;
 	}
 
-	private UGraphicWithScale applyRotate(UGraphicWithScale ugs, String transform) {
+	private TransformWithScale applyRotate(TransformWithScale current, String transform) {
 		final Matcher m3 = P_ROTATE.matcher(transform);
 		if (m3.find()) {
 			final double angle = Double.parseDouble(m3.group(1));
 			final double x = Double.parseDouble(m3.group(2));
 			final double y = Double.parseDouble(m3.group(3));
-			ugs = ugs.applyRotate(angle, x, y);
+			current = current.applyRotate(angle, x, y);
 		} else
 			System.err.println("WARNING: " + transform);
-		return ugs;
+		return current;
 	}
 
 	private UTranslate getTranslate(String transform) {
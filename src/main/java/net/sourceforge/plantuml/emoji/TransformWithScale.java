@@ -37,85 +37,50 @@ package net.sourceforge.plantuml.emoji;
 
 import java.awt.geom.AffineTransform;
 
-import net.sourceforge.plantuml.klimt.UChange;
-import net.sourceforge.plantuml.klimt.UShape;
-import net.sourceforge.plantuml.klimt.color.HColor;
-import net.sourceforge.plantuml.klimt.drawing.UGraphic;
+public class TransformWithScale {
 
-public class UGraphicWithScale {
-
-	final private UGraphic ug;
 	final private AffineTransform at;
 	final private double angle;
 	final private double scale;
-	final private ColorResolver colorResolver;
-
-	public UGraphicWithScale(UGraphic ug, ColorResolver colorResolver, double scale) {
-		this(updateColor(ug, colorResolver), colorResolver, AffineTransform.getScaleInstance(scale, scale), 0, scale);
-	}
 
-	private static UGraphic updateColor(UGraphic ug, ColorResolver colorResolver) {
-		final HColor color = colorResolver.getDefaultColor();
-		return ug.apply(color).apply(color.bg());
+	public TransformWithScale(double scale) {
+		this(AffineTransform.getScaleInstance(scale, scale), 0, scale);
 	}
 
-	private UGraphicWithScale(UGraphic ug, ColorResolver colorResolver, AffineTransform at, double angle,
-			double scale) {
-		this.ug = ug;
-		this.colorResolver = colorResolver;
+	private TransformWithScale(AffineTransform at, double angle, double scale) {
 		this.at = at;
 		this.angle = angle;
 		this.scale = scale;
 	}
 
-	public UGraphic getUg() {
-		return ug;
-	}
-
-	public UGraphicWithScale apply(UChange change) {
-		return new UGraphicWithScale(ug.apply(change), colorResolver, at, angle, scale);
-	}
-
-	public HColor getTrueColor(String code) {
-		return colorResolver.getTrueColor(code);
-	}
-
-	public HColor getDefaultColor() {
-		return colorResolver.getDefaultColor();
-	}
-
-	public UGraphicWithScale applyScale(double changex, double changey) {
+	public TransformWithScale applyScale(double changex, double changey) {
 		if (changex != changey)
 			throw new IllegalArgumentException();
 		final AffineTransform copy = new AffineTransform(at);
 		copy.scale(changex, changey);
-		return new UGraphicWithScale(ug, colorResolver, copy, angle, 1 * changex);
-	}
-
-	public void draw(UShape shape) {
-		ug.draw(shape);
+		return new TransformWithScale(copy, angle, 1 * changex);
 	}
 
-	public UGraphicWithScale applyRotate(double delta_angle, double x, double y) {
+	public TransformWithScale applyRotate(double delta_angle, double x, double y) {
 		final AffineTransform copy = new AffineTransform(at);
 		copy.rotate(delta_angle * Math.PI / 180, x, y);
-		return new UGraphicWithScale(ug, colorResolver, copy, this.angle + delta_angle, this.scale);
+		return new TransformWithScale(copy, this.angle + delta_angle, this.scale);
 	}
 
-	public UGraphicWithScale applyTranslate(double x, double y) {
+	public TransformWithScale applyTranslate(double x, double y) {
 		final AffineTransform copy = new AffineTransform(at);
 		copy.translate(x, y);
-		return new UGraphicWithScale(ug, colorResolver, copy, angle, this.scale);
+		return new TransformWithScale(copy, angle, this.scale);
 	}
 
 	public AffineTransform getAffineTransform() {
 		return at;
 	}
 
-	public UGraphicWithScale applyMatrix(double v1, double v2, double v3, double v4, double v5, double v6) {
+	public TransformWithScale applyMatrix(double v1, double v2, double v3, double v4, double v5, double v6) {
 		final AffineTransform copy = new AffineTransform(at);
 		copy.concatenate(new AffineTransform(new double[] { v1, v2, v3, v4, v5, v6 }));
-		return new UGraphicWithScale(ug, colorResolver, copy, angle, this.scale);
+		return new TransformWithScale(copy, angle, this.scale);
 	}
 
 	public final double getAngle() {
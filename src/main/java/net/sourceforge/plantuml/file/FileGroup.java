@@ -94,20 +94,28 @@ public class FileGroup {
 	}
 
 	private void addResultFile(final File f) {
+		if (isExcluded(f) == false)
+			result.add(f);
+	}
+
+	private boolean isExcluded(File f) {
 		final String path = getNormalizedPath(f);
 		for (String x : excluded)
 			if (path.matches(toRegexp(x)))
-				return;
+				return true;
 
-		result.add(f);
+		return false;
 	}
 
 	private void addSimpleDirectory(File dir) {
+		addSimpleDirectory(dir, getDirectoryPattern());
+	}
+
+	private static String getDirectoryPattern() {
 		if (GlobalConfig.getInstance().boolValue(GlobalConfigKey.WORD))
-			addSimpleDirectory(dir, "(?i)^.*_extr\\d+\\.txt$");
-		else
-			addSimpleDirectory(dir, CliOptions.getPattern());
+			return "(?i)^.*_extr\\d+\\.txt$";
 
+		return CliOptions.getPattern();
 	}
 
 	private void addSimpleDirectory(File dir, String pattern) {
@@ -159,6 +167,73 @@ public class FileGroup {
 
 	}
 
+	/**
+	 * Directory where the files of this group are looked for.
+	 */
+	public File getBaseDir() {
+		if (hasStar() == false) {
+			final File f = new File(pattern);
+			if (f.isDirectory())
+				return f;
+
+			return f.getParentFile() == null ? new File(".") : f.getParentFile();
+		}
+		final Matcher2 m = isRecursive() ? predirPath.matcher(pattern) : noStarInDirectory.matcher(pattern);
+		if (m.find() == false || m.group(1) == null)
+			return new File(".");
+
+		return new File(m.group(1));
+	}
+
+	/**
+	 * Tells if files are also looked for in the subdirectories of the base
+	 * directory.
+	 */
+	public boolean isRecursive() {
+		if (hasStar() == false)
+			return false;
+
+		return pattern.indexOf("**") != -1 || noStarInDirectory.matcher(pattern).find() == false;
+	}
+
+	private boolean hasStar() {
+		return pattern.indexOf("*") != -1 || pattern.indexOf("?") != -1;
+	}
+
+	/**
+	 * Tells if a file that did not exist when this group was built would have
+	 * been part of it.
+	 */
+	public boolean matches(File f) {
+		if (isExcluded(f))
+			return false;
+
+		if (hasStar() == false) {
+			final File p = new File(pattern);
+			if (p.isDirectory())
+				return sameFile(p, f.getParentFile()) && f.getName().matches(getDirectoryPattern());
+
+			return sameFile(p, f);
+		}
+		if (isRecursive() == false) {
+			final Matcher2 m = noStarInDirectory.matcher(pattern);
+			m.find();
+			return sameFile(getBaseDir(), f.getParentFile()) && f.getName().matches(toRegexp(m.group(2)));
+		}
+		return getNormalizedPath(f).matches(toRegexp(pattern));
+	}
+
+	private static boolean sameFile(File f1, File f2) {
+		if (f2 == null)
+			return false;
+
+		return f1.getAbsoluteFile().toPath().normalize().equals(f2.getAbsoluteFile().toPath().normalize());
+	}
+
+	public String getPattern() {
+		return pattern;
+	}
+
 	public List<File> getFiles() {
 		return Collections.unmodifiableList(result);
 	}
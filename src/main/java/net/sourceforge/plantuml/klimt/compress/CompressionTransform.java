@@ -40,10 +40,24 @@ import java.util.List;
 public class CompressionTransform implements PiecewiseAffineTransform {
     // ::remove file when __HAXE__
 
-	private final List<Slot> all;
+	private final double starts[];
+	private final double ends[];
+	// sizes[i] is the total size of the slots before the i-th one
+	private final double sizes[];
 
 	public CompressionTransform(SlotSet slotSet) {
-		this.all = slotSet.getSlots();
+		final List<Slot> all = slotSet.getSlots();
+		this.starts = new double[all.size()];
+		this.ends = new double[all.size()];
+		this.sizes = new double[all.size()];
+		double size = 0;
+		for (int i = 0; i < all.size(); i++) {
+			final Slot s = all.get(i);
+			starts[i] = s.getStart();
+			ends[i] = s.getEnd();
+			sizes[i] = size;
+			size += s.size();
+		}
 	}
 
 	public double transform(double v) {
@@ -51,18 +65,25 @@ public class CompressionTransform implements PiecewiseAffineTransform {
 	}
 
 	private double getCompressDelta(double v) {
-		double result = 0;
-		for (Slot s : all) {
-			if (s.getStart() > v) {
-				continue;
-			}
-			if (v > s.getEnd()) {
-				result += s.size();
-			} else {
-				result += v - s.getStart();
-			}
+		// Slots are sorted and disjoint: all the ones starting before v, but the last
+		// one, are entirely before v
+		int low = 0;
+		int high = starts.length;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (starts[mid] > v)
+				high = mid;
+			else
+				low = mid + 1;
 		}
-		return result;
+		if (low == 0)
+			return 0;
+
+		final int last = low - 1;
+		if (v > ends[last])
+			return sizes[last] + (ends[last] - starts[last]);
+
+		return sizes[last] + (v - starts[last]);
 	}
 
 }
@@ -42,15 +42,27 @@ public class CompressionXorYBuilder {
     // ::remove file when __HAXE__
 
 	public static TextBlock build(CompressionMode mode, TextBlock textBlock, StringBounder stringBounder) {
-		final PiecewiseAffineTransform affine = getPiecewiseAffineTransform(mode, textBlock, stringBounder);
+		final SlotFinder slotFinder = SlotFinder.create(mode, stringBounder);
+		textBlock.drawU(slotFinder);
+		final PiecewiseAffineTransform affine = getPiecewiseAffineTransform(slotFinder.getSlotSet(mode));
 		return PiecewiseAffineOnXorYBuilder.build(mode, textBlock, affine);
 	}
 
-	private static PiecewiseAffineTransform getPiecewiseAffineTransform(CompressionMode mode, TextBlock textBlock,
-			StringBounder stringBounder) {
-		final SlotFinder slotFinder = SlotFinder.create(mode, stringBounder);
+	// Same as compressing on X then on Y, but the slots of both axes are found by
+	// drawing the block only once: compression on X does not move anything vertically
+	public static TextBlock buildOnXandY(TextBlock textBlock, StringBounder stringBounder) {
+		final SlotFinder slotFinder = SlotFinder.createOnXandY(stringBounder);
 		textBlock.drawU(slotFinder);
-		final SlotSet ysSlotSet = slotFinder.getSlotSet().reverse().smaller(5.0);
+		final PiecewiseAffineTransform affineX = getPiecewiseAffineTransform(
+				slotFinder.getSlotSet(CompressionMode.ON_X));
+		final PiecewiseAffineTransform affineY = getPiecewiseAffineTransform(
+				slotFinder.getSlotSet(CompressionMode.ON_Y));
+		final TextBlock result = PiecewiseAffineOnXorYBuilder.build(CompressionMode.ON_X, textBlock, affineX);
+		return PiecewiseAffineOnXorYBuilder.build(CompressionMode.ON_Y, result, affineY);
+	}
+
+	private static PiecewiseAffineTransform getPiecewiseAffineTransform(SlotSet slotSet) {
+		final SlotSet ysSlotSet = slotSet.reverse().smaller(5.0);
 		return new CompressionTransform(ysSlotSet);
 	}
 
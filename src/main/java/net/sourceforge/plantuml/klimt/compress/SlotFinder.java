@@ -37,6 +37,7 @@ package net.sourceforge.plantuml.klimt.compress;
 
 import static net.sourceforge.plantuml.utils.ObjectUtils.instanceOfAny;
 
+import net.sourceforge.plantuml.activitydiagram3.ftile.CenteredText;
 import net.sourceforge.plantuml.klimt.UBackground;
 import net.sourceforge.plantuml.klimt.UChange;
 import net.sourceforge.plantuml.klimt.UPath;
@@ -64,51 +65,76 @@ public class SlotFinder extends UGraphicNo {
 			throw new UnsupportedOperationException(change.getClass().toString());
 		final UTranslate tmp = change instanceof UTranslate ? this.getTranslate().compose((UTranslate) change)
 				: this.getTranslate();
-		SlotFinder result = new SlotFinder(this.getStringBounder(), tmp, this.slot, this.mode);
+		SlotFinder result = new SlotFinder(this.getStringBounder(), tmp, this.slotX, this.slotY);
 		return result;
 	}
 
-	private final SlotSet slot;
-	private final CompressionMode mode;
+	// null when the slots are not searched on this axis
+	private final SlotSet slotX;
+	private final SlotSet slotY;
 
 	public static SlotFinder create(CompressionMode mode, StringBounder stringBounder) {
-		return new SlotFinder(stringBounder, UTranslate.none(), new SlotSet(), mode);
+		if (mode == CompressionMode.ON_X)
+			return new SlotFinder(stringBounder, UTranslate.none(), new SlotSet(), null);
+		else
+			return new SlotFinder(stringBounder, UTranslate.none(), null, new SlotSet());
+	}
+
+	public static SlotFinder createOnXandY(StringBounder stringBounder) {
+		return new SlotFinder(stringBounder, UTranslate.none(), new SlotSet(), new SlotSet());
 	}
 
-	private SlotFinder(StringBounder stringBounder, UTranslate translate, SlotSet slot, CompressionMode mode) {
+	private SlotFinder(StringBounder stringBounder, UTranslate translate, SlotSet slotX, SlotSet slotY) {
 		super(stringBounder, translate);
-		this.slot = slot;
-		this.mode = mode;
+		this.slotX = slotX;
+		this.slotY = slotY;
+	}
+
+	private SlotFinder only(CompressionMode mode) {
+		if (mode == CompressionMode.ON_X)
+			return new SlotFinder(getStringBounder(), getTranslate(), slotX, null);
+		else
+			return new SlotFinder(getStringBounder(), getTranslate(), null, slotY);
 	}
 
 	public void draw(UShape sh) {
+		if (slotX != null)
+			draw(sh, CompressionMode.ON_X, slotX);
+		if (slotY != null)
+			draw(sh, CompressionMode.ON_Y, slotY);
+	}
+
+	private void draw(UShape sh, CompressionMode mode, SlotSet slot) {
 		final double x = getTranslate().getDx();
 		final double y = getTranslate().getDy();
 		if (sh instanceof UShapeIgnorableForCompression) {
 			final UShapeIgnorableForCompression shape = (UShapeIgnorableForCompression) sh;
 			if (shape.isIgnoreForCompressionOn(mode)) {
-				shape.drawWhenCompressed(this, mode);
+				shape.drawWhenCompressed(only(mode), mode);
 				return;
 			}
 
 		}
 		if (sh instanceof URectangle) {
-			drawRectangle(x, y, (URectangle) sh);
+			drawRectangle(x, y, (URectangle) sh, mode, slot);
 		} else if (sh instanceof UPath) {
-			drawPath(x, y, (UPath) sh);
+			drawPath(x, y, (UPath) sh, mode, slot);
 		} else if (sh instanceof UPolygon) {
-			drawPolygon(x, y, (UPolygon) sh);
+			drawPolygon(x, y, (UPolygon) sh, mode, slot);
 		} else if (sh instanceof UEllipse) {
-			drawEllipse(x, y, (UEllipse) sh);
+			drawEllipse(x, y, (UEllipse) sh, mode, slot);
 		} else if (sh instanceof UText) {
 			final UText text = (UText) sh;
-			drawText(x, y, text);
+			drawText(x, y, text, mode, slot);
 		} else if (sh instanceof UEmpty) {
-			drawEmpty(x, y, (UEmpty) sh);
+			drawEmpty(x, y, (UEmpty) sh, mode, slot);
+		} else if (sh instanceof CenteredText && mode == CompressionMode.ON_Y) {
+			// Once compressed on X, the text is drawn on its own (see UGraphicCompressOnXorY)
+			((CenteredText) sh).getText().drawU(only(mode));
 		}
 	}
 
-	private void drawPath(double x, double y, UPath shape) {
+	private void drawPath(double x, double y, UPath shape, CompressionMode mode, SlotSet slot) {
 		if (mode == CompressionMode.ON_X)
 			slot.addSlot(x + shape.getMinX(), x + shape.getMaxX());
 		else
@@ -116,7 +142,7 @@ public class SlotFinder extends UGraphicNo {
 
 	}
 
-	private void drawEmpty(double x, double y, UEmpty shape) {
+	private void drawEmpty(double x, double y, UEmpty shape, CompressionMode mode, SlotSet slot) {
 		if (mode == CompressionMode.ON_X)
 			slot.addSlot(x, x + shape.getWidth());
 		else
@@ -124,7 +150,7 @@ public class SlotFinder extends UGraphicNo {
 
 	}
 
-	private void drawText(double x, double y, UText shape) {
+	private void drawText(double x, double y, UText shape, CompressionMode mode, SlotSet slot) {
 		final TextLimitFinder finder = TextLimitFinder.create(getStringBounder(), false);
 		finder.apply(new UTranslate(x, y)).draw(shape);
 		if (mode == CompressionMode.ON_X)
@@ -134,7 +160,7 @@ public class SlotFinder extends UGraphicNo {
 
 	}
 
-	private void drawEllipse(double x, double y, UEllipse shape) {
+	private void drawEllipse(double x, double y, UEllipse shape, CompressionMode mode, SlotSet slot) {
 		if (mode == CompressionMode.ON_X)
 			slot.addSlot(x, x + shape.getWidth());
 		else
@@ -142,7 +168,7 @@ public class SlotFinder extends UGraphicNo {
 
 	}
 
-	private void drawPolygon(double x, double y, UPolygon shape) {
+	private void drawPolygon(double x, double y, UPolygon shape, CompressionMode mode, SlotSet slot) {
 		if (mode == shape.getCompressionMode())
 			return;
 
@@ -153,7 +179,7 @@ public class SlotFinder extends UGraphicNo {
 
 	}
 
-	private void drawRectangle(double x, double y, URectangle shape) {
+	private void drawRectangle(double x, double y, URectangle shape, CompressionMode mode, SlotSet slot) {
 		if (mode == CompressionMode.ON_X)
 			slot.addSlot(x, x + shape.getWidth());
 		else
@@ -165,8 +191,11 @@ public class SlotFinder extends UGraphicNo {
 		return ColorMapper.IDENTITY;
 	}
 
-	public SlotSet getSlotSet() {
-		return slot;
+	public SlotSet getSlotSet(CompressionMode mode) {
+		if (mode == CompressionMode.ON_X)
+			return slotX;
+		else
+			return slotY;
 	}
 
 }
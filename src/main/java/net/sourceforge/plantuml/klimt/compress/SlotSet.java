@@ -39,6 +39,9 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 
 import net.sourceforge.plantuml.klimt.UTranslate;
 import net.sourceforge.plantuml.klimt.drawing.UGraphic;
@@ -47,42 +50,45 @@ import net.sourceforge.plantuml.klimt.shape.URectangle;
 public class SlotSet implements Iterable<Slot> {
     // ::remove file when __HAXE__
 
-	private final List<Slot> all = new ArrayList<>();
+	// Slots never overlap nor touch each other, so they are indexed by their start
+	private final NavigableMap<Double, Slot> all = new TreeMap<>();
 
 	public SlotSet filter(double start, double end) {
 		final SlotSet result = new SlotSet();
-		for (Slot slot : all) {
+		for (Slot slot : all.values()) {
 			final Slot intersec = slot.intersect(start, end);
 			if (intersec != null) 
-				result.all.add(intersec);
+				result.all.put(intersec.getStart(), intersec);
 			
 		}
 		return result;
 	}
 
 	public void addAll(SlotSet other) {
-		this.all.addAll(other.all);
+		for (Slot slot : other.all.values())
+			addSlot(slot.getStart(), slot.getEnd());
+
 	}
 
 	public void addSlot(double start, double end) {
-		final List<Slot> collisions = new ArrayList<>();
 		Slot newSlot = new Slot(start, end);
-		for (final Iterator<Slot> it = all.iterator(); it.hasNext();) {
-			final Slot s = it.next();
-			if (s.intersect(newSlot)) {
-				it.remove();
-				collisions.add(s);
-			}
+		// Only the last slot starting before the new one may reach it
+		final Map.Entry<Double, Slot> before = all.lowerEntry(start);
+		if (before != null && before.getValue().intersect(newSlot)) {
+			all.remove(before.getKey());
+			newSlot = newSlot.merge(before.getValue());
 		}
-		for (Slot s : collisions) 
+		final Map<Double, Slot> collisions = all.subMap(start, true, end, true);
+		for (Slot s : collisions.values()) 
 			newSlot = newSlot.merge(s);
-		
-		all.add(newSlot);
+
+		collisions.clear();
+		all.put(newSlot.getStart(), newSlot);
 	}
 
 	public SlotSet smaller(double margin) {
 		final SlotSet result = new SlotSet();
-		for (Slot sl : all) {
+		for (Slot sl : all.values()) {
 			if (sl.size() <= 2 * margin) 
 				continue;
 			
@@ -93,11 +99,11 @@ public class SlotSet implements Iterable<Slot> {
 
 	@Override
 	public String toString() {
-		return all.toString();
+		return all.values().toString();
 	}
 
 	public List<Slot> getSlots() {
-		return Collections.unmodifiableList(all);
+		return Collections.unmodifiableList(new ArrayList<>(all.values()));
 	}
 
 	public Iterator<Slot> iterator() {
@@ -106,9 +112,8 @@ public class SlotSet implements Iterable<Slot> {
 
 	public SlotSet reverse() {
 		final SlotSet result = new SlotSet();
-		Collections.sort(all);
 		Slot last = null;
-		for (Slot slot : all) {
+		for (Slot slot : all.values()) {
 			if (last != null) 
 				result.addSlot(last.getEnd(), slot.getStart());
 			
@@ -118,7 +123,7 @@ public class SlotSet implements Iterable<Slot> {
 	}
 
 	public void drawDebugX(UGraphic ug, double size) {
-		for (Slot slot : all) {
+		for (Slot slot : all.values()) {
 			final URectangle rect = URectangle.build(slot.getEnd() - slot.getStart(), size);
 			ug.apply(UTranslate.dx(slot.getStart())).draw(rect);
 		}
@@ -0,0 +1,240 @@
+/* ========================================================================
+ * PlantUML : a free UML diagram generator
+ * ========================================================================
+ *
+ * (C) Copyright 2009-2024, Arnaud Roques
+ *
+ * Project Info:  https://plantuml.com
+ * 
+ * If you like this project or if you find it useful, you can support us at:
+ * 
+ * https://plantuml.com/patreon (only 1$ per month!)
+ * https://plantuml.com/paypal
+ * 
+ * This file is part of PlantUML.
+ *
+ * PlantUML is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PlantUML distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301,
+ * USA.
+ *
+ *
+ * Original Author:  Arnaud Roques
+ * 
+ *
+ */
+package net.sourceforge.plantuml.klimt.drawing;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.sourceforge.plantuml.klimt.UChange;
+import net.sourceforge.plantuml.klimt.UGroup;
+import net.sourceforge.plantuml.klimt.UShape;
+import net.sourceforge.plantuml.klimt.color.ColorMapper;
+import net.sourceforge.plantuml.klimt.color.HColor;
+import net.sourceforge.plantuml.klimt.font.StringBounder;
+import net.sourceforge.plantuml.klimt.shape.UDrawable;
+import net.sourceforge.plantuml.url.Url;
+
+/**
+ * Everything a {@link UDrawable} did on a {@link UGraphic}, recorded once and
+ * replayed later.
+ * <p>
+ * The recording pass computes the limits of the drawing, like
+ * {@link LimitFinder}, so that the final image can be created with the right
+ * size. The recorded calls (<code>apply</code>, <code>draw</code>, urls and
+ * groups) are then replayed in the same order on the real {@link UGraphic},
+ * without walking the drawable a second time.
+ * <p>
+ * While recording, the drawable sees the same parameters, color mapper,
+ * default background and properties as it would on the real {@link UGraphic}.
+ */
+public final class DisplayList {
+	// ::remove file when __HAXE__
+
+	private static final int APPLY = 0;
+	private static final int DRAW = 1;
+	private static final int START_URL = 2;
+	private static final int CLOSE_URL = 3;
+	private static final int START_GROUP = 4;
+	private static final int CLOSE_GROUP = 5;
+
+	// Each operation is (node << 3 | code): nodes are the UGraphic instances
+	// created by apply(), numbered in creation order, 0 being the root
+	private int ops[] = new int[256];
+	private final List<Object> args = new ArrayList<>();
+	private int nbNodes = 1;
+
+	private final LimitFinder limitFinder;
+
+	private DisplayList(StringBounder stringBounder) {
+		this.limitFinder = LimitFinder.create(stringBounder, true);
+	}
+
+	public static DisplayList record(UDrawable drawable, StringBounder stringBounder, ColorMapper colorMapper,
+			HColor defaultBackground, String... properties) {
+		final DisplayList result = new DisplayList(stringBounder);
+		final Recorder root = new Recorder(stringBounder, result, properties);
+		root.basicCopy(defaultBackground, colorMapper);
+		root.node = 0;
+		root.limits = result.limitFinder;
+		drawable.drawU(root);
+		return result;
+	}
+
+	public double getMaxX() {
+		return limitFinder.getMaxX();
+	}
+
+	public double getMaxY() {
+		return limitFinder.getMaxY();
+	}
+
+	public int size() {
+		return args.size();
+	}
+
+	private void add(int node, int code, Object arg) {
+		final int index = args.size();
+		if (index == ops.length)
+			ops = Arrays.copyOf(ops, ops.length * 2);
+
+		ops[index] = node << 3 | code;
+		args.add(arg);
+	}
+
+	private int newNode(int parent, UChange change) {
+		add(parent, APPLY, change);
+		return nbNodes++;
+	}
+
+	public void replay(UGraphic ug) {
+		final int size = args.size();
+
+		// Index of the last operation using each node, so that intermediate
+		// UGraphic can be garbage collected during the replay
+		final int lastUse[] = new int[nbNodes];
+		int created = 1;
+		for (int i = 0; i < size; i++) {
+			final int node = ops[i] >>> 3;
+			lastUse[node] = i;
+			if ((ops[i] & 7) == APPLY)
+				lastUse[created++] = i;
+		}
+
+		final UGraphic nodes[] = new UGraphic[nbNodes];
+		nodes[0] = ug;
+		created = 1;
+		for (int i = 0; i < size; i++) {
+			final int node = ops[i] >>> 3;
+			final Object arg = args.get(i);
+			switch (ops[i] & 7) {
+			case APPLY:
+				nodes[created++] = nodes[node].apply((UChange) arg);
+				break;
+			case DRAW:
+				nodes[node].draw((UShape) arg);
+				break;
+			case START_URL:
+				nodes[node].startUrl((Url) arg);
+				break;
+			case CLOSE_URL:
+				nodes[node].closeUrl();
+				break;
+			case START_GROUP:
+				nodes[node].startGroup((UGroup) arg);
+				break;
+			case CLOSE_GROUP:
+				nodes[node].closeGroup();
+				break;
+			}
+			if (node != 0 && lastUse[node] == i)
+				nodes[node] = null;
+		}
+	}
+
+	static class Recorder extends AbstractCommonUGraphic {
+
+		private final DisplayList list;
+		private final String properties[];
+		private int node;
+		private UGraphic limits;
+
+		private Recorder(StringBounder stringBounder, DisplayList list, String properties[]) {
+			super(stringBounder);
+			this.list = list;
+			this.properties = properties;
+		}
+
+		@Override
+		protected AbstractCommonUGraphic copyUGraphic() {
+			final Recorder result = new Recorder(getStringBounder(), list, properties);
+			result.basicCopy(this);
+			return result;
+		}
+
+		@Override
+		public UGraphic apply(UChange change) {
+			final Recorder result = (Recorder) super.apply(change);
+			result.limits = limits.apply(change);
+			result.node = list.newNode(node, change);
+			return result;
+		}
+
+		@Override
+		public <SHAPE extends UShape> void draw(SHAPE shape) {
+			limits.draw(shape);
+			list.add(node, DRAW, shape);
+		}
+
+		@Override
+		public void startUrl(Url url) {
+			list.add(node, START_URL, url);
+		}
+
+		@Override
+		public void closeUrl() {
+			list.add(node, CLOSE_URL, null);
+		}
+
+		@Override
+		public void startGroup(UGroup group) {
+			list.add(node, START_GROUP, group);
+		}
+
+		@Override
+		public void closeGroup() {
+			list.add(node, CLOSE_GROUP, null);
+		}
+
+		@Override
+		public boolean matchesProperty(String propertyName) {
+			for (String property : properties)
+				if (property.equalsIgnoreCase(propertyName))
+					return true;
+
+			return false;
+		}
+
+		@Override
+		public void writeToStream(OutputStream os, String metadata, int dpi) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
+}
@@ -0,0 +1,227 @@
+/* ========================================================================
+ * PlantUML : a free UML diagram generator
+ * ========================================================================
+ *
+ * (C) Copyright 2009-2024, Arnaud Roques
+ *
+ * Project Info:  https://plantuml.com
+ * 
+ * If you like this project or if you find it useful, you can support us at:
+ * 
+ * https://plantuml.com/patreon (only 1$ per month!)
+ * https://plantuml.com/paypal
+ * 
+ * This file is part of PlantUML.
+ *
+ * PlantUML is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PlantUML distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301,
+ * USA.
+ *
+ *
+ * Original Author:  Arnaud Roques
+ * 
+ *
+ */
+package net.sourceforge.plantuml.klimt.drawing.svg;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer receiving the serialized SVG.
+ * <p>
+ * The escaping rules are the ones of the JDK XML serializer with the
+ * <code>us-ascii</code> encoding, that we used in the past: the output is pure
+ * ASCII, other characters being written as numeric character references
+ * (except in comments, where they are replaced by <code>?</code>). Inlined
+ * images are the only exception: they are written with the default charset.
+ */
+final class SvgBuffer {
+	// ::remove file when __HAXE__
+
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+
+	private byte[] data;
+	private int size;
+
+	SvgBuffer(int capacity) {
+		this.data = new byte[capacity];
+	}
+
+	int size() {
+		return size;
+	}
+
+	void writeTo(OutputStream os) throws IOException {
+		os.write(data, 0, size);
+	}
+
+	SvgBuffer append(SvgBuffer other) {
+		ensureCapacity(other.size);
+		System.arraycopy(other.data, 0, data, size, other.size);
+		size += other.size;
+		return this;
+	}
+
+	private void ensureCapacity(int extra) {
+		if (size + extra > data.length)
+			data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+	}
+
+	SvgBuffer append(char c) {
+		ensureCapacity(1);
+		data[size++] = (byte) c;
+		return this;
+	}
+
+	// Only for markup: the string must be ASCII
+	SvgBuffer append(String ascii) {
+		final int len = ascii.length();
+		ensureCapacity(len);
+		for (int i = 0; i < len; i++)
+			data[size++] = (byte) ascii.charAt(i);
+
+		return this;
+	}
+
+	void appendRaw(String s) {
+		final byte[] bytes = s.getBytes();
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, data, size, bytes.length);
+		size += bytes.length;
+	}
+
+	private void appendCharRef(int codePoint) {
+		append("&#");
+		append(Integer.toString(codePoint));
+		append(';');
+	}
+
+	// Returns the index of the last char consumed
+	private int appendCharRef(CharSequence s, int i, int end) {
+		final char c = s.charAt(i);
+		if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s.charAt(i + 1))) {
+			appendCharRef(Character.toCodePoint(c, s.charAt(i + 1)));
+			return i + 1;
+		}
+		appendCharRef(c);
+		return i;
+	}
+
+	void appendText(CharSequence s) {
+		final int end = s.length();
+		ensureCapacity(end);
+		for (int i = 0; i < end; i++) {
+			final char c = s.charAt(i);
+			if (c >= 0x20 && c < 0x7F) {
+				if (c == '&')
+					append("&amp;");
+				else if (c == '<')
+					append("&lt;");
+				else if (c == '>')
+					append("&gt;");
+				else
+					append(c);
+			} else if (c == '\n')
+				append(LINE_SEPARATOR);
+			else if (c == '\t')
+				append(c);
+			else
+				i = appendCharRef(s, i, end);
+		}
+	}
+
+	void appendAttribute(CharSequence s, int start, int end) {
+		ensureCapacity(end - start);
+		for (int i = start; i < end; i++) {
+			final char c = s.charAt(i);
+			if (c >= 0x20 && c <= 0x7F) {
+				if (c == '&')
+					append("&amp;");
+				else if (c == '<')
+					append("&lt;");
+				else if (c == '>')
+					append("&gt;");
+				else if (c == '"')
+					append("&quot;");
+				else
+					append(c);
+			} else
+				i = appendCharRef(s, i, end);
+		}
+	}
+
+	void appendComment(String s) {
+		final int end = s.length();
+		ensureCapacity(end + 8);
+		append("<!--");
+		for (int i = 0; i < end; i++) {
+			final char c = s.charAt(i);
+			if (c == '-' && i > 0 && s.charAt(i - 1) == '-')
+				append(' ');
+
+			if (c < 0x80) {
+				append(c);
+			} else {
+				if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s.charAt(i + 1)))
+					i++;
+				append('?');
+			}
+		}
+		if (end > 0 && s.charAt(end - 1) == '-')
+			append(' ');
+
+		append("-->");
+	}
+
+	// Mimics the way the JDK serializer splits CDATA sections around characters
+	// that need a character reference and around "]]>"
+	void appendCdata(String s) {
+		final int end = s.length();
+		ensureCapacity(end + 12);
+		boolean open = false;
+		final boolean brackets = end > 0 && isCdataChar(s.charAt(0));
+		if (brackets) {
+			append("<![CDATA[");
+			open = true;
+		}
+		for (int i = 0; i < end; i++) {
+			final char c = s.charAt(i);
+			if (c == '\n') {
+				append(LINE_SEPARATOR);
+			} else if (isCdataChar(c) == false) {
+				if (open)
+					append("]]>");
+				open = false;
+				i = appendCharRef(s, i, end);
+			} else if (c == ']' && i < end - 2 && s.charAt(i + 1) == ']' && s.charAt(i + 2) == '>') {
+				append("]]]]><![CDATA[>");
+				i += 2;
+			} else {
+				if (open == false)
+					append("<![CDATA[");
+				open = true;
+				append(c);
+			}
+		}
+		if (open)
+			append("]]>");
+	}
+
+	private static boolean isCdataChar(char c) {
+		return (c >= 0x20 && c <= 0x7F) || c == '\n' || c == '\r' || c == '\t';
+	}
+
+}
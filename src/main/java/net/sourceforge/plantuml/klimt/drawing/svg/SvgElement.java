@@ -0,0 +1,168 @@
+/* ========================================================================
+ * PlantUML : a free UML diagram generator
+ * ========================================================================
+ *
+ * (C) Copyright 2009-2024, Arnaud Roques
+ *
+ * Project Info:  https://plantuml.com
+ * 
+ * If you like this project or if you find it useful, you can support us at:
+ * 
+ * https://plantuml.com/patreon (only 1$ per month!)
+ * https://plantuml.com/paypal
+ * 
+ * This file is part of PlantUML.
+ *
+ * PlantUML is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PlantUML distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301,
+ * USA.
+ *
+ *
+ * Original Author:  Arnaud Roques
+ * 
+ *
+ */
+package net.sourceforge.plantuml.klimt.drawing.svg;
+
+import java.util.Arrays;
+
+/**
+ * An SVG element waiting for its attributes, before being written to a
+ * {@link SvgBuffer}.
+ * <p>
+ * Attribute values are appended to a single <code>StringBuilder</code>, so that
+ * coordinates are formatted in place. Like with the DOM we used in the past,
+ * setting an attribute twice keeps the last value, and attributes are written
+ * sorted by name, namespace declarations first.
+ */
+final class SvgElement {
+	// ::remove file when __HAXE__
+
+	private String name;
+	private String attributes[] = new String[8];
+	private int starts[] = new int[8];
+	private int ends[] = new int[8];
+	private int order[] = new int[8];
+	private int count;
+	private final StringBuilder values = new StringBuilder(128);
+
+	SvgElement(String name) {
+		this.name = name;
+	}
+
+	String getName() {
+		return name;
+	}
+
+	SvgElement reset(String name) {
+		this.name = name;
+		this.count = 0;
+		this.values.setLength(0);
+		return this;
+	}
+
+	/**
+	 * Starts a new attribute: its value is what is appended to the returned
+	 * builder until the next attribute is started.
+	 */
+	StringBuilder begin(String attribute) {
+		closeLast();
+		if (count == attributes.length) {
+			attributes = Arrays.copyOf(attributes, count * 2);
+			starts = Arrays.copyOf(starts, count * 2);
+			ends = Arrays.copyOf(ends, count * 2);
+			order = Arrays.copyOf(order, count * 2);
+		}
+		attributes[count] = attribute;
+		starts[count] = values.length();
+		ends[count] = -1;
+		count++;
+		return values;
+	}
+
+	SvgElement set(String attribute, CharSequence value) {
+		begin(attribute).append(value);
+		return this;
+	}
+
+	SvgElement set(String attribute, double value) {
+		SvgNumber.append(begin(attribute), value);
+		return this;
+	}
+
+	private void closeLast() {
+		if (count > 0 && ends[count - 1] == -1)
+			ends[count - 1] = values.length();
+	}
+
+	void writeEmpty(SvgBuffer out) {
+		writeAttributes(out);
+		out.append("/>");
+	}
+
+	void writeStart(SvgBuffer out) {
+		writeAttributes(out);
+		out.append('>');
+	}
+
+	void writeEnd(SvgBuffer out) {
+		out.append("</").append(name).append('>');
+	}
+
+	void writeWithText(SvgBuffer out, String text) {
+		if (text.length() == 0) {
+			writeEmpty(out);
+		} else {
+			writeStart(out);
+			out.appendText(text);
+			writeEnd(out);
+		}
+	}
+
+	private void writeAttributes(SvgBuffer out) {
+		closeLast();
+		int nb = 0;
+		for (int i = 0; i < count; i++) {
+			// Insertion sort, the last value of an attribute replacing the previous one
+			int j = nb;
+			while (j > 0 && compare(attributes[order[j - 1]], attributes[i]) > 0)
+				j--;
+
+			if (j > 0 && attributes[order[j - 1]].equals(attributes[i])) {
+				order[j - 1] = i;
+			} else {
+				System.arraycopy(order, j, order, j + 1, nb - j);
+				order[j] = i;
+				nb++;
+			}
+		}
+		out.append('<').append(name);
+		for (int k = 0; k < nb; k++) {
+			final int i = order[k];
+			out.append(' ').append(attributes[i]).append("=\"");
+			out.appendAttribute(values, starts[i], ends[i]);
+			out.append('"');
+		}
+	}
+
+	private static int compare(String name1, String name2) {
+		final boolean ns1 = name1.startsWith("xmlns");
+		final boolean ns2 = name2.startsWith("xmlns");
+		if (ns1 != ns2)
+			return ns1 ? -1 : 1;
+
+		return name1.compareTo(name2);
+	}
+
+}
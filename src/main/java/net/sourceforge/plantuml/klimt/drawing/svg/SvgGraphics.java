@@ -35,6 +35,8 @@
  */
 package net.sourceforge.plantuml.klimt.drawing.svg;
 
+import static net.sourceforge.plantuml.klimt.color.HColor.TransparentFillBehavior.WITH_FILL_NONE;
+
 import java.awt.geom.PathIterator;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
@@ -52,25 +54,12 @@ import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-
-import net.sourceforge.plantuml.klimt.color.HColor.TransparentFillBehavior;
-import org.w3c.dom.CDATASection;
-import org.w3c.dom.Comment;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-
 import net.sourceforge.plantuml.FileUtils;
 import net.sourceforge.plantuml.code.TranscoderUtil;
 import net.sourceforge.plantuml.klimt.UGroupType;
 import net.sourceforge.plantuml.klimt.UPath;
 import net.sourceforge.plantuml.klimt.color.HColor;
+import net.sourceforge.plantuml.klimt.color.HColor.TransparentFillBehavior;
 import net.sourceforge.plantuml.klimt.color.HColorGradient;
 import net.sourceforge.plantuml.klimt.geom.USegment;
 import net.sourceforge.plantuml.klimt.geom.USegmentType;
@@ -83,10 +72,16 @@ import net.sourceforge.plantuml.security.SecurityUtils;
 import net.sourceforge.plantuml.skin.PragmaKey;
 import net.sourceforge.plantuml.utils.Base64Coder;
 import net.sourceforge.plantuml.utils.Log;
-import net.sourceforge.plantuml.xml.XmlFactories;
-
-import static net.sourceforge.plantuml.klimt.color.HColor.TransparentFillBehavior.WITH_FILL_NONE;
 
+/**
+ * Writes SVG as shapes are drawn.
+ * <p>
+ * Elements are serialized immediately into a byte buffer, with the same bytes
+ * that the DOM + JAXP <code>Transformer</code> pipeline used to produce. Only
+ * what depends on the final size of the drawing (the root element and the
+ * background rectangle) and the definitions (gradients, filters...) are kept
+ * aside, and written before the body in {@link #createXml(OutputStream)}.
+ */
 public class SvgGraphics {
 	// ::remove file when __HAXE__
 
@@ -108,10 +103,15 @@ public class SvgGraphics {
 	private static final String XLINK_HREF1 = "href";
 	private static final String XLINK_HREF2 = "xlink:href";
 
-	final private Document document;
-	final private Element root;
-	final private Element defs;
-	final private Element gRoot;
+	private static final String[] OPACITIES = new String[256];
+
+	private final SvgBuffer defs = new SvgBuffer(1024);
+	private final SvgBuffer body = new SvgBuffer(16 * 1024);
+	// Reused for every element, one for the body and one for the definitions as
+	// some definitions are created while a body element is built
+	private final SvgElement elt = new SvgElement("g");
+	private final SvgElement defsElt = new SvgElement("defs");
+	private final StringBuilder pathData = new StringBuilder();
 
 	private String fill = "black";
 	private String stroke = "black";
@@ -129,7 +129,7 @@ public class SvgGraphics {
 
 	private final SvgOption option;
 
-	private Element pendingBackground;
+	private SvgElement pendingBackground;
 	private boolean robotoAdded = false;
 
 	final protected void ensureVisible(double x, double y) {
@@ -142,60 +142,38 @@ public class SvgGraphics {
 	}
 
 	public SvgGraphics(long seed, SvgOption option) {
-		try {
-			this.document = getDocument();
-
-			this.option = option;
-			final XDimension2D minDim = option.getMinDim();
-			ensureVisible(minDim.getWidth(), minDim.getHeight());
-
-			this.root = getRootNode();
-
-			for (Map.Entry<String, String> ent : option.getRootAttributes().entrySet())
-				root.setAttribute(ent.getKey(), ent.getValue());
-
-			// Create a node named defs, which will be the parent
-			// for a pair of linear gradient definitions.
-			defs = simpleElement("defs");
-			gRoot = simpleElement("g");
-			strokeWidth = format(1);
-			this.filterUid = "b" + getSeed(seed);
-			this.shadowId = "f" + getSeed(seed);
-			this.gradientId = "g" + getSeed(seed);
-			if (option.getHover() != null)
-				defs.appendChild(getPathHover(option.getHover()));
-
-			if (option.isInteractive()) {
-				final Element styles = getStylesForInteractiveMode();
-				if (styles != null)
-					defs.appendChild(styles);
-
-				final Element script = getScriptForInteractiveMode();
-				if (script != null)
-					defs.appendChild(script);
-			}
-
-			final HColor backcolor = option.getBackcolor();
+		this.option = option;
+		final XDimension2D minDim = option.getMinDim();
+		ensureVisible(minDim.getWidth(), minDim.getHeight());
+
+		strokeWidth = format(1);
+		this.filterUid = "b" + getSeed(seed);
+		this.shadowId = "f" + getSeed(seed);
+		this.gradientId = "g" + getSeed(seed);
+		if (option.getHover() != null)
+			addPathHover(option.getHover());
+
+		if (option.isInteractive()) {
+			addStylesForInteractiveMode();
+			addScriptForInteractiveMode();
+		}
 
-			if (backcolor instanceof HColorGradient) {
-				this.backcolorString = null;
-				HColorGradient gr = (HColorGradient) backcolor;
-				final String id = this.createSvgGradient(gr.getColor1().toRGB(option.getColorMapper()),
-						gr.getColor2().toRGB(option.getColorMapper()), gr.getPolicy());
-				this.paintBackcolor("url(#" + id + ")");
-			} else if (backcolor == null) {
-				this.backcolorString = null;
-			} else {
-				this.backcolorString = backcolor.toSvg(option.getColorMapper());
-				final String color = backcolor.toSvg(option.getColorMapper());
-				if (color.equals("#00000000") == false && color.equals("#000000") == false
-						&& color.equals("#FFFFFF") == false)
-					this.paintBackcolor(color);
-			}
+		final HColor backcolor = option.getBackcolor();
 
-		} catch (ParserConfigurationException e) {
-			Logme.error(e);
-			throw new IllegalStateException(e);
+		if (backcolor instanceof HColorGradient) {
+			this.backcolorString = null;
+			HColorGradient gr = (HColorGradient) backcolor;
+			final String id = this.createSvgGradient(gr.getColor1().toRGB(option.getColorMapper()),
+					gr.getColor2().toRGB(option.getColorMapper()), gr.getPolicy());
+			this.paintBackcolor("url(#" + id + ")");
+		} else if (backcolor == null) {
+			this.backcolorString = null;
+		} else {
+			this.backcolorString = backcolor.toSvg(option.getColorMapper());
+			final String color = backcolor.toSvg(option.getColorMapper());
+			if (color.equals("#00000000") == false && color.equals("#000000") == false
+					&& color.equals("#FFFFFF") == false)
+				this.paintBackcolor(color);
 		}
 	}
 
@@ -203,69 +181,39 @@ public class SvgGraphics {
 		if (robotoAdded)
 			return;
 		// https://stackoverflow.com/questions/36253961/using-google-fonts-with-svg-object
-		final Element style = document.createElement("style");
-		style.setAttribute("type", "text/css");
-		style.setTextContent(
+		defsElt.reset("style").set("type", "text/css").writeWithText(defs,
 				"@import url('https://fonts.googleapis.com/css?family=Roboto:400,100,100italic,300,300italic,400italic,500,500italic,700,700italic,900,900italic');");
-		defs.appendChild(style);
 		robotoAdded = true;
 	}
 
+	// The background is the first element of the drawing, but its size is only
+	// known at the end
 	private void paintBackcolor(String back) {
 		setFillColor(back);
 		setStrokeColor(null);
-		pendingBackground = createRectangleInternal(0, 0, 0, 0);
-		getG().appendChild(pendingBackground);
+		pendingBackground = createRectangleInternal(new SvgElement("rect"), 0, 0, 0, 0);
 	}
 
-	private Element getStylesForInteractiveMode() {
-		final Element style = simpleElement("style");
+	private void addStylesForInteractiveMode() {
 		final String text = getData(option.getInteractiveBaseFilename() + ".css");
 		if (text == null)
-			return null;
-
-		final CDATASection cdata = document.createCDATASection(text);
-		style.setAttribute("type", "text/css");
-		style.appendChild(cdata);
-		return style;
-	}
-
-//	private Element getStylesForDarkness() {
-//		final Element style = simpleElement("style");
-//		final StringBuilder text1 = new StringBuilder();
-//		final StringBuilder text2 = new StringBuilder("@media (prefers-color-scheme:dark) {");
-//		final Pattern p = Pattern.compile("^(\\w)_(\\w+)_(\\w+)$");
-//		for (String s : this.classesForDarkness) {
-//			final Matcher m = p.matcher(s);
-//			if (m.matches() == false)
-//				throw new IllegalStateException();
-//			final String color1 = m.group(2);
-//			final String color2 = m.group(3);
-//			final String type = m.group(1);
-//			if ("f".equals(type)) {
-//				text1.append("*." + s + " {fill:#" + color1 + ";}");
-//				text2.append("*." + s + " {fill:#" + color2 + ";}");
-//			} else if ("s".equals(type)) {
-//				text1.append("*." + s + " {stroke:#" + color1 + ";}");
-//				text2.append("*." + s + " {stroke:#" + color2 + ";}");
-//			} else
-//				throw new IllegalStateException();
-//		}
-//		text2.append("}");
-//		final CDATASection cdata = document.createCDATASection(text1.toString() + text2.toString());
-//		style.setAttribute("type", "text/css");
-//		style.appendChild(cdata);
-//		return style;
-//	}
-
-	private Element getScriptForInteractiveMode() {
-		final Element script = document.createElement("script");
+			return;
+
+		addStyle(text);
+	}
+
+	private void addStyle(String cdata) {
+		defsElt.reset("style").set("type", "text/css").writeStart(defs);
+		defs.appendCdata(cdata);
+		defsElt.writeEnd(defs);
+	}
+
+	private void addScriptForInteractiveMode() {
 		final String text = getData(option.getInteractiveBaseFilename() + ".js");
 		if (text == null)
-			return null;
+			return;
 
-		script.setTextContent(text);
-		return script;
+		defsElt.reset("script").writeWithText(defs, text);
 	}
 
 	private static String getData(final String name) {
@@ -281,92 +229,49 @@ public class SvgGraphics {
 		return null;
 	}
 
-	private Element getPathHover(String hover) {
-		final Element style = simpleElement("style");
-		final CDATASection cdata = document.createCDATASection("path:hover { stroke: " + hover + " !important;}");
-		style.setAttribute("type", "text/css");
-		style.appendChild(cdata);
-		return style;
+	private void addPathHover(String hover) {
+		addStyle("path:hover { stroke: " + hover + " !important;}");
 	}
 
 	private static String getSeed(final long seed) {
 		return Long.toString(Math.abs(seed), 36);
 	}
 
-	// This method returns a reference to a simple XML
-	// element node that has no attributes.
-	private Element simpleElement(String type) {
-		final Element theElement = document.createElement(type);
-		root.appendChild(theElement);
-		return theElement;
-	}
-
-	private Document getDocument() throws ParserConfigurationException {
-		final DocumentBuilder builder = XmlFactories.newDocumentBuilder();
-		final Document document = builder.newDocument();
-		document.setXmlStandalone(true);
-		return document;
-	}
-
-	// This method returns a reference to a root node that
-	// has already been appended to the document.
-	private Element getRootNode() {
-		// Create the root node named svg and append it to
-		// the document.
-		final Element svg = document.createElement("svg");
-		document.appendChild(svg);
-
-		// Set some attributes on the root node that are
-		// required for proper rendering. Note that the
-		// approach used here is somewhat different from the
-		// approach used in the earlier program named Svg01,
-		// particularly with regard to the style.
-		svg.setAttribute("xmlns", "http://www.w3.org/2000/svg");
-		svg.setAttribute("xmlns:xlink", "http://www.w3.org/1999/xlink");
-		svg.setAttribute("version", "1.1");
-
-		if (option.getTitle() != null) {
-			// Create a title element and set its text
-			final Element title = document.createElement("title");
-			title.setTextContent(option.getTitle());
-			svg.appendChild(title);
-		}
-
-		final String desc = option.getDesc();
-		if (desc != null) {
-			// Create a desc element and set its text
-			final Element descElement = document.createElement("desc");
-			descElement.setTextContent(desc);
-			svg.appendChild(descElement);
-		}
-		return svg;
-	}
-
 	public void svgEllipse(double x, double y, double xRadius, double yRadius, double deltaShadow) {
 		manageShadow(deltaShadow);
 		if (hidden == false) {
-			final Element elt = document.createElement("ellipse");
-			elt.setAttribute("cx", format(x));
-			elt.setAttribute("cy", format(y));
-			elt.setAttribute("rx", format(xRadius));
-			elt.setAttribute("ry", format(yRadius));
+			elt.reset("ellipse");
+			setNumber(elt, "cx", x);
+			setNumber(elt, "cy", y);
+			setNumber(elt, "rx", xRadius);
+			setNumber(elt, "ry", yRadius);
 			fillMe(elt);
 			styleMe(elt);
 			addFilterShadowId(elt, deltaShadow);
-			getG().appendChild(elt);
+			elt.writeEmpty(getG());
 		}
 		ensureVisible(x + xRadius + deltaShadow * 2, y + yRadius + deltaShadow * 2);
 	}
 
 	public void svgArcEllipse(double rx, double ry, double x1, double y1, double x2, double y2) {
 		if (hidden == false) {
-			final String path = "M" + format(x1) + "," + format(y1) + " A" + format(rx) + "," + format(ry) + " 0 0 0 "
-					+ format(x2) + " " + format(y2);
-			final Element elt = document.createElement("path");
-			elt.setAttribute("d", path);
+			elt.reset("path");
+			final StringBuilder path = elt.begin("d");
+			path.append('M');
+			appendNumber(path, x1);
+			path.append(',');
+			appendNumber(path, y1);
+			path.append(" A");
+			appendNumber(path, rx);
+			path.append(',');
+			appendNumber(path, ry);
+			path.append(" 0 0 0 ");
+			appendNumber(path, x2);
+			path.append(' ');
+			appendNumber(path, y2);
 			fillMe(elt);
 			styleMe(elt);
-			getG().appendChild(elt);
+			elt.writeEmpty(getG());
 		}
 		ensureVisible(x1, y1);
 		ensureVisible(x2, y2);
@@ -378,42 +283,36 @@ public class SvgGraphics {
 		final List<Object> key = Arrays.asList((Object) color1, color2, policy);
 		String id = gradients.get(key);
 		if (id == null) {
-			final Element elt = document.createElement("linearGradient");
+			defsElt.reset("linearGradient");
 			if (policy == '|') {
-				elt.setAttribute("x1", "0%");
-				elt.setAttribute("y1", "50%");
-				elt.setAttribute("x2", "100%");
-				elt.setAttribute("y2", "50%");
+				defsElt.set("x1", "0%");
+				defsElt.set("y1", "50%");
+				defsElt.set("x2", "100%");
+				defsElt.set("y2", "50%");
 			} else if (policy == '\\') {
-				elt.setAttribute("x1", "0%");
-				elt.setAttribute("y1", "100%");
-				elt.setAttribute("x2", "100%");
-				elt.setAttribute("y2", "0%");
+				defsElt.set("x1", "0%");
+				defsElt.set("y1", "100%");
+				defsElt.set("x2", "100%");
+				defsElt.set("y2", "0%");
 			} else if (policy == '-') {
-				elt.setAttribute("x1", "50%");
-				elt.setAttribute("y1", "0%");
-				elt.setAttribute("x2", "50%");
-				elt.setAttribute("y2", "100%");
+				defsElt.set("x1", "50%");
+				defsElt.set("y1", "0%");
+				defsElt.set("x2", "50%");
+				defsElt.set("y2", "100%");
 			} else {
-				elt.setAttribute("x1", "0%");
-				elt.setAttribute("y1", "0%");
-				elt.setAttribute("x2", "100%");
-				elt.setAttribute("y2", "100%");
+				defsElt.set("x1", "0%");
+				defsElt.set("y1", "0%");
+				defsElt.set("x2", "100%");
+				defsElt.set("y2", "100%");
 			}
 			id = gradientId + gradients.size();
 			gradients.put(key, id);
-			elt.setAttribute("id", id);
-
-			final Element stop1 = document.createElement("stop");
-			stop1.setAttribute("stop-color", color1);
-			stop1.setAttribute("offset", "0%");
-			final Element stop2 = document.createElement("stop");
-			stop2.setAttribute("stop-color", color2);
-			stop2.setAttribute("offset", "100%");
-
-			elt.appendChild(stop1);
-			elt.appendChild(stop2);
-			defs.appendChild(elt);
+			defsElt.set("id", id);
+			defsElt.writeStart(defs);
+
+			defsElt.reset("stop").set("stop-color", color1).set("offset", "0%").writeEmpty(defs);
+			defsElt.reset("stop").set("stop-color", color2).set("offset", "100%").writeEmpty(defs);
+			defsElt.reset("linearGradient").writeEnd(defs);
 		}
 		return id;
 	}
@@ -452,11 +351,15 @@ public class SvgGraphics {
 			this.strokeDasharray = "" + format(strokeDasharray[0]) + "," + format(strokeDasharray[1]);
 	}
 
-	public final Element getG() {
-		if (pendingElements.size() == 0)
-			return gRoot;
+	/**
+	 * Returns the buffer where the next element goes, after writing the start
+	 * tags of the groups and links that were waiting for their first child.
+	 */
+	private SvgBuffer getG() {
+		if (pendingElements.size() > 0 && pendingElements.get(0).opened == false)
+			openPendingElements();
 
-		return pendingElements.get(0);
+		return body;
 	}
 
 	public void svgRectangle(double x, double y, double width, double height, double rx, double ry, double deltaShadow
@@ -468,11 +371,11 @@ public class SvgGraphics {
 		}
 		manageShadow(deltaShadow);
 		if (hidden == false) {
-			final Element elt = createRectangleInternal(x, y, width, height);
+			createRectangleInternal(elt.reset("rect"), x, y, width, height);
 			addFilterShadowId(elt, deltaShadow);
 			if (rx > 0 && ry > 0) {
-				elt.setAttribute("rx", format(rx));
-				elt.setAttribute("ry", format(ry));
+				setNumber(elt, "rx", rx);
+				setNumber(elt, "ry", ry);
 			}
 //			if (id != null)
 //				elt.setAttribute("id", id);
@@ -480,70 +383,67 @@ public class SvgGraphics {
 //			if (codeLine != null)
 //				elt.setAttribute("codeLine", codeLine);
 
-			getG().appendChild(elt);
+			elt.writeEmpty(getG());
 		}
 		ensureVisible(x + width + 2 * deltaShadow, y + height + 2 * deltaShadow);
 	}
 
-	private Element createRectangleInternal(double x, double y, double width, double height) {
-		final Element elt = document.createElement("rect");
-		elt.setAttribute("x", format(x));
-		elt.setAttribute("y", format(y));
-		elt.setAttribute("width", format(width));
-		elt.setAttribute("height", format(height));
-		fillMe(elt);
-		styleMe(elt);
-		return elt;
+	private SvgElement createRectangleInternal(SvgElement rect, double x, double y, double width, double height) {
+		setNumber(rect, "x", x);
+		setNumber(rect, "y", y);
+		setNumber(rect, "width", width);
+		setNumber(rect, "height", height);
+		fillMe(rect);
+		styleMe(rect);
+		return rect;
 	}
 
 	public void svgLine(double x1, double y1, double x2, double y2, double deltaShadow) {
 		manageShadow(deltaShadow);
 		if (hidden == false) {
-			final Element elt = document.createElement("line");
-			elt.setAttribute("x1", format(x1));
-			elt.setAttribute("y1", format(y1));
-			elt.setAttribute("x2", format(x2));
-			elt.setAttribute("y2", format(y2));
+			elt.reset("line");
+			setNumber(elt, "x1", x1);
+			setNumber(elt, "y1", y1);
+			setNumber(elt, "x2", x2);
+			setNumber(elt, "y2", y2);
 			styleMe(elt);
 			addFilterShadowId(elt, deltaShadow);
-			getG().appendChild(elt);
+			elt.writeEmpty(getG());
 		}
 		ensureVisible(x1 + 2 * deltaShadow, y1 + 2 * deltaShadow);
 		ensureVisible(x2 + 2 * deltaShadow, y2 + 2 * deltaShadow);
 	}
 
-	private void styleMe(Element elt) {
+	private void styleMe(SvgElement elt) {
 		if (strokeWidth.equals("0"))
 			return;
 
-		final StringBuilder style = new StringBuilder();
+		final StringBuilder style = elt.begin("style");
 
-		style.append("stroke:" + stroke + ";");
-		style.append("stroke-width:" + strokeWidth + ";");
+		style.append("stroke:").append(stroke).append(';');
+		style.append("stroke-width:").append(strokeWidth).append(';');
 
 		if (strokeDasharray != null)
-			style.append("stroke-dasharray:" + strokeDasharray + ";");
+			style.append("stroke-dasharray:").append(strokeDasharray).append(';');
 
-		elt.setAttribute("style", style.toString());
 	}
 
 	public void svgPolygon(double deltaShadow, double... points) {
 		assert points.length % 2 == 0;
 		manageShadow(deltaShadow);
 		if (hidden == false) {
-			final Element elt = document.createElement("polygon");
-			final StringBuilder sb = new StringBuilder();
-			for (double coord : points) {
-				if (sb.length() > 0)
-					sb.append(",");
+			elt.reset("polygon");
+			final StringBuilder sb = elt.begin("points");
+			for (int i = 0; i < points.length; i++) {
+				if (i > 0)
+					sb.append(',');
 
-				sb.append(format(coord));
+				appendNumber(sb, points[i]);
 			}
-			elt.setAttribute("points", sb.toString());
 			fillMe(elt);
 			styleMe(elt);
 			addFilterShadowId(elt, deltaShadow);
-			getG().appendChild(elt);
+			elt.writeEmpty(getG());
 		}
 
 		for (int i = 0; i < points.length; i += 2) {
@@ -556,33 +456,33 @@ public class SvgGraphics {
 			String fontStyle, String textDecoration, double textLength, Map<String, String> attributes,
 			String textBackColor) {
 		if (hidden == false) {
-			final Element elt = document.createElement("text");
+			elt.reset("text");
 			// required for web-kit based browsers
 			// elt.setAttribute("text-rendering", "geometricPrecision");
-			elt.setAttribute("x", format(x));
-			elt.setAttribute("y", format(y));
+			setNumber(elt, "x", x);
+			setNumber(elt, "y", y);
 			fillMe(elt);
-			elt.setAttribute("font-size", format(fontSize));
+			setNumber(elt, "font-size", fontSize);
 			// elt.setAttribute("text-anchor", "middle");
 
 //			if (option.getFont() == null) {
 			if (option.getLengthAdjust() == LengthAdjust.SPACING) {
-				elt.setAttribute("lengthAdjust", "spacing");
-				elt.setAttribute("textLength", format(textLength));
+				elt.set("lengthAdjust", "spacing");
+				setNumber(elt, "textLength", textLength);
 			} else if (option.getLengthAdjust() == LengthAdjust.SPACING_AND_GLYPHS) {
-				elt.setAttribute("lengthAdjust", "spacingAndGlyphs");
-				elt.setAttribute("textLength", format(textLength));
+				elt.set("lengthAdjust", "spacingAndGlyphs");
+				setNumber(elt, "textLength", textLength);
 			}
 //			}
 
 			if (fontWeight != null)
-				elt.setAttribute("font-weight", fontWeight);
+				elt.set("font-weight", fontWeight);
 
 			if (fontStyle != null)
-				elt.setAttribute("font-style", fontStyle);
+				elt.set("font-style", fontStyle);
 
 			if (textDecoration != null)
-				elt.setAttribute("text-decoration", textDecoration);
+				elt.set("text-decoration", textDecoration);
 
 			if (fontFamily != null) {
 
@@ -593,7 +493,7 @@ public class SvgGraphics {
 				if ("monospaced".equalsIgnoreCase(fontFamily))
 					fontFamily = "monospace";
 
-				elt.setAttribute("font-family", fontFamily);
+				elt.set("font-family", fontFamily);
 
 				if (fontFamily.equalsIgnoreCase("monospace") || fontFamily.equalsIgnoreCase("courier"))
 					text = text.replace(' ', (char) 160);
@@ -601,14 +501,12 @@ public class SvgGraphics {
 			}
 			if (textBackColor != null) {
 				final String backFilterId = getFilterBackColor(textBackColor);
-				elt.setAttribute("filter", "url(#" + backFilterId + ")");
+				elt.begin("filter").append("url(#").append(backFilterId).append(')');
 			}
 			for (Map.Entry<String, String> ent : attributes.entrySet())
-				elt.setAttribute(ent.getKey(), ent.getValue());
+				elt.set(ent.getKey(), ent.getValue());
 
-			elt.setTextContent(text);
-			// elt.appendChild(document.createCDATASection(text));
-			getG().appendChild(elt);
+			elt.writeWithText(getG(), text);
 
 			// http://forum.plantuml.net/9158/hyperlink-without-underline
 			// if (textDecoration != null && textDecoration.contains("underline")) {
@@ -644,54 +542,21 @@ public class SvgGraphics {
 			return id;
 
 		id = getIdFilterBackColor(color);
-		final Element filter = document.createElement("filter");
-		filter.setAttribute("id", id);
-		filter.setAttribute("x", "0");
-		filter.setAttribute("y", "0");
-		filter.setAttribute("width", "1");
-		filter.setAttribute("height", "1");
-		addFilter(filter, "feFlood", "flood-color", color, "result", "flood");
-		addFilter(filter, "feComposite", "in", "SourceGraphic", "in2", "flood", "operator", "over");
-		defs.appendChild(filter);
+		defsElt.reset("filter");
+		defsElt.set("id", id);
+		defsElt.set("x", "0");
+		defsElt.set("y", "0");
+		defsElt.set("width", "1");
+		defsElt.set("height", "1");
+		defsElt.writeStart(defs);
+		addFilter("feFlood", "flood-color", color, "result", "flood");
+		addFilter("feComposite", "in", "SourceGraphic", "in2", "flood", "operator", "over");
+		defsElt.reset("filter").writeEnd(defs);
 		return id;
 	}
 
-	private Transformer getTransformer() throws TransformerException {
-		final Transformer transformer = XmlFactories.newTransformer();
-		Log.info(() -> "Transformer=" + transformer.getClass());
-
-		// // Sets the standalone property in the first line of
-		// // the output file.
-		transformer.setOutputProperty(OutputKeys.STANDALONE, "no");
-		transformer.setOutputProperty(OutputKeys.ENCODING, "us-ascii");
-		// transformer.setOutputProperty(OutputKeys.DOCTYPE_PUBLIC, "SVG 1.1");
-		// transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "no");
-
-		return transformer;
-	}
-
-	public void createXml(OutputStream os) throws TransformerException, IOException {
-		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		createXmlInternal(baos);
-		String s = new String(baos.toByteArray());
-		for (Map.Entry<String, String> ent : images.entrySet()) {
-			final String k = "<" + ent.getKey() + "/>";
-			s = s.replace(k, ent.getValue());
-		}
-		s = removeXmlHeader(s);
-		// s = s.replace("<", "\n<").replace(">", ">\n");
-		os.write(s.getBytes());
-	}
-
-	private String removeXmlHeader(String s) {
-		s = s.replaceFirst("^<\\?xml [^<>]+?\\>", "");
-		return s;
-	}
-
-	private void createXmlInternal(OutputStream os) throws TransformerException {
-		// Get a DOMSource object that represents the
-		// Document object
-		final DOMSource source = new DOMSource(document);
+	public void createXml(OutputStream os) throws IOException {
+		closePendingElements();
 
 		final int maxXscaled = (int) (maxX * option.getScale());
 		final int maxYscaled = (int) (maxY * option.getScale());
@@ -700,58 +565,90 @@ public class SvgGraphics {
 		if (backcolorString != null && "#00000000".equals(backcolorString) == false)
 			style += "background:" + backcolorString + ";";
 
+		final SvgElement root = new SvgElement("svg");
+		root.set("xmlns", "http://www.w3.org/2000/svg");
+		root.set("xmlns:xlink", "http://www.w3.org/1999/xlink");
+		root.set("version", "1.1");
+		for (Map.Entry<String, String> ent : option.getRootAttributes().entrySet())
+			root.set(ent.getKey(), ent.getValue());
+
 		if (option.getSvgDimensionStyle()) {
-			root.setAttribute("style", style);
-			root.setAttribute("width", format(maxX) + "px");
-			root.setAttribute("height", format(maxY) + "px");
+			root.set("style", style);
+			root.set("width", format(maxX) + "px");
+			root.set("height", format(maxY) + "px");
 		}
-		root.setAttribute("viewBox", "0 0 " + maxXscaled + " " + maxYscaled);
-		root.setAttribute("zoomAndPan", "magnify");
-		root.setAttribute("preserveAspectRatio", option.getPreserveAspectRatio());
+		root.set("viewBox", "0 0 " + maxXscaled + " " + maxYscaled);
+		root.set("zoomAndPan", "magnify");
+		root.set("preserveAspectRatio", option.getPreserveAspectRatio());
 		// root.setAttribute("contentScriptType", "application/ecmascript");
-		root.setAttribute("contentStyleType", "text/css");
+		root.set("contentStyleType", "text/css");
 
-		if (pendingBackground != null) {
-			pendingBackground.setAttribute("width", format(maxX));
-			pendingBackground.setAttribute("height", format(maxY));
+		final SvgBuffer prologue = new SvgBuffer(1024 + defs.size());
+		root.writeStart(prologue);
+		if (option.getTitle() != null)
+			new SvgElement("title").writeWithText(prologue, option.getTitle());
+
+		if (option.getDesc() != null)
+			new SvgElement("desc").writeWithText(prologue, option.getDesc());
+
+		if (defs.size() == 0) {
+			prologue.append("<defs/>");
+		} else {
+			prologue.append("<defs>");
+			prologue.append(defs);
+			prologue.append("</defs>");
 		}
 
-		// Get a StreamResult object that points to the
-		// screen. Then transform the DOM sending XML to
-		// the screen.
-		final StreamResult scrResult = new StreamResult(os);
-		getTransformer().transform(source, scrResult);
+		if (pendingBackground == null && body.size() == 0) {
+			prologue.append("<g/></svg>");
+			prologue.writeTo(os);
+			return;
+		}
+		prologue.append("<g>");
+		if (pendingBackground != null) {
+			setNumber(pendingBackground, "width", maxX);
+			setNumber(pendingBackground, "height", maxY);
+			pendingBackground.writeEmpty(prologue);
+		}
+		prologue.writeTo(os);
+		body.writeTo(os);
+		final SvgBuffer epilogue = new SvgBuffer(16);
+		epilogue.append("</g></svg>");
+		epilogue.writeTo(os);
 	}
 
 	public void svgPath(double x, double y, UPath path, double deltaShadow) {
 		manageShadow(deltaShadow);
 		ensureVisible(x, y);
-		final StringBuilder sb = new StringBuilder(path.size() * 12);
+		final StringBuilder sb = pathData;
+		sb.setLength(0);
 		for (USegment seg : path) {
 			final USegmentType type = seg.getSegmentType();
 			final double coord[] = seg.getCoord();
 			if (type == USegmentType.SEG_MOVETO) {
-				sb.append("M" + format(coord[0] + x) + "," + format(coord[1] + y) + " ");
+				appendPoint(sb.append('M'), coord[0] + x, coord[1] + y).append(' ');
 				ensureVisible(coord[0] + x + 2 * deltaShadow, coord[1] + y + 2 * deltaShadow);
 			} else if (type == USegmentType.SEG_LINETO) {
-				sb.append("L" + format(coord[0] + x) + "," + format(coord[1] + y) + " ");
+				appendPoint(sb.append('L'), coord[0] + x, coord[1] + y).append(' ');
 				ensureVisible(coord[0] + x + 2 * deltaShadow, coord[1] + y + 2 * deltaShadow);
 			} else if (type == USegmentType.SEG_QUADTO) {
-				sb.append("Q" + format(coord[0] + x) + "," + format(coord[1] + y) + " " + format(coord[2] + x) + ","
-						+ format(coord[3] + y) + " ");
+				appendPoint(sb.append('Q'), coord[0] + x, coord[1] + y).append(' ');
+				appendPoint(sb, coord[2] + x, coord[3] + y).append(' ');
 				ensureVisible(coord[0] + x + 2 * deltaShadow, coord[1] + y + 2 * deltaShadow);
 				ensureVisible(coord[2] + x + 2 * deltaShadow, coord[3] + y + 2 * deltaShadow);
 			} else if (type == USegmentType.SEG_CUBICTO) {
-				sb.append("C" + format(coord[0] + x) + "," + format(coord[1] + y) + " " + format(coord[2] + x) + ","
-						+ format(coord[3] + y) + " " + format(coord[4] + x) + "," + format(coord[5] + y) + " ");
+				appendPoint(sb.append('C'), coord[0] + x, coord[1] + y).append(' ');
+				appendPoint(sb, coord[2] + x, coord[3] + y).append(' ');
+				appendPoint(sb, coord[4] + x, coord[5] + y).append(' ');
 				ensureVisible(coord[0] + x + 2 * deltaShadow, coord[1] + y + 2 * deltaShadow);
 				ensureVisible(coord[2] + x + 2 * deltaShadow, coord[3] + y + 2 * deltaShadow);
 				ensureVisible(coord[4] + x + 2 * deltaShadow, coord[5] + y + 2 * deltaShadow);
 			} else if (type == USegmentType.SEG_ARCTO) {
 				// A25,25 0,0 5,395,40
-				sb.append("A" + format(coord[0]) + "," + format(coord[1]) + " " + format(coord[2]) + " "
-						+ formatBoolean(coord[3]) + " " + formatBoolean(coord[4]) + " " + format(coord[5] + x) + ","
-						+ format(coord[6] + y) + " ");
+				appendPoint(sb.append('A'), coord[0], coord[1]).append(' ');
+				appendNumber(sb, coord[2]);
+				sb.append(' ').append(formatBoolean(coord[3])).append(' ').append(formatBoolean(coord[4])).append(' ');
+				appendPoint(sb, coord[5] + x, coord[6] + y).append(' ');
 				ensureVisible(coord[5] + coord[0] + x + 2 * deltaShadow, coord[6] + coord[1] + y + 2 * deltaShadow);
 			} else if (type == USegmentType.SEG_CLOSE) {
 				// Nothing
@@ -761,36 +658,61 @@ public class SvgGraphics {
 
 		}
 		if (hidden == false) {
-			final Element elt = document.createElement("path");
-			elt.setAttribute("d", sb.toString().trim());
+			elt.reset("path");
+			// Same as trim(), the path always starts with a command
+			int end = sb.length();
+			while (end > 0 && sb.charAt(end - 1) <= ' ')
+				end--;
+			elt.begin("d").append(sb, 0, end);
 			styleMe(elt);
 			fillMe(elt);
 			final String id = path.getComment();
 			if (id != null)
-				elt.setAttribute("id", id);
+				elt.set("id", id);
 
 			final String codeLine = path.getCodeLine();
 			if (codeLine != null)
-				elt.setAttribute("codeLine", codeLine);
+				elt.set("codeLine", codeLine);
 
 			addFilterShadowId(elt, deltaShadow);
-			getG().appendChild(elt);
+			elt.writeEmpty(getG());
 		}
 	}
 
-	private void fillMe(Element elt) {
-		if (fill.matches("#[0-9A-Fa-f]{8}")) {
-			elt.setAttribute("fill", fill.substring(0, 7));
-			final double opacity = Integer.parseInt(fill.substring(7), 16) / 255.0;
-			elt.setAttribute("fill-opacity", String.format(Locale.US, "%1.5f", opacity));
+	private void fillMe(SvgElement elt) {
+		if (isColorWithAlpha(fill)) {
+			elt.begin("fill").append(fill, 0, 7);
+			final int alpha = Character.digit(fill.charAt(7), 16) * 16 + Character.digit(fill.charAt(8), 16);
+			elt.set("fill-opacity", getOpacity(alpha));
 		} else {
-			elt.setAttribute("fill", fill);
+			elt.set("fill", fill);
 		}
 	}
 
-	private void addFilterShadowId(final Element elt, double deltaShadow) {
+	// Same as fill.matches("#[0-9A-Fa-f]{8}")
+	private static boolean isColorWithAlpha(String color) {
+		if (color.length() != 9 || color.charAt(0) != '#')
+			return false;
+
+		for (int i = 1; i < 9; i++)
+			if (Character.digit(color.charAt(i), 16) == -1 || color.charAt(i) > 'f')
+				return false;
+
+		return true;
+	}
+
+	private static String getOpacity(int alpha) {
+		synchronized (OPACITIES) {
+			if (OPACITIES[alpha] == null)
+				OPACITIES[alpha] = String.format(Locale.US, "%1.5f", alpha / 255.0);
+
+			return OPACITIES[alpha];
+		}
+	}
+
+	private void addFilterShadowId(final SvgElement elt, double deltaShadow) {
 		if (deltaShadow > 0)
-			elt.setAttribute("filter", "url(#" + shadowId + ")");
+			elt.begin("filter").append("url(#").append(shadowId).append(')');
 
 	}
 
@@ -802,12 +724,12 @@ public class SvgGraphics {
 	}
 
 	public void moveto(double x, double y) {
-		currentPath.append("M" + format(x) + "," + format(y) + " ");
+		appendPoint(currentPath.append('M'), x, y).append(' ');
 		ensureVisible(x, y);
 	}
 
 	public void lineto(double x, double y) {
-		currentPath.append("L" + format(x) + "," + format(y) + " ");
+		appendPoint(currentPath.append('L'), x, y).append(' ');
 		ensureVisible(x, y);
 	}
 
@@ -817,8 +739,9 @@ public class SvgGraphics {
 	}
 
 	public void curveto(double x1, double y1, double x2, double y2, double x3, double y3) {
-		currentPath.append("C" + format(x1) + "," + format(y1) + " " + format(x2) + "," + format(y2) + " " + format(x3)
-				+ "," + format(y3) + " ");
+		appendPoint(currentPath.append('C'), x1, y1).append(' ');
+		appendPoint(currentPath, x2, y2).append(' ');
+		appendPoint(currentPath, x3, y3).append(' ');
 		ensureVisible(x1, y1);
 		ensureVisible(x2, y2);
 		ensureVisible(x3, y3);
@@ -826,30 +749,29 @@ public class SvgGraphics {
 	}
 
 	public void quadto(double x1, double y1, double x2, double y2) {
-		currentPath.append("Q" + format(x1) + "," + format(y1) + " " + format(x2) + "," + format(y2) + " ");
+		appendPoint(currentPath.append('Q'), x1, y1).append(' ');
+		appendPoint(currentPath, x2, y2).append(' ');
 		ensureVisible(x1, y1);
 		ensureVisible(x2, y2);
 	}
 
 	private String format(double xx) {
-		final double x = xx * option.getScale();
-		if (x == 0.0)
-			return "0";
-
-		String s = String.format(Locale.US, "%.4f", x);
+		return SvgNumber.format(xx * option.getScale());
+	}
 
-		final int dot = s.indexOf('.');
-		if (dot >= 0) {
-			int end = s.length() - 1;
-			while (end > dot && s.charAt(end) == '0')
-				end--;
+	private void appendNumber(StringBuilder sb, double xx) {
+		SvgNumber.append(sb, xx * option.getScale());
+	}
 
-			if (end == dot)
-				end--;
+	private StringBuilder appendPoint(StringBuilder sb, double x, double y) {
+		appendNumber(sb, x);
+		sb.append(',');
+		appendNumber(sb, y);
+		return sb;
+	}
 
-			s = s.substring(0, end + 1);
-		}
-		return s;
+	private void setNumber(SvgElement elt, String attribute, double xx) {
+		elt.set(attribute, xx * option.getScale());
 	}
 
 	private String formatBoolean(double x) {
@@ -858,10 +780,10 @@ public class SvgGraphics {
 
 	public void fill(int windingRule) {
 		if (hidden == false) {
-			final Element elt = document.createElement("path");
-			elt.setAttribute("d", currentPath.toString());
+			elt.reset("path");
+			elt.set("d", currentPath);
 			fillMe(elt);
-			getG().appendChild(elt);
+			elt.writeEmpty(getG());
 		}
 		currentPath = null;
 
@@ -895,30 +817,24 @@ public class SvgGraphics {
 
 	public void svgImage(BufferedImage image, double x, double y) throws IOException {
 		if (hidden == false) {
-			final Element elt = document.createElement("image");
-			elt.setAttribute("width", format(image.getWidth()));
-			elt.setAttribute("height", format(image.getHeight()));
-			elt.setAttribute("x", format(x));
-			elt.setAttribute("y", format(y));
-			final String s = toBase64(image);
-			elt.setAttribute("xlink:href", "data:image/png;base64," + s);
-			getG().appendChild(elt);
+			elt.reset("image");
+			setNumber(elt, "width", image.getWidth());
+			setNumber(elt, "height", image.getHeight());
+			setNumber(elt, "x", x);
+			setNumber(elt, "y", y);
+			elt.begin("xlink:href").append("data:image/png;base64,").append(toBase64(image));
+			elt.writeEmpty(getG());
 		}
 		ensureVisible(x, y);
 		ensureVisible(x + image.getWidth(), y + image.getHeight());
 	}
 
-	private final Map<String, String> images = new HashMap<String, String>();
-
 	private void svgImageUnsecure(UImageSvg image, double x, double y) {
 		if (hidden == false) {
 			String svg = manageScale(image);
 			final String pos = "<svg x=\"" + format(x) + "\" y=\"" + format(y) + "\">";
 			svg = pos + svg.substring(5);
-			final String key = "imagesvginlined" + image.getMD5Hex() + images.size();
-			final Element elt = document.createElement(key);
-			getG().appendChild(elt);
-			images.put(key, svg);
+			getG().appendRaw(svg);
 		}
 		ensureVisible(x, y);
 		ensureVisible(x + image.getData("width"), y + image.getData("height"));
@@ -932,11 +848,11 @@ public class SvgGraphics {
 
 		// https://developer.mozilla.org/fr/docs/Web/SVG/Element/image
 		if (hidden == false) {
-			final Element elt = document.createElement("image");
-			elt.setAttribute("width", format(image.getWidth()));
-			elt.setAttribute("height", format(image.getHeight()));
-			elt.setAttribute("x", format(x));
-			elt.setAttribute("y", format(y));
+			elt.reset("image");
+			setNumber(elt, "width", image.getWidth());
+			setNumber(elt, "height", image.getHeight());
+			setNumber(elt, "x", x);
+			setNumber(elt, "y", y);
 
 			String svg = manageScale(image);
 
@@ -951,10 +867,9 @@ public class SvgGraphics {
 
 			svg = svgHeader + svg.substring(5);
 
-			final String s = toBase64(svg);
-			elt.setAttribute("xlink:href", "data:image/svg+xml;base64," + s);
+			elt.begin("xlink:href").append("data:image/svg+xml;base64,").append(toBase64(svg));
 
-			getG().appendChild(elt);
+			elt.writeEmpty(getG());
 		}
 		ensureVisible(x, y);
 		ensureVisible(x + image.getData("width"), y + image.getData("height"));
@@ -978,16 +893,16 @@ public class SvgGraphics {
 		return svg;
 	}
 
-	private String toBase64(BufferedImage image) throws IOException {
+	private char[] toBase64(BufferedImage image) throws IOException {
 		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
 		SImageIO.write(image, "png", baos);
 		final byte data[] = baos.toByteArray();
-		return new String(Base64Coder.encode(data));
+		return Base64Coder.encode(data);
 	}
 
-	private String toBase64(String s) {
+	private char[] toBase64(String s) {
 		final byte data[] = s.getBytes(Charset.forName("UTF8"));
-		return new String(Base64Coder.encode(data));
+		return Base64Coder.encode(data);
 	}
 
 	// Shadow
@@ -998,31 +913,33 @@ public class SvgGraphics {
 		if (deltaShadow != 0) {
 			if (withShadow == false) {
 				// <filter id="f1" x="0" y="0" width="120%" height="120%">
-				final Element filter = document.createElement("filter");
-				filter.setAttribute("id", shadowId);
-				filter.setAttribute("x", "-1");
-				filter.setAttribute("y", "-1");
-				filter.setAttribute("width", "300%");
-				filter.setAttribute("height", "300%");
-				addFilter(filter, "feGaussianBlur", "result", "blurOut", "stdDeviation", format(2));
-				addFilter(filter, "feColorMatrix", "type", "matrix", "in", "blurOut", "result", "blurOut2", "values",
+				defsElt.reset("filter");
+				defsElt.set("id", shadowId);
+				defsElt.set("x", "-1");
+				defsElt.set("y", "-1");
+				defsElt.set("width", "300%");
+				defsElt.set("height", "300%");
+				defsElt.writeStart(defs);
+				addFilter("feGaussianBlur", "result", "blurOut", "stdDeviation", format(2));
+				addFilter("feColorMatrix", "type", "matrix", "in", "blurOut", "result", "blurOut2", "values",
 						"0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 .4 0");
-				addFilter(filter, "feOffset", "result", "blurOut3", "in", "blurOut2", "dx", format(4), "dy", format(4));
-				addFilter(filter, "feBlend", "in", "SourceGraphic", "in2", "blurOut3", "mode", "normal");
-				defs.appendChild(filter);
+				addFilter("feOffset", "result", "blurOut3", "in", "blurOut2", "dx", format(4), "dy", format(4));
+				addFilter("feBlend", "in", "SourceGraphic", "in2", "blurOut3", "mode", "normal");
+				defsElt.reset("filter").writeEnd(defs);
 
 			}
 			withShadow = true;
 		}
 	}
 
-	private void addFilter(Element filter, String name, String... data) {
+	// Writes a child of the filter being written in the definitions
+	private void addFilter(String name, String... data) {
 		assert data.length % 2 == 0;
-		final Element elt = document.createElement(name);
+		defsElt.reset(name);
 		for (int i = 0; i < data.length; i += 2)
-			elt.setAttribute(data[i], data[i + 1]);
+			defsElt.set(data[i], data[i + 1]);
 
-		filter.appendChild(elt);
+		defsElt.writeEmpty(defs);
 	}
 
 	private boolean hidden;
@@ -1048,14 +965,12 @@ public class SvgGraphics {
 		// ::comment when __CORE__
 		final String signature = getMetadataHex(metadata).replace("--", "- -");
 		final String comment = "SRC=[" + signature + "]";
-		final Comment commentElement = document.createComment(comment);
-		getG().appendChild(commentElement);
+		getG().appendComment(comment);
 		// ::done
 	}
 
 	public void addComment(String comment) {
-		final Comment commentElement = document.createComment(comment);
-		getG().appendChild(commentElement);
+		getG().appendComment(comment);
 	}
 
 	private static class LinkData {
@@ -1091,21 +1006,43 @@ public class SvgGraphics {
 			return sb.toString().replaceAll("\\\\n", "\n");
 		}
 
-		public void updateAttributesOf(Element element) {
-			element.setAttribute("target", target);
-			element.setAttribute(XLINK_HREF1, url);
-			element.setAttribute(XLINK_HREF2, url);
-			element.setAttribute("xlink:type", "simple");
-			element.setAttribute("xlink:actuate", "onRequest");
-			element.setAttribute("xlink:show", "new");
+		public void updateAttributesOf(SvgElement element) {
+			element.set("target", target);
+			element.set(XLINK_HREF1, url);
+			element.set(XLINK_HREF2, url);
+			element.set("xlink:type", "simple");
+			element.set("xlink:actuate", "onRequest");
+			element.set("xlink:show", "new");
 			final String title = getXlinkTitle();
-			element.setAttribute(XLINK_TITLE1, title);
-			element.setAttribute(XLINK_TITLE2, title);
+			element.set(XLINK_TITLE1, title);
+			element.set(XLINK_TITLE2, title);
+
+		}
+	}
+
+	/**
+	 * A group or a link. Empty ones are not written at all, so the start tag is
+	 * only written when the first child arrives.
+	 */
+	private static class PendingElement {
+		private final SvgElement element;
+		private String title;
+		private boolean opened;
+
+		PendingElement(String name) {
+			this.element = new SvgElement(name);
+		}
+
+		String getTagName() {
+			return element.getName();
+		}
 
+		boolean hasChild() {
+			return opened || title != null;
 		}
 	}
 
-	private final List<Element> pendingElements = new ArrayList<>();
+	private final List<PendingElement> pendingElements = new ArrayList<>();
 
 	/*
 	 * Note: SVG does not support nested links (<a> within <a>). Thus, we manage
@@ -1114,15 +1051,43 @@ public class SvgGraphics {
 	 */
 	private final List<LinkData> activeLinks = new ArrayList<>();
 
+	// Outer elements first
+	private void openPendingElements() {
+		int i = 0;
+		while (i < pendingElements.size() && pendingElements.get(i).opened == false)
+			i++;
+
+		for (i--; i >= 0; i--) {
+			final PendingElement pending = pendingElements.get(i);
+			pending.element.writeStart(body);
+			if (pending.title != null)
+				new SvgElement(UGroupType.TITLE.getSvgKeyAttributeName()).writeWithText(body, pending.title);
+
+			pending.opened = true;
+		}
+	}
+
 	/**
-	 * Moves the first pending element (typically a link or group) to the document's
-	 * SVG group.
+	 * Closes the first pending element (typically a link or group). It is written
+	 * to its parent only if it has children.
 	 */
 	private void closeTopPendingElement() {
-		final Element element = pendingElements.get(0);
+		final PendingElement pending = pendingElements.get(0);
+		if (pending.hasChild())
+			getG();
+
 		pendingElements.remove(0);
-		if (element.getFirstChild() != null)
-			getG().appendChild(element);
+		if (pending.opened)
+			pending.element.writeEnd(body);
+	}
+
+	// Only for unbalanced drawings: keeps the document well-formed
+	private void closePendingElements() {
+		while (pendingElements.size() > 0) {
+			final PendingElement pending = pendingElements.remove(0);
+			if (pending.opened)
+				pending.element.writeEnd(body);
+		}
 	}
 
 	/**
@@ -1139,7 +1104,7 @@ public class SvgGraphics {
 		}
 
 		// Check for invalid state: no links should remain pending
-		for (Element elt : pendingElements)
+		for (PendingElement elt : pendingElements)
 			if (elt.getTagName().equals("a"))
 				throw new IllegalStateException();
 
@@ -1148,8 +1113,8 @@ public class SvgGraphics {
 	private void addTopOpenedLinkIfNeeded() {
 		if (activeLinks.size() > 0) {
 			final LinkData link = activeLinks.get(0);
-			pendingElements.add(0, document.createElement("a"));
-			link.updateAttributesOf(pendingElements.get(0));
+			pendingElements.add(0, new PendingElement("a"));
+			link.updateAttributesOf(pendingElements.get(0).element);
 		}
 	}
 
@@ -1211,18 +1176,17 @@ public class SvgGraphics {
 		// Close any active link before starting a new group
 		closeTopActiveLinkIfNeeded();
 
-		pendingElements.add(0, document.createElement("g"));
+		final PendingElement group = new PendingElement("g");
+		pendingElements.add(0, group);
+		final SvgElement element = group.element;
 
 		// Sorry for the code duplication: but this Pragma will be removed
 		// So we will simplify and refactor the code at that time.
 		if (option.pragma.isTrue(PragmaKey.SVGNEWDATA)) {
 
 			for (Map.Entry<UGroupType, String> typeIdent : typeIdents.entrySet()) {
-				if (typeIdent.getKey() == UGroupType.TITLE) {
-					Element title = document.createElement(UGroupType.TITLE.getSvgKeyAttributeName());
-					title.setTextContent(typeIdent.getValue());
-					pendingElements.get(0).appendChild(title);
-				}
+				if (typeIdent.getKey() == UGroupType.TITLE)
+					group.title = typeIdent.getValue();
 
 				switch (typeIdent.getKey()) {
 				case ID:
@@ -1230,7 +1194,7 @@ public class SvgGraphics {
 					break;
 				case DATA_UID:
 					// DATA_UID *will* be rename to ID, but right now, we do some hack
-					pendingElements.get(0).setAttribute("id", typeIdent.getValue());
+					element.set("id", typeIdent.getValue());
 					break;
 
 				// I also suggest that we rename "data-participant-1" to "data-entity-1" and
@@ -1238,36 +1202,31 @@ public class SvgGraphics {
 
 				case DATA_PARTICIPANT_1:
 				case DATA_ENTITY_1_UID:
-					pendingElements.get(0).setAttribute("data-entity-1", typeIdent.getValue());
+					element.set("data-entity-1", typeIdent.getValue());
 					break;
 				case DATA_PARTICIPANT_2:
 				case DATA_ENTITY_2_UID:
-					pendingElements.get(0).setAttribute("data-entity-2", typeIdent.getValue());
+					element.set("data-entity-2", typeIdent.getValue());
 					break;
 
 				case CLASS:
 				case DATA_SOURCE_LINE:
 				case DATA_QUALIFIED_NAME:
 				case DATA_ENTITY_UID:
-					pendingElements.get(0).setAttribute(typeIdent.getKey().getSvgKeyAttributeName(),
-							typeIdent.getValue());
+					element.set(typeIdent.getKey().getSvgKeyAttributeName(), typeIdent.getValue());
 
 				}
 			}
 		} else {
 			for (Map.Entry<UGroupType, String> typeIdent : typeIdents.entrySet()) {
-				if (typeIdent.getKey() == UGroupType.TITLE) {
-					Element title = document.createElement(UGroupType.TITLE.getSvgKeyAttributeName());
-					title.setTextContent(typeIdent.getValue());
-					pendingElements.get(0).appendChild(title);
-				}
+				if (typeIdent.getKey() == UGroupType.TITLE)
+					group.title = typeIdent.getValue();
 
 				switch (typeIdent.getKey()) {
 				case DATA_UID:
 				case ID:
 				case DATA_SOURCE_LINE:
-					pendingElements.get(0).setAttribute(typeIdent.getKey().getSvgKeyAttributeName(),
-							typeIdent.getValue());
+					element.set(typeIdent.getKey().getSvgKeyAttributeName(), typeIdent.getValue());
 				}
 
 				// if (option.isInteractive())
@@ -1279,8 +1238,7 @@ public class SvgGraphics {
 				case DATA_PARTICIPANT:
 				case DATA_PARTICIPANT_1:
 				case DATA_PARTICIPANT_2:
-					pendingElements.get(0).setAttribute(typeIdent.getKey().getSvgKeyAttributeName(),
-							typeIdent.getValue());
+					element.set(typeIdent.getKey().getSvgKeyAttributeName(), typeIdent.getValue());
 				}
 			}
 
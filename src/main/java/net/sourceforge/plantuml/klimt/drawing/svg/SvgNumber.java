@@ -0,0 +1,116 @@
+/* ========================================================================
+ * PlantUML : a free UML diagram generator
+ * ========================================================================
+ *
+ * (C) Copyright 2009-2024, Arnaud Roques
+ *
+ * Project Info:  https://plantuml.com
+ * 
+ * If you like this project or if you find it useful, you can support us at:
+ * 
+ * https://plantuml.com/patreon (only 1$ per month!)
+ * https://plantuml.com/paypal
+ * 
+ * This file is part of PlantUML.
+ *
+ * PlantUML is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PlantUML distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301,
+ * USA.
+ *
+ *
+ * Original Author:  Arnaud Roques
+ * 
+ *
+ */
+package net.sourceforge.plantuml.klimt.drawing.svg;
+
+import java.util.Locale;
+
+/**
+ * Formats coordinates like <code>String.format(Locale.US, "%.4f", x)</code>
+ * with trailing zeros removed, without allocating.
+ * <p>
+ * <code>String.format</code> rounds half-up the shortest decimal
+ * representation of the double. Both roundings can only differ when the value
+ * is very close to a tie, so those values (and very large ones) go through
+ * <code>String.format</code>.
+ */
+final class SvgNumber {
+	// ::remove file when __HAXE__
+
+	private static final double LIMIT = 1E8;
+	private static final double TIE_MARGIN = 1E-3;
+
+	private SvgNumber() {
+	}
+
+	static String format(double x) {
+		final StringBuilder sb = new StringBuilder(12);
+		append(sb, x);
+		return sb.toString();
+	}
+
+	static void append(StringBuilder sb, double x) {
+		if (x == 0.0) {
+			sb.append('0');
+			return;
+		}
+		final double abs = Math.abs(x);
+		if (abs >= LIMIT || Double.isNaN(x)) {
+			appendSlow(sb, x);
+			return;
+		}
+		final double scaled = abs * 10000;
+		long n = (long) scaled;
+		final double frac = scaled - n;
+		if (Math.abs(frac - 0.5) < TIE_MARGIN) {
+			appendSlow(sb, x);
+			return;
+		}
+		if (frac > 0.5)
+			n++;
+
+		if (x < 0)
+			sb.append('-');
+
+		sb.append(n / 10000);
+		int decimals = (int) (n % 10000);
+		if (decimals == 0)
+			return;
+
+		sb.append('.');
+		for (int div = 1000; decimals > 0; div /= 10) {
+			sb.append((char) ('0' + decimals / div));
+			decimals %= div;
+		}
+	}
+
+	private static void appendSlow(StringBuilder sb, double x) {
+		final String s = String.format(Locale.US, "%.4f", x);
+		int end = s.length();
+		final int dot = s.indexOf('.');
+		if (dot >= 0) {
+			end--;
+			while (end > dot && s.charAt(end) == '0')
+				end--;
+
+			if (end == dot)
+				end--;
+
+			end++;
+		}
+		sb.append(s, 0, end);
+	}
+
+}
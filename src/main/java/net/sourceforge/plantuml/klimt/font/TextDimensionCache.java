@@ -0,0 +1,183 @@
+/* ========================================================================
+ * PlantUML : a free UML diagram generator
+ * ========================================================================
+ *
+ * (C) Copyright 2009-2024, Arnaud Roques
+ *
+ * Project Info:  https://plantuml.com
+ *
+ * If you like this project or if you find it useful, you can support us at:
+ *
+ * https://plantuml.com/patreon (only 1$ per month!)
+ * https://plantuml.com/paypal
+ *
+ * This file is part of PlantUML.
+ *
+ * PlantUML is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PlantUML distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301,
+ * USA.
+ *
+ *
+ * Original Author:  Arnaud Roques
+ *
+ *
+ */
+package net.sourceforge.plantuml.klimt.font;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.sourceforge.plantuml.klimt.geom.XDimension2D;
+
+/**
+ * Thread-safe measurement of text with Java fonts.
+ * <p>
+ * The result is the same as <code>Font.getStringBounds(text, frc)</code>, but
+ * it is computed without any global lock:
+ * <ul>
+ * <li>whole strings are cached in several independent LRU stripes, so that
+ * threads rarely wait for each other;</li>
+ * <li>on a miss, simple texts (only characters below U+0300 and no layout
+ * attributes on the font) are measured by adding glyph advances taken from a
+ * per-font table. This is exactly what the JDK does for such texts, so the
+ * float result is identical. Other texts go through the full layout.</li>
+ * </ul>
+ * <code>FontRenderContext</code> is immutable, so a single instance is shared
+ * by all threads.
+ */
+public final class TextDimensionCache {
+	// ::remove file when __HAXE__
+
+	private static final int NB_STRIPES = 16;
+	private static final int SIMPLE_LIMIT = 0x0300;
+
+	private final FontRenderContext frc;
+	private final Stripe stripes[] = new Stripe[NB_STRIPES];
+	private final Map<Font, GlyphAdvances> advances = new ConcurrentHashMap<>();
+
+	public TextDimensionCache(FontRenderContext frc, int cacheSize) {
+		this.frc = frc;
+		for (int i = 0; i < NB_STRIPES; i++)
+			stripes[i] = new Stripe(Math.max(1, cacheSize / NB_STRIPES));
+	}
+
+	public XDimension2D getDimension(UFont font, String text) {
+		if (text.length() == 0)
+			return new XDimension2D(0, 0);
+
+		final FontTextKey key = new FontTextKey(font, text);
+		final Stripe stripe = stripes[(key.hashCode() & 0x7FFFFFFF) % NB_STRIPES];
+
+		XDimension2D result = stripe.get(key);
+		if (result == null) {
+			result = measure(font.getUnderlayingFont(text), text);
+			stripe.put(key, result);
+		}
+		return result;
+	}
+
+	private XDimension2D measure(Font javaFont, String text) {
+		if (javaFont.hasLayoutAttributes() == false && isSimple(text)) {
+			final GlyphAdvances table = advances.computeIfAbsent(javaFont, GlyphAdvances::new);
+			float width = 0;
+			for (int i = 0; i < text.length(); i++)
+				width += table.getAdvance(text.charAt(i));
+
+			return new XDimension2D(width, table.height);
+		}
+		final Rectangle2D rect = javaFont.getStringBounds(text, frc);
+		return new XDimension2D(rect.getWidth(), rect.getHeight());
+	}
+
+	private static boolean isSimple(String text) {
+		for (int i = 0; i < text.length(); i++)
+			if (text.charAt(i) >= SIMPLE_LIMIT)
+				return false;
+
+		return true;
+	}
+
+	final class GlyphAdvances {
+
+		private final Font javaFont;
+		private final float height;
+		// NaN means "not computed yet". Concurrent threads may compute the same value
+		// twice, which is harmless.
+		private final float widths[] = new float[SIMPLE_LIMIT];
+
+		GlyphAdvances(Font javaFont) {
+			this.javaFont = javaFont;
+			this.height = (float) javaFont.getStringBounds(" ", frc).getHeight();
+			Arrays.fill(widths, Float.NaN);
+		}
+
+		float getAdvance(char c) {
+			float result = widths[c];
+			if (Float.isNaN(result)) {
+				result = (float) javaFont.getStringBounds(String.valueOf(c), frc).getWidth();
+				widths[c] = result;
+			}
+			return result;
+		}
+	}
+
+	static class Stripe {
+
+		private final LinkedHashMap<FontTextKey, XDimension2D> lru;
+
+		Stripe(final int maxSize) {
+			this.lru = new LinkedHashMap<FontTextKey, XDimension2D>(maxSize, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<FontTextKey, XDimension2D> eldest) {
+					return size() > maxSize;
+				}
+			};
+		}
+
+		synchronized XDimension2D get(FontTextKey key) {
+			return lru.get(key);
+		}
+
+		synchronized void put(FontTextKey key, XDimension2D value) {
+			lru.put(key, value);
+		}
+	}
+
+	static class FontTextKey {
+		private final UFont font;
+		private final String text;
+
+		FontTextKey(UFont font, String text) {
+			this.font = font;
+			this.text = text;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			final FontTextKey other = (FontTextKey) obj;
+			return font.equals(other.font) && text.equals(other.text);
+		}
+
+		@Override
+		public int hashCode() {
+			return font.hashCode() * 31 + text.hashCode();
+		}
+	}
+
+}
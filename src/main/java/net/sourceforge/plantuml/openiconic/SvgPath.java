@@ -189,7 +189,7 @@ public class SvgPath {
 		return result;
 	}
 
-	private UPath toUPath(AffineTransform at) {
+	public UPath toUPath(AffineTransform at) {
 		UPath result = UPath.none();
 		Movement previous = null;
 		for (Movement move : movements) {
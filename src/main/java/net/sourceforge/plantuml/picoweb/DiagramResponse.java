@@ -0,0 +1,111 @@
+/* ========================================================================
+ * PlantUML : a free UML diagram generator
+ * ========================================================================
+ *
+ * (C) Copyright 2009-2024, Arnaud Roques
+ *
+ * Project Info:  https://plantuml.com
+ * 
+ * If you like this project or if you find it useful, you can support us at:
+ * 
+ * https://plantuml.com/patreon (only 1$ per month!)
+ * https://plantuml.com/paypal
+ * 
+ * This file is part of PlantUML.
+ *
+ * PlantUML is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PlantUML distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301,
+ * USA.
+ *
+ *
+ * Original Author:  Arnaud Roques
+ * 
+ *
+ */
+package net.sourceforge.plantuml.picoweb;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rendered diagram as sent by the PicoWebServer: the status line, the headers
+ * that depend on the diagram itself and the image data.
+ * <p>
+ * Headers that change on every request (<code>Date</code>, <code>X-Quote</code>
+ * ...) are not stored here, so that instances can be kept in the
+ * {@link RenderCache}.
+ */
+public class DiagramResponse {
+
+	private final String status;
+	private final List<String> headers;
+	private final byte[] data;
+
+	public DiagramResponse(String status, List<String> headers, byte[] data) {
+		this.status = status;
+		this.headers = Collections.unmodifiableList(new ArrayList<>(headers));
+		this.data = data;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public List<String> getHeaders() {
+		return headers;
+	}
+
+	public byte[] getData() {
+		return data;
+	}
+
+	public boolean isOk() {
+		return status.startsWith("200");
+	}
+
+	/**
+	 * Approximate memory footprint, used to bound the cache.
+	 */
+	public long getWeight() {
+		long result = 64 + data.length + 2L * status.length();
+		for (String h : headers)
+			result += 40 + 2L * h.length();
+		return result;
+	}
+
+	void writeTo(DataOutputStream dos) throws IOException {
+		dos.writeUTF(status);
+		dos.writeInt(headers.size());
+		for (String h : headers)
+			dos.writeUTF(h);
+		dos.writeInt(data.length);
+		dos.write(data);
+	}
+
+	static DiagramResponse readFrom(DataInputStream dis) throws IOException {
+		final String status = dis.readUTF();
+		final int nbHeaders = dis.readInt();
+		final List<String> headers = new ArrayList<>(nbHeaders);
+		for (int i = 0; i < nbHeaders; i++)
+			headers.add(dis.readUTF());
+		final byte[] data = new byte[dis.readInt()];
+		dis.readFully(data);
+		return new DiagramResponse(status, headers, data);
+	}
+
+}
@@ -49,10 +49,13 @@ import java.io.PrintWriter;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import net.sourceforge.plantuml.BlockUml;
 import net.sourceforge.plantuml.ErrorUml;
@@ -75,19 +78,41 @@ import net.sourceforge.plantuml.json.JsonObject;
 import net.sourceforge.plantuml.log.Logme;
 import net.sourceforge.plantuml.preproc.PreprocessingArtifact;
 import net.sourceforge.plantuml.security.SFile;
+import net.sourceforge.plantuml.stats.PhaseMetrics;
 import net.sourceforge.plantuml.syntax.LanguageDescriptor;
 import net.sourceforge.plantuml.text.StringLocated;
+import net.sourceforge.plantuml.utils.SignatureUtils;
 import net.sourceforge.plantuml.utils.LineLocationImpl;
 import net.sourceforge.plantuml.version.Version;
 
 public class PicoWebServer implements Runnable {
 	// ::remove folder when __CORE__
 
+	private static final int KEEP_ALIVE_TIMEOUT_MS = 5_000;
+	private static final int IDLE_POLL_MS = 100;
+	public static final int DEFAULT_REQUEST_TIMEOUT_MS = 10_000;
+	private static final int MAX_REQUESTS_PER_CONNECTION = 1_000;
+
 	private final Socket connect;
+	private final RenderScheduler scheduler;
+	private final int requestTimeoutMs;
 	static boolean enableStop;
+	static final RenderCache cache = RenderCache.fromEnvironment();
+	private static final RenderScheduler defaultScheduler = RenderScheduler
+			.withThreads(Runtime.getRuntime().availableProcessors());
 
 	public PicoWebServer(Socket c) {
+		this(c, defaultScheduler, DEFAULT_REQUEST_TIMEOUT_MS);
+	}
+
+	/**
+	 * @param requestTimeoutMs how long a client may take to send a request once
+	 *                         it has sent its first byte
+	 */
+	public PicoWebServer(Socket c, RenderScheduler scheduler, int requestTimeoutMs) {
 		this.connect = c;
+		this.scheduler = scheduler;
+		this.requestTimeoutMs = requestTimeoutMs;
 	}
 
 	public static void main(String[] args) throws IOException {
@@ -96,18 +121,44 @@ public class PicoWebServer implements Runnable {
 
 	public static void startServer(final int port, final String bindAddress, final boolean argEnableStop)
 			throws IOException {
+		startServer(port, bindAddress, argEnableStop, Runtime.getRuntime().availableProcessors());
+	}
+
+	public static void startServer(final int port, final String bindAddress, final boolean argEnableStop,
+			final int nbThreads) throws IOException {
 		PicoWebServer.enableStop = argEnableStop;
 		final InetAddress bindAddress1 = bindAddress == null ? null : InetAddress.getByName(bindAddress);
 		final ServerSocket serverConnect = new ServerSocket(port, 50, bindAddress1);
 		System.err.println("webPort=" + serverConnect.getLocalPort());
-		serverLoop(serverConnect);
+		serverLoop(serverConnect, RenderScheduler.withThreads(nbThreads), DEFAULT_REQUEST_TIMEOUT_MS);
 	}
 
 	public static void serverLoop(final ServerSocket serverConnect) throws IOException {
+		serverLoop(serverConnect, defaultScheduler, DEFAULT_REQUEST_TIMEOUT_MS);
+	}
+
+	public static void serverLoop(final ServerSocket serverConnect, final RenderScheduler scheduler,
+			final int requestTimeoutMs) throws IOException {
 		while (true) {
-			final PicoWebServer myServer = new PicoWebServer(serverConnect.accept());
-			final Thread thread = new Thread(myServer);
-			thread.start();
+			final Socket socket = serverConnect.accept();
+			final PicoWebServer myServer = new PicoWebServer(socket, scheduler, requestTimeoutMs);
+			if (scheduler.submitConnection(myServer) == false)
+				myServer.rejectSaturated();
+		}
+	}
+
+	private void rejectSaturated() {
+		try {
+			final OutputStream out = new BufferedOutputStream(connect.getOutputStream());
+			sendServiceUnavailable(out);
+		} catch (Throwable e) {
+			Logme.error(e);
+		} finally {
+			try {
+				connect.close();
+			} catch (Throwable e) {
+				Logme.error(e);
+			}
 		}
 	}
 
@@ -119,42 +170,23 @@ public class PicoWebServer implements Runnable {
 			in = new BufferedInputStream(connect.getInputStream());
 			out = new BufferedOutputStream(connect.getOutputStream());
 
-			final ReceivedHTTPRequest request = ReceivedHTTPRequest.fromStream(in);
-			if (request.getMethod().equals("GET")) {
-				if (request.getPath().startsWith("/png/") && handleGET(request, out, FileFormat.PNG))
-					return;
-				if (request.getPath().startsWith("/plantuml/png/") && handleGET(request, out, FileFormat.PNG))
-					return;
-				if (request.getPath().startsWith("/svg/") && handleGET(request, out, FileFormat.SVG))
-					return;
-				if (request.getPath().startsWith("/plantuml/svg/") && handleGET(request, out, FileFormat.SVG))
-					return;
-				if (request.getPath().startsWith("/txt/") && handleGET(request, out, FileFormat.ATXT))
-					return;
-				if (request.getPath().startsWith("/plantuml/txt/") && handleGET(request, out, FileFormat.ATXT))
+			// Requests are answered in order, which gives HTTP/1.1 pipelining for free
+			for (int i = 0; i < MAX_REQUESTS_PER_CONNECTION; i++) {
+				if (waitForNextRequest(in, i == 0) == false)
 					return;
-				if (request.getPath().startsWith("/utxt/") && handleGET(request, out, FileFormat.UTXT))
-					return;
-				if (request.getPath().startsWith("/plantuml/utxt/") && handleGET(request, out, FileFormat.UTXT))
-					return;
-				if (request.getPath().startsWith("/serverinfo") && handleInfo(out))
-					return;
-				if (request.getPath().startsWith("/plantuml/serverinfo") && handleInfo(out))
-					return;
-				if (request.getPath().startsWith("/language") && handleLanguage(out))
+
+				final ReceivedHTTPRequest request;
+				connect.setSoTimeout(requestTimeoutMs);
+				try {
+					request = ReceivedHTTPRequest.fromStream(in);
+				} catch (SocketTimeoutException e) {
+					sendRequestTimeout(out);
 					return;
-				if (enableStop && (request.getPath().startsWith("/stopserver")
-						|| request.getPath().startsWith("/plantuml/stopserver")) && handleStop(out))
+				}
+				final boolean connectionReusable = handleRequest(request, out);
+				if (connectionReusable == false || request.isKeepAlive() == false)
 					return;
-
-			} else if (request.getMethod().equals("POST") && request.getPath().equals("/render")) {
-				handleRenderRequest(request, out);
-				return;
 			}
-			write(out, "HTTP/1.1 302 Found");
-			write(out, "Location: /plantuml/png/oqbDJyrBuGh8ISmh2VNrKGZ8JCuFJqqAJYqgIotY0aefG5G00000");
-			write(out, "");
-			out.flush();
 
 		} catch (Throwable e) {
 			try {
@@ -164,8 +196,10 @@ public class PicoWebServer implements Runnable {
 			}
 		} finally {
 			try {
-				in.close();
-				out.close();
+				if (in != null)
+					in.close();
+				if (out != null)
+					out.close();
 				connect.close();
 			} catch (Throwable e) {
 				Logme.error(e);
@@ -173,6 +207,76 @@ public class PicoWebServer implements Runnable {
 		}
 	}
 
+	/**
+	 * Waits for the first byte of a request, so that idle clients do not keep a
+	 * worker forever. Between two requests, an idle connection is also closed as
+	 * soon as other connections are waiting for a worker.
+	 */
+	private boolean waitForNextRequest(BufferedInputStream in, boolean firstRequest) throws IOException {
+		connect.setSoTimeout(firstRequest ? KEEP_ALIVE_TIMEOUT_MS : IDLE_POLL_MS);
+		for (int waited = 0; waited < KEEP_ALIVE_TIMEOUT_MS; waited += IDLE_POLL_MS)
+			try {
+				in.mark(1);
+				if (in.read() == -1)
+					return false;
+				in.reset();
+				return true;
+			} catch (SocketTimeoutException e) {
+				if (firstRequest || scheduler.hasWaitingConnections())
+					return false;
+			}
+
+		return false;
+	}
+
+	/**
+	 * @return <code>true</code> if the response has been fully delimited, so that
+	 *         the connection can be used for another request
+	 */
+	private boolean handleRequest(ReceivedHTTPRequest request, BufferedOutputStream out) throws Exception {
+		if (request.getMethod().equals("GET")) {
+			if (request.getPath().startsWith("/png/") && handleGET(request, out, FileFormat.PNG))
+				return true;
+			if (request.getPath().startsWith("/plantuml/png/") && handleGET(request, out, FileFormat.PNG))
+				return true;
+			if (request.getPath().startsWith("/svg/") && handleGET(request, out, FileFormat.SVG))
+				return true;
+			if (request.getPath().startsWith("/plantuml/svg/") && handleGET(request, out, FileFormat.SVG))
+				return true;
+			if (request.getPath().startsWith("/txt/") && handleGET(request, out, FileFormat.ATXT))
+				return true;
+			if (request.getPath().startsWith("/plantuml/txt/") && handleGET(request, out, FileFormat.ATXT))
+				return true;
+			if (request.getPath().startsWith("/utxt/") && handleGET(request, out, FileFormat.UTXT))
+				return true;
+			if (request.getPath().startsWith("/plantuml/utxt/") && handleGET(request, out, FileFormat.UTXT))
+				return true;
+			if (request.getPath().startsWith("/serverinfo") && handleInfo(out))
+				return true;
+			if (request.getPath().startsWith("/plantuml/serverinfo") && handleInfo(out))
+				return true;
+			if (request.getPath().startsWith("/language") && handleLanguage(out))
+				return true;
+			if (request.getPath().startsWith("/metrics") && handleMetrics(out))
+				return true;
+			if (request.getPath().startsWith("/plantuml/metrics") && handleMetrics(out))
+				return true;
+			if (enableStop && (request.getPath().startsWith("/stopserver")
+					|| request.getPath().startsWith("/plantuml/stopserver")) && handleStop(out))
+				return false;
+
+		} else if (request.getMethod().equals("POST") && request.getPath().equals("/render")) {
+			handleRenderRequest(request, out);
+			return true;
+		}
+		write(out, "HTTP/1.1 302 Found");
+		write(out, "Location: /plantuml/png/oqbDJyrBuGh8ISmh2VNrKGZ8JCuFJqqAJYqgIotY0aefG5G00000");
+		write(out, "Content-length: 0");
+		write(out, "");
+		out.flush();
+		return true;
+	}
+
 	private boolean handleStop(BufferedOutputStream out) throws IOException {
 		write(out, "HTTP/1.1 " + "200");
 		write(out, "Cache-Control: no-cache");
@@ -200,13 +304,6 @@ public class PicoWebServer implements Runnable {
 	}
 
 	private boolean handleInfo(BufferedOutputStream out) throws IOException {
-		write(out, "HTTP/1.1 " + "200");
-		write(out, "Cache-Control: no-cache");
-		write(out, "Server: PlantUML PicoWebServer " + Version.versionString());
-		write(out, "Date: " + new Date());
-		write(out, "Content-Type: application/json");
-		write(out, "");
-
 		final JsonArray formats = new JsonArray();
 		formats.add("png");
 		formats.add("svg");
@@ -214,8 +311,19 @@ public class PicoWebServer implements Runnable {
 		final JsonObject json = Json.object() //
 				.add("version", Version.versionString()) //
 				.add("PicoWebServer", true) //
-				.add("formats", formats); //
-		write(out, json.toString());
+				.add("formats", formats) //
+				.add("scheduler", scheduler.toJson()) //
+				.add("cache", cache.toJson()); //
+		final byte[] data = (json.toString() + "\r\n").getBytes(UTF_8);
+
+		write(out, "HTTP/1.1 " + "200");
+		write(out, "Cache-Control: no-cache");
+		write(out, "Server: PlantUML PicoWebServer " + Version.versionString());
+		write(out, "Date: " + new Date());
+		write(out, "Content-Type: application/json");
+		write(out, "Content-length: " + data.length);
+		write(out, "");
+		out.write(data);
 
 		out.flush();
 
@@ -227,11 +335,34 @@ public class PicoWebServer implements Runnable {
 		write(out, "Cache-Control: no-cache");
 		write(out, "Server: PlantUML PicoWebServer " + Version.versionString());
 		write(out, "Date: " + new Date());
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		final PrintStream ps = new PrintStream(baos);
+		new LanguageDescriptor().print(ps);
+		ps.flush();
+
 		write(out, "Content-Type: text/text");
+		write(out, "Content-length: " + baos.size());
 		write(out, "");
+		baos.writeTo(out);
 
-		final PrintStream ps = new PrintStream(out);
-		new LanguageDescriptor().print(ps);
+		out.flush();
+
+		return true;
+	}
+
+	private boolean handleMetrics(BufferedOutputStream out) throws IOException {
+		final StringBuilder sb = new StringBuilder();
+		PhaseMetrics.getInstance().appendPrometheus(sb);
+		final byte[] data = sb.toString().getBytes(UTF_8);
+
+		write(out, "HTTP/1.1 " + "200");
+		write(out, "Cache-Control: no-cache");
+		write(out, "Server: PlantUML PicoWebServer " + Version.versionString());
+		write(out, "Date: " + new Date());
+		write(out, "Content-Type: text/plain; version=0.0.4; charset=utf-8");
+		write(out, "Content-length: " + data.length);
+		write(out, "");
+		out.write(data);
 
 		out.flush();
 
@@ -239,7 +370,7 @@ public class PicoWebServer implements Runnable {
 	}
 
 	private boolean handleGET(ReceivedHTTPRequest request, BufferedOutputStream out, final FileFormat format)
-			throws IOException {
+			throws Exception {
 		final int x = request.getPath().lastIndexOf('/');
 		final String compressed = request.getPath().substring(x + 1);
 		final Transcoder transcoder = TranscoderUtil.getDefaultTranscoderProtected();
@@ -249,12 +380,15 @@ public class PicoWebServer implements Runnable {
 		final FileFormatOption fileFormatOption = new FileFormatOption(format);
 		final List<BlockUml> blocks = ssr.getBlocks();
 		if (blocks.size() > 0) {
-			final Diagram system = blocks.get(0).getDiagram();
-			final ByteArrayOutputStream os = new ByteArrayOutputStream();
-			final ImageData imageData = system.exportDiagram(os, 0, fileFormatOption);
-			os.close();
-			sendDiagram(out, system, fileFormatOption, httpReturnCode(imageData.getStatus()), imageData,
-					os.toByteArray());
+			final String etag = blocks.get(0).etag() + "-" + format.name();
+			renderWithCache(request, out, etag, () -> {
+				final Diagram system = blocks.get(0).getDiagram();
+				final ByteArrayOutputStream os = new ByteArrayOutputStream();
+				final ImageData imageData = system.exportDiagram(os, 0, fileFormatOption);
+				os.close();
+				return toResponse(system, fileFormatOption, httpReturnCode(imageData.getStatus()), imageData,
+						os.toByteArray());
+			});
 			return true;
 		}
 		return false;
@@ -272,10 +406,15 @@ public class PicoWebServer implements Runnable {
 			throw new BadRequest400("Error parsing request json: " + e.getMessage(), e);
 		}
 
-		handleRenderRequest(renderRequest, out);
+		handleRenderRequest(request, renderRequest, out);
 	}
 
 	public void handleRenderRequest(RenderRequest renderRequest, BufferedOutputStream out) throws Exception {
+		handleRenderRequest(null, renderRequest, out);
+	}
+
+	private void handleRenderRequest(ReceivedHTTPRequest request, RenderRequest renderRequest,
+			BufferedOutputStream out) throws Exception {
 
 		final CliOptions option = CliParser.parse(renderRequest.getOptions());
 
@@ -285,57 +424,114 @@ public class PicoWebServer implements Runnable {
 		final SFile newCurrentDir = option.getFileDir() == null ? null : new SFile(option.getFileDir());
 		final SourceStringReader ssr = new SourceStringReader(option.getDefaultDefines(), source, UTF_8,
 				option.getConfig(), newCurrentDir);
-		final ByteArrayOutputStream os = new ByteArrayOutputStream();
-		final Diagram system;
-		final ImageData imageData;
 
 		if (ssr.getBlocks().size() == 0) {
-			system = PSystemErrorUtils.buildV2(null,
-					new ErrorUml(SYNTAX_ERROR, "No valid @start/@end found, please check the version", 0,
-							new LineLocationImpl("", null), null),
-					null, Collections.<StringLocated>emptyList(), new PreprocessingArtifact());
-			imageData = ssr.noValidStartFound(os, option.getFileFormatOption());
-		} else {
-			system = ssr.getBlocks().get(0).getDiagram();
-			imageData = system.exportDiagram(os, 0, option.getFileFormatOption());
+			final DiagramResponse response = scheduler.render(() -> {
+				final ByteArrayOutputStream os = new ByteArrayOutputStream();
+				final Diagram system = PSystemErrorUtils.buildV2(null,
+						new ErrorUml(SYNTAX_ERROR, "No valid @start/@end found, please check the version", 0,
+								new LineLocationImpl("", null), null),
+						null, Collections.<StringLocated>emptyList(), new PreprocessingArtifact());
+				final ImageData imageData = ssr.noValidStartFound(os, option.getFileFormatOption());
+				return toResponse(system, option.getFileFormatOption(), "200", imageData, os.toByteArray());
+			});
+			if (response == null)
+				sendServiceUnavailable(out);
+			else
+				sendDiagram(out, response, null);
+			return;
 		}
 
-		sendDiagram(out, system, option.getFileFormatOption(), "200", imageData, os.toByteArray());
+		final BlockUml block = ssr.getBlocks().get(0);
+		final String etag = block.etag() + "-" + option.getFileFormatOption().getFileFormat().name() + "-"
+				+ SignatureUtils.getMD5Hex(String.join("\n", renderRequest.getOptions()));
+		renderWithCache(request, out, etag, () -> {
+			final ByteArrayOutputStream os = new ByteArrayOutputStream();
+			final Diagram system = block.getDiagram();
+			final ImageData imageData = system.exportDiagram(os, 0, option.getFileFormatOption());
+			return toResponse(system, option.getFileFormatOption(), "200", imageData, os.toByteArray());
+		});
 	}
 
-	private void sendDiagram(final BufferedOutputStream out, final Diagram system,
-			final FileFormatOption fileFormatOption, final String returnCode, final ImageData imageData,
-			final byte[] fileData) throws IOException {
+	/**
+	 * Sends a diagram identified by a strong ETag, answering <code>304</code> when
+	 * the client already has it, and rendering it only when it is not cached.
+	 */
+	private void renderWithCache(ReceivedHTTPRequest request, BufferedOutputStream out, String etag,
+			Callable<DiagramResponse> rendering) throws Exception {
+		if (request != null && request.matchesEtag(etag)) {
+			sendNotModified(out, etag);
+			return;
+		}
 
-		write(out, "HTTP/1.1 " + returnCode);
-		write(out, "Cache-Control: no-cache");
-		write(out, "Server: PlantUML PicoWebServer " + Version.versionString());
-		write(out, "Date: " + new Date());
-		write(out, "Access-Control-Allow-Origin: *");
-		write(out, "Content-type: " + fileFormatOption.getFileFormat().getMimeType());
-		write(out, "Content-length: " + fileData.length);
-		write(out, "X-PlantUML-Diagram-Width: " + imageData.getWidth());
-		write(out, "X-PlantUML-Diagram-Height: " + imageData.getHeight());
-		write(out, "X-PlantUML-Diagram-Description: " + system.getDescription().getDescription());
+		DiagramResponse response = cache.get(etag);
+		if (response == null) {
+			response = scheduler.render(rendering);
+			if (response == null) {
+				sendServiceUnavailable(out);
+				return;
+			}
+			// Errors such as a missing Graphviz depend on the server, not on the source
+			if (response.isOk())
+				cache.put(etag, response);
+		}
+		sendDiagram(out, response, response.isOk() ? etag : null);
+	}
+
+	private DiagramResponse toResponse(final Diagram system, final FileFormatOption fileFormatOption,
+			final String returnCode, final ImageData imageData, final byte[] fileData) throws IOException {
+
+		final List<String> headers = new ArrayList<>();
+		headers.add("Content-type: " + fileFormatOption.getFileFormat().getMimeType());
+		headers.add("Content-length: " + fileData.length);
+		headers.add("X-PlantUML-Diagram-Width: " + imageData.getWidth());
+		headers.add("X-PlantUML-Diagram-Height: " + imageData.getHeight());
+		headers.add("X-PlantUML-Diagram-Description: " + system.getDescription().getDescription());
 		if (system instanceof PSystemError) {
 			final PSystemError error = (PSystemError) system;
 			for (ErrorUml err : error.getErrorsUml()) {
-				write(out, "X-PlantUML-Diagram-Error: " + err.getError());
-				write(out, "X-PlantUML-Diagram-Error-Line: " + (1 + err.getLineLocation().getPosition()));
+				headers.add("X-PlantUML-Diagram-Error: " + err.getError());
+				headers.add("X-PlantUML-Diagram-Error-Line: " + (1 + err.getLineLocation().getPosition()));
 			}
 		}
 		if (system.getTitleDisplay() != null && system.getTitleDisplay().size() == 1) {
 			final String encode = URLEncoder.encode(system.getTitleDisplay().asList().get(0).toString(), "UTF-8");
 			if (encode.length() < 256)
-				write(out, "X-PlantUML-Diagram-Title: " + encode);
+				headers.add("X-PlantUML-Diagram-Title: " + encode);
 		}
+		return new DiagramResponse(returnCode, headers, fileData);
+	}
+
+	private void sendDiagram(final BufferedOutputStream out, final DiagramResponse response, final String etag)
+			throws IOException {
+
+		write(out, "HTTP/1.1 " + response.getStatus());
+		write(out, "Cache-Control: no-cache");
+		if (etag != null)
+			write(out, "ETag: \"" + etag + "\"");
+		write(out, "Server: PlantUML PicoWebServer " + Version.versionString());
+		write(out, "Date: " + new Date());
+		write(out, "Access-Control-Allow-Origin: *");
+		for (String header : response.getHeaders())
+			write(out, header);
 
 		write(out, "X-Patreon: Support us on https://plantuml.com/patreon");
 		write(out, "X-Donate: https://plantuml.com/paypal");
 		write(out, "X-Quote: " + StringUtils.rot(QuoteUtils.getSomeQuote()));
 		write(out, "");
 		out.flush();
-		out.write(fileData);
+		out.write(response.getData());
+		out.flush();
+	}
+
+	private void sendNotModified(final BufferedOutputStream out, final String etag) throws IOException {
+		write(out, "HTTP/1.1 304 Not Modified");
+		write(out, "Cache-Control: no-cache");
+		write(out, "ETag: \"" + etag + "\"");
+		write(out, "Server: PlantUML PicoWebServer " + Version.versionString());
+		write(out, "Date: " + new Date());
+		write(out, "Access-Control-Allow-Origin: *");
+		write(out, "");
 		out.flush();
 	}
 
@@ -358,6 +554,25 @@ public class PicoWebServer implements Runnable {
 		out.flush();
 	}
 
+	private static void sendRequestTimeout(OutputStream out) throws IOException {
+		write(out, "HTTP/1.1 408 Request Timeout");
+		write(out, "Connection: close");
+		write(out, "Content-length: 0");
+		write(out, "");
+		out.flush();
+	}
+
+	private static void sendServiceUnavailable(OutputStream out) throws IOException {
+		final byte[] message = "Server is busy, please retry later".getBytes(UTF_8);
+		write(out, "HTTP/1.1 503 Service Unavailable");
+		write(out, "Retry-After: " + RenderScheduler.RETRY_AFTER_SECONDS);
+		write(out, "Content-type: text/plain");
+		write(out, "Content-length: " + message.length);
+		write(out, "");
+		out.write(message);
+		out.flush();
+	}
+
 	private String httpReturnCode(int status) {
 		if (status == 0 || status == 200) {
 			return "200 OK";
@@ -365,7 +580,7 @@ public class PicoWebServer implements Runnable {
 		return "" + status + " ERROR";
 	}
 
-	private void write(OutputStream os, String s) throws IOException {
+	private static void write(OutputStream os, String s) throws IOException {
 		s = s + "\r\n";
 		os.write(s.getBytes(UTF_8));
 	}
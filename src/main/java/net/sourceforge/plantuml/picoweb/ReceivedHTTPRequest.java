@@ -7,11 +7,19 @@ import java.util.StringTokenizer;
 public class ReceivedHTTPRequest {
 
 	private static final String CONTENT_LENGTH_HEADER = "content-length: ";
+	private static final String CONNECTION_HEADER = "connection: ";
+	private static final String IF_NONE_MATCH_HEADER = "if-none-match: ";
 
 	private String method;
 
 	private String path;
 
+	private String version;
+
+	private String connection;
+
+	private String ifNoneMatch;
+
 	private byte[] body;
 
 	public String getMethod() {
@@ -26,6 +34,36 @@ public class ReceivedHTTPRequest {
 		return body;
 	}
 
+	/**
+	 * Tells if the client expects the connection to stay open after the response:
+	 * this is the default for HTTP/1.1, and an explicit opt-in for HTTP/1.0.
+	 */
+	public boolean isKeepAlive() {
+		if ("HTTP/1.1".equals(version))
+			return "close".equalsIgnoreCase(connection) == false;
+		return "keep-alive".equalsIgnoreCase(connection);
+	}
+
+	/**
+	 * Checks the <code>If-None-Match</code> header against the ETag of the
+	 * resource (given without quotes).
+	 */
+	public boolean matchesEtag(String etag) {
+		if (ifNoneMatch == null)
+			return false;
+
+		for (String candidate : ifNoneMatch.split(",")) {
+			candidate = candidate.trim();
+			if (candidate.equals("*"))
+				return true;
+			if (candidate.startsWith("W/"))
+				candidate = candidate.substring(2);
+			if (candidate.equals("\"" + etag + "\""))
+				return true;
+		}
+		return false;
+	}
+
 	public static ReceivedHTTPRequest fromStream(InputStream in) throws IOException {
 		final ReceivedHTTPRequest request = new ReceivedHTTPRequest();
 
@@ -38,6 +76,7 @@ public class ReceivedHTTPRequest {
 
 		request.method = tokenizer.nextToken().toUpperCase();
 		request.path = tokenizer.nextToken();
+		request.version = tokenizer.nextToken().toUpperCase();
 
 		// Headers
 		int contentLength = 0;
@@ -48,6 +87,10 @@ public class ReceivedHTTPRequest {
 				break;
 			} else if (line.toLowerCase().startsWith(CONTENT_LENGTH_HEADER)) {
 				contentLength = parseContentLengthHeader(line);
+			} else if (line.toLowerCase().startsWith(CONNECTION_HEADER)) {
+				request.connection = line.substring(CONNECTION_HEADER.length()).trim();
+			} else if (line.toLowerCase().startsWith(IF_NONE_MATCH_HEADER)) {
+				request.ifNoneMatch = line.substring(IF_NONE_MATCH_HEADER.length()).trim();
 			}
 		}
 
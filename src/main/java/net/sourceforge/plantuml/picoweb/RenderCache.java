@@ -0,0 +1,228 @@
+/* ========================================================================
+ * PlantUML : a free UML diagram generator
+ * ========================================================================
+ *
+ * (C) Copyright 2009-2024, Arnaud Roques
+ *
+ * Project Info:  https://plantuml.com
+ * 
+ * If you like this project or if you find it useful, you can support us at:
+ * 
+ * https://plantuml.com/patreon (only 1$ per month!)
+ * https://plantuml.com/paypal
+ * 
+ * This file is part of PlantUML.
+ *
+ * PlantUML is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PlantUML distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301,
+ * USA.
+ *
+ *
+ * Original Author:  Arnaud Roques
+ * 
+ *
+ */
+package net.sourceforge.plantuml.picoweb;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sourceforge.plantuml.StringUtils;
+import net.sourceforge.plantuml.json.Json;
+import net.sourceforge.plantuml.json.JsonObject;
+import net.sourceforge.plantuml.log.Logme;
+import net.sourceforge.plantuml.security.SecurityUtils;
+
+/**
+ * Content-addressed cache of rendered diagrams.
+ * <p>
+ * Keys are the strong ETags computed by the server, that is the
+ * {@link net.sourceforge.plantuml.BlockUml#etag()} of the preprocessed source
+ * plus the output format and options. Entries are kept in memory in LRU order
+ * and the cache is bounded by the total weight of the responses. When a spill
+ * directory is configured, entries evicted from memory are written there and
+ * read back on the next miss.
+ * <p>
+ * The size is set by <code>PLANTUML_PICOWEB_CACHE_SIZE</code> (in bytes,
+ * <code>0</code> disables the cache) and the spill directory by
+ * <code>PLANTUML_PICOWEB_CACHE_DIR</code>.
+ */
+public class RenderCache {
+
+	private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+	private final long maxBytes;
+	private final File spillDir;
+	private final long maxSpillBytes;
+
+	private final LinkedHashMap<String, DiagramResponse> memory = new LinkedHashMap<>(16, 0.75F, true);
+	private final LinkedHashMap<String, Long> spilled = new LinkedHashMap<>(16, 0.75F, true);
+	private long memoryBytes;
+	private long spillBytes;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong spillHits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public RenderCache(long maxBytes, File spillDir) {
+		this.maxBytes = maxBytes;
+		this.spillDir = spillDir;
+		this.maxSpillBytes = 16 * maxBytes;
+		if (spillDir != null) {
+			spillDir.mkdirs();
+			reloadSpilled();
+		}
+	}
+
+	// Entries written by a previous run of the server are still valid, as keys
+	// include the PlantUML version
+	private void reloadSpilled() {
+		final File[] files = spillDir.listFiles();
+		if (files == null)
+			return;
+
+		for (File f : files)
+			if (f.getName().endsWith(".cache")) {
+				final String key = f.getName().substring(0, f.getName().length() - ".cache".length());
+				spilled.put(key, f.length());
+				spillBytes += f.length();
+			}
+	}
+
+	public static RenderCache fromEnvironment() {
+		long maxBytes = DEFAULT_MAX_BYTES;
+		final String size = SecurityUtils.getenv("PLANTUML_PICOWEB_CACHE_SIZE");
+		if (StringUtils.isNotEmpty(size) && size.matches("\\d+"))
+			maxBytes = Long.parseLong(size);
+
+		final String dir = SecurityUtils.getenv("PLANTUML_PICOWEB_CACHE_DIR");
+		return new RenderCache(maxBytes, StringUtils.isNotEmpty(dir) ? new File(dir) : null);
+	}
+
+	public boolean isEnabled() {
+		return maxBytes > 0;
+	}
+
+	public DiagramResponse get(String key) {
+		if (isEnabled() == false)
+			return null;
+
+		synchronized (this) {
+			final DiagramResponse result = memory.get(key);
+			if (result != null) {
+				hits.incrementAndGet();
+				return result;
+			}
+			if (spilled.containsKey(key) == false) {
+				misses.incrementAndGet();
+				return null;
+			}
+		}
+		final DiagramResponse fromDisk = readSpilled(key);
+		if (fromDisk == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		spillHits.incrementAndGet();
+		put(key, fromDisk);
+		return fromDisk;
+	}
+
+	public void put(String key, DiagramResponse response) {
+		final long weight = response.getWeight();
+		if (isEnabled() == false || weight > maxBytes)
+			return;
+
+		synchronized (this) {
+			final DiagramResponse old = memory.put(key, response);
+			if (old != null)
+				memoryBytes -= old.getWeight();
+			memoryBytes += weight;
+
+			for (Iterator<Map.Entry<String, DiagramResponse>> it = memory.entrySet().iterator(); memoryBytes > maxBytes
+					&& it.hasNext();) {
+				final Map.Entry<String, DiagramResponse> eldest = it.next();
+				it.remove();
+				memoryBytes -= eldest.getValue().getWeight();
+				spill(eldest.getKey(), eldest.getValue());
+			}
+		}
+	}
+
+	// Called while holding the lock: eviction is rare compared to lookups
+	private void spill(String key, DiagramResponse response) {
+		if (spillDir == null || spilled.containsKey(key))
+			return;
+
+		final File file = spillFile(key);
+		try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			response.writeTo(dos);
+		} catch (IOException e) {
+			Logme.error(e);
+			file.delete();
+			return;
+		}
+		spilled.put(key, file.length());
+		spillBytes += file.length();
+
+		for (Iterator<Map.Entry<String, Long>> it = spilled.entrySet().iterator(); spillBytes > maxSpillBytes
+				&& it.hasNext();) {
+			final Map.Entry<String, Long> eldest = it.next();
+			it.remove();
+			spillBytes -= eldest.getValue();
+			spillFile(eldest.getKey()).delete();
+		}
+	}
+
+	private DiagramResponse readSpilled(String key) {
+		final File file = spillFile(key);
+		try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			return DiagramResponse.readFrom(dis);
+		} catch (IOException e) {
+			synchronized (this) {
+				final Long size = spilled.remove(key);
+				if (size != null)
+					spillBytes -= size;
+			}
+			return null;
+		}
+	}
+
+	private File spillFile(String key) {
+		return new File(spillDir, key + ".cache");
+	}
+
+	public synchronized JsonObject toJson() {
+		return Json.object() //
+				.add("enabled", isEnabled()) //
+				.add("maxBytes", maxBytes) //
+				.add("bytes", memoryBytes) //
+				.add("entries", memory.size()) //
+				.add("spilledEntries", spilled.size()) //
+				.add("hits", hits.get()) //
+				.add("spillHits", spillHits.get()) //
+				.add("misses", misses.get());
+	}
+
+}
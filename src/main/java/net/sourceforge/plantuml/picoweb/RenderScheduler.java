@@ -0,0 +1,169 @@
+/* ========================================================================
+ * PlantUML : a free UML diagram generator
+ * ========================================================================
+ *
+ * (C) Copyright 2009-2024, Arnaud Roques
+ *
+ * Project Info:  https://plantuml.com
+ * 
+ * If you like this project or if you find it useful, you can support us at:
+ * 
+ * https://plantuml.com/patreon (only 1$ per month!)
+ * https://plantuml.com/paypal
+ * 
+ * This file is part of PlantUML.
+ *
+ * PlantUML is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PlantUML distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301,
+ * USA.
+ *
+ *
+ * Original Author:  Arnaud Roques
+ * 
+ *
+ */
+package net.sourceforge.plantuml.picoweb;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sourceforge.plantuml.json.Json;
+import net.sourceforge.plantuml.json.JsonObject;
+
+/**
+ * Admission control for the PicoWebServer.
+ * <p>
+ * Connections are served by a fixed pool of worker threads fed by a bounded
+ * queue. Inside a connection, each rendering must also obtain one of a limited
+ * number of render permits, so that keep-alive connections waiting for their
+ * next request never compete with the rendering itself. When either the
+ * connection queue or the render queue is full, the request is rejected and
+ * the client receives a <code>503</code> with a <code>Retry-After</code> header.
+ */
+public class RenderScheduler {
+
+	public static final int RETRY_AFTER_SECONDS = 1;
+
+	private final int maxRenders;
+	private final int maxQueued;
+	private final ThreadPoolExecutor workers;
+	private final Semaphore renderPermits;
+
+	private final AtomicInteger waitingRenders = new AtomicInteger();
+	private final AtomicInteger inFlightRenders = new AtomicInteger();
+	private final AtomicLong completedRenders = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+
+	public RenderScheduler(int maxRenders, int maxQueued) {
+		if (maxRenders < 1)
+			throw new IllegalArgumentException("maxRenders=" + maxRenders);
+		if (maxQueued < 1)
+			throw new IllegalArgumentException("maxQueued=" + maxQueued);
+		this.maxRenders = maxRenders;
+		this.maxQueued = maxQueued;
+		this.renderPermits = new Semaphore(maxRenders, true);
+		// Idle keep-alive connections hold a worker, so we allow more connections than
+		// concurrent renders.
+		final int nbWorkers = 4 * maxRenders;
+		this.workers = new ThreadPoolExecutor(nbWorkers, nbWorkers, 60L, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(maxQueued), new WorkerThreadFactory());
+		this.workers.allowCoreThreadTimeOut(true);
+	}
+
+	public static RenderScheduler withThreads(int nbThreads) {
+		final int maxRenders = Math.max(1, nbThreads);
+		return new RenderScheduler(maxRenders, 16 * maxRenders);
+	}
+
+	/**
+	 * Queues a connection handler.
+	 *
+	 * @return <code>false</code> if the server is saturated and the connection
+	 *         must be rejected
+	 */
+	public boolean submitConnection(Runnable connection) {
+		try {
+			workers.execute(connection);
+			return true;
+		} catch (RejectedExecutionException e) {
+			rejected.incrementAndGet();
+			return false;
+		}
+	}
+
+	/**
+	 * Tells if some connections are queued, waiting for a worker.
+	 */
+	public boolean hasWaitingConnections() {
+		return workers.getQueue().isEmpty() == false;
+	}
+
+	/**
+	 * Runs a rendering once a render permit is available.
+	 *
+	 * @return the rendering result, or <code>null</code> if too many renderings are
+	 *         already waiting
+	 */
+	public <T> T render(Callable<T> rendering) throws Exception {
+		if (waitingRenders.incrementAndGet() > maxQueued) {
+			waitingRenders.decrementAndGet();
+			rejected.incrementAndGet();
+			return null;
+		}
+		try {
+			renderPermits.acquire();
+		} finally {
+			waitingRenders.decrementAndGet();
+		}
+		inFlightRenders.incrementAndGet();
+		try {
+			return rendering.call();
+		} finally {
+			inFlightRenders.decrementAndGet();
+			completedRenders.incrementAndGet();
+			renderPermits.release();
+		}
+	}
+
+	public JsonObject toJson() {
+		return Json.object() //
+				.add("maxRenders", maxRenders) //
+				.add("maxQueued", maxQueued) //
+				.add("queueDepth", waitingRenders.get() + workers.getQueue().size()) //
+				.add("inFlightRenders", inFlightRenders.get()) //
+				.add("activeConnections", workers.getActiveCount()) //
+				.add("completedRenders", completedRenders.get()) //
+				.add("rejected", rejected.get());
+	}
+
+	static class WorkerThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger counter = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			final Thread thread = new Thread(runnable, "picoweb-worker-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+}
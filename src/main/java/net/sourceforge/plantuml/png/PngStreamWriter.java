@@ -0,0 +1,303 @@
+/* ========================================================================
+ * PlantUML : a free UML diagram generator
+ * ========================================================================
+ *
+ * (C) Copyright 2009-2024, Arnaud Roques
+ *
+ * Project Info:  https://plantuml.com
+ * 
+ * If you like this project or if you find it useful, you can support us at:
+ * 
+ * https://plantuml.com/patreon (only 1$ per month!)
+ * https://plantuml.com/paypal
+ * 
+ * This file is part of PlantUML.
+ *
+ * PlantUML is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PlantUML distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301,
+ * USA.
+ *
+ *
+ * Original Author:  Arnaud Roques
+ * 
+ *
+ */
+package net.sourceforge.plantuml.png;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a PNG row by row, so that the whole image never has to be in memory.
+ * <p>
+ * The image is written in true colors (RGB, or RGBA when the rows come from an
+ * image with alpha), with the same text chunks as {@link PngIOMetadata}. Each
+ * row is filtered with the usual "minimum sum of absolute differences"
+ * heuristic, and the compressed data is split into IDAT chunks of 64 KB.
+ */
+public class PngStreamWriter {
+	// ::remove file when __CORE__
+
+	private static final String copyleft = "Generated by https://plantuml.com";
+	private static final byte SIGNATURE[] = { (byte) 137, 80, 78, 71, 13, 10, 26, 10 };
+	private static final int IDAT_SIZE = 64 * 1024;
+
+	private final DataOutputStream os;
+	private final int width;
+	private final int height;
+	private final int bytesPerPixel;
+	private final IdatOutputStream chunks = new IdatOutputStream();
+	private final DeflaterOutputStream idat;
+	private final Deflater deflater = new Deflater(7);
+
+	private final int pixels[];
+	private byte previous[];
+	private byte current[];
+	private final byte filtered[][] = new byte[5][];
+	private int rowsWritten;
+
+	public PngStreamWriter(OutputStream os, int width, int height, boolean hasAlpha, String metadata, int dpi)
+			throws IOException {
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException("width and height must be positive");
+
+		this.os = new DataOutputStream(os);
+		this.width = width;
+		this.height = height;
+		this.bytesPerPixel = hasAlpha ? 4 : 3;
+		this.pixels = new int[width];
+		this.previous = new byte[width * bytesPerPixel];
+		this.current = new byte[width * bytesPerPixel];
+		for (int i = 0; i < filtered.length; i++)
+			filtered[i] = new byte[1 + width * bytesPerPixel];
+
+		this.os.write(SIGNATURE);
+		writeHeader();
+		if (dpi != 96)
+			writePhysicalDimension(dpi);
+
+		writeText("copyleft", copyleft);
+		if (metadata != null)
+			writeInternationalText("plantuml", metadata);
+
+		this.idat = new DeflaterOutputStream(chunks, deflater, IDAT_SIZE);
+	}
+
+	private void writeHeader() throws IOException {
+		final ByteArrayOutputStream data = new ByteArrayOutputStream();
+		final DataOutputStream dos = new DataOutputStream(data);
+		dos.writeInt(width);
+		dos.writeInt(height);
+		dos.writeByte(8);
+		dos.writeByte(bytesPerPixel == 4 ? 6 : 2);
+		dos.writeByte(0);
+		dos.writeByte(0);
+		dos.writeByte(0);
+		writeChunk("IHDR", data.toByteArray(), data.size());
+	}
+
+	private void writePhysicalDimension(int dpi) throws IOException {
+		final int pixelsPerMeter = (int) Math.round(dpi / 0.0254);
+		final ByteArrayOutputStream data = new ByteArrayOutputStream();
+		final DataOutputStream dos = new DataOutputStream(data);
+		dos.writeInt(pixelsPerMeter);
+		dos.writeInt(pixelsPerMeter);
+		dos.writeByte(1);
+		writeChunk("pHYs", data.toByteArray(), data.size());
+	}
+
+	private void writeText(String key, String value) throws IOException {
+		final ByteArrayOutputStream data = new ByteArrayOutputStream();
+		data.write(key.getBytes(StandardCharsets.ISO_8859_1));
+		data.write(0);
+		data.write(value.getBytes(StandardCharsets.ISO_8859_1));
+		writeChunk("tEXt", data.toByteArray(), data.size());
+	}
+
+	private void writeInternationalText(String key, String value) throws IOException {
+		final ByteArrayOutputStream data = new ByteArrayOutputStream();
+		data.write(key.getBytes(StandardCharsets.ISO_8859_1));
+		// Null separator, compression flag, compression method, empty language tag
+		// and empty translated keyword
+		data.write(new byte[] { 0, 1, 0, 0, 0 });
+		final Deflater textDeflater = new Deflater(9);
+		try (DeflaterOutputStream dos = new DeflaterOutputStream(data, textDeflater)) {
+			dos.write(value.getBytes(StandardCharsets.UTF_8));
+		} finally {
+			textDeflater.end();
+		}
+		writeChunk("iTXt", data.toByteArray(), data.size());
+	}
+
+	private void writeChunk(String type, byte data[], int length) throws IOException {
+		final byte typeBytes[] = type.getBytes(StandardCharsets.US_ASCII);
+		final CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data, 0, length);
+		os.writeInt(length);
+		os.write(typeBytes);
+		os.write(data, 0, length);
+		os.writeInt((int) crc.getValue());
+	}
+
+	/**
+	 * Writes the first <code>nbRows</code> rows of <code>band</code>, which must
+	 * be an image of type <code>TYPE_INT_RGB</code> or <code>TYPE_INT_ARGB</code>
+	 * at least as wide as this PNG.
+	 */
+	public void writeRows(BufferedImage band, int nbRows) throws IOException {
+		if (rowsWritten + nbRows > height)
+			throw new IllegalStateException("Too many rows");
+
+		for (int y = 0; y < nbRows; y++) {
+			band.getRaster().getDataElements(0, y, width, 1, pixels);
+			for (int x = 0, i = 0; x < width; x++) {
+				final int argb = pixels[x];
+				current[i++] = (byte) (argb >> 16);
+				current[i++] = (byte) (argb >> 8);
+				current[i++] = (byte) argb;
+				if (bytesPerPixel == 4)
+					current[i++] = (byte) (argb >>> 24);
+			}
+			final byte best[] = filterRow();
+			idat.write(best, 0, best.length);
+
+			final byte tmp[] = previous;
+			previous = current;
+			current = tmp;
+			rowsWritten++;
+		}
+	}
+
+	// Returns the filtered row (with its filter type byte) that should compress
+	// best
+	private byte[] filterRow() {
+		final int len = current.length;
+		final int bpp = bytesPerPixel;
+		long bestSum = Long.MAX_VALUE;
+		int best = 0;
+		for (int type = 0; type < 5; type++) {
+			final byte out[] = filtered[type];
+			out[0] = (byte) type;
+			long sum = 0;
+			for (int i = 0; i < len; i++) {
+				final int raw = current[i] & 0xFF;
+				final int left = i >= bpp ? current[i - bpp] & 0xFF : 0;
+				final int up = previous[i] & 0xFF;
+				final int upLeft = i >= bpp ? previous[i - bpp] & 0xFF : 0;
+				final int value;
+				switch (type) {
+				case 0:
+					value = raw;
+					break;
+				case 1:
+					value = raw - left;
+					break;
+				case 2:
+					value = raw - up;
+					break;
+				case 3:
+					value = raw - ((left + up) >> 1);
+					break;
+				default:
+					value = raw - paeth(left, up, upLeft);
+				}
+				out[i + 1] = (byte) value;
+				sum += Math.abs((byte) value);
+				if (sum >= bestSum)
+					break;
+			}
+			if (sum < bestSum) {
+				bestSum = sum;
+				best = type;
+			}
+		}
+		return filtered[best];
+	}
+
+	private static int paeth(int a, int b, int c) {
+		final int p = a + b - c;
+		final int pa = Math.abs(p - a);
+		final int pb = Math.abs(p - b);
+		final int pc = Math.abs(p - c);
+		if (pa <= pb && pa <= pc)
+			return a;
+
+		if (pb <= pc)
+			return b;
+
+		return c;
+	}
+
+	/**
+	 * Ends the image. All rows must have been written.
+	 */
+	public void close() throws IOException {
+		if (rowsWritten != height)
+			throw new IllegalStateException("Missing rows " + rowsWritten + "/" + height);
+
+		try {
+			idat.finish();
+			chunks.flushChunk();
+			writeChunk("IEND", new byte[0], 0);
+			os.flush();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	// Cuts the compressed stream into IDAT chunks
+	class IdatOutputStream extends OutputStream {
+
+		private final byte buffer[] = new byte[IDAT_SIZE];
+		private int size;
+
+		@Override
+		public void write(int b) throws IOException {
+			if (size == buffer.length)
+				flushChunk();
+
+			buffer[size++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte b[], int off, int len) throws IOException {
+			while (len > 0) {
+				if (size == buffer.length)
+					flushChunk();
+
+				final int n = Math.min(len, buffer.length - size);
+				System.arraycopy(b, off, buffer, size, n);
+				size += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		void flushChunk() throws IOException {
+			if (size > 0)
+				writeChunk("IDAT", buffer, size);
+
+			size = 0;
+		}
+	}
+
+}
@@ -104,6 +104,25 @@ public class FileWithSuffix {
 		return null;
 	}
 
+	/**
+	 * Identifies the included resource: the file, the entry of the zip file and
+	 * the suffix.
+	 */
+	public String getIdentifier() {
+		return this + (entry == null ? "" : "~" + entry) + "!" + suffix;
+	}
+
+	/**
+	 * Date and size of the underlying file, used to detect modifications.
+	 */
+	public String getStamp() {
+		if (file == null || file.getUnderlyingFile() == null)
+			return null;
+
+		final SFile underlying = file.getUnderlyingFile();
+		return underlying.lastModified() + ":" + underlying.length();
+	}
+
 	public boolean fileOk() {
 		return file != null && file.isOk();
 	}
@@ -44,7 +44,6 @@ import java.nio.charset.StandardCharsets;
 
 import net.sourceforge.plantuml.log.Logme;
 import net.sourceforge.plantuml.preproc2.ReadFilterMergeLines;
-import net.sourceforge.plantuml.security.SURL;
 import net.sourceforge.plantuml.text.StringLocated;
 import net.sourceforge.plantuml.utils.Log;
 import net.sourceforge.plantuml.utils.StartUtils;
@@ -58,12 +57,12 @@ public class StartDiagramExtractReader implements ReadLine {
 		return new StartDiagramExtractReader(getReadLine(f2, s, charset), f2.getSuffix());
 	}
 
-	public static ReadLine build(SURL url, StringLocated s, String uid, Charset charset) {
-		return new StartDiagramExtractReader(getReadLine(url, s, charset), uid);
+	public static ReadLine build(InputStream is, String desc) {
+		return build(is, desc, null, StandardCharsets.UTF_8);
 	}
 
-	public static ReadLine build(InputStream is, String desc) {
-		return new StartDiagramExtractReader(getReadLine(is, desc), null);
+	public static ReadLine build(InputStream is, String desc, String uid, Charset charset) {
+		return new StartDiagramExtractReader(getReadLine(is, desc, charset), uid);
 	}
 
 	private StartDiagramExtractReader(ReadLine raw, String suf) {
@@ -116,16 +115,8 @@ public class StartDiagramExtractReader implements ReadLine {
 		}
 	}
 
-	private static ReadLine getReadLine(InputStream is, String description) {
-		return uncommentAndMerge(ReadLineReader.create(new InputStreamReader(is, StandardCharsets.UTF_8), description));
-	}
-
-	private static ReadLine getReadLine(SURL url, StringLocated s, Charset charset) {
-		final InputStream tmp = url.openStream();
-		if (tmp == null)
-			return new ReadLineSimple(s, "Cannot connect");
-
-		return uncommentAndMerge(ReadLineReader.create(new InputStreamReader(tmp, charset), url.toString()));
+	private static ReadLine getReadLine(InputStream is, String description, Charset charset) {
+		return uncommentAndMerge(ReadLineReader.create(new InputStreamReader(is, charset), description));
 	}
 
 	private static ReadLine uncommentAndMerge(ReadLine reader) {
@@ -137,13 +128,13 @@ public class StartDiagramExtractReader implements ReadLine {
 		return containsStartDiagram(r);
 	}
 
-	static public boolean containsStartDiagram(SURL url, StringLocated s, Charset charset) throws IOException {
-		final ReadLine r = getReadLine(url, s, charset);
-		return containsStartDiagram(r);
+	static public boolean containsStartDiagram(InputStream is, String description) throws IOException {
+		return containsStartDiagram(is, description, StandardCharsets.UTF_8);
 	}
 
-	static public boolean containsStartDiagram(InputStream is, String description) throws IOException {
-		final ReadLine r = getReadLine(is, description);
+	static public boolean containsStartDiagram(InputStream is, String description, Charset charset)
+			throws IOException {
+		final ReadLine r = getReadLine(is, description, charset);
 		return containsStartDiagram(r);
 	}
 
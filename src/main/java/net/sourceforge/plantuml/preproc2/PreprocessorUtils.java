@@ -37,6 +37,7 @@
 package net.sourceforge.plantuml.preproc2;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -140,11 +141,15 @@ public class PreprocessorUtils {
 
 	public static ReadLine getReaderIncludeUrl(final SURL url, StringLocated s, String suf, Charset charset)
 			throws EaterException {
+		final byte[] data = getBytes(url, s);
+		final String description = url.toString();
 		try {
-			if (StartDiagramExtractReader.containsStartDiagram(url, s, charset))
-				return StartDiagramExtractReader.build(url, s, suf, charset);
+			// The data is read twice, so that the URL is only downloaded once
+			if (StartDiagramExtractReader.containsStartDiagram(new ByteArrayInputStream(data), description, charset))
+				return StartDiagramExtractReader.build(new ByteArrayInputStream(data), description, suf, charset);
 
-			return getReaderInclude(url, s, charset);
+			return ReadLineReader.create(new InputStreamReader(new ByteArrayInputStream(data), charset), description,
+					s.getLocation());
 		} catch (IOException e) {
 			Logme.error(e);
 			throw new EaterException("Cannot open URL " + e.getMessage(), s);
@@ -161,4 +166,23 @@ public class PreprocessorUtils {
 		return ReadLineReader.create(new InputStreamReader(is, charset), url.toString(), s.getLocation());
 	}
 
+	private static byte[] getBytes(SURL url, StringLocated s) throws EaterException {
+		final InputStream is = url.openStream();
+		if (is == null)
+			throw new EaterException("Cannot open URL", s);
+
+		try {
+			final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[8192];
+			int read;
+			while ((read = is.read(buffer)) != -1)
+				baos.write(buffer, 0, read);
+
+			return baos.toByteArray();
+		} catch (IOException e) {
+			Logme.error(e);
+			throw new EaterException("Cannot open URL " + e.getMessage(), s);
+		}
+	}
+
 }
@@ -35,6 +35,8 @@
  */
 package net.sourceforge.plantuml.real;
 
+import java.util.Set;
+
 abstract class AbstractReal implements Real {
 
 	private final RealLine line;
@@ -50,6 +52,9 @@ abstract class AbstractReal implements Real {
 
 	abstract double getCurrentValueInternal();
 
+	// Adds the values this one is computed from
+	abstract void addSources(Set<RealImpl> sources);
+
 	final public double getCurrentValue() {
 		final double result = getCurrentValueInternal();
 		line.register(result);
@@ -35,6 +35,9 @@
  */
 package net.sourceforge.plantuml.real;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import net.sourceforge.plantuml.log.Logme;
 
 class PositiveForce {
@@ -56,6 +59,14 @@ class PositiveForce {
 		this.creationPoint.fillInStackTrace();
 	}
 
+	// The values read by the force: applying it again is useless while none of them moves
+	Set<RealImpl> getSources() {
+		final Set<RealImpl> result = new HashSet<>();
+		((AbstractReal) fixedPoint).addSources(result);
+		movingPoint.addSources(result);
+		return result;
+	}
+
 	@Override
 	public String toString() {
 		return "PositiveForce fixed=" + fixedPoint + " moving=" + movingPoint + " min=" + minimunDistance;
@@ -35,20 +35,47 @@
  */
 package net.sourceforge.plantuml.real;
 
+import java.util.Set;
+
 class RealDelta extends RealMoveable {
 
 	private final Real delegated;
 	private final double diff;
 
+	// When the value only depends on one RealImpl, it is kept until that one moves:
+	// RealDelta are chained one participant after the other, and the chains get long
+	private final RealImpl source;
+	private int sourceMoves = -1;
+	private double cache;
+
 	RealDelta(Real delegated, double diff) {
 		super(((AbstractReal) delegated).getLine(), "[Delegated {" + delegated.getName() + "} d=" + diff + "]");
 		this.delegated = delegated;
 		this.diff = diff;
+		if (delegated instanceof RealImpl)
+			this.source = (RealImpl) delegated;
+		else if (delegated instanceof RealDelta)
+			this.source = ((RealDelta) delegated).source;
+		else
+			this.source = null;
 	}
 
 	@Override
 	double getCurrentValueInternal() {
-		return delegated.getCurrentValue() + diff;
+		if (source == null)
+			return delegated.getCurrentValue() + diff;
+
+		final int moves = source.getMoves();
+		if (moves != sourceMoves) {
+			cache = delegated.getCurrentValue() + diff;
+			sourceMoves = moves;
+		}
+		return cache;
+	}
+
+	@Override
+	void addSources(Set<RealImpl> sources) {
+		((AbstractReal) delegated).addSources(sources);
 	}
 
 	public Real addAtLeast(double delta) {
@@ -36,6 +36,7 @@
 package net.sourceforge.plantuml.real;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -45,6 +46,10 @@ import java.util.Set;
 class RealLine {
 
 	private final List<PositiveForce> forces = new ArrayList<>();
+	// For each value, the indexes of the forces that read it
+	private final Map<RealImpl, List<Integer>> readers = new HashMap<>();
+	// The forces that have to be applied (again)
+	private final BitSet pending = new BitSet();
 
 	private double min;
 	private double max;
@@ -69,51 +74,76 @@ class RealLine {
 	}
 
 	public void addForce(PositiveForce force) {
+		final int index = forces.size();
 		this.forces.add(force);
+		for (RealImpl source : force.getSources()) {
+			List<Integer> list = readers.get(source);
+			if (list == null) {
+				list = new ArrayList<>();
+				readers.put(source, list);
+			}
+			list.add(index);
+		}
+		pending.set(index);
+	}
+
+	void moved(RealImpl real) {
+		final List<Integer> list = readers.get(real);
+		if (list != null)
+			for (int index : list)
+				pending.set(index);
+
 	}
 
 	static private int CPT;
 
+	// Applies the forces in turn, pass after pass, until none of them changes
+	// anything. A force is only applied again once one of the values it reads has
+	// moved: skipped forces would have had nothing to do, so the passes give
+	// exactly the same positions as if all the forces were applied each time.
 	public void compile() {
 		int cpt = 0;
 		final Map<PositiveForce, Integer> counter = new HashMap<PositiveForce, Integer>();
-		do {
-			boolean done = true;
-			for (PositiveForce f : forces) {
-				// System.err.println("force=" + f);
-				final boolean change = f.apply();
-				if (change) {
-					incCounter(counter, f);
-					// System.err.println("changed! " + f);
-					done = false;
+		int i = -1;
+		while (true) {
+			i = pending.nextSetBit(i + 1);
+			if (i == -1) {
+				if (pending.isEmpty())
+					break;
+
+				// Some forces changed something during this pass
+				cpt++;
+				if (cpt > 99999) {
+					printCounter(counter);
+					throw new IllegalStateException("Inifinite Loop?");
 				}
+				i = pending.nextSetBit(0);
 			}
-			if (done) {
-				// System.err.println("cpt=" + cpt + " size=" + forces.size());
-				CPT += cpt;
-				// System.err.println("CPT=" + CPT);
-				min = 0;
-				max = 0;
-				for (AbstractReal real : all) {
-					final double v = real.getCurrentValue();
-					// System.err.println("RealLine::compile v=" + v);
-					if (v > max)
-						max = v;
-
-					if (v < min)
-						min = v;
-
-				}
-				// System.err.println("RealLine::compile min=" + min + " max=" + max);
-				return;
-			}
-			cpt++;
-			if (cpt > 99999) {
-				printCounter(counter);
-				throw new IllegalStateException("Inifinite Loop?");
+			pending.clear(i);
+			final PositiveForce f = forces.get(i);
+			// System.err.println("force=" + f);
+			final boolean change = f.apply();
+			if (change) {
+				incCounter(counter, f);
+				// System.err.println("changed! " + f);
 			}
-		} while (true);
+		}
+		// System.err.println("cpt=" + cpt + " size=" + forces.size());
+		CPT += cpt;
+		// System.err.println("CPT=" + CPT);
+		min = 0;
+		max = 0;
+		for (AbstractReal real : all) {
+			final double v = real.getCurrentValue();
+			// System.err.println("RealLine::compile v=" + v);
+			if (v > max)
+				max = v;
+
+			if (v < min)
+				min = v;
 
+		}
+		// System.err.println("RealLine::compile min=" + min + " max=" + max);
 	}
 
 	private void printCounter(Map<PositiveForce, Integer> counter) {
@@ -38,6 +38,7 @@ package net.sourceforge.plantuml.real;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 import net.sourceforge.plantuml.log.Logme;
 
@@ -87,6 +88,13 @@ class RealMax extends AbstractReal implements Real {
 		return result;
 	}
 
+	@Override
+	void addSources(Set<RealImpl> sources) {
+		for (Real r : all)
+			((AbstractReal) r).addSources(sources);
+
+	}
+
 	public Real addFixed(double delta) {
 		return new RealDelta(this, delta);
 	}
@@ -35,6 +35,8 @@
  */
 package net.sourceforge.plantuml.real;
 
+import java.util.Set;
+
 class RealMiddle extends AbstractReal implements Real {
     // ::remove folder when __HAXE__
 
@@ -58,6 +60,12 @@ class RealMiddle extends AbstractReal implements Real {
 		return (p1.getCurrentValue() + p2.getCurrentValue()) / 2 + delta;
 	}
 
+	@Override
+	void addSources(Set<RealImpl> sources) {
+		p1.addSources(sources);
+		p2.addSources(sources);
+	}
+
 	public Real addFixed(double diff) {
 		return new RealMiddle(p1, p2, delta + diff);
 	}
@@ -35,6 +35,8 @@
  */
 package net.sourceforge.plantuml.real;
 
+import java.util.Set;
+
 class RealMiddle2 extends RealMoveable {
 
 	private final RealMoveable p1;
@@ -52,6 +54,12 @@ class RealMiddle2 extends RealMoveable {
 		return (p1.getCurrentValue() + p2.getCurrentValue()) / 2;
 	}
 
+	@Override
+	void addSources(Set<RealImpl> sources) {
+		p1.addSources(sources);
+		p2.addSources(sources);
+	}
+
 	// public Real addFixed(double diff) {
 	// return new RealMiddle2(p1, p2, delta + diff);
 	// }
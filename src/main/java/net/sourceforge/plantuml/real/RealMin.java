@@ -38,6 +38,7 @@ package net.sourceforge.plantuml.real;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 class RealMin extends AbstractReal implements Real {
 
@@ -70,6 +71,13 @@ class RealMin extends AbstractReal implements Real {
 		return result;
 	}
 
+	@Override
+	void addSources(Set<RealImpl> sources) {
+		for (Real r : all)
+			((AbstractReal) r).addSources(sources);
+
+	}
+
 	public Real addFixed(double delta) {
 		return new RealDelta(this, delta);
 	}
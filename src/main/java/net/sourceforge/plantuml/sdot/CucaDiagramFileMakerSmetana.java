@@ -51,8 +51,6 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import h.ST_Agedge_s;
 import h.ST_Agnode_s;
@@ -96,6 +94,8 @@ import net.sourceforge.plantuml.skin.AlignmentParam;
 import net.sourceforge.plantuml.skin.UmlDiagramType;
 import net.sourceforge.plantuml.skin.VisibilityModifier;
 import net.sourceforge.plantuml.skin.rose.Rose;
+import net.sourceforge.plantuml.stats.Phase;
+import net.sourceforge.plantuml.stats.PhaseMetrics;
 import net.sourceforge.plantuml.stereo.Stereotype;
 import net.sourceforge.plantuml.style.ISkinParam;
 import net.sourceforge.plantuml.style.SName;
@@ -239,11 +239,9 @@ public class CucaDiagramFileMakerSmetana extends CucaDiagramFileMaker {
 	// Duplicate GeneralImageBuilder
 	private Link onlyOneLink(Entity ent) {
 		Link single = null;
-		for (Link link : diagram.getLinks()) {
+		for (Link link : diagram.getLinksOf(ent)) {
 			if (link.isInvis())
 				continue;
-			if (link.contains(ent) == false)
-				continue;
 
 			if (single != null)
 				return null;
@@ -383,8 +381,6 @@ public class CucaDiagramFileMakerSmetana extends CucaDiagramFileMaker {
 		return result;
 	}
 
-	private static final Lock lock = new ReentrantLock();
-
 	public ImageData createFile(OutputStream os, List<String> dotStrings, FileFormatOption fileFormatOption)
 			throws IOException {
 
@@ -415,12 +411,7 @@ public class CucaDiagramFileMakerSmetana extends CucaDiagramFileMaker {
 
 		}
 
-		lock.lock();
-		try {
-			return createFileLocked(os, dotStrings, fileFormatOption);
-		} finally {
-			lock.unlock();
-		}
+		return createFileInternal(os, dotStrings, fileFormatOption);
 	}
 
 	@Override
@@ -436,14 +427,20 @@ public class CucaDiagramFileMakerSmetana extends CucaDiagramFileMaker {
 		}
 	}
 
-	private ImageData createFileLocked(OutputStream os, List<String> dotStrings, FileFormatOption fileFormatOption)
+	// All the layout state lives in the Globals instance, so several diagrams can be
+	// laid out at the same time
+	private ImageData createFileInternal(OutputStream os, List<String> dotStrings, FileFormatOption fileFormatOption)
 			throws IOException {
 
 		final Globals zz = Globals.open();
 		try {
 			final StringBounder stringBounder = fileFormatOption.getDefaultStringBounder(diagram.getSkinParam());
 
+			final long start = System.nanoTime();
 			final TextBlock drawable = getTextBlock(stringBounder, zz);
+			// ::comment when __CORE__
+			PhaseMetrics.getInstance().record(Phase.LAYOUT, start);
+			// ::done
 			return diagram.createImageBuilder(fileFormatOption).drawable(drawable).write(os);
 		} catch (Throwable e) {
 			SmetanaDebug.printMe();
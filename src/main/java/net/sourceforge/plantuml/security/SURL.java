@@ -52,6 +52,7 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -63,6 +64,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -343,6 +345,26 @@ public class SURL {
 	 * @return data loaded data from endpoint
 	 */
 	public byte[] getBytes() {
+		return requestWithCredentials(
+				(proxy, authentication) -> requestWithGetAndResponse(internal, proxy, authentication, null));
+	}
+
+	/**
+	 * Reads from an endpoint like {@link #getBytes()}, sending the validators of a
+	 * copy already cached. If the endpoint has not changed since, the server can
+	 * answer <code>304 Not Modified</code> without sending the data again.
+	 *
+	 * @param etag         the <code>ETag</code> of the cached copy, or null
+	 * @param lastModified the <code>Last-Modified</code> date of the cached copy,
+	 *                     or null
+	 * @return the response, or null in case of error
+	 */
+	public UrlResponse getBytesIfModified(String etag, String lastModified) {
+		return requestWithCredentials((proxy, authentication) -> requestWithConditionalGet(internal, proxy,
+				authentication, etag, lastModified));
+	}
+
+	private <T> T requestWithCredentials(BiFunction<Proxy, SecurityAuthentication, Callable<T>> request) {
 		if (isUrlOk() == false)
 			return null;
 
@@ -359,9 +381,8 @@ public class SURL {
 			}
 
 			try {
-				final Future<byte[]> result = EXE
-						.submit(requestWithGetAndResponse(internal, credentials.getProxy(), authentication, null));
-				final byte[] data = result.get(SecurityUtils.getSecurityProfile().getTimeout(), TimeUnit.MILLISECONDS);
+				final Future<T> result = EXE.submit(request.apply(credentials.getProxy(), authentication));
+				final T data = result.get(SecurityUtils.getSecurityProfile().getTimeout(), TimeUnit.MILLISECONDS);
 				if (data != null)
 					return data;
 
@@ -483,22 +504,8 @@ public class SURL {
 			final SecurityAuthentication authentication, final Map<String, Object> headers) {
 		return new Callable<byte[]>() {
 
-			private HttpURLConnection openConnection(final URL url) throws IOException {
-				// Add proxy, if passed throw parameters
-				final URLConnection connection = proxy == null ? url.openConnection() : url.openConnection(proxy);
-				if (connection == null)
-					return null;
-				configure(connection);
-
-				final HttpURLConnection http = (HttpURLConnection) connection;
-
-				applyEndpointAccessAuthentication(http, authentication);
-				applyAdditionalHeaders(http, headers);
-				return http;
-			}
-
 			public byte[] call() throws IOException, URISyntaxException {
-				final HttpURLConnection http = openConnection(url);
+				final HttpURLConnection http = openConnection(url, proxy, authentication, headers);
 				// final int responseCode = http.getResponseCode();
 
 //				if (responseCode == HttpURLConnection.HTTP_MOVED_TEMP
@@ -512,6 +519,51 @@ public class SURL {
 		};
 	}
 
+	/**
+	 * Creates a conditional GET request and response handler
+	 *
+	 * @param url            URL to request
+	 * @param proxy          proxy to apply
+	 * @param authentication the authentication to use
+	 * @param etag           value of the <code>If-None-Match</code> header, or null
+	 * @param lastModified   value of the <code>If-Modified-Since</code> header, or
+	 *                       null
+	 * @return the callable handler.
+	 */
+	private static Callable<UrlResponse> requestWithConditionalGet(final URL url, final Proxy proxy,
+			final SecurityAuthentication authentication, final String etag, final String lastModified) {
+		return new Callable<UrlResponse>() {
+			public UrlResponse call() throws IOException {
+				final Map<String, Object> headers = new HashMap<>();
+				if (etag != null)
+					headers.put("If-None-Match", etag);
+				if (lastModified != null)
+					headers.put("If-Modified-Since", lastModified);
+
+				final HttpURLConnection http = openConnection(url, proxy, authentication, headers);
+				final boolean notModified = http.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED;
+				final byte[] data = notModified ? null : retrieveResponseAsBytes(http);
+				return new UrlResponse(notModified, data, http.getHeaderField("ETag"),
+						http.getHeaderField("Last-Modified"), http.getHeaderField("Cache-Control"));
+			}
+		};
+	}
+
+	private static HttpURLConnection openConnection(final URL url, final Proxy proxy,
+			final SecurityAuthentication authentication, final Map<String, Object> headers) throws IOException {
+		// Add proxy, if passed throw parameters
+		final URLConnection connection = proxy == null ? url.openConnection() : url.openConnection(proxy);
+		if (connection == null)
+			return null;
+		configure(connection);
+
+		final HttpURLConnection http = (HttpURLConnection) connection;
+
+		applyEndpointAccessAuthentication(http, authentication);
+		applyAdditionalHeaders(http, headers);
+		return http;
+	}
+
 	/**
 	 * Creates a POST request and response handler with a simple String content. The
 	 * content will be identified as form or JSON data. The charset encoding can be
@@ -626,13 +678,19 @@ public class SURL {
 		}
 	}
 
+	/**
+	 * Opens the URL of a resource used by a diagram (include, theme, style...).
+	 * <p>
+	 * Unlike {@link #getBytes()}, the resource is read through the
+	 * {@link UrlCache}.
+	 *
+	 * @return the resource, or null if the URL cannot be read
+	 */
 	public InputStream openStream() {
-		if (isUrlOk()) {
-			final byte[] data = getBytes();
-			if (data != null)
-				return new ByteArrayInputStream(data);
+		final byte[] data = UrlCache.getInstance().getBytes(this);
+		if (data != null)
+			return new ByteArrayInputStream(data);
 
-		}
 		return null;
 	}
 
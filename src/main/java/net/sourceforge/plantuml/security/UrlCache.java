@@ -0,0 +1,475 @@
+/* ========================================================================
+ * PlantUML : a free UML diagram generator
+ * ========================================================================
+ *
+ * (C) Copyright 2009-2024, Arnaud Roques
+ *
+ * Project Info:  https://plantuml.com
+ * 
+ * If you like this project or if you find it useful, you can support us at:
+ * 
+ * https://plantuml.com/patreon (only 1$ per month!)
+ * https://plantuml.com/paypal
+ * 
+ * This file is part of PlantUML.
+ *
+ * PlantUML is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PlantUML distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301,
+ * USA.
+ *
+ *
+ * Original Author:  Arnaud Roques
+ * 
+ *
+ */
+package net.sourceforge.plantuml.security;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sourceforge.plantuml.StringUtils;
+import net.sourceforge.plantuml.log.Logme;
+import net.sourceforge.plantuml.utils.Log;
+import net.sourceforge.plantuml.utils.SignatureUtils;
+
+/**
+ * Cache of the resources read from URLs by <code>!include</code>,
+ * <code>!theme</code> and style imports.
+ * <p>
+ * Resources are kept in memory, in LRU order and bounded by their size, so
+ * that all the diagrams of the JVM share them. When a directory is
+ * configured, they are also written there, so that they survive a restart and
+ * can be shared by several processes.
+ * <p>
+ * A fresh resource is returned without any request. A stale one is
+ * revalidated with a conditional request (<code>If-None-Match</code> and
+ * <code>If-Modified-Since</code>), so that an unchanged resource only costs a
+ * <code>304 Not Modified</code> answer. During the stale-while-revalidate
+ * period, the stale copy is returned at once and revalidated in the
+ * background. Concurrent requests for the same URL share one download, and a
+ * stale copy is still returned when the server cannot be reached.
+ * <p>
+ * Freshness comes from the <code>Cache-Control</code> header of the server
+ * (<code>max-age</code> and <code>stale-while-revalidate</code>), unless
+ * <code>PLANTUML_URL_CACHE_MAX_AGE</code> or
+ * <code>PLANTUML_URL_CACHE_STALE_WHILE_REVALIDATE</code> are set (in seconds).
+ * The memory size is set by <code>PLANTUML_URL_CACHE_SIZE</code> (in bytes,
+ * <code>0</code> disables the cache) and the directory by
+ * <code>PLANTUML_URL_CACHE_DIR</code>. When
+ * <code>PLANTUML_URL_CACHE_OFFLINE</code> is <code>true</code>, the network
+ * is never used: cached copies are returned whatever their age, and other
+ * URLs cannot be read.
+ * <p>
+ * The security profile is checked before returning any cached copy. URLs with
+ * credentials are never cached.
+ */
+public class UrlCache {
+	// ::remove file when __CORE__
+
+	private static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+	private static final String SUFFIX = ".url";
+
+	private static final ExecutorService EXE = Executors.newCachedThreadPool(r -> {
+		final Thread t = Executors.defaultThreadFactory().newThread(r);
+		t.setDaemon(true);
+		return t;
+	});
+
+	private static UrlCache singleton;
+
+	private final long maxBytes;
+	private final File dir;
+	private final long maxAge;
+	private final long staleWhileRevalidate;
+	private final boolean offline;
+
+	private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(16, 0.75F, true);
+	private long memoryBytes;
+
+	private final Map<String, CompletableFuture<Entry>> downloads = new ConcurrentHashMap<>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong notModified = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * @param maxBytes             size of the memory cache, <code>0</code> to
+	 *                             disable the cache
+	 * @param dir                  directory where resources are written, or
+	 *                             <code>null</code>
+	 * @param maxAge               freshness of resources in milliseconds, or
+	 *                             <code>-1</code> to use the one given by the
+	 *                             server
+	 * @param staleWhileRevalidate how long, in milliseconds, a stale resource is
+	 *                             returned while being revalidated, or
+	 *                             <code>-1</code> to use the one given by the
+	 *                             server
+	 * @param offline              <code>true</code> to never use the network
+	 */
+	public UrlCache(long maxBytes, File dir, long maxAge, long staleWhileRevalidate, boolean offline) {
+		this.maxBytes = maxBytes;
+		this.dir = dir;
+		this.maxAge = maxAge;
+		this.staleWhileRevalidate = staleWhileRevalidate;
+		this.offline = offline;
+		if (dir != null && maxBytes > 0)
+			dir.mkdirs();
+	}
+
+	public static synchronized UrlCache getInstance() {
+		if (singleton == null)
+			singleton = fromEnvironment();
+
+		return singleton;
+	}
+
+	private static UrlCache fromEnvironment() {
+		final long maxBytes = getenvLong("PLANTUML_URL_CACHE_SIZE", DEFAULT_MAX_BYTES);
+		final String dir = SecurityUtils.getenv("PLANTUML_URL_CACHE_DIR");
+		final long maxAge = getenvLong("PLANTUML_URL_CACHE_MAX_AGE", -1);
+		final long staleWhileRevalidate = getenvLong("PLANTUML_URL_CACHE_STALE_WHILE_REVALIDATE", -1);
+		final boolean offline = "true".equalsIgnoreCase(SecurityUtils.getenv("PLANTUML_URL_CACHE_OFFLINE"));
+		return new UrlCache(maxBytes, StringUtils.isNotEmpty(dir) ? new File(dir) : null,
+				maxAge == -1 ? -1 : maxAge * 1000, staleWhileRevalidate == -1 ? -1 : staleWhileRevalidate * 1000,
+				offline);
+	}
+
+	private static long getenvLong(String name, long def) {
+		final String value = SecurityUtils.getenv(name);
+		if (StringUtils.isNotEmpty(value) && value.matches("\\d+"))
+			return Long.parseLong(value);
+
+		return def;
+	}
+
+	public boolean isEnabled() {
+		return maxBytes > 0;
+	}
+
+	/**
+	 * Reads an URL, using the cached copy when possible.
+	 *
+	 * @return the data, or <code>null</code> if the URL cannot be read
+	 */
+	public byte[] getBytes(SURL url) {
+		if (url.isUrlOk() == false)
+			return null;
+
+		final String key = url.toString();
+		if (isEnabled() == false || url.isAuthorizationConfigured() || hasUserInfo(key))
+			return offline ? null : url.getBytes();
+
+		final Entry cached = get(key);
+		if (cached != null) {
+			final long age = System.currentTimeMillis() - cached.date;
+			final long freshness = getMaxAge(cached);
+			if (offline || age < freshness) {
+				hits.incrementAndGet();
+				log("hit", key);
+				return cached.data;
+			}
+			if (age < freshness + getStaleWhileRevalidate(cached)) {
+				hits.incrementAndGet();
+				log("stale hit", key);
+				EXE.submit(() -> download(url, key, cached));
+				return cached.data;
+			}
+		}
+		if (offline) {
+			misses.incrementAndGet();
+			log("offline miss", key);
+			return null;
+		}
+
+		final Entry result = download(url, key, cached);
+		if (result != null)
+			return result.data;
+
+		if (cached != null) {
+			log("stale copy used because of an error", key);
+			return cached.data;
+		}
+		return null;
+	}
+
+	private long getMaxAge(Entry entry) {
+		return maxAge == -1 ? entry.maxAge : maxAge;
+	}
+
+	private long getStaleWhileRevalidate(Entry entry) {
+		return staleWhileRevalidate == -1 ? entry.staleWhileRevalidate : staleWhileRevalidate;
+	}
+
+	// Concurrent requests for the same URL wait for the first one
+	private Entry download(SURL url, String key, Entry cached) {
+		final CompletableFuture<Entry> created = new CompletableFuture<>();
+		final CompletableFuture<Entry> running = downloads.putIfAbsent(key, created);
+		if (running != null)
+			return running.join();
+
+		try {
+			final Entry result = revalidate(url, key, cached);
+			created.complete(result);
+			return result;
+		} catch (RuntimeException e) {
+			created.completeExceptionally(e);
+			throw e;
+		} finally {
+			downloads.remove(key, created);
+		}
+	}
+
+	private Entry revalidate(SURL url, String key, Entry cached) {
+		final UrlResponse response = cached == null ? url.getBytesIfModified(null, null)
+				: url.getBytesIfModified(cached.etag, cached.lastModified);
+		if (response == null)
+			return null;
+
+		final Entry result;
+		if (response.isNotModified()) {
+			if (cached == null)
+				return null;
+			notModified.incrementAndGet();
+			log("not modified", key);
+			result = cached.revalidated(response);
+		} else {
+			misses.incrementAndGet();
+			log("download", key);
+			result = new Entry(response.getData(), response.getEtag(), response.getLastModified(),
+					System.currentTimeMillis(), response.getCacheControl());
+		}
+		if (hasDirective(response.getCacheControl(), "no-store"))
+			remove(key);
+		else
+			put(key, result);
+
+		return result;
+	}
+
+	private static boolean hasUserInfo(String url) {
+		try {
+			return new URI(url).getUserInfo() != null;
+		} catch (URISyntaxException e) {
+			return true;
+		}
+	}
+
+	private Entry get(String key) {
+		synchronized (this) {
+			final Entry result = memory.get(key);
+			if (result != null || dir == null)
+				return result;
+		}
+		final Entry fromDisk = readStored(key);
+		if (fromDisk != null)
+			putInMemory(key, fromDisk);
+
+		return fromDisk;
+	}
+
+	private void put(String key, Entry entry) {
+		putInMemory(key, entry);
+		if (dir != null)
+			store(key, entry);
+	}
+
+	private void remove(String key) {
+		synchronized (this) {
+			final Entry old = memory.remove(key);
+			if (old != null)
+				memoryBytes -= old.data.length;
+		}
+		if (dir != null)
+			storedFile(key).delete();
+	}
+
+	private synchronized void putInMemory(String key, Entry entry) {
+		if (entry.data.length > maxBytes)
+			return;
+
+		final Entry old = memory.put(key, entry);
+		if (old != null)
+			memoryBytes -= old.data.length;
+		memoryBytes += entry.data.length;
+
+		for (Iterator<Entry> it = memory.values().iterator(); memoryBytes > maxBytes && it.hasNext();) {
+			memoryBytes -= it.next().data.length;
+			it.remove();
+		}
+	}
+
+	// Files are written under a temporary name then renamed, so that another
+	// process sharing the directory never reads a partial resource
+	private void store(String key, Entry entry) {
+		final File file = storedFile(key);
+		try {
+			final File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+			Files.write(tmp.toPath(), entry.toBytes());
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			Logme.error(e);
+		}
+	}
+
+	private Entry readStored(String key) {
+		final File file = storedFile(key);
+		if (file.exists() == false)
+			return null;
+
+		try {
+			return Entry.fromBytes(Files.readAllBytes(file.toPath()));
+		} catch (IOException e) {
+			Logme.error(e);
+			return null;
+		}
+	}
+
+	private File storedFile(String key) {
+		return new File(dir, SignatureUtils.getSHA512Hex(key) + SUFFIX);
+	}
+
+	private void log(String what, String key) {
+		Log.info(() -> "URL cache " + what + " " + key + " (hits=" + hits.get() + ", notModified="
+				+ notModified.get() + ", misses=" + misses.get() + ")");
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getNotModified() {
+		return notModified.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	static boolean hasDirective(String cacheControl, String name) {
+		return getDirective(cacheControl, name) != null;
+	}
+
+	// Returns the value of a Cache-Control directive, "" for a directive without
+	// value, or null if the directive is not there
+	static String getDirective(String cacheControl, String name) {
+		if (cacheControl == null)
+			return null;
+
+		for (String directive : cacheControl.split(",")) {
+			directive = directive.trim().toLowerCase(Locale.US);
+			if (directive.equals(name))
+				return "";
+			if (directive.startsWith(name + "="))
+				return StringUtils.eventuallyRemoveStartingAndEndingDoubleQuote(directive.substring(name.length() + 1));
+		}
+		return null;
+	}
+
+	// In milliseconds
+	static long getSeconds(String cacheControl, String name) {
+		final String value = getDirective(cacheControl, name);
+		if (value != null && value.matches("\\d{1,9}"))
+			return Long.parseLong(value) * 1000;
+
+		return 0;
+	}
+
+	/**
+	 * A cached resource, with its validators and its freshness.
+	 */
+	static final class Entry {
+
+		private final byte[] data;
+		private final String etag;
+		private final String lastModified;
+		private final long date;
+		private final long maxAge;
+		private final long staleWhileRevalidate;
+
+		private Entry(byte[] data, String etag, String lastModified, long date, long maxAge,
+				long staleWhileRevalidate) {
+			this.data = data;
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.date = date;
+			this.maxAge = maxAge;
+			this.staleWhileRevalidate = staleWhileRevalidate;
+		}
+
+		private Entry(byte[] data, String etag, String lastModified, long date, String cacheControl) {
+			this(data, etag, lastModified, date,
+					hasDirective(cacheControl, "no-cache") ? 0 : getSeconds(cacheControl, "max-age"),
+					getSeconds(cacheControl, "stale-while-revalidate"));
+		}
+
+		// A 304 answer may update the headers of the resource
+		private Entry revalidated(UrlResponse response) {
+			final long now = System.currentTimeMillis();
+			final String newEtag = response.getEtag() == null ? etag : response.getEtag();
+			final String newLastModified = response.getLastModified() == null ? lastModified
+					: response.getLastModified();
+			if (response.getCacheControl() == null)
+				return new Entry(data, newEtag, newLastModified, now, maxAge, staleWhileRevalidate);
+
+			return new Entry(data, newEtag, newLastModified, now, response.getCacheControl());
+		}
+
+		private byte[] toBytes() throws IOException {
+			final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			try (DataOutputStream dos = new DataOutputStream(baos)) {
+				dos.writeUTF(etag == null ? "" : etag);
+				dos.writeUTF(lastModified == null ? "" : lastModified);
+				dos.writeLong(date);
+				dos.writeLong(maxAge);
+				dos.writeLong(staleWhileRevalidate);
+				dos.writeInt(data.length);
+				dos.write(data);
+			}
+			return baos.toByteArray();
+		}
+
+		private static Entry fromBytes(byte[] bytes) throws IOException {
+			try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bytes))) {
+				final String etag = dis.readUTF();
+				final String lastModified = dis.readUTF();
+				final long date = dis.readLong();
+				final long maxAge = dis.readLong();
+				final long staleWhileRevalidate = dis.readLong();
+				final byte[] data = new byte[dis.readInt()];
+				dis.readFully(data);
+				return new Entry(data, etag.isEmpty() ? null : etag, lastModified.isEmpty() ? null : lastModified,
+						date, maxAge, staleWhileRevalidate);
+			}
+		}
+	}
+
+}
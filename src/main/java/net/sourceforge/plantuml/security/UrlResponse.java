@@ -0,0 +1,81 @@
+/* ========================================================================
+ * PlantUML : a free UML diagram generator
+ * ========================================================================
+ *
+ * (C) Copyright 2009-2024, Arnaud Roques
+ *
+ * Project Info:  https://plantuml.com
+ * 
+ * If you like this project or if you find it useful, you can support us at:
+ * 
+ * https://plantuml.com/patreon (only 1$ per month!)
+ * https://plantuml.com/paypal
+ * 
+ * This file is part of PlantUML.
+ *
+ * PlantUML is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PlantUML distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301,
+ * USA.
+ *
+ *
+ * Original Author:  Arnaud Roques
+ * 
+ *
+ */
+package net.sourceforge.plantuml.security;
+
+/**
+ * Response of a GET request, with the headers used to cache it.
+ */
+public final class UrlResponse {
+
+	private final boolean notModified;
+	private final byte[] data;
+	private final String etag;
+	private final String lastModified;
+	private final String cacheControl;
+
+	UrlResponse(boolean notModified, byte[] data, String etag, String lastModified, String cacheControl) {
+		this.notModified = notModified;
+		this.data = data;
+		this.etag = etag;
+		this.lastModified = lastModified;
+		this.cacheControl = cacheControl;
+	}
+
+	/**
+	 * Tells if the server answered <code>304 Not Modified</code>, in which case
+	 * there is no data.
+	 */
+	public boolean isNotModified() {
+		return notModified;
+	}
+
+	public byte[] getData() {
+		return data;
+	}
+
+	public String getEtag() {
+		return etag;
+	}
+
+	public String getLastModified() {
+		return lastModified;
+	}
+
+	public String getCacheControl() {
+		return cacheControl;
+	}
+
+}
@@ -74,6 +74,8 @@ import net.sourceforge.plantuml.skin.ColorParam;
 import net.sourceforge.plantuml.skin.PragmaKey;
 import net.sourceforge.plantuml.skin.UmlDiagramType;
 import net.sourceforge.plantuml.skin.rose.Rose;
+import net.sourceforge.plantuml.stats.Phase;
+import net.sourceforge.plantuml.stats.PhaseMetrics;
 import net.sourceforge.plantuml.stereo.Stereotype;
 import net.sourceforge.plantuml.style.ClockwiseTopRightBottomLeft;
 import net.sourceforge.plantuml.utils.LineLocation;
@@ -295,7 +297,7 @@ public class SequenceDiagram extends UmlDiagram {
 		// ::done
 
 		if (modeTeoz())
-			return new SequenceDiagramFileMakerTeoz(this, skin2, fileFormatOption, index);
+			return new SequenceDiagramFileMakerTeoz(this, skin2, fileFormatOption);
 
 		return new SequenceDiagramFileMakerPuma2(this, skin2, fileFormatOption);
 	}
@@ -313,10 +315,45 @@ public class SequenceDiagram extends UmlDiagram {
 	@Override
 	protected ImageData exportDiagramInternal(OutputStream os, int index, FileFormatOption fileFormat)
 			throws IOException {
-		final FileMaker sequenceDiagramPngMaker = getSequenceDiagramPngMaker(index, fileFormat);
+		FileMaker sequenceDiagramPngMaker = null;
+		if (sharingLayout && sharedLayoutFormat == fileFormat.getFileFormat())
+			sequenceDiagramPngMaker = sharedLayout;
+
+		if (sequenceDiagramPngMaker == null) {
+			final long start = System.nanoTime();
+			sequenceDiagramPngMaker = getSequenceDiagramPngMaker(index, fileFormat);
+			// ::comment when __CORE__
+			PhaseMetrics.getInstance().record(Phase.LAYOUT, start);
+			// ::done
+			if (sharingLayout) {
+				sharedLayout = sequenceDiagramPngMaker;
+				sharedLayoutFormat = fileFormat.getFileFormat();
+			}
+		}
 		return sequenceDiagramPngMaker.createOne(os, index, fileFormat.isWithMetadata());
 	}
 
+	// Layout kept between the pages while sharingLayout is set
+	private boolean sharingLayout;
+	private FileMaker sharedLayout;
+	private FileFormat sharedLayoutFormat;
+
+	/**
+	 * Until {@link #stopSharingLayout()} is called, all the pages exported in the
+	 * same file format are drawn from a single layout of the diagram, instead of
+	 * laying the whole diagram out again for each page. The export options must
+	 * not change in between.
+	 */
+	public void startSharingLayout() {
+		this.sharingLayout = true;
+	}
+
+	public void stopSharingLayout() {
+		this.sharingLayout = false;
+		this.sharedLayout = null;
+		this.sharedLayoutFormat = null;
+	}
+
 	@Override
 	final public void exportDiagramGraphic(UGraphic ug, FileFormatOption fileFormatOption) {
 		final FileMaker sequenceDiagramPngMaker = getSequenceDiagramPngMaker(0, fileFormatOption);
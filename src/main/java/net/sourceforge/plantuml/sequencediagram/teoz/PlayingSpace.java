@@ -60,6 +60,11 @@ public class PlayingSpace implements Bordered {
 	private final List<LinkAnchor> linkAnchors;
 	private final ISkinParam skinParam;
 
+	// Tiles positioned by the first drawing, and reused by the following ones
+	private List<CommonTile> local;
+	private List<CommonTile> full;
+	private double finalY;
+
 	public PlayingSpace(SequenceDiagram diagram, Dolls dolls, TileArguments tileArguments) {
 
 		this.livingSpaces = tileArguments.getLivingSpaces();
@@ -107,11 +112,18 @@ public class PlayingSpace implements Bordered {
 		drawUInternal(interceptor, false);
 	}
 
+	private void fillPositionelTiles(StringBounder stringBounder) {
+		if (local != null)
+			return;
+
+		local = new ArrayList<>();
+		full = new ArrayList<>();
+		finalY = GroupingTile.fillPositionelTiles(stringBounder, new TimeHook(startingY), tiles, local, full)
+				.getValue();
+	}
+
 	private double drawUInternal(UGraphic ug, boolean trace) {
-		final StringBounder stringBounder = ug.getStringBounder();
-		final List<CommonTile> local = new ArrayList<>();
-		final List<CommonTile> full = new ArrayList<>();
-		final TimeHook y = GroupingTile.fillPositionelTiles(stringBounder, new TimeHook(startingY), tiles, local, full);
+		fillPositionelTiles(ug.getStringBounder());
 		for (CommonTile tile : local) {
 			if (YGauge.USE_ME) {
 				((CommonTile) tile).drawU(ug);
@@ -127,8 +139,8 @@ public class PlayingSpace implements Bordered {
 				linkAnchor.drawAnchor(ug, ytile1, ytile2, skinParam);
 
 		}
-		// System.err.println("MainTile::drawUInternal finalY=" + y);
-		return y.getValue();
+		// System.err.println("MainTile::drawUInternal finalY=" + finalY);
+		return finalY;
 	}
 
 	private CommonTile getFromAnchor(List<CommonTile> positionedTiles, String anchor) {
@@ -77,18 +77,12 @@ public class SequenceDiagramFileMakerTeoz implements FileMaker {
 	private final Rose skin;
 	private final AnnotatedBuilder annotatedBuilder;
 
-	private final int index;
-
-	public SequenceDiagramFileMakerTeoz(SequenceDiagram diagram, Rose skin, FileFormatOption fileFormatOption,
-			int index) {
-		this.index = index;
+	public SequenceDiagramFileMakerTeoz(SequenceDiagram diagram, Rose skin, FileFormatOption fileFormatOption) {
 		this.stringBounder = fileFormatOption.getDefaultStringBounder(diagram.getSkinParam());
 		this.diagram = diagram;
 		this.fileFormatOption = fileFormatOption;
 		this.skin = skin;
 		this.body = new PlayingSpaceWithParticipants(createMainTile());
-		this.footer = getFooterOrHeader(FontParam.FOOTER);
-		this.header = getFooterOrHeader(FontParam.HEADER);
 		this.annotatedBuilder = new AnnotatedBuilder(diagram, diagram.getSkinParam(), stringBounder);
 
 		this.min1 = body.getMinX(stringBounder);
@@ -99,83 +93,84 @@ public class SequenceDiagramFileMakerTeoz implements FileMaker {
 
 		this.heightEnglober1 = dolls.getOffsetForEnglobers(stringBounder);
 		this.heightEnglober2 = heightEnglober1 == 0 ? 0 : 10;
-
-		final double totalWidth = MathUtils.max(body.calculateDimension(stringBounder).getWidth(),
-				title.calculateDimension(stringBounder).getWidth(), footer.calculateDimension(stringBounder).getWidth(),
-				header.calculateDimension(stringBounder).getWidth(),
-				legend.calculateDimension(stringBounder).getWidth());
-		final double totalHeight = body.calculateDimension(stringBounder).getHeight() + heightEnglober1
-				+ heightEnglober2 + title.calculateDimension(stringBounder).getHeight()
-				+ header.calculateDimension(stringBounder).getHeight()
-				+ legend.calculateDimension(stringBounder).getHeight()
-				+ caption.calculateDimension(stringBounder).getHeight()
-				+ footer.calculateDimension(stringBounder).getHeight() + (annotatedBuilder.hasMainFrame() ? 10 : 0);
-		this.dimTotal = new XDimension2D(totalWidth, totalHeight);
 	}
 
 	private Dolls dolls;
 	private final StringBounder stringBounder;
 
-	private final TextBlock footer;
-	private final TextBlock header;
-
 	private final PlayingSpaceWithParticipants body;
 
 	private final TextBlock title;
 	private final TextBlock legend;
 	private final TextBlock caption;
-	private final XDimension2D dimTotal;
 	private final Real min1;
 
 	private final LivingSpaces livingSpaces = new LivingSpaces();
 	private final double heightEnglober1;
 	private final double heightEnglober2;
 
+	// The layout is shared by all the pages: only the page number changes
 	public ImageData createOne(OutputStream os, final int index, boolean isWithMetadata) throws IOException {
-		if (this.index != index)
-			throw new IllegalStateException();
-
 		return diagram.createImageBuilder(fileFormatOption).drawable(new Foo(index)).write(os);
 	}
 
 	class Foo implements UDrawable {
 
 		private final int index;
+		private final TextBlock footer;
+		private final TextBlock header;
+		private final XDimension2D dimTotal;
 
 		Foo(int index) {
 			this.index = index;
+			this.footer = getFooterOrHeader(FontParam.FOOTER, index);
+			this.header = getFooterOrHeader(FontParam.HEADER, index);
+
+			final double totalWidth = MathUtils.max(body.calculateDimension(stringBounder).getWidth(),
+					title.calculateDimension(stringBounder).getWidth(),
+					footer.calculateDimension(stringBounder).getWidth(),
+					header.calculateDimension(stringBounder).getWidth(),
+					legend.calculateDimension(stringBounder).getWidth());
+			final double totalHeight = body.calculateDimension(stringBounder).getHeight() + heightEnglober1
+					+ heightEnglober2 + title.calculateDimension(stringBounder).getHeight()
+					+ header.calculateDimension(stringBounder).getHeight()
+					+ legend.calculateDimension(stringBounder).getHeight()
+					+ caption.calculateDimension(stringBounder).getHeight()
+					+ footer.calculateDimension(stringBounder).getHeight()
+					+ (annotatedBuilder.hasMainFrame() ? 10 : 0);
+			this.dimTotal = new XDimension2D(totalWidth, totalHeight);
 		}
 
 		public void drawU(UGraphic ug) {
-			drawInternal(ug, index);
+			drawInternal(ug, this);
 		}
 
-	}
+		private UGraphic goDownAndCenterForEnglobers(UGraphic ug) {
+			ug = goDown(ug, title);
+			ug = goDown(ug, header);
+			if (diagram.getLegend().getVerticalAlignment() == VerticalAlignment.TOP)
+				ug = goDown(ug, legend);
 
-	private UGraphic goDownAndCenterForEnglobers(UGraphic ug) {
-		ug = goDown(ug, title);
-		ug = goDown(ug, header);
-		if (diagram.getLegend().getVerticalAlignment() == VerticalAlignment.TOP)
-			ug = goDown(ug, legend);
+			final double dx = (dimTotal.getWidth() - body.calculateDimension(stringBounder).getWidth()) / 2;
+			return ug.apply(UTranslate.dx(dx));
+		}
+
+		public void printAligned(UGraphic ug, HorizontalAlignment align, final TextBlock layer) {
+			double dx = 0;
+			if (align == HorizontalAlignment.RIGHT)
+				dx = dimTotal.getWidth() - layer.calculateDimension(stringBounder).getWidth();
+			else if (align == HorizontalAlignment.CENTER)
+				dx = (dimTotal.getWidth() - layer.calculateDimension(stringBounder).getWidth()) / 2;
+
+			layer.drawU(ug.apply(UTranslate.dx(dx)));
+		}
 
-		final double dx = (dimTotal.getWidth() - body.calculateDimension(stringBounder).getWidth()) / 2;
-		return ug.apply(UTranslate.dx(dx));
 	}
 
 	private UGraphic goDown(UGraphic ug, TextBlock size) {
 		return ug.apply(UTranslate.dy(size.calculateDimension(stringBounder).getHeight()));
 	}
 
-	public void printAligned(UGraphic ug, HorizontalAlignment align, final TextBlock layer) {
-		double dx = 0;
-		if (align == HorizontalAlignment.RIGHT)
-			dx = dimTotal.getWidth() - layer.calculateDimension(stringBounder).getWidth();
-		else if (align == HorizontalAlignment.CENTER)
-			dx = (dimTotal.getWidth() - layer.calculateDimension(stringBounder).getWidth()) / 2;
-
-		layer.drawU(ug.apply(UTranslate.dx(dx)));
-	}
-
 	private PlayingSpace createMainTile() {
 		final RealOrigin xorigin = RealUtils.createOrigin();
 		Real xcurrent = xorigin.addAtLeast(0);
@@ -228,7 +223,7 @@ public class SequenceDiagramFileMakerTeoz implements FileMaker {
 		return EntityImageLegend.create(legend, diagram.getSkinParam());
 	}
 
-	public TextBlock getFooterOrHeader(final FontParam param) {
+	public TextBlock getFooterOrHeader(final FontParam param, int index) {
 		if (diagram.getFooterOrHeaderTeoz(param).isNull())
 			return new TeozLayer(null, stringBounder, param);
 
@@ -246,45 +241,47 @@ public class SequenceDiagramFileMakerTeoz implements FileMaker {
 		return body.getNbPages();
 	}
 
-	private void drawInternal(UGraphic ug, int index) {
-		body.setIndex(index);
+	private void drawInternal(UGraphic ug, Foo page) {
+		final TextBlock header = page.header;
+		final TextBlock footer = page.footer;
+		body.setIndex(page.index);
 		final UTranslate min1translate = UTranslate.dx(-min1.getCurrentValue());
 		ug = ug.apply(min1translate);
 
-		dolls.drawEnglobers(goDownAndCenterForEnglobers(ug),
+		dolls.drawEnglobers(page.goDownAndCenterForEnglobers(ug),
 				body.calculateDimension(stringBounder).getHeight() + heightEnglober1 + heightEnglober2 / 2,
 				new SimpleContext2D(true));
 
-		printAligned(ug, diagram.getFooterOrHeaderTeoz(FontParam.HEADER).getHorizontalAlignment(), header);
+		page.printAligned(ug, diagram.getFooterOrHeaderTeoz(FontParam.HEADER).getHorizontalAlignment(), header);
 		ug = goDown(ug, header);
 
 		final StyleSignatureBasic def = FontParam.TITLE.getStyleDefinition(null);
 		final HorizontalAlignment titleAlignment = def.getMergedStyle(diagram.getSkinParam().getCurrentStyleBuilder())
 				.getHorizontalAlignment();
 
-		printAligned(ug, titleAlignment, title);
+		page.printAligned(ug, titleAlignment, title);
 		ug = goDown(ug, title);
 
 		if (diagram.getLegend().getVerticalAlignment() == VerticalAlignment.TOP) {
-			printAligned(ug, diagram.getLegend().getHorizontalAlignment(), legend);
+			page.printAligned(ug, diagram.getLegend().getHorizontalAlignment(), legend);
 			ug = goDown(ug, legend);
 		}
 
 		ug = ug.apply(UTranslate.dy(heightEnglober1));
 		final TextBlock bodyFramed = annotatedBuilder.decoreWithFrame(body);
-		printAligned(ug.apply(UTranslate.dx((annotatedBuilder.hasMainFrame() ? 4 : 0))), HorizontalAlignment.CENTER,
-				bodyFramed);
+		page.printAligned(ug.apply(UTranslate.dx((annotatedBuilder.hasMainFrame() ? 4 : 0))),
+				HorizontalAlignment.CENTER, bodyFramed);
 		ug = goDown(ug, bodyFramed);
 		ug = ug.apply(UTranslate.dy(heightEnglober2));
 
 		if (diagram.getLegend().getVerticalAlignment() == VerticalAlignment.BOTTOM) {
-			printAligned(ug, diagram.getLegend().getHorizontalAlignment(), legend);
+			page.printAligned(ug, diagram.getLegend().getHorizontalAlignment(), legend);
 			ug = goDown(ug, legend);
 		}
-		printAligned(ug, HorizontalAlignment.CENTER, caption);
+		page.printAligned(ug, HorizontalAlignment.CENTER, caption);
 		ug = goDown(ug, caption);
 
-		printAligned(ug, diagram.getFooterOrHeaderTeoz(FontParam.FOOTER).getHorizontalAlignment(), footer);
+		page.printAligned(ug, diagram.getFooterOrHeaderTeoz(FontParam.FOOTER).getHorizontalAlignment(), footer);
 	}
 
 	@Override
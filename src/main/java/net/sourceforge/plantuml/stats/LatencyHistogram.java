@@ -0,0 +1,144 @@
+/* ========================================================================
+ * PlantUML : a free UML diagram generator
+ * ========================================================================
+ *
+ * (C) Copyright 2009-2024, Arnaud Roques
+ *
+ * Project Info:  https://plantuml.com
+ * 
+ * If you like this project or if you find it useful, you can support us at:
+ * 
+ * https://plantuml.com/patreon (only 1$ per month!)
+ * https://plantuml.com/paypal
+ * 
+ * This file is part of PlantUML.
+ *
+ * PlantUML is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PlantUML distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301,
+ * USA.
+ *
+ *
+ * Original Author:  Arnaud Roques
+ *
+ *
+ */
+package net.sourceforge.plantuml.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations, in the spirit of HdrHistogram.
+ * <p>
+ * Values are microseconds. They are counted in buckets whose width doubles
+ * every {@link #SUB_COUNT} buckets, so that any percentile is known with a
+ * relative error below 1/16, from one microsecond to several days, with a
+ * fixed array of 608 counters.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BITS = 4;
+	static final int SUB_COUNT = 1 << SUB_BITS;
+	// Values up to 2^40 microseconds (about 12 days) have their own bucket
+	private static final int MAX_SHIFT = 40 - SUB_BITS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(SUB_COUNT * (MAX_SHIFT + 2));
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	public void recordNanos(long nanos) {
+		recordValue(nanos / 1000L);
+	}
+
+	public void recordValue(long micros) {
+		if (micros < 0)
+			micros = 0;
+
+		counts.incrementAndGet(indexOf(micros));
+		count.increment();
+		sum.add(micros);
+		long current;
+		while (micros > (current = max.get()))
+			if (max.compareAndSet(current, micros))
+				break;
+	}
+
+	static int indexOf(long value) {
+		if (value < 2 * SUB_COUNT)
+			return (int) value;
+
+		final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		if (shift > MAX_SHIFT)
+			return SUB_COUNT * (MAX_SHIFT + 2) - 1;
+
+		return (shift + 1) * SUB_COUNT + (int) (value >>> shift) - SUB_COUNT;
+	}
+
+	// Largest value counted in this bucket
+	static long highestValueOf(int index) {
+		if (index < 2 * SUB_COUNT)
+			return index;
+
+		final int shift = index / SUB_COUNT - 1;
+		final long sub = index % SUB_COUNT + SUB_COUNT;
+		return ((sub + 1) << shift) - 1;
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return the sum of all the recorded values, in microseconds
+	 */
+	public long getSum() {
+		return sum.sum();
+	}
+
+	/**
+	 * @return the largest recorded value, in microseconds
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @param percentile
+	 *            between 0 and 100
+	 * @return a value, in microseconds, such that the given percentage of the
+	 *         recorded values are lower or equal
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long total = 0;
+		final long[] snapshot = new long[counts.length()];
+		for (int i = 0; i < snapshot.length; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0)
+			return 0;
+
+		final long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100.0 * total));
+		long seen = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			seen += snapshot[i];
+			if (seen >= target)
+				return Math.min(highestValueOf(i), getMax());
+		}
+		return getMax();
+	}
+
+}
@@ -0,0 +1,271 @@
+/* ========================================================================
+ * PlantUML : a free UML diagram generator
+ * ========================================================================
+ *
+ * (C) Copyright 2009-2024, Arnaud Roques
+ *
+ * Project Info:  https://plantuml.com
+ * 
+ * If you like this project or if you find it useful, you can support us at:
+ * 
+ * https://plantuml.com/patreon (only 1$ per month!)
+ * https://plantuml.com/paypal
+ * 
+ * This file is part of PlantUML.
+ *
+ * PlantUML is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PlantUML distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301,
+ * USA.
+ *
+ *
+ * Original Author:  Arnaud Roques
+ *
+ *
+ */
+package net.sourceforge.plantuml.stats;
+
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.sourceforge.plantuml.FileFormat;
+import net.sourceforge.plantuml.activitydiagram3.ActivityDiagram3;
+import net.sourceforge.plantuml.core.Diagram;
+import net.sourceforge.plantuml.directdot.PSystemDot;
+import net.sourceforge.plantuml.eggs.PSystemWelcome;
+import net.sourceforge.plantuml.error.PSystemErrorUtils;
+import net.sourceforge.plantuml.math.PSystemMath;
+import net.sourceforge.plantuml.salt.PSystemSalt;
+
+/**
+ * Durations of the generation phases, by phase, diagram type and output
+ * format.
+ * <p>
+ * The layout, drawing and encoding code does not know which diagram it is
+ * working on: the labels are taken from the export running on the current
+ * thread, as declared by
+ * {@link net.sourceforge.plantuml.AbstractPSystem#exportDiagram}.
+ * <p>
+ * Recording only costs a few atomic increments, so it is always enabled. The
+ * values are exposed by the <code>/metrics</code> page of the PicoWeb server,
+ * and printed at the end of a command line run with <code>-phasestats</code>.
+ */
+public class PhaseMetrics {
+
+	private static final PhaseMetrics singleton = new PhaseMetrics();
+
+	private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+	private final ConcurrentMap<Key, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+	private final ThreadLocal<Deque<Key>> exports = new ThreadLocal<Deque<Key>>() {
+		@Override
+		protected Deque<Key> initialValue() {
+			return new ArrayDeque<>();
+		}
+	};
+
+	static final class Key implements Comparable<Key> {
+		private final Phase phase;
+		private final String diagram;
+		private final String format;
+
+		Key(Phase phase, String diagram, String format) {
+			this.phase = phase;
+			this.diagram = diagram;
+			this.format = format;
+		}
+
+		Key withPhase(Phase other) {
+			return new Key(other, diagram, format);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(phase, diagram, format);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			final Key other = (Key) obj;
+			return phase == other.phase && diagram.equals(other.diagram) && format.equals(other.format);
+		}
+
+		@Override
+		public int compareTo(Key other) {
+			int cmp = phase.compareTo(other.phase);
+			if (cmp == 0)
+				cmp = diagram.compareTo(other.diagram);
+			if (cmp == 0)
+				cmp = format.compareTo(other.format);
+			return cmp;
+		}
+	}
+
+	private static final Key UNKNOWN = new Key(Phase.LAYOUT, "unknown", "");
+
+	PhaseMetrics() {
+	}
+
+	public static PhaseMetrics getInstance() {
+		return singleton;
+	}
+
+	// Same names as in the statistics report
+	static String diagramName(Class<? extends Diagram> type) {
+		if (PSystemErrorUtils.isDiagramError(type)) {
+			return "Error";
+		}
+		if (type == ActivityDiagram3.class) {
+			return "ActivityDiagramBeta";
+		}
+		if (type == PSystemSalt.class) {
+			return "Salt";
+		}
+		if (type.getSimpleName().equals("PSystemSudoku")) {
+			return "Sudoku";
+		}
+		if (type == PSystemDot.class) {
+			return "Dot";
+		}
+		if (type == PSystemWelcome.class) {
+			return "Welcome";
+		}
+		if (type.getSimpleName().equals("PSystemDitaa")) {
+			return "Ditaa";
+		}
+		if (type.getSimpleName().equals("PSystemJcckit")) {
+			return "Jcckit";
+		}
+		if (type == PSystemMath.class) {
+			return "Math";
+		}
+		final String name = type.getSimpleName();
+		if (name.endsWith("Diagram")) {
+			return name;
+		}
+		// return "Other " + name;
+		return "Other";
+	}
+
+	private static Key key(Phase phase, Class<? extends Diagram> type, FileFormat format) {
+		return new Key(phase, diagramName(type), format == null ? "" : format.name().toLowerCase());
+	}
+
+	/**
+	 * Declares that the current thread starts the export of a diagram. Exports
+	 * may be nested, for diagrams embedded in another one.
+	 */
+	public void enterExport(Class<? extends Diagram> type, FileFormat format) {
+		exports.get().push(key(Phase.LAYOUT, type, format));
+	}
+
+	public void exitExport() {
+		final Deque<Key> stack = exports.get();
+		stack.pop();
+		if (stack.isEmpty())
+			exports.remove();
+	}
+
+	/**
+	 * Records a phase of the export running on the current thread.
+	 *
+	 * @param start
+	 *            value of <code>System.nanoTime()</code> at the beginning of the
+	 *            phase
+	 */
+	public void record(Phase phase, long start) {
+		final Key current = exports.get().peek();
+		record((current == null ? UNKNOWN : current).withPhase(phase), System.nanoTime() - start);
+	}
+
+	public void record(Phase phase, Class<? extends Diagram> type, FileFormat format, long nanos) {
+		record(key(phase, type, format), nanos);
+	}
+
+	private void record(Key key, long nanos) {
+		LatencyHistogram histogram = histograms.get(key);
+		if (histogram == null) {
+			histograms.putIfAbsent(key, new LatencyHistogram());
+			histogram = histograms.get(key);
+		}
+		histogram.recordNanos(nanos);
+	}
+
+	LatencyHistogram getHistogram(Phase phase, Class<? extends Diagram> type, FileFormat format) {
+		return histograms.get(key(phase, type, format));
+	}
+
+	private Map<Key, LatencyHistogram> sorted() {
+		return new TreeMap<>(histograms);
+	}
+
+	/**
+	 * Writes the durations as Prometheus summaries, in the text exposition
+	 * format.
+	 */
+	public void appendPrometheus(StringBuilder sb) {
+		final String name = "plantuml_phase_duration_seconds";
+		sb.append("# HELP ").append(name).append(" Time spent in each phase of the image generation.\n");
+		sb.append("# TYPE ").append(name).append(" summary\n");
+		for (Map.Entry<Key, LatencyHistogram> ent : sorted().entrySet()) {
+			final String labels = labels(ent.getKey());
+			final LatencyHistogram histogram = ent.getValue();
+			for (double q : QUANTILES)
+				sb.append(name).append('{').append(labels).append(",quantile=\"").append(q).append("\"} ")
+						.append(seconds(histogram.getValueAtPercentile(q * 100))).append('\n');
+
+			sb.append(name).append("_sum{").append(labels).append("} ").append(seconds(histogram.getSum()))
+					.append('\n');
+			sb.append(name).append("_count{").append(labels).append("} ").append(histogram.getCount())
+					.append('\n');
+		}
+	}
+
+	private static String labels(Key key) {
+		return "phase=\"" + key.phase.label() + "\",diagram=\"" + escape(key.diagram) + "\",format=\""
+				+ escape(key.format) + "\"";
+	}
+
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	private static String seconds(long micros) {
+		return String.format(Locale.US, "%.6f", micros / 1000000.0);
+	}
+
+	/**
+	 * Prints a table of the percentiles, in milliseconds.
+	 */
+	public void printSummary(PrintStream ps) {
+		ps.println(String.format(Locale.US, "%-10s %-22s %-6s %8s %10s %10s %10s %10s", "Phase", "Diagram", "Format",
+				"Count", "p50 (ms)", "p90 (ms)", "p99 (ms)", "max (ms)"));
+		for (Map.Entry<Key, LatencyHistogram> ent : sorted().entrySet()) {
+			final Key key = ent.getKey();
+			final LatencyHistogram histogram = ent.getValue();
+			ps.println(String.format(Locale.US, "%-10s %-22s %-6s %8d %10.3f %10.3f %10.3f %10.3f", key.phase.label(),
+					key.diagram, key.format, histogram.getCount(), histogram.getValueAtPercentile(50) / 1000.0,
+					histogram.getValueAtPercentile(90) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+					histogram.getMax() / 1000.0));
+		}
+	}
+
+}
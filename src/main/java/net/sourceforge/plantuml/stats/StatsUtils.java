@@ -76,6 +76,7 @@ public class StatsUtils {
 	static boolean realTimeStats = false;
 
 	public static Stats getStats() {
+		StatsUtilsIncrement.drain();
 		return new StatsImpl(byTypeEver, byTypeCurrent, formatCounterCurrent, formatCounterEver, historicalData,
 				fullEver);
 	}
@@ -145,8 +146,10 @@ public class StatsUtils {
 		return key.substring(0, key.length() - ".p.saved".length());
 	}
 
-	private static void endingHook() {
+	static void endingHook() {
 		try {
+			if (StatsUtilsIncrement.drain())
+				StatsUtilsIncrement.prefs.flush();
 			final Stats stats = getStatsLazzy();
 			if (xmlStats) {
 				xmlOutput(stats);
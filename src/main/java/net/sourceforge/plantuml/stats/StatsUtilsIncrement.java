@@ -35,25 +35,32 @@
  */
 package net.sourceforge.plantuml.stats;
 
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.prefs.Preferences;
 
 import net.sourceforge.plantuml.FileFormat;
-import net.sourceforge.plantuml.activitydiagram3.ActivityDiagram3;
+import net.sourceforge.plantuml.StringUtils;
+import net.sourceforge.plantuml.api.NumberAnalyzed;
 import net.sourceforge.plantuml.core.Diagram;
-import net.sourceforge.plantuml.directdot.PSystemDot;
-import net.sourceforge.plantuml.eggs.PSystemWelcome;
-import net.sourceforge.plantuml.error.PSystemErrorUtils;
 import net.sourceforge.plantuml.log.Logme;
-import net.sourceforge.plantuml.math.PSystemMath;
-import net.sourceforge.plantuml.salt.PSystemSalt;
+import net.sourceforge.plantuml.security.SecurityUtils;
 import net.sourceforge.plantuml.stats.api.Stats;
 
 public class StatsUtilsIncrement {
 
-	final private static Preferences prefs = StatsUtils.prefs;
+	// Where the counters are saved, replaced by the tests
+	static volatile Preferences prefs = StatsUtils.prefs;
 
 	final private static ConcurrentMap<String, ParsedGenerated> byTypeEver = StatsUtils.byTypeEver;
 	final private static ConcurrentMap<String, ParsedGenerated> byTypeCurrent = StatsUtils.byTypeCurrent;
@@ -61,20 +68,33 @@ public class StatsUtilsIncrement {
 	final private static FormatCounter formatCounterCurrent = StatsUtils.formatCounterCurrent;
 	final private static FormatCounter formatCounterEver = StatsUtils.formatCounterEver;
 
+	private static final long DEFAULT_FLUSH_INTERVAL = 5000L;
+
+	// Samples are only queued on the rendering threads. They are applied to the
+	// counters, saved in the preferences and exported by a single background
+	// thread, so that rendering never waits for the disk.
+	private static final Queue<Sample> pending = new ConcurrentLinkedQueue<>();
+	private static final AtomicBoolean started = new AtomicBoolean();
+
+	static class Sample {
+		private final long duration;
+		private final Class<? extends Diagram> type;
+		// null for parsing
+		private final FileFormat fileFormat;
+
+		Sample(long duration, Class<? extends Diagram> type, FileFormat fileFormat) {
+			this.duration = duration;
+			this.type = type;
+			this.fileFormat = fileFormat;
+		}
+	}
+
 	public static void onceMoreParse(long duration, Class<? extends Diagram> type) {
 		if (StatsUtils.fullEver == null || StatsUtils.historicalData == null) {
 			return;
 		}
-		getByTypeCurrent(type).parsed().addValue(duration);
-		final ParsedGenerated byTypeEver = getByTypeEver(type);
-		byTypeEver.parsed().addValue(duration);
-		StatsUtils.fullEver.parsed().addValue(duration);
-		StatsUtils.historicalData.current().parsed().addValue(duration);
-
-		StatsUtils.historicalData.current().parsed().save(prefs);
-		StatsUtils.fullEver.parsed().save(prefs);
-		byTypeEver.parsed().save(prefs);
-		realTimeExport();
+		pending.add(new Sample(duration, type, null));
+		startFlusher();
 	}
 
 	public static void onceMoreGenerate(long duration, Class<? extends Diagram> type, FileFormat fileFormat) {
@@ -84,19 +104,93 @@ public class StatsUtilsIncrement {
 		if (formatCounterCurrent == null || formatCounterEver == null) {
 			return;
 		}
-		getByTypeCurrent(type).generated().addValue(duration);
-		final ParsedGenerated byTypeEver = getByTypeEver(type);
-		byTypeEver.generated().addValue(duration);
-		StatsUtils.fullEver.generated().addValue(duration);
-		StatsUtils.historicalData.current().generated().addValue(duration);
-		formatCounterCurrent.plusOne(fileFormat, duration);
-		formatCounterEver.plusOne(fileFormat, duration);
-
-		formatCounterEver.save(prefs, fileFormat);
-		StatsUtils.historicalData.current().generated().save(prefs);
-		StatsUtils.fullEver.generated().save(prefs);
-		byTypeEver.generated().save(prefs);
-		realTimeExport();
+		pending.add(new Sample(duration, type, fileFormat));
+		startFlusher();
+	}
+
+	static long getFlushInterval() {
+		final String value = SecurityUtils.getenv("PLANTUML_STATS_FLUSH_INTERVAL");
+		if (StringUtils.isNotEmpty(value) && value.matches("\\d+"))
+			return Math.max(1L, Long.parseLong(value));
+
+		return DEFAULT_FLUSH_INTERVAL;
+	}
+
+	private static void startFlusher() {
+		if (started.compareAndSet(false, true) == false)
+			return;
+
+		final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "plantuml-stats");
+			thread.setDaemon(true);
+			return thread;
+		});
+		final long interval = getFlushInterval();
+		executor.scheduleWithFixedDelay(StatsUtilsIncrement::flush, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Applies the pending samples, saves the modified counters and exports the
+	 * real time stats.
+	 */
+	static void flush() {
+		try {
+			if (drain())
+				realTimeExport();
+		} catch (Exception e) {
+			Logme.error(e);
+		}
+	}
+
+	/**
+	 * Applies the pending samples to the counters and saves each modified counter
+	 * once.
+	 *
+	 * @return <code>true</code> if some samples were applied
+	 */
+	static synchronized boolean drain() {
+		final Set<NumberAnalyzed> modified = new LinkedHashSet<>();
+		final Set<FileFormat> formats = EnumSet.noneOf(FileFormat.class);
+		Sample sample;
+		while ((sample = pending.poll()) != null)
+			if (sample.fileFormat == null)
+				applyParse(sample, modified);
+			else
+				applyGenerate(sample, modified, formats);
+
+		for (NumberAnalyzed counter : modified)
+			counter.save(prefs);
+		for (FileFormat format : formats)
+			formatCounterEver.save(prefs, format);
+
+		return modified.size() > 0;
+	}
+
+	private static void applyParse(Sample sample, Set<NumberAnalyzed> modified) {
+		getByTypeCurrent(sample.type).parsed().addValue(sample.duration);
+		final ParsedGenerated byTypeEver = getByTypeEver(sample.type);
+		byTypeEver.parsed().addValue(sample.duration);
+		StatsUtils.fullEver.parsed().addValue(sample.duration);
+		StatsUtils.historicalData.current().parsed().addValue(sample.duration);
+
+		modified.add(StatsUtils.historicalData.current().parsed());
+		modified.add(StatsUtils.fullEver.parsed());
+		modified.add(byTypeEver.parsed());
+	}
+
+	private static void applyGenerate(Sample sample, Set<NumberAnalyzed> modified, Set<FileFormat> formats) {
+		getByTypeCurrent(sample.type).generated().addValue(sample.duration);
+		final ParsedGenerated byTypeEver = getByTypeEver(sample.type);
+		byTypeEver.generated().addValue(sample.duration);
+		StatsUtils.fullEver.generated().addValue(sample.duration);
+		StatsUtils.historicalData.current().generated().addValue(sample.duration);
+		formatCounterCurrent.plusOne(sample.fileFormat, sample.duration);
+		formatCounterEver.plusOne(sample.fileFormat, sample.duration);
+
+		formats.add(sample.fileFormat);
+		modified.add(StatsUtils.historicalData.current().generated());
+		modified.add(StatsUtils.fullEver.generated());
+		modified.add(byTypeEver.generated());
 	}
 
 	private static ParsedGenerated getByTypeCurrent(Class<? extends Diagram> type) {
@@ -120,39 +214,7 @@ public class StatsUtilsIncrement {
 	}
 
 	private static String name(Class<? extends Diagram> type) {
-		if (PSystemErrorUtils.isDiagramError(type)) {
-			return "Error";
-		}
-		if (type == ActivityDiagram3.class) {
-			return "ActivityDiagramBeta";
-		}
-		if (type == PSystemSalt.class) {
-			return "Salt";
-		}
-		if (type.getSimpleName().equals("PSystemSudoku")) {
-			return "Sudoku";
-		}
-		if (type == PSystemDot.class) {
-			return "Dot";
-		}
-		if (type == PSystemWelcome.class) {
-			return "Welcome";
-		}
-		if (type.getSimpleName().equals("PSystemDitaa")) {
-			return "Ditaa";
-		}
-		if (type.getSimpleName().equals("PSystemJcckit")) {
-			return "Jcckit";
-		}
-		if (type == PSystemMath.class) {
-			return "Math";
-		}
-		final String name = type.getSimpleName();
-		if (name.endsWith("Diagram")) {
-			return name;
-		}
-		// return "Other " + name;
-		return "Other";
+		return PhaseMetrics.diagramName(type);
 	}
 
 	private static final Lock lockXml = new ReentrantLock();
@@ -143,11 +143,8 @@ public class StyleBuilder implements AutomaticCounter {
 			Log.info(() -> "Using style " + signature);
 
 		Style mergedStyle = null;
-		for (Style style : storage.getStyles()) {
+		for (Style style : storage.getMatchingStyles(signature)) {
 			final StyleSignatureBasic key = style.getSignature();
-			if (key.matchAll(signature) == false)
-				continue;
-
 			Style tmp = style;
 			if (key.isStarred())
 				tmp = tmp.deltaPriority(deltaPriority);
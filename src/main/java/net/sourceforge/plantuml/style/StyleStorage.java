@@ -36,111 +36,262 @@
 package net.sourceforge.plantuml.style;
 
 import java.util.AbstractCollection;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.NoSuchElementException;
 
+/**
+ * Styles of a {@link StyleBuilder}.
+ * <p>
+ * A <code>skinparam</code> line or a diagram creates a new
+ * <code>StyleBuilder</code> from an existing one, so copies must be cheap.
+ * Styles are stored in immutable layers shared between storages: a copy only
+ * freezes the pending changes of the original into a new layer, and then both
+ * storages add their own changes on top of it. When there are too many layers,
+ * they are flattened into a single one.
+ * <p>
+ * Every layer indexes its styles by one of their {@link SName}, so that
+ * {@link #computeMergedStyle} only checks styles that may match.
+ * <p>
+ * Styles keep the order in which they were first added, styles with
+ * stereotypes coming first, as merging depends on it.
+ */
 public class StyleStorage {
 	// ::remove file when __HAXE__
 
-	private final Map<StyleSignatureBasic, Style> legacy = new LinkedHashMap<StyleSignatureBasic, Style>();
+	private static final int MAX_DEPTH = 16;
 
-	private final Map<StyleKey, Style> plain = new LinkedHashMap<StyleKey, Style>();
+	private volatile Layer frozen;
+	private volatile Map<Object, Entry> pending = new LinkedHashMap<>();
+	private int nextOrder;
 
 	public void printMe() {
-		for (Entry<StyleSignatureBasic, Style> ent : legacy.entrySet())
-			ent.getValue().printMe();
+		for (Style style : getStyles())
+			if (style.getSignature().getStereotypes().size() > 0)
+				style.printMe();
 
 	}
 
 	public void putAll(StyleStorage other) {
-		legacy.putAll(other.legacy);
-		plain.putAll(other.plain);
+		if (frozen == null && pending.isEmpty()) {
+			synchronized (other) {
+				other.freeze();
+				this.frozen = other.frozen;
+				this.nextOrder = other.nextOrder;
+			}
+			return;
+		}
+		for (Style style : other.getStyles())
+			put(style);
 
 	}
 
-	public Style get(StyleSignatureBasic signature) {
-//		if (signature.getStereotypes().size() > 1)
-//			System.err.println("get " + signature);
+	// Moves pending changes to a new shared layer. The new layer is published before
+	// the pending map is cleared, so that concurrent readers always find the styles.
+	private void freeze() {
+		if (pending.isEmpty())
+			return;
 
+		if (frozen != null && frozen.depth >= MAX_DEPTH)
+			frozen = Layer.flatten(frozen, pending);
+		else
+			frozen = new Layer(frozen, pending);
+
+		pending = new LinkedHashMap<>();
+	}
+
+	private static Object keyOf(StyleSignatureBasic signature) {
 		if (signature.getStereotypes().size() == 0)
-			return plain.get(signature.getKey());
+			return signature.getKey();
 
-		return legacy.get(signature);
+		return signature;
 	}
 
-	public void put(Style modifiedStyle) {
-//		if (signature.getStereotypes().size() > 1)
-//			System.err.println("put " + signature);
-		
-		final StyleSignatureBasic signature = modifiedStyle.getSignature();
+	private Entry getEntry(Object key) {
+		final Entry result = pending.get(key);
+		if (result != null)
+			return result;
 
-		if (signature.getStereotypes().size() == 0)
-			plain.put(signature.getKey(), modifiedStyle);
-		else
-			legacy.put(signature, modifiedStyle);
+		for (Layer layer = frozen; layer != null; layer = layer.parent) {
+			final Entry entry = layer.entries.get(key);
+			if (entry != null)
+				return entry;
+		}
+		return null;
+	}
 
+	public Style get(StyleSignatureBasic signature) {
+		final Entry entry = getEntry(keyOf(signature));
+		if (entry == null)
+			return null;
+
+		return entry.style;
+	}
+
+	public void put(Style modifiedStyle) {
+		final Object key = keyOf(modifiedStyle.getSignature());
+		final Entry previous = getEntry(key);
+		final int order = previous == null ? nextOrder++ : previous.order;
+		pending.put(key, new Entry(key, modifiedStyle, order));
 	}
 
 	public Collection<Style> getStyles() {
+		final Map<Object, Entry> all = new HashMap<>();
+		final List<Layer> layers = new ArrayList<>();
+		for (Layer layer = frozen; layer != null; layer = layer.parent)
+			layers.add(0, layer);
+
+		for (Layer layer : layers)
+			all.putAll(layer.entries);
+
+		all.putAll(pending);
+		final List<Entry> entries = new ArrayList<>(all.values());
+		Collections.sort(entries, Entry.ORDER);
+
 		return new AbstractCollection<Style>() {
 			@Override
 			public Iterator<Style> iterator() {
-				return new ConcatIterator<>(legacy.values().iterator(), plain.values().iterator());
+				final Iterator<Entry> it = entries.iterator();
+				return new Iterator<Style>() {
+					@Override
+					public boolean hasNext() {
+						return it.hasNext();
+					}
+
+					@Override
+					public Style next() {
+						return it.next().style;
+					}
+				};
 			}
 
 			@Override
 			public int size() {
-				return legacy.size() + plain.size();
+				return entries.size();
 			}
 		};
 	}
-	
+
+	/**
+	 * Styles whose signature matches <code>signature</code>, in merge order.
+	 */
+	public List<Style> getMatchingStyles(StyleSignatureBasic signature) {
+		synchronized (this) {
+			freeze();
+		}
+		final Map<Entry, Boolean> candidates = new IdentityHashMap<>();
+		for (Layer layer = frozen; layer != null; layer = layer.parent)
+			addCandidates(candidates, layer.index, signature);
+
+		final List<Entry> entries = new ArrayList<>();
+		for (Entry entry : candidates.keySet())
+			// The entry may be hidden by a newer version of the same style
+			if (getEntry(entry.key) == entry && entry.style.getSignature().matchAll(signature))
+				entries.add(entry);
+
+		Collections.sort(entries, Entry.ORDER);
+		final List<Style> result = new ArrayList<>(entries.size());
+		for (Entry entry : entries)
+			result.add(entry.style);
+
+		return result;
+	}
+
+	private static void addCandidates(Map<Entry, Boolean> candidates, Map<SName, List<Entry>> index,
+			StyleSignatureBasic signature) {
+		addAll(candidates, index.get(null));
+		for (SName name : signature.getKey().snames)
+			addAll(candidates, index.get(name));
+	}
+
+	private static void addAll(Map<Entry, Boolean> candidates, List<Entry> entries) {
+		if (entries != null)
+			for (Entry entry : entries)
+				candidates.put(entry, Boolean.TRUE);
+	}
+
 	public Style computeMergedStyle(StyleSignatureBasic signature) {
 		Style mergedStyle = null;
-		for (Style style : getStyles()) {
-			final StyleSignatureBasic key = style.getSignature();
-			if (key.matchAll(signature) == false)
-				continue;
-
+		for (Style style : getMatchingStyles(signature))
 			if (mergedStyle == null)
 				mergedStyle = style;
 			else
 				mergedStyle = mergedStyle.mergeWith(style, MergeStrategy.OVERWRITE_EXISTING_VALUE);
 
-		}
 		return mergedStyle;
 	}
 
+	static class Entry {
 
+		// Styles with stereotypes first, then insertion order
+		static final Comparator<Entry> ORDER = new Comparator<Entry>() {
+			@Override
+			public int compare(Entry e1, Entry e2) {
+				final boolean plain1 = e1.key instanceof StyleKey;
+				final boolean plain2 = e2.key instanceof StyleKey;
+				if (plain1 != plain2)
+					return plain1 ? 1 : -1;
 
-}
+				return Integer.compare(e1.order, e2.order);
+			}
+		};
 
-class ConcatIterator<T> implements Iterator<T> {
-	private final Iterator<T> first;
-	private final Iterator<T> second;
+		private final Object key;
+		private final Style style;
+		private final int order;
 
-	public ConcatIterator(Iterator<T> first, Iterator<T> second) {
-		this.first = first;
-		this.second = second;
+		Entry(Object key, Style style, int order) {
+			this.key = key;
+			this.style = style;
+			this.order = order;
+		}
 	}
 
-	@Override
-	public boolean hasNext() {
-		return first.hasNext() || second.hasNext();
-	}
+	static class Layer {
 
-	@Override
-	public T next() {
-		if (first.hasNext())
-			return first.next();
-		else if (second.hasNext())
-			return second.next();
-		else
-			throw new NoSuchElementException();
+		private final Layer parent;
+		private final int depth;
+		private final Map<Object, Entry> entries;
+		private final Map<SName, List<Entry>> index;
+
+		Layer(Layer parent, Map<Object, Entry> entries) {
+			this.parent = parent;
+			this.depth = parent == null ? 1 : parent.depth + 1;
+			this.entries = entries;
+			this.index = index(entries.values());
+		}
+
+		static Layer flatten(Layer top, Map<Object, Entry> pending) {
+			final List<Layer> layers = new ArrayList<>();
+			for (Layer layer = top; layer != null; layer = layer.parent)
+				layers.add(0, layer);
 
+			final Map<Object, Entry> all = new LinkedHashMap<>();
+			for (Layer layer : layers)
+				all.putAll(layer.entries);
+
+			all.putAll(pending);
+			return new Layer(null, all);
+		}
+
+		// Styles are indexed by the first of their names, as a style can only match
+		// signatures having all its names. Styles without name are indexed by null.
+		static Map<SName, List<Entry>> index(Collection<Entry> entries) {
+			final Map<SName, List<Entry>> result = new HashMap<>();
+			for (Entry entry : entries) {
+				final Iterator<SName> names = entry.style.getSignature().getKey().snames.iterator();
+				final SName first = names.hasNext() ? names.next() : null;
+				result.computeIfAbsent(first, k -> new ArrayList<>()).add(entry);
+			}
+			return result;
+		}
 	}
+
 }
@@ -55,6 +55,8 @@ import net.sourceforge.plantuml.klimt.font.StringBounder;
 import net.sourceforge.plantuml.klimt.shape.TextBlock;
 import net.sourceforge.plantuml.log.Logme;
 import net.sourceforge.plantuml.skin.UmlDiagramType;
+import net.sourceforge.plantuml.stats.Phase;
+import net.sourceforge.plantuml.stats.PhaseMetrics;
 
 public final class CucaDiagramFileMakerSvek extends CucaDiagramFileMaker {
 	// ::remove file when __CORE__
@@ -82,6 +84,7 @@ public final class CucaDiagramFileMakerSvek extends CucaDiagramFileMaker {
 	private ImageData createFileInternal(OutputStream os, List<String> dotStrings, FileFormatOption fileFormatOption)
 			throws IOException, InterruptedException {
 
+		final long start = System.nanoTime();
 		final StringBounder stringBounder = fileFormatOption.getDefaultStringBounder(diagram.getSkinParam());
 
 		if (diagram.getUmlDiagramType() == UmlDiagramType.ACTIVITY)
@@ -133,6 +136,7 @@ public final class CucaDiagramFileMakerSvek extends CucaDiagramFileMaker {
 		// Sorry about this hack. There is a side effect in
 		// SvekResult::calculateDimension()
 		result.calculateDimension(stringBounder); // Ensure text near the margins is not cut off
+		PhaseMetrics.getInstance().record(Phase.LAYOUT, start);
 
 		return diagram.createImageBuilder(fileFormatOption) //
 				.annotations(false) // backwards compatibility (AnnotatedWorker is used above)
@@ -48,6 +48,7 @@ import java.util.regex.Pattern;
 import net.sourceforge.plantuml.StringUtils;
 import net.sourceforge.plantuml.dot.DotSplines;
 import net.sourceforge.plantuml.dot.Graphviz;
+import net.sourceforge.plantuml.dot.GraphvizLayoutCache;
 import net.sourceforge.plantuml.dot.GraphvizRuntimeEnvironment;
 import net.sourceforge.plantuml.dot.GraphvizVersion;
 import net.sourceforge.plantuml.dot.ProcessState;
@@ -286,26 +287,33 @@ public final class DotStringFactory implements Moveable {
 		}
 
 		Graphviz graphviz = GraphvizRuntimeEnvironment.getInstance().create(skinParam, dotString, "svg");
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		try {
-			final ProcessState state = graphviz.createFile3(baos);
-			baos.close();
-			if (state.differs(ProcessState.TERMINATED_OK()))
-				throw new IllegalStateException("Timeout4 " + state, state.getCause());
-
-		} catch (GraphvizJsRuntimeException e) {
-			System.err.println("GraphvizJsRuntimeException");
-			graphvizVersion = GraphvizJs.getGraphvizVersion(true);
-			dotString = createDotString(stringBounder, dotMode, dotOptions);
-			graphviz = GraphvizRuntimeEnvironment.getInstance().create(skinParam, dotString, "svg");
-			baos = new ByteArrayOutputStream();
-			final ProcessState state = graphviz.createFile3(baos);
-			baos.close();
-			if (state.differs(ProcessState.TERMINATED_OK()))
-				throw new IllegalStateException("Timeout4 " + state, state.getCause());
+		final GraphvizLayoutCache cache = GraphvizLayoutCache.getInstance();
+		String key = cache.getKey(graphviz, dotString);
+		byte[] result = cache.get(key);
+		if (result == null) {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			try {
+				final ProcessState state = graphviz.createFile3(baos);
+				baos.close();
+				if (state.differs(ProcessState.TERMINATED_OK()))
+					throw new IllegalStateException("Timeout4 " + state, state.getCause());
+
+			} catch (GraphvizJsRuntimeException e) {
+				System.err.println("GraphvizJsRuntimeException");
+				graphvizVersion = GraphvizJs.getGraphvizVersion(true);
+				dotString = createDotString(stringBounder, dotMode, dotOptions);
+				graphviz = GraphvizRuntimeEnvironment.getInstance().create(skinParam, dotString, "svg");
+				key = cache.getKey(graphviz, dotString);
+				baos = new ByteArrayOutputStream();
+				final ProcessState state = graphviz.createFile3(baos);
+				baos.close();
+				if (state.differs(ProcessState.TERMINATED_OK()))
+					throw new IllegalStateException("Timeout4 " + state, state.getCause());
 
+			}
+			result = baos.toByteArray();
+			cache.put(key, result);
 		}
-		final byte[] result = baos.toByteArray();
 		final String s = new String(result, UTF_8);
 
 		if (basefile != null) {
@@ -345,7 +353,7 @@ public final class DotStringFactory implements Moveable {
 		final Point2DFunction move = new YDelta(fullHeight);
 		final SvgResult svgResult = new SvgResult(svg, move);
 		for (SvekNode node : getBibliotekon().allNodes()) {
-			int idx = svg.indexOf("<title>" + node.getUid() + "</title>");
+			int idx = svgResult.indexOfTitle(node.getUid());
 			if (node.getType() == ShapeType.RECTANGLE || node.getType() == ShapeType.RECTANGLE_HTML_FOR_PORTS
 					|| node.getType() == ShapeType.RECTANGLE_WITH_CIRCLE_INSIDE || node.getType() == ShapeType.FOLDER
 					|| node.getType() == ShapeType.DIAMOND || node.getType() == ShapeType.RECTANGLE_PORT) {
@@ -391,7 +399,7 @@ public final class DotStringFactory implements Moveable {
 			if (cluster.getGroup().isPacked())
 				continue;
 
-			int idx = getClusterIndex(svg, cluster.getColor());
+			int idx = getClusterIndex(svgResult, cluster.getColor());
 			final int starting = idx;
 			final List<XPoint2D> points = svgResult.substring(starting).extractList(SvgResult.POINTS_EQUALS);
 			final XPoint2D min = SvekUtils.getMinXY(points);
@@ -401,19 +409,19 @@ public final class DotStringFactory implements Moveable {
 			if (cluster.getTitleAndAttributeWidth() == 0 || cluster.getTitleAndAttributeHeight() == 0)
 				continue;
 
-			idx = getClusterIndex(svg, cluster.getTitleColor());
+			idx = getClusterIndex(svgResult, cluster.getTitleColor());
 			final List<XPoint2D> pointsTitle = svgResult.substring(idx).extractList(SvgResult.POINTS_EQUALS);
 			cluster.setTitlePosition(SvekUtils.getMinXY(pointsTitle));
 
 			if (root.diagram.getPragma().isTrue(PragmaKey.KERMOR)) {
 				if (cluster.getGroup().getNotes(Position.TOP).size() > 0) {
-					final List<XPoint2D> noteUp = svgResult.substring(getClusterIndex(svg, cluster.getColorNoteTop()))
+					final List<XPoint2D> noteUp = svgResult.substring(getClusterIndex(svgResult, cluster.getColorNoteTop()))
 							.extractList(SvgResult.POINTS_EQUALS);
 					cluster.setNoteTopPosition(SvekUtils.getMinXY(noteUp));
 				}
 				if (cluster.getGroup().getNotes(Position.BOTTOM).size() > 0) {
 					final List<XPoint2D> noteBottom = svgResult
-							.substring(getClusterIndex(svg, cluster.getColorNoteBottom()))
+							.substring(getClusterIndex(svgResult, cluster.getColorNoteBottom()))
 							.extractList(SvgResult.POINTS_EQUALS);
 					cluster.setNoteBottomPosition(SvekUtils.getMinXY(noteBottom));
 				}
@@ -428,16 +436,11 @@ public final class DotStringFactory implements Moveable {
 
 	}
 
-	private int getClusterIndex(final String svg, int colorInt) {
-		final String colorString = StringUtils.goLowerCase(StringUtils.sharp000000(colorInt));
-		final String keyTitle1 = "=\"" + colorString + "\"";
-		int idx = svg.indexOf(keyTitle1);
-		if (idx == -1) {
-			final String keyTitle2 = "stroke:" + colorString + ";";
-			idx = svg.indexOf(keyTitle2);
-		}
+	private int getClusterIndex(SvgResult svgResult, int colorInt) {
+		final int idx = svgResult.getIndexFromAnyColor(colorInt);
 		if (idx == -1)
-			throw new IllegalStateException("Cannot find color " + colorString);
+			throw new IllegalStateException(
+					"Cannot find color " + StringUtils.goLowerCase(StringUtils.sharp000000(colorInt)));
 
 		return idx;
 	}
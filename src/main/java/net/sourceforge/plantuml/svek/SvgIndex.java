@@ -0,0 +1,166 @@
+/* ========================================================================
+ * PlantUML : a free UML diagram generator
+ * ========================================================================
+ *
+ * (C) Copyright 2009-2024, Arnaud Roques
+ *
+ * Project Info:  https://plantuml.com
+ * 
+ * If you like this project or if you find it useful, you can support us at:
+ * 
+ * https://plantuml.com/patreon (only 1$ per month!)
+ * https://plantuml.com/paypal
+ * 
+ * This file is part of PlantUML.
+ *
+ * PlantUML is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PlantUML distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301,
+ * USA.
+ *
+ *
+ * Original Author:  Arnaud Roques
+ *
+ * 
+ */
+package net.sourceforge.plantuml.svek;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the SVG generated by GraphViz, built in a single pass.
+ * <p>
+ * Svek retrieves the geometry of each node, cluster and edge by looking for
+ * its title or for its unique color in the SVG. Scanning the whole text for
+ * every element was quadratic: this index records the positions of every
+ * title and of every color used in a <code>stroke</code> or <code>fill</code>
+ * attribute, so that these lookups are done in constant time. Positions are
+ * exactly the ones <code>String.indexOf()</code> would have returned.
+ */
+final class SvgIndex {
+
+	enum ColorKind {
+		/** <code>="#rrggbb"</code> whatever the attribute */
+		ATTRIBUTE(2),
+		/** <code>stroke="#rrggbb"</code> */
+		STROKE_ATTRIBUTE(8),
+		/** <code>fill="#rrggbb"</code> */
+		FILL_ATTRIBUTE(6),
+		/** <code>stroke:#rrggbb;</code> */
+		STROKE_STYLE(7),
+		/** <code>;stroke:#rrggbb;</code> */
+		STROKE_STYLE_SEMICOLON(8);
+
+		private final int prefixLength;
+
+		private ColorKind(int prefixLength) {
+			this.prefixLength = prefixLength;
+		}
+	}
+
+	private static final String TITLE_START = "<title>";
+	private static final String TITLE_END = "</title>";
+
+	private final Map<String, Integer> titles = new HashMap<>();
+	private final List<Map<String, List<Integer>>> colors = new ArrayList<>();
+
+	SvgIndex(String svg) {
+		for (int i = 0; i < ColorKind.values().length; i++)
+			colors.add(new HashMap<String, List<Integer>>());
+
+		for (int i = svg.indexOf('#'); i != -1; i = svg.indexOf('#', i + 1))
+			indexColor(svg, i);
+
+		for (int i = svg.indexOf(TITLE_START); i != -1; i = svg.indexOf(TITLE_START, i + 1)) {
+			final int end = svg.indexOf(TITLE_END, i + TITLE_START.length());
+			if (end == -1)
+				break;
+			final String title = svg.substring(i + TITLE_START.length(), end);
+			if (titles.containsKey(title) == false)
+				titles.put(title, i);
+		}
+	}
+
+	private void indexColor(String svg, int sharp) {
+		if (sharp + 7 >= svg.length())
+			return;
+
+		for (int i = sharp + 1; i <= sharp + 6; i++)
+			if (isLowerHexDigit(svg.charAt(i)) == false)
+				return;
+
+		final char after = svg.charAt(sharp + 7);
+		final String color = svg.substring(sharp, sharp + 7);
+		if (after == '"' && svg.startsWith("=\"", sharp - 2)) {
+			add(ColorKind.ATTRIBUTE, color, sharp);
+			if (svg.startsWith("stroke=\"", sharp - 8))
+				add(ColorKind.STROKE_ATTRIBUTE, color, sharp);
+			else if (svg.startsWith("fill=\"", sharp - 6))
+				add(ColorKind.FILL_ATTRIBUTE, color, sharp);
+		} else if (after == ';' && svg.startsWith("stroke:", sharp - 7)) {
+			add(ColorKind.STROKE_STYLE, color, sharp);
+			if (svg.startsWith(";", sharp - 8))
+				add(ColorKind.STROKE_STYLE_SEMICOLON, color, sharp);
+		}
+	}
+
+	private static boolean isLowerHexDigit(char c) {
+		return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f');
+	}
+
+	private void add(ColorKind kind, String color, int sharp) {
+		final Map<String, List<Integer>> map = colors.get(kind.ordinal());
+		List<Integer> positions = map.get(color);
+		if (positions == null) {
+			positions = new ArrayList<>(2);
+			map.put(color, positions);
+		}
+		positions.add(sharp - kind.prefixLength);
+	}
+
+	/**
+	 * Same as <code>svg.indexOf("&lt;title&gt;" + title + "&lt;/title&gt;")</code>.
+	 */
+	int indexOfTitle(String title) {
+		final Integer result = titles.get(title);
+		return result == null ? -1 : result;
+	}
+
+	/**
+	 * Same as <code>svg.indexOf(prefix + color + end, from)</code> where
+	 * <code>prefix</code> and <code>end</code> depend on the kind.
+	 *
+	 * @param color lowercase color, as <code>#rrggbb</code>
+	 */
+	int indexOfColor(ColorKind kind, String color, int from) {
+		final List<Integer> positions = colors.get(kind.ordinal()).get(color);
+		if (positions == null)
+			return -1;
+
+		// Positions are sorted: most of the time, the first one is the answer
+		int low = 0;
+		int high = positions.size();
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (positions.get(mid) < from)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low == positions.size() ? -1 : positions.get(low);
+	}
+
+}
@@ -53,10 +53,31 @@ public class SvgResult {
 
 	private final String svg;
 	private final Point2DFunction function;
+	// This result is the tail of svg starting at offset: tails share the text
+	// and the index of the full SVG instead of copying them
+	private final int offset;
+	private final SvgResult root;
+	private SvgIndex index;
 
 	public SvgResult(String svg, Point2DFunction function) {
 		this.svg = svg;
 		this.function = function;
+		this.offset = 0;
+		this.root = this;
+	}
+
+	private SvgResult(SvgResult root, int offset) {
+		this.svg = root.svg;
+		this.function = root.function;
+		this.offset = offset;
+		this.root = root;
+	}
+
+	private SvgIndex getIndex() {
+		if (root.index == null)
+			root.index = new SvgIndex(svg);
+
+		return root.index;
 	}
 
 	public PointListIterator getPointsWithThisColor(int lineColor) {
@@ -76,18 +97,16 @@ public class SvgResult {
 	}
 
 	public int getIndexFromColor(int color) {
-		String s = "stroke=\"" + StringUtils.goLowerCase(StringUtils.sharp000000(color)) + "\"";
-		int idx = svg.indexOf(s);
+		final String s = StringUtils.goLowerCase(StringUtils.sharp000000(color));
+		int idx = indexOfColor(SvgIndex.ColorKind.STROKE_ATTRIBUTE, s);
 		if (idx != -1)
 			return idx;
 
-		s = ";stroke:" + StringUtils.goLowerCase(StringUtils.sharp000000(color)) + ";";
-		idx = svg.indexOf(s);
+		idx = indexOfColor(SvgIndex.ColorKind.STROKE_STYLE_SEMICOLON, s);
 		if (idx != -1)
 			return idx;
 
-		s = "fill=\"" + StringUtils.goLowerCase(StringUtils.sharp000000(color)) + "\"";
-		idx = svg.indexOf(s);
+		idx = indexOfColor(SvgIndex.ColorKind.FILL_ATTRIBUTE, s);
 		if (idx != -1)
 			return idx;
 
@@ -97,9 +116,35 @@ public class SvgResult {
 
 	}
 
+	/**
+	 * Position of the first <code>="#rrggbb"</code> attribute, or else of the
+	 * first <code>stroke:#rrggbb;</code> style, with this color.
+	 */
+	public int getIndexFromAnyColor(int color) {
+		final String s = StringUtils.goLowerCase(StringUtils.sharp000000(color));
+		final int idx = indexOfColor(SvgIndex.ColorKind.ATTRIBUTE, s);
+		if (idx != -1)
+			return idx;
+
+		return indexOfColor(SvgIndex.ColorKind.STROKE_STYLE, s);
+	}
+
+	private int indexOfColor(SvgIndex.ColorKind kind, String color) {
+		final int idx = getIndex().indexOfColor(kind, color, offset);
+		return idx == -1 ? -1 : idx - offset;
+	}
+
+	public int indexOfTitle(String title) {
+		int idx = getIndex().indexOfTitle(title);
+		if (idx != -1 && idx < offset)
+			idx = svg.indexOf("<title>" + title + "</title>", offset);
+
+		return idx == -1 ? -1 : idx - offset;
+	}
+
 	public List<XPoint2D> getPoints(String separator) {
 		try {
-			final StringTokenizer st = new StringTokenizer(svg, separator);
+			final StringTokenizer st = new StringTokenizer(getSvg(), separator);
 			final List<XPoint2D> result = new ArrayList<XPoint2D>();
 			while (st.hasMoreTokens())
 				result.add(getFirstPoint(st.nextToken()));
@@ -111,7 +156,7 @@ public class SvgResult {
 	}
 
 	public XPoint2D getNextPoint() {
-		return getFirstPoint(svg);
+		return getFirstPoint(getSvg());
 	}
 
 	private XPoint2D getFirstPoint(final String tmp) {
@@ -122,19 +167,23 @@ public class SvgResult {
 	}
 
 	public int indexOf(String s, int pos) {
-		return svg.indexOf(s, pos);
+		final int idx = svg.indexOf(s, offset + Math.max(pos, 0));
+		return idx == -1 ? -1 : idx - offset;
 	}
 
 	public SvgResult substring(int pos) {
-		return new SvgResult(svg.substring(pos), function);
+		if (pos < 0 || offset + pos > svg.length())
+			throw new StringIndexOutOfBoundsException(pos);
+
+		return new SvgResult(root, offset + pos);
 	}
 
 	public SvgResult substring(int start, int end) {
-		return new SvgResult(svg.substring(start, end), function);
+		return new SvgResult(svg.substring(offset + start, offset + end), function);
 	}
 
 	public final String getSvg() {
-		return svg;
+		return offset == 0 ? svg : svg.substring(offset);
 	}
 
 	public DotPath toDotPath() {
@@ -169,7 +218,7 @@ public class SvgResult {
 	}
 
 	public boolean isPathConsistent() {
-		if (this.getSvg().startsWith("M") == false)
+		if (svg.startsWith("M", offset) == false)
 			return false;
 
 		return true;
@@ -41,6 +41,7 @@ import net.sourceforge.plantuml.json.Json;
 import net.sourceforge.plantuml.json.JsonValue;
 import net.sourceforge.plantuml.text.StringLocated;
 import net.sourceforge.plantuml.text.TLineType;
+import net.sourceforge.plantuml.tim.expression.CompiledExpression;
 import net.sourceforge.plantuml.tim.expression.TValue;
 import net.sourceforge.plantuml.tim.expression.Token;
 import net.sourceforge.plantuml.tim.expression.TokenStack;
@@ -85,8 +86,24 @@ public abstract class Eater {
 			// System.err.println("json=" + json);
 			return TValue.fromJson(json);
 		}
-		final TokenStack tokenStack = eatTokenStack();
-		return tokenStack.getResult(getStringLocated(), context, memory);
+		return eatCompiledExpression(false).evaluate(getStringLocated(), context, memory);
+	}
+
+	final protected CompiledExpression eatCompiledExpression(boolean stopAtColon) throws EaterException {
+		final String source = stringLocated.getString().substring(i);
+		CompiledExpression result = CompiledExpression.getCached(source, stopAtColon);
+		if (result != null) {
+			i += result.getLength();
+			return result;
+		}
+		final int start = i;
+		final TokenStack tokenStack = stopAtColon ? new TokenStack() : eatTokenStack();
+		if (stopAtColon)
+			addIntoTokenStack(tokenStack, true);
+
+		result = CompiledExpression.compile(tokenStack, i - start, stringLocated);
+		CompiledExpression.putCached(source, stopAtColon, result);
+		return result;
 	}
 
 	final protected TokenStack eatTokenStack() throws EaterException {
@@ -99,9 +116,7 @@ public abstract class Eater {
 	}
 
 	final protected TValue eatExpressionStopAtColon(TContext context, TMemory memory) throws EaterException {
-		final TokenStack tokenStack = new TokenStack();
-		addIntoTokenStack(tokenStack, true);
-		return tokenStack.getResult(getStringLocated(), context, memory);
+		return eatCompiledExpression(true).evaluate(getStringLocated(), context, memory);
 	}
 
 	final protected void addIntoTokenStack(TokenStack tokenStack, boolean stopAtColon) throws EaterException {
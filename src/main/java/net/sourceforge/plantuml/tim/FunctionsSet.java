@@ -34,39 +34,95 @@
  */
 package net.sourceforge.plantuml.tim;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import net.sourceforge.plantuml.text.StringLocated;
+import net.sourceforge.plantuml.utils.SignatureUtils;
 
 public class FunctionsSet {
 
 	private final Map<TFunctionSignature, TFunction> functions = new HashMap<TFunctionSignature, TFunction>();
 	private final Set<TFunctionSignature> functionsFinal = new HashSet<>();
+	// All overloads of a function, indexed by function name and sorted by number
+	// of arguments
+	private final Map<String, Map<TFunctionSignature, TFunction>> functionsByName = new HashMap<>();
 	private final Trie functions3 = new TrieImpl();
 	private TFunctionImpl pendingFunction;
+	private int nonReproducibleCalls;
+	// Functions registered since the last call to digest()
+	private final List<TFunction> undigested = new ArrayList<>();
+	private String digest = "";
+
+	// Builtin functions whose result does not only depend on their arguments and on
+	// the preprocessor state
+	private static final Set<String> NON_REPRODUCIBLE = new HashSet<>(Arrays.asList("%date", "%now", "%random",
+			"%getenv", "%filedate", "%filename", "%filename_no_extension", "%dirpath", "%file_exists", "%load_json",
+			"%get_current_theme", "%xargs"));
+
+	// Two overloads of the same function never have the same number of arguments
+	private static final Comparator<TFunctionSignature> BY_NB_ARG = Comparator
+			.comparingInt(TFunctionSignature::getNbArg);
 
 	public TFunction getFunctionSmart(TFunctionSignature searched) {
+		if (NON_REPRODUCIBLE.contains(searched.getFunctionName()))
+			nonReproducibleCalls++;
+
 		final TFunction func = this.functions.get(searched);
 		if (func != null)
 			return func;
 
-		for (TFunction candidate : this.functions.values()) {
-			if (candidate.getSignature().sameFunctionNameAs(searched) == false)
-				continue;
-
+		// When several overloads can cover the call, the one with the fewest
+		// arguments wins
+		for (TFunction candidate : overloads(searched.getFunctionName()))
 			if (candidate.canCover(searched.getNbArg(), searched.getNamedArguments()))
 				return candidate;
 
-		}
 		return null;
 	}
 
+	private Collection<TFunction> overloads(String functionName) {
+		final Map<TFunctionSignature, TFunction> result = functionsByName.get(functionName);
+		if (result == null)
+			return Collections.emptyList();
+
+		return result.values();
+	}
+
+	public boolean doesFunctionExist(String functionName) {
+		return functionsByName.containsKey(functionName);
+	}
+
+	public boolean isLegacyDefine(String functionName) {
+		for (TFunction function : overloads(functionName))
+			if (function.getFunctionType().isLegacy())
+				return true;
+
+		return false;
+	}
+
+	public boolean isUnquoted(String functionName) {
+		for (TFunction function : overloads(functionName))
+			if (function.isUnquoted())
+				return true;
+
+		return false;
+	}
+
 	public int size() {
-		return functions().size();
+		return functions.size();
 	}
 
 	public Map<TFunctionSignature, TFunction> functions() {
@@ -77,6 +133,50 @@ public class FunctionsSet {
 		return functions3.getLonguestMatchStartingIn(s, pos);
 	}
 
+	int getNonReproducibleCalls() {
+		return nonReproducibleCalls;
+	}
+
+	Set<TFunctionSignature> finalSignatures() {
+		return Collections.unmodifiableSet(functionsFinal);
+	}
+
+	/**
+	 * Digest of all the functions registered so far, in their order of
+	 * registration. Each function is hashed once, the first time the digest is
+	 * requested after its registration, so that the {@link IncludeCache} key
+	 * does not cost the size of all the functions already defined.
+	 */
+	String digest() {
+		if (undigested.size() == 0)
+			return digest;
+
+		final MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		for (TFunction function : undigested) {
+			md.update(digest.getBytes(StandardCharsets.UTF_8));
+			md.update((function.getSignature() + "\n" + (function instanceof TFunctionImpl
+					? ((TFunctionImpl) function).getDefinition() : function.getClass().getName()))
+					.getBytes(StandardCharsets.UTF_8));
+			digest = SignatureUtils.toHexString(md.digest());
+		}
+		undigested.clear();
+		return digest;
+	}
+
+	void restore(Collection<TFunction> functions, Collection<TFunctionSignature> finalSignatures, String digest) {
+		for (TFunction function : functions)
+			register(function);
+
+		this.functionsFinal.addAll(finalSignatures);
+		this.undigested.clear();
+		this.digest = digest;
+	}
+
 	public TFunctionImpl pendingFunction() {
 		return pendingFunction;
 	}
@@ -85,8 +185,16 @@ public class FunctionsSet {
 		if (func.getFunctionType() == TFunctionType.LEGACY_DEFINELONG)
 			((TFunctionImpl) func).finalizeEnddefinelong();
 
-		this.functions.put(func.getSignature(), func);
-		this.functions3.add(func.getSignature().getFunctionName() + "(");
+		register(func);
+	}
+
+	private void register(TFunction func) {
+		final TFunctionSignature signature = func.getSignature();
+		this.functions.put(signature, func);
+		this.functionsByName.computeIfAbsent(signature.getFunctionName(), k -> new TreeMap<>(BY_NB_ARG))
+				.put(signature, func);
+		this.functions3.add(signature.getFunctionName() + "(");
+		this.undigested.add(func);
 	}
 
 	public void executeEndfunction() {
@@ -102,8 +210,7 @@ public class FunctionsSet {
 		final EaterLegacyDefine legacyDefine = new EaterLegacyDefine(s);
 		legacyDefine.analyze(context, memory);
 		final TFunction function = legacyDefine.getFunction();
-		this.functions.put(function.getSignature(), function);
-		this.functions3.add(function.getSignature().getFunctionName() + "(");
+		register(function);
 	}
 
 	public void executeLegacyDefineLong(TContext context, TMemory memory, StringLocated s)
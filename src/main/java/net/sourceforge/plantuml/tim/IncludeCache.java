@@ -0,0 +1,380 @@
+/* ========================================================================
+ * PlantUML : a free UML diagram generator
+ * ========================================================================
+ *
+ * (C) Copyright 2009-2024, Arnaud Roques
+ *
+ * Project Info:  https://plantuml.com
+ *
+ * If you like this project or if you find it useful, you can support us at:
+ *
+ * https://plantuml.com/patreon (only 1$ per month!)
+ * https://plantuml.com/paypal
+ *
+ * This file is part of PlantUML.
+ *
+ * PlantUML is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PlantUML distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301,
+ * USA.
+ *
+ *
+ * Original Author:  Arnaud Roques
+ *
+ */
+package net.sourceforge.plantuml.tim;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sourceforge.plantuml.StringUtils;
+import net.sourceforge.plantuml.preproc.FileWithSuffix;
+import net.sourceforge.plantuml.preproc.Sub;
+import net.sourceforge.plantuml.security.SecurityUtils;
+import net.sourceforge.plantuml.text.StringLocated;
+import net.sourceforge.plantuml.tim.expression.TValue;
+import net.sourceforge.plantuml.utils.LineLocation;
+import net.sourceforge.plantuml.utils.LineLocationImpl;
+
+/**
+ * Cache of the effects of <code>!include</code> directives, shared by all the
+ * diagrams of the JVM.
+ * <p>
+ * Executing an include only changes a few things in the {@link TContext}: the
+ * lines added to the output, the functions, the global variables, the subs and
+ * the files used. When an include runs at top level, these changes are
+ * recorded in a {@link Snapshot}. The next identical include replays the
+ * snapshot instead of reading and executing the file again.
+ * <p>
+ * The key contains the included resource and a fingerprint of everything the
+ * include can read: global variables, functions (through the digest kept by
+ * {@link FunctionsSet}), subs, files already used and imported files.
+ * Snapshots of local files also remember the date and size of every file read,
+ * and are dropped when one of them changes. Includes that use something
+ * outside of the preprocessor state (<code>%date()</code>,
+ * <code>%getenv()</code>, <code>!theme</code>, URLs...) are never cached.
+ * <p>
+ * The number of snapshots is set by <code>PLANTUML_INCLUDE_CACHE_SIZE</code>
+ * (64 by default, <code>0</code> disables the cache).
+ */
+public class IncludeCache {
+
+	private static final int DEFAULT_MAX_ENTRIES = 64;
+
+	private static final IncludeCache singleton = new IncludeCache(getMaxEntries());
+
+	private final int maxEntries;
+	private final Map<String, Snapshot> entries;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public IncludeCache(final int maxEntries) {
+		this.maxEntries = maxEntries;
+		this.entries = Collections.synchronizedMap(new LinkedHashMap<String, Snapshot>(16, 0.75F, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+				return size() > maxEntries;
+			}
+		});
+	}
+
+	public static IncludeCache getInstance() {
+		return singleton;
+	}
+
+	private static int getMaxEntries() {
+		final String value = SecurityUtils.getenv("PLANTUML_INCLUDE_CACHE_SIZE");
+		if (StringUtils.isNotEmpty(value) && value.matches("\\d{1,9}"))
+			return Integer.parseInt(value);
+
+		return DEFAULT_MAX_ENTRIES;
+	}
+
+	public boolean isEnabled() {
+		return maxEntries > 0;
+	}
+
+	Snapshot get(String key) {
+		final Snapshot result = entries.get(key);
+		if (result != null && result.isUpToDate()) {
+			hits.incrementAndGet();
+			return result;
+		}
+		if (result != null)
+			entries.remove(key);
+
+		misses.incrementAndGet();
+		return null;
+	}
+
+	void put(String key, Snapshot snapshot) {
+		entries.put(key, snapshot);
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public void clear() {
+		entries.clear();
+	}
+
+	static String fingerprint(TContext context, TMemory memory) {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		for (String name : new TreeSet<>(memory.variablesNames())) {
+			final TValue value = memory.getVariable(name);
+			update(digest, name);
+			update(digest, (value.isNumber() ? "N" : value.isJson() ? "J" : "S") + value);
+		}
+		update(digest, context.functionsSet.digest());
+		update(digest, new TreeSet<>(context.functionsSet.finalSignatures()).toString());
+		update(digest, new TreeSet<>(context.subs().keySet()).toString());
+		final Set<String> files = new TreeSet<>();
+		for (FileWithSuffix f : context.getFilesUsedCurrent())
+			files.add(f.getIdentifier());
+
+		update(digest, files.toString());
+		update(digest, context.getImportedFiles().toString());
+
+		final StringBuilder result = new StringBuilder();
+		for (byte b : digest.digest())
+			result.append(String.format("%02x", b));
+
+		return result.toString();
+	}
+
+	private static void update(MessageDigest digest, String s) {
+		digest.update(s.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+	}
+
+	/**
+	 * Changes made to a {@link TContext} by one include.
+	 */
+	static final class Snapshot {
+
+		private final List<StringLocated> output;
+		private final List<StringLocated> debug;
+		private final Map<String, TValue> variables;
+		private final Set<String> removedVariables;
+		private final List<TFunction> functions;
+		private final Set<TFunctionSignature> finalSignatures;
+		private final Map<String, Sub> subs;
+		private final Set<FileWithSuffix> files;
+		private final Map<FileWithSuffix, String> stamps;
+		private final String functionsDigest;
+		private final LineLocation includeLocation;
+
+		private Snapshot(Recorder before, TContext context, TMemory memory) {
+			this.includeLocation = before.includeLocation;
+			this.output = new ArrayList<>(context.getResultList().subList(before.outputSize,
+					context.getResultList().size()));
+			this.debug = new ArrayList<>(context.getDebug().subList(before.debugSize, context.getDebug().size()));
+
+			this.variables = new HashMap<>();
+			for (String name : memory.variablesNames()) {
+				final TValue value = memory.getVariable(name);
+				if (before.variables.get(name) != value)
+					this.variables.put(name, value);
+			}
+			this.removedVariables = new HashSet<>(before.variables.keySet());
+			this.removedVariables.removeAll(memory.variablesNames());
+
+			this.functions = new ArrayList<>();
+			for (TFunction function : context.functionsSet.functions().values())
+				if (before.functions.get(function.getSignature()) != function)
+					this.functions.add(function);
+
+			this.finalSignatures = new HashSet<>(context.functionsSet.finalSignatures());
+			this.finalSignatures.removeAll(before.finalSignatures);
+
+			this.subs = new HashMap<>();
+			for (Map.Entry<String, Sub> ent : context.subs().entrySet())
+				if (before.subs.get(ent.getKey()) != ent.getValue())
+					this.subs.put(ent.getKey(), ent.getValue());
+
+			this.files = new HashSet<>(context.getFilesUsedCurrent());
+			this.files.removeAll(before.files);
+			this.stamps = new HashMap<>();
+			for (FileWithSuffix f : files)
+				stamps.put(f, f.getStamp());
+
+			this.functionsDigest = context.functionsSet.digest();
+		}
+
+		private boolean isUpToDate() {
+			for (Map.Entry<FileWithSuffix, String> ent : stamps.entrySet())
+				if (ent.getValue() == null || ent.getValue().equals(ent.getKey().getStamp()) == false)
+					return false;
+
+			return true;
+		}
+
+		/**
+		 * Lines read from the included files have the recorded <code>!include</code>
+		 * line as ancestor: it is replaced by the current one, so that errors are
+		 * reported at the right place.
+		 */
+		private List<StringLocated> relocate(List<StringLocated> lines, LineLocation current) {
+			if (includeLocation == null || includeLocation == current)
+				return lines;
+
+			final Map<LineLocation, LineLocation> done = new IdentityHashMap<>();
+			final List<StringLocated> result = new ArrayList<>(lines.size());
+			for (StringLocated line : lines) {
+				final LineLocation location = relocate(line.getLocation(), current, done);
+				if (location == line.getLocation())
+					result.add(line);
+				else
+					result.add(new StringLocated(line.getString(), location, line.getPreprocessorError()));
+			}
+			return result;
+		}
+
+		private LineLocation relocate(LineLocation location, LineLocation current,
+				Map<LineLocation, LineLocation> done) {
+			if (location == null)
+				return null;
+
+			if (location == includeLocation)
+				return current;
+
+			LineLocation result = done.get(location);
+			if (result == null) {
+				final LineLocation parent = relocate(location.getParent(), current, done);
+				if (parent == location.getParent() || location instanceof LineLocationImpl == false)
+					result = location;
+				else
+					result = ((LineLocationImpl) location).withParent(parent);
+
+				done.put(location, result);
+			}
+			return result;
+		}
+
+		void replay(TContext context, TMemory memory, StringLocated location) throws EaterException {
+			for (Map.Entry<String, TValue> ent : variables.entrySet())
+				memory.putVariable(ent.getKey(), ent.getValue(), TVariableScope.GLOBAL, location);
+
+			for (String name : removedVariables)
+				memory.removeVariable(name);
+
+			context.functionsSet.restore(functions, finalSignatures, functionsDigest);
+			context.subs().putAll(subs);
+			context.addFilesUsed(files);
+			context.getResultList().addAll(relocate(output, location.getLocation()));
+			context.getDebug().addAll(relocate(debug, location.getLocation()));
+		}
+	}
+
+	/**
+	 * State of a {@link TContext} before an include, used to compute the
+	 * {@link Snapshot} once the include is done.
+	 */
+	static final class Recorder {
+
+		private final Map<String, TValue> variables = new HashMap<>();
+		private final LineLocation includeLocation;
+		private final Map<TFunctionSignature, TFunction> functions;
+		private final Set<TFunctionSignature> finalSignatures;
+		private final Map<String, Sub> subs;
+		private final Set<FileWithSuffix> files;
+		private final int outputSize;
+		private final StringLocated lastOutput;
+		private final int debugSize;
+		private final int warnings;
+		private final Object themeMetadata;
+		private final int nonReproducible;
+		private final Object ifContext;
+		private final Object whileContext;
+		private final Object foreachContext;
+
+		Recorder(TContext context, TMemoryGlobal memory, StringLocated include) {
+			this.includeLocation = include.getLocation();
+			for (String name : memory.variablesNames())
+				variables.put(name, memory.getVariable(name));
+
+			this.functions = new HashMap<>(context.functionsSet.functions());
+			this.finalSignatures = new HashSet<>(context.functionsSet.finalSignatures());
+			this.subs = new HashMap<>(context.subs());
+			this.files = new HashSet<>(context.getFilesUsedCurrent());
+			this.outputSize = context.getResultList().size();
+			this.lastOutput = outputSize == 0 ? null : context.getResultList().get(outputSize - 1);
+			this.debugSize = context.getDebug().size();
+			this.warnings = context.getPreprocessingArtifact().getWarnings().size();
+			this.themeMetadata = context.getThemeMetadata();
+			this.nonReproducible = countNonReproducible(context);
+			this.ifContext = memory.peekIf();
+			this.whileContext = memory.peekWhile();
+			this.foreachContext = memory.peekForeach();
+		}
+
+		private static int countNonReproducible(TContext context) {
+			return context.getNonReproducibleActions() + context.functionsSet.getNonReproducibleCalls();
+		}
+
+		/**
+		 * Stores the changes made by the include, if they can be replayed.
+		 */
+		void store(String key, TContext context, TMemoryGlobal memory) {
+			final Snapshot snapshot = finish(context, memory);
+			if (snapshot != null)
+				getInstance().put(key, snapshot);
+		}
+
+		private Snapshot finish(TContext context, TMemoryGlobal memory) {
+			if (countNonReproducible(context) != nonReproducible || context.hasPendingAdd()
+					|| context.functionsSet.pendingFunction() != null)
+				return null;
+
+			if (context.getResultList().size() < outputSize || context.getDebug().size() < debugSize)
+				return null;
+
+			if (outputSize > 0 && context.getResultList().get(outputSize - 1) != lastOutput)
+				return null;
+
+			if (context.getPreprocessingArtifact().getWarnings().size() != warnings
+					|| context.getThemeMetadata() != themeMetadata)
+				return null;
+
+			if (memory.peekIf() != ifContext || memory.peekWhile() != whileContext
+					|| memory.peekForeach() != foreachContext)
+				return null;
+
+			return new Snapshot(this, context, memory);
+		}
+	}
+
+}
@@ -40,7 +40,9 @@ import java.io.IOException;
 import java.io.Reader;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -189,6 +191,13 @@ public class TContext {
 
 	private final PreprocessingArtifact preprocessingArtifact = new PreprocessingArtifact();
 
+	// Directives whose effect does not only depend on the preprocessor state, so
+	// that an include using them cannot be replayed from the IncludeCache
+	private static final Set<TLineType> NON_REPRODUCIBLE_LINES = EnumSet.of(TLineType.INCLUDESUB, TLineType.THEME,
+			TLineType.INCLUDE_DEF, TLineType.IMPORT, TLineType.DUMP_MEMORY, TLineType.OPTION, TLineType.LOG);
+
+	private int nonReproducibleActions;
+
 	public Set<FileWithSuffix> getFilesUsedCurrent() {
 		return Collections.unmodifiableSet(filesUsedCurrent);
 	}
@@ -377,6 +386,8 @@ public class TContext {
 	private TValue executeOneLineNotSafe(TMemory memory, StringLocated s, TFunctionType ftype, boolean modeSpecial)
 			throws EaterException {
 		final TLineType type = s.getType();
+		if (NON_REPRODUCIBLE_LINES.contains(type))
+			nonReproducibleActions++;
 
 		if (type == TLineType.INCLUDESUB) {
 			this.executeIncludesub(memory, s);
@@ -523,10 +534,19 @@ public class TContext {
 		if (memory.isEmpty() && functionsSet.size() == 0)
 			return str.getString();
 
+		final VariableManager variableManager = new VariableManager(this, memory, str);
 		final StringBuilder result = new StringBuilder();
 		for (int i = 0; i < str.length(); i++) {
 			final char c = str.charAt(i);
+			// Inside a word, only a name starting with % or $ can be found: no need to
+			// look into the tries
+			if (c != '%' && c != '$' && VariableManager.justAfterALetter(str.getString(), i)) {
+				result.append(c);
+				continue;
+			}
 			final String presentFunction = getFunctionNameAt(str.getString(), i);
+			final String presentVariable = presentFunction == null ? variableManager.getVarnameAt(str.getString(), i)
+					: null;
 			if (presentFunction != null) {
 				final String sub = str.getString().substring(i);
 				final EaterFunctionCall call = new EaterFunctionCall(new StringLocated(sub, str.getLocation()),
@@ -569,8 +589,8 @@ public class TContext {
 				// }
 				result.append(tmp);
 				i += call.getCurrentPosition() - 1;
-			} else if (new VariableManager(this, memory, str).getVarnameAt(str.getString(), i) != null) {
-				i = new VariableManager(this, memory, str).replaceVariables(str.getString(), i, result);
+			} else if (presentVariable != null) {
+				i = variableManager.replaceVariables(str.getString(), i, presentVariable, result);
 			} else {
 				result.append(c);
 			}
@@ -782,8 +802,11 @@ public class TContext {
 
 		ReadLine reader = null;
 		ImportedFiles saveImportedFiles = null;
+		String cacheKey = null;
+		IncludeCache.Recorder recorder = null;
 		try {
 			if (what.startsWith("http://") || what.startsWith("https://")) {
+				nonReproducibleActions++;
 				final SURL url = SURL.create(what);
 				if (url == null)
 					throw new EaterException("Cannot open URL", s);
@@ -792,6 +815,11 @@ public class TContext {
 			} else if (what.startsWith("<") && what.endsWith(">")) {
 				final String stdlibPath = what.substring(1, what.length() - 1);
 				final String libname = stdlibPath.substring(0, stdlibPath.indexOf('/'));
+				cacheKey = includeCacheKey(memory, "<" + stdlibPath + ">");
+				if (replayInclude(cacheKey, memory, s))
+					return;
+
+				recorder = startRecording(cacheKey, memory, s);
 				saveImportedFiles = this.importedFiles;
 				this.importedFiles = this.importedFiles.withCurrentDir(new AParentFolderStdlib(s, libname));
 				reader = PreprocessorUtils.getReaderStdlibInclude(s, stdlibPath);
@@ -811,6 +839,12 @@ public class TContext {
 					if (strategy == PreprocessorIncludeStrategy.ONCE && filesUsedCurrent.contains(f2))
 						throw new EaterException("This file has already been included", s);
 
+					cacheKey = includeCacheKey(memory, f2.getIdentifier() + " " + charset);
+					if (replayInclude(cacheKey, memory, s))
+						return;
+
+					recorder = startRecording(cacheKey, memory, s);
+
 					if (StartDiagramExtractReader.containsStartDiagram(f2, s, charset)) {
 						reader = StartDiagramExtractReader.build(f2, s, charset);
 					} else {
@@ -834,6 +868,8 @@ public class TContext {
 						final StringLocated sl = reader.readLine();
 						if (sl == null) {
 							executeLines(memory, body, null, false);
+							if (recorder != null)
+								recorder.store(cacheKey, this, (TMemoryGlobal) memory);
 							return;
 						}
 						body.add(sl);
@@ -860,37 +896,66 @@ public class TContext {
 		throw new EaterException("cannot include " + what, s);
 	}
 
-	public boolean isLegacyDefine(String functionName) {
-		for (Map.Entry<TFunctionSignature, TFunction> ent : functionsSet.functions().entrySet())
-			if (ent.getKey().getFunctionName().equals(functionName) && ent.getValue().getFunctionType().isLegacy())
-				return true;
+	private String includeCacheKey(TMemory memory, String included) {
+		if (IncludeCache.getInstance().isEnabled() == false || memory instanceof TMemoryGlobal == false)
+			return null;
 
-		return false;
+		return included + " " + IncludeCache.fingerprint(this, memory);
 	}
 
-	public boolean isUnquoted(String functionName) {
-		for (Map.Entry<TFunctionSignature, TFunction> ent : functionsSet.functions().entrySet())
-			if (ent.getKey().getFunctionName().equals(functionName) && ent.getValue().isUnquoted())
-				return true;
+	private boolean replayInclude(String cacheKey, TMemory memory, StringLocated s) throws EaterException {
+		if (cacheKey == null)
+			return false;
 
-		return false;
+		final IncludeCache.Snapshot snapshot = IncludeCache.getInstance().get(cacheKey);
+		if (snapshot == null)
+			return false;
+
+		snapshot.replay(this, memory, s);
+		return true;
 	}
 
-	public boolean doesFunctionExist(String functionName) {
-		for (Map.Entry<TFunctionSignature, TFunction> ent : functionsSet.functions().entrySet())
-			if (ent.getKey().getFunctionName().equals(functionName))
-				return true;
+	private IncludeCache.Recorder startRecording(String cacheKey, TMemory memory, StringLocated s) {
+		if (cacheKey == null)
+			return null;
+
+		return new IncludeCache.Recorder(this, (TMemoryGlobal) memory, s);
+	}
+
+	int getNonReproducibleActions() {
+		return nonReproducibleActions;
+	}
+
+	boolean hasPendingAdd() {
+		return pendingAdd != null;
+	}
+
+	Map<String, Sub> subs() {
+		return subs;
+	}
+
+	void addFilesUsed(Collection<FileWithSuffix> files) {
+		filesUsedCurrent.addAll(files);
+	}
+
+	ImportedFiles getImportedFiles() {
+		return importedFiles;
+	}
 
-		return false;
+	public boolean isLegacyDefine(String functionName) {
+		return functionsSet.isLegacyDefine(functionName);
+	}
+
+	public boolean isUnquoted(String functionName) {
+		return functionsSet.isUnquoted(functionName);
+	}
+
+	public boolean doesFunctionExist(String functionName) {
+		return functionsSet.doesFunctionExist(functionName);
 	}
 
 	@JawsStrange
 	private String getFunctionNameAt(String s, int pos) {
-		final boolean justAfterALetter = pos > 0 && TLineType.isLetterOrEmojiOrUnderscoreOrDigit(s.charAt(pos - 1))
-				&& VariableManager.justAfterBackslashN(s, pos) == false;
-		if (justAfterALetter && s.charAt(pos) != '%' && s.charAt(pos) != '$')
-			return null;
-
 		final String fname = functionsSet.getLonguestMatchStartingIn(s, pos);
 		if (fname.length() == 0)
 			return null;
@@ -121,6 +121,22 @@ public class TFunctionImpl implements TFunction {
 		return "FUNCTION " + signature + " " + args;
 	}
 
+	/**
+	 * Text describing everything this function does, so that two functions with
+	 * the same definition return the same text.
+	 */
+	String getDefinition() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append(functionType).append(' ').append(unquoted).append(' ').append(legacyDefinition);
+		for (TFunctionArgument arg : args)
+			sb.append(' ').append(arg.getName()).append('=').append(arg.getOptionalDefaultValue());
+
+		for (StringLocated s : body)
+			sb.append('\n').append(s.getString());
+
+		return sb.toString();
+	}
+
 	public void addBody(StringLocated s) throws EaterException {
 		body.add(s);
 		if (s.getType() == TLineType.RETURN) {
@@ -131,6 +147,9 @@ public class TFunctionImpl implements TFunction {
 	}
 
 	@Override
+	// TODO: compile the body once into a tree of instructions. It is still
+	// interpreted line by line on each call: only the expressions it contains are
+	// parsed once, see CompiledExpression.
 	public void executeProcedureInternal(TContext context, TMemory memory, StringLocated location, List<TValue> args,
 			Map<String, TValue> named) throws EaterException {
 		if (functionType != TFunctionType.PROCEDURE && functionType != TFunctionType.LEGACY_DEFINELONG)
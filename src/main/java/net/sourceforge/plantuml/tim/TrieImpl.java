@@ -90,23 +90,22 @@ public class TrieImpl implements Trie {
 		return getLonguestMatchStartingIn(this, s, pos);
 	}
 
-	private static String getLonguestMatchStartingIn(TrieImpl current, String s, int pos) {
-		final StringBuilder result = new StringBuilder();
+	private static String getLonguestMatchStartingIn(TrieImpl current, String s, final int start) {
+		int pos = start;
 		while (current != null) {
 			if (s.length() == pos)
 				if (current.brothers.containsKey('\0'))
-					return result.toString();
+					return s.substring(start, pos);
 				else
 					return "";
 
 			final TrieImpl child = current.brothers.get(s.charAt(pos));
 			if (child == null || child.brothers.size() == 0)
 				if (current.brothers.containsKey('\0'))
-					return result.toString();
+					return s.substring(start, pos);
 				else
 					return "";
 
-			result.append(s.charAt(pos));
 			current = child;
 			pos++;
 		}
@@ -47,6 +47,7 @@ public class VariableManager {
 	private final TMemory memory;
 	private final TContext context;
 	private final StringLocated location;
+	private Trie variablesNames;
 
 	public VariableManager(TContext context, TMemory memory, StringLocated location) {
 		this.memory = memory;
@@ -54,10 +55,24 @@ public class VariableManager {
 		this.location = location;
 	}
 
+	// The tries of a memory follow the variables added or removed later, so one
+	// lookup is enough for the whole line
+	private Trie variablesNames() {
+		if (variablesNames == null)
+			variablesNames = memory.variablesNames3();
+
+		return variablesNames;
+	}
+
 	public int replaceVariables(String str, int i, StringBuilder result) throws EaterException {
-		final String presentVariable = getVarnameAt(str, i);
-		if (result.toString().endsWith("##"))
-			result.setLength(result.length() - 2);
+		return replaceVariables(str, i, getVarnameAt(str, i), result);
+	}
+
+	public int replaceVariables(String str, int i, String presentVariable, StringBuilder result)
+			throws EaterException {
+		final int len = result.length();
+		if (len >= 2 && result.charAt(len - 2) == '#' && result.charAt(len - 1) == '#')
+			result.setLength(len - 2);
 
 		final TValue value = memory.getVariable(presentVariable);
 		i += presentVariable.length() - 1;
@@ -141,12 +156,10 @@ public class VariableManager {
 
 	@JawsStrange
 	public String getVarnameAt(String s, int pos) {
-		final boolean justAfterALetter = pos > 0 && TLineType.isLetterOrEmojiOrUnderscoreOrDigit(s.charAt(pos - 1))
-				&& justAfterBackslashN(s, pos) == false;
-		if (justAfterALetter && s.charAt(pos) != '$')
+		if (s.charAt(pos) != '$' && justAfterALetter(s, pos))
 			return null;
 
-		final String varname = memory.variablesNames3().getLonguestMatchStartingIn(s, pos);
+		final String varname = variablesNames().getLonguestMatchStartingIn(s, pos);
 		if (varname.length() == 0)
 			return null;
 
@@ -157,6 +170,12 @@ public class VariableManager {
 		return null;
 	}
 
+	@JawsStrange
+	public static boolean justAfterALetter(String s, int pos) {
+		return pos > 0 && TLineType.isLetterOrEmojiOrUnderscoreOrDigit(s.charAt(pos - 1))
+				&& justAfterBackslashN(s, pos) == false;
+	}
+
 	@JawsStrange
 	public static boolean justAfterBackslashN(String s, int pos) {
 		return pos > 1 && s.charAt(pos - 2) == '\\' && s.charAt(pos - 1) == 'n';
@@ -0,0 +1,127 @@
+/* ========================================================================
+ * PlantUML : a free UML diagram generator
+ * ========================================================================
+ *
+ * (C) Copyright 2009-2024, Arnaud Roques
+ *
+ * Project Info:  https://plantuml.com
+ *
+ * If you like this project or if you find it useful, you can support us at:
+ *
+ * https://plantuml.com/patreon (only 1$ per month!)
+ * https://plantuml.com/paypal
+ *
+ * This file is part of PlantUML.
+ *
+ * PlantUML is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PlantUML distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301,
+ * USA.
+ *
+ *
+ * Original Author:  Arnaud Roques
+ *
+ */
+package net.sourceforge.plantuml.tim.expression;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.sourceforge.plantuml.text.StringLocated;
+import net.sourceforge.plantuml.tim.EaterException;
+import net.sourceforge.plantuml.tim.TContext;
+import net.sourceforge.plantuml.tim.TMemory;
+
+/**
+ * Expression already converted to reverse Polish notation.
+ * <p>
+ * Tokenizing and reordering an expression only depends on its text, so the
+ * result is kept in a JVM-wide cache keyed by the source text. Lines of
+ * <code>!function</code>, <code>!procedure</code> and included files are then
+ * parsed once, whatever the number of calls or diagrams. The cache is read on
+ * every expression, so it takes no global lock: instead of an LRU order, it is
+ * simply emptied when it is full.
+ * <p>
+ * Variables are kept as <code>PLAIN_TEXT</code> tokens and are all resolved
+ * before the evaluation starts, exactly like {@link TokenStack#getResult} does.
+ * {@link TokenStack#getResult} is kept as the reference implementation.
+ */
+public final class CompiledExpression {
+
+	private static final int CACHE_SIZE = 10_000;
+
+	private static final ConcurrentMap<String, CompiledExpression> CACHE_UNTIL_END = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<String, CompiledExpression> CACHE_UNTIL_COLON = new ConcurrentHashMap<>();
+
+	private final List<Token> queue;
+	private final int length;
+
+	private CompiledExpression(List<Token> queue, int length) {
+		this.queue = queue;
+		this.length = length;
+	}
+
+	public static CompiledExpression getCached(String source, boolean stopAtColon) {
+		return (stopAtColon ? CACHE_UNTIL_COLON : CACHE_UNTIL_END).get(source);
+	}
+
+	public static void putCached(String source, boolean stopAtColon, CompiledExpression expression) {
+		final ConcurrentMap<String, CompiledExpression> cache = stopAtColon ? CACHE_UNTIL_COLON : CACHE_UNTIL_END;
+		if (cache.size() >= CACHE_SIZE)
+			cache.clear();
+
+		cache.putIfAbsent(source, expression);
+	}
+
+	/**
+	 * @param tokens the tokens of the expression, spaces included
+	 * @param length the number of characters of the source text read to get
+	 *               <code>tokens</code>
+	 */
+	public static CompiledExpression compile(TokenStack tokens, int length, StringLocated location)
+			throws EaterException {
+		final TokenStack tmp = tokens.withoutSpace();
+		tmp.guessFunctions(location);
+		final ShuntingYard shuntingYard = new ShuntingYard(tmp.tokenIterator(), null, location);
+		final List<Token> queue = new ArrayList<>(shuntingYard.getQueue().size());
+		for (TokenIterator it = shuntingYard.getQueue().tokenIterator(); it.hasMoreTokens();)
+			queue.add(it.nextToken());
+
+		return new CompiledExpression(Collections.unmodifiableList(queue), length);
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	public TValue evaluate(StringLocated location, TContext context, TMemory memory) throws EaterException {
+		final Knowledge knowledge = context.asKnowledge(memory, location.getLocation());
+		final TokenStack resolved = new TokenStack();
+		for (Token token : queue)
+			if (token.getTokenType() == TokenType.PLAIN_TEXT)
+				resolved.add(ShuntingYard.resolveVariable(token.getSurface(), knowledge, location));
+			else
+				resolved.add(token);
+
+		return new ReversePolishInterpretor(location, resolved, knowledge, memory, context).getResult();
+	}
+
+	@Override
+	public String toString() {
+		return queue.toString();
+	}
+
+}
@@ -70,16 +70,11 @@ public class ShuntingYard {
 			} else if (token.getTokenType() == TokenType.FUNCTION_NAME) {
 				operatorStack.addFirst(token);
 			} else if (token.getTokenType() == TokenType.PLAIN_TEXT) {
-				final String name = token.getSurface();
-				final TValue variable = knowledge.getVariable(name);
-				if (variable == null) {
-					if (isVariableName(name) == false)
-						throw new EaterException("Parsing syntax error about " + name, location);
-
-					ouputQueue.add(new Token(name, TokenType.QUOTED_STRING, null));
-				} else {
-					ouputQueue.add(variable.toToken());
-				}
+				// Without knowledge, variables are resolved later by CompiledExpression
+				if (knowledge == null)
+					ouputQueue.add(token);
+				else
+					ouputQueue.add(resolveVariable(token.getSurface(), knowledge, location));
 			} else if (isOperatorOrAffectation(token)) {
 				while ((thereIsAFunctionAtTheTopOfTheOperatorStack() //
 						|| thereIsAnOperatorAtTheTopOfTheOperatorStackWithGreaterPrecedence(token) //
@@ -124,7 +119,18 @@ public class ShuntingYard {
 		// System.err.println("ouputQueue=" + ouputQueue);
 	}
 
-	private boolean isVariableName(String name) {
+	static Token resolveVariable(String name, Knowledge knowledge, StringLocated location) throws EaterException {
+		final TValue variable = knowledge.getVariable(name);
+		if (variable == null) {
+			if (isVariableName(name) == false)
+				throw new EaterException("Parsing syntax error about " + name, location);
+
+			return new Token(name, TokenType.QUOTED_STRING, null);
+		}
+		return variable.toToken();
+	}
+
+	private static boolean isVariableName(String name) {
 		return name.matches("[a-zA-Z0-9.$_]+");
 	}
 
@@ -63,6 +63,10 @@ public class LineLocationImpl implements LineLocation {
 		return new LineLocationImpl(desc, parent, position + 1);
 	}
 
+	public LineLocationImpl withParent(LineLocation newParent) {
+		return new LineLocationImpl(desc, newParent, position);
+	}
+
 	public int getPosition() {
 		return position;
 	}
@@ -78,6 +78,8 @@ public class CompositeDiagramShape extends DiagramComponent {
 		
 		List<DiagramShape> shapes = new ArrayList<DiagramShape>(100);
 		
+		//cells come row by row: lines are traced from their top-left end,
+		//where their dash pattern starts
 		for(TextGrid.Cell cell : boundaryCells) {
 			if(workGrid.isLinesEnd(cell)) {
 				CellSet nextCells = workGrid.followCell(cell);
@@ -20,11 +20,14 @@
 package org.stathissideris.ascii2image.text;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Set;
+import java.util.NoSuchElementException;
 
 /**
+ * A set of cells, stored as a row-major bitset over the bounding box
+ * of the cells, which grows as needed. Iteration goes row by row, and
+ * returns new <code>Cell</code> objects: modifying them does not modify
+ * the set.
  * 
  * @author Efstathios Sideris
  */
@@ -39,7 +42,16 @@ public class CellSet implements Iterable<TextGrid.Cell> {
 	public static final int TYPE_HAS_CLOSED_AREA = 3;
 	public static final int TYPE_UNDETERMINED = 4;
 
-	Set<TextGrid.Cell> internalSet = new HashSet<TextGrid.Cell>();
+	private static final long[] EMPTY = new long[0];
+	private static final TextGrid CELL_FACTORY = new TextGrid();
+
+	//the bitset covers the box (originX, originY, width, height)
+	private long[] bits = EMPTY;
+	private int originX;
+	private int originY;
+	private int width;
+	private int height;
+	private int size;
 	
 	private int type = TYPE_UNDETERMINED;
 	private boolean typeIsValid = false;
@@ -55,28 +67,149 @@ public class CellSet implements Iterable<TextGrid.Cell> {
 	}
 	
 	public Iterator<TextGrid.Cell> iterator(){
-		return internalSet.iterator();
+		return new Iterator<TextGrid.Cell>() {
+			private int next = nextIndex(0);
+			private int current = -1;
+
+			public boolean hasNext() {
+				return next >= 0;
+			}
+
+			public TextGrid.Cell next() {
+				if(next < 0) throw new NoSuchElementException();
+				current = next;
+				next = nextIndex(current + 1);
+				return cellAt(current);
+			}
+
+			public void remove() {
+				if(current < 0) throw new IllegalStateException();
+				typeIsValid = false;
+				clearIndex(current);
+				current = -1;
+			}
+		};
 	}
 
 	public Object add(TextGrid.Cell cell){
-		return internalSet.add(cell);
+		return add(cell.x, cell.y);
+	}
+
+	boolean add(int x, int y){
+		include(x, y);
+		int index = indexOf(x, y);
+		long bit = 1L << index;
+		if((bits[index >>> 6] & bit) != 0) return false;
+		bits[index >>> 6] |= bit;
+		size++;
+		return true;
 	}
 
 	public void addAll(CellSet set){
-		internalSet.addAll(set.internalSet);
+		for(int i = set.nextIndex(0); i >= 0; i = set.nextIndex(i + 1))
+			add(set.xOf(i), set.yOf(i));
 	}
 	
 	void clear(){
-		internalSet.clear();
+		bits = EMPTY;
+		width = 0;
+		height = 0;
+		size = 0;
 	}
 	
 	public int size() {
-		return internalSet.size();
+		return size;
 	}
 	
+	/**
+	 * Returns the first cell row by row, that is the leftmost cell of the
+	 * top row.
+	 */
 	public TextGrid.Cell getFirst(){
-		//return internalSet.get(0);
-		return (TextGrid.Cell) internalSet.iterator().next();
+		int first = nextIndex(0);
+		if(first < 0) throw new NoSuchElementException();
+		return cellAt(first);
+	}
+
+	public boolean contains(int x, int y){
+		if(x < originX || y < originY || x >= originX + width || y >= originY + height) return false;
+		int index = indexOf(x, y);
+		return (bits[index >>> 6] & (1L << index)) != 0;
+	}
+
+	private int indexOf(int x, int y){
+		return (y - originY) * width + x - originX;
+	}
+
+	private int xOf(int index){
+		return originX + index % width;
+	}
+
+	private int yOf(int index){
+		return originY + index / width;
+	}
+
+	private TextGrid.Cell cellAt(int index){
+		return CELL_FACTORY.new Cell(xOf(index), yOf(index));
+	}
+
+	//the index of the first cell at or after from, or -1
+	private int nextIndex(int from){
+		int word = from >>> 6;
+		if(word >= bits.length) return -1;
+		long w = bits[word] & (-1L << from);
+		while(true){
+			if(w != 0) return (word << 6) + Long.numberOfTrailingZeros(w);
+			if(++word == bits.length) return -1;
+			w = bits[word];
+		}
+	}
+
+	private void clearIndex(int index){
+		long bit = 1L << index;
+		if((bits[index >>> 6] & bit) == 0) return;
+		bits[index >>> 6] &= ~bit;
+		size--;
+	}
+
+	//grows the box so that it contains (x, y), at least doubling
+	//the size in the direction of the growth
+	private void include(int x, int y){
+		if(width == 0){
+			originX = x;
+			originY = y;
+			width = 1;
+			height = 1;
+			bits = new long[1];
+			return;
+		}
+		int left = originX;
+		int right = originX + width;
+		int top = originY;
+		int bottom = originY + height;
+		if(x >= left && x < right && y >= top && y < bottom) return;
+		if(x < left) left = Math.min(x, right - 2 * width);
+		else if(x >= right) right = Math.max(x + 1, left + 2 * width);
+		if(y < top) top = Math.min(y, bottom - 2 * height);
+		else if(y >= bottom) bottom = Math.max(y + 1, top + 2 * height);
+
+		long[] oldBits = bits;
+		int dx = originX - left;
+		int dy = originY - top;
+		int oldWidth = width;
+
+		originX = left;
+		originY = top;
+		width = right - left;
+		height = bottom - top;
+		bits = new long[(int) (((long) width * height + 63) >>> 6)];
+		for(int word = 0; word < oldBits.length; word++){
+			for(long w = oldBits[word]; w != 0; w &= w - 1){
+				int old = (word << 6) + Long.numberOfTrailingZeros(w);
+				int index = (old / oldWidth + dy) * width + old % oldWidth + dx;
+				bits[index >>> 6] |= 1L << index;
+			}
+		}
 	}
 	
 	public void printAsGrid(){
@@ -118,15 +251,13 @@ public class CellSet implements Iterable<TextGrid.Cell> {
 	 * @return
 	 */
 	public static CellSet copyCellSet(CellSet set) {
-		TextGrid grid = new TextGrid();
 		CellSet newSet = new CellSet();
-		
-		Iterator<TextGrid.Cell> it = set.iterator();
-		while (it.hasNext()) {
-			TextGrid.Cell cell = (TextGrid.Cell) it.next();
-			TextGrid.Cell newCell = grid.new Cell(cell);
-			newSet.add(newCell);
-		}
+		newSet.bits = set.bits.clone();
+		newSet.originX = set.originX;
+		newSet.originY = set.originY;
+		newSet.width = set.width;
+		newSet.height = set.height;
+		newSet.size = set.size;
 		return newSet;
 	}
 
@@ -287,26 +418,18 @@ public class CellSet implements Iterable<TextGrid.Cell> {
 
 	public void translate(int dx, int dy){
 		typeIsValid = false;
-		Iterator<TextGrid.Cell> it = iterator();
-		while(it.hasNext()){
-			TextGrid.Cell cCell = it.next();
-			cCell.x += dx;
-			cCell.y += dy;
-		}	
+		originX += dx;
+		originY += dy;
 	}
 
 	public TextGrid.Cell find(TextGrid.Cell cell){
-		Iterator<TextGrid.Cell> it = iterator();
-		while(it.hasNext()){
-			TextGrid.Cell cCell = it.next();
-			if(cCell.equals(cell)) return cCell;
-		}
-		return null;		
+		if(cell == null || !contains(cell.x, cell.y)) return null;
+		return CELL_FACTORY.new Cell(cell);
 	}
 
 	public boolean contains(TextGrid.Cell cell){
 		if(cell == null) return false;
-		return internalSet.contains(cell);
+		return contains(cell.x, cell.y);
 	}
 	
 //	public boolean contains(TextGrid.Cell cell){
@@ -324,21 +447,14 @@ public class CellSet implements Iterable<TextGrid.Cell> {
 	}
 
 	public boolean hasCommonCells(CellSet otherSet){
-		Iterator<TextGrid.Cell> it = iterator();
-		while(it.hasNext()){
-			TextGrid.Cell cell = it.next();
-			if(otherSet.contains(cell)) return true;
-		}
+		for(int i = nextIndex(0); i >= 0; i = nextIndex(i + 1))
+			if(otherSet.contains(xOf(i), yOf(i))) return true;
 		return false;
 	}
 
 	public TextGrid.Cell find(int x, int y){
-		Iterator<TextGrid.Cell> it = iterator();
-		while(it.hasNext()){
-			TextGrid.Cell cCell = it.next();
-			if(cCell.x == x && cCell.y == y) return cCell;
-		}
-		return null;		
+		if(!contains(x, y)) return null;
+		return CELL_FACTORY.new Cell(x, y);
 	}
 	
 	public CellSet getFilledEquivalent(TextGrid textGrid){
@@ -403,20 +519,15 @@ public class CellSet implements Iterable<TextGrid.Cell> {
 	
 	public void appendSet(CellSet set){
 		typeIsValid = false;
-		Iterator<TextGrid.Cell> it = set.iterator();
-		while(it.hasNext()){
-			TextGrid.Cell cell = it.next();
-			if(find(cell) == null) add(cell);
-		}	
+		addAll(set);
 	}
 	
 	public void subtractSet(CellSet set){
 		typeIsValid = false;
-		Iterator<TextGrid.Cell> it = set.iterator();
-		while(it.hasNext()){
-			TextGrid.Cell cell = it.next();
-			TextGrid.Cell thisCell = find(cell);
-			if(thisCell != null) remove(thisCell);
+		for(int i = set.nextIndex(0); i >= 0; i = set.nextIndex(i + 1)){
+			int x = set.xOf(i);
+			int y = set.yOf(i);
+			if(contains(x, y)) clearIndex(indexOf(x, y));
 		}
 	}
 
@@ -431,56 +542,46 @@ public class CellSet implements Iterable<TextGrid.Cell> {
 	
 	public int getMaxX(){
 		int result = 0;
-		Iterator<TextGrid.Cell> it = iterator();
-		while(it.hasNext()){
-			TextGrid.Cell cell = it.next();
-			if(cell.x > result) result = cell.x;
-		}
+		for(int i = nextIndex(0); i >= 0; i = nextIndex(i + 1))
+			if(xOf(i) > result) result = xOf(i);
 		return result;
 	}
 
 	public int getMinX(){
 		int result = Integer.MAX_VALUE;
-		Iterator<TextGrid.Cell> it = iterator();
-		while(it.hasNext()){
-			TextGrid.Cell cell = it.next();
-			if(cell.x < result) result = cell.x;
-		}
+		for(int i = nextIndex(0); i >= 0; i = nextIndex(i + 1))
+			if(xOf(i) < result) result = xOf(i);
 		return result;
 	}
 
 
 	public int getMaxY(){
-		int result = 0;
-		Iterator<TextGrid.Cell> it = iterator();
-		while(it.hasNext()){
-			TextGrid.Cell cell = it.next();
-			if(cell.y > result) result = cell.y;
-		}
-		return result;
+		for(int word = bits.length - 1; word >= 0; word--)
+			if(bits[word] != 0)
+				return Math.max(0, yOf((word << 6) + 63 - Long.numberOfLeadingZeros(bits[word])));
+		return 0;
 	}
 
 	public int getMinY(){
-		int result = Integer.MAX_VALUE;
-		Iterator<TextGrid.Cell> it = iterator();
-		while(it.hasNext()){
-			TextGrid.Cell cell = it.next();
-			if(cell.y < result) result = cell.y;
-		}
-		return result;
+		int first = nextIndex(0);
+		if(first < 0) return Integer.MAX_VALUE;
+		return yOf(first);
 	}
 
 
 	public Object remove(TextGrid.Cell cell){
 		typeIsValid = false;
-		cell = find(cell);
-		if(cell != null) return internalSet.remove(cell);
-		else return null;
+		if(!contains(cell)) return null;
+		clearIndex(indexOf(cell.x, cell.y));
+		return Boolean.TRUE;
 	}
 
 	public boolean equals(Object o){
 		CellSet otherSet = (CellSet) o;
-		return internalSet.equals(otherSet.internalSet);
+		if(size != otherSet.size) return false;
+		for(int i = nextIndex(0); i >= 0; i = nextIndex(i + 1))
+			if(!otherSet.contains(xOf(i), yOf(i))) return false;
+		return true;
 	}
 
 	
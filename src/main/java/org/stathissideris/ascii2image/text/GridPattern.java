@@ -21,6 +21,7 @@ package org.stathissideris.ascii2image.text;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.regex.Pattern;
 
 /**
@@ -142,6 +143,30 @@ public class GridPattern extends TextGrid {
 	}
 	
 	private String makeRegExp(String pattern){
+		StringBuilder result = new StringBuilder();
+		for(String cellRegExp : makeCellRegExps(pattern)) result.append(cellRegExp);
+		return result.toString();
+	}
+
+	/**
+	 * Returns, for each cell of the pattern, the regular expression that
+	 * the character at that position must match, or <code>null</code> if
+	 * this pattern uses the standard syntax (where rows are plain regular
+	 * expressions that cannot be split into cells).
+	 * 
+	 * @return the regular expressions of the 3 rows, 3 cells per row
+	 * at most
+	 */
+	List<List<String>> getCellRegExps(){
+		if(usesStandardSyntax) return null;
+		List<List<String>> result = new ArrayList<List<String>>();
+		for(StringBuilder row : getRows())
+			result.add(makeCellRegExps(row.toString()));
+		return result;
+	}
+
+	private List<String> makeCellRegExps(String pattern){
+		List<String> cells = new ArrayList<String>();
 		StringBuilder result = new StringBuilder();
 		int tokensHandled = 0;
 		for(int i = 0; i < pattern.length() && tokensHandled < 3; i++){
@@ -231,8 +256,10 @@ public class GridPattern extends TextGrid {
 				}
 			} else result.append(String.valueOf(c));
 			tokensHandled++;
+			cells.add(result.toString());
+			result.setLength(0);
 		}
-		return result.toString();
+		return cells;
 	}
 
 
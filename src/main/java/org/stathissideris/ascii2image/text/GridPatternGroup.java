@@ -27,6 +27,9 @@ import java.util.Iterator;
  * @author Efstathios Sideris
  */
 public class GridPatternGroup extends ArrayList<GridPattern> {
+
+	private volatile GridPatternTable table;
+
 	public boolean areAllMatchedBy(TextGrid grid){
 		Iterator<GridPattern> it = iterator();
 		while (it.hasNext()) {
@@ -44,7 +47,29 @@ public class GridPatternGroup extends ArrayList<GridPattern> {
 		}
 		return false;
 	}
-	
+
+	/**
+	 * Tells whether any pattern matches the 3x3 neighbourhood of
+	 * (<code>x</code>, <code>y</code>) in <code>grid</code>. Same as
+	 * calling {@link #isAnyMatchedBy(TextGrid)} with the testing
+	 * sub-grid of that cell, but with a single table lookup.
+	 */
+	public boolean isAnyMatchedBy(TextGrid grid, int x, int y){
+		if(x > 0 && y > 0 && x < grid.getWidth() - 1 && y < grid.getHeight() - 1) {
+			Boolean result = getTable().isAnyMatchedBy(grid, x, y);
+			if(result != null) return result;
+		}
+		return isAnyMatchedBy(grid.getSubGrid(x - 1, y - 1, 3, 3));
+	}
+
+	private GridPatternTable getTable(){
+		GridPatternTable result = table;
+		if(result == null || result.getModCount() != modCount) {
+			result = GridPatternTable.compile(this, modCount);
+			table = result;
+		}
+		return result;
+	}
 	
 	public void add(GridPattern... patterns) {
 		for(GridPattern p : patterns) add(p);
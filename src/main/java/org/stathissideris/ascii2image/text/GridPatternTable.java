@@ -0,0 +1,215 @@
+/**
+ * ditaa - Diagrams Through Ascii Art
+ * 
+ * Copyright (C) 2004-2011 Efstathios Sideris
+ *
+ * ditaa is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * ditaa is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with ditaa.  If not, see <http://www.gnu.org/licenses/>.
+ *   
+ */
+package org.stathissideris.ascii2image.text;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link GridPatternGroup} compiled into a lookup table.
+ *
+ * Every pattern of the group is a conjunction of one condition per cell of
+ * the 3x3 neighbourhood, and each condition only depends on the character
+ * of its cell. Characters are first mapped to a class: every ASCII character
+ * is its own class, the non-ASCII line terminators (that <code>.</code> does
+ * not match) share one, and all the other characters share another. For each
+ * of the 9 cells, classes that are accepted by exactly the same patterns of
+ * the group are then merged, which leaves only a few classes per cell. The
+ * table is indexed by the 9 merged classes and tells whether any pattern of
+ * the group matches.
+ *
+ * The conditions are obtained by testing the regular expression of each cell
+ * against a representative of each class, so the table gives the same answer
+ * as {@link GridPattern#isMatchedBy(TextGrid)}.
+ */
+final class GridPatternTable {
+
+	private static final int NB_CELLS = 9;
+	private static final int LINE_TERMINATOR = 128;
+	private static final int OTHER = 129;
+	private static final int NB_CLASSES = 130;
+
+	//above this size, the table is replaced by an AND of the masks
+	private static final int MAX_TABLE_SIZE = 1 << 20;
+
+	//cell regexp -> accepted classes, shared by all the groups
+	private static final Map<String, boolean[]> acceptedClasses = new HashMap<String, boolean[]>();
+
+	private final int modCount;
+
+	//offsets[cell][class] is the contribution of the class to the table index
+	private final int offsets[][];
+	private final boolean matches[];
+
+	//used instead of the table when it would be too big
+	private final long masks[][];
+
+	private GridPatternTable(int modCount, int offsets[][], boolean matches[], long masks[][]) {
+		this.modCount = modCount;
+		this.offsets = offsets;
+		this.matches = matches;
+		this.masks = masks;
+	}
+
+	int getModCount() {
+		return modCount;
+	}
+
+	/**
+	 * Builds the table of <code>group</code>. If some pattern cannot be
+	 * expressed cell by cell (standard syntax, non-ASCII literals, more
+	 * than 64 patterns), the returned table never answers.
+	 */
+	static GridPatternTable compile(GridPatternGroup group, int modCount) {
+		GridPatternTable none = new GridPatternTable(modCount, null, null, null);
+		if(group.size() > 64) return none;
+
+		//masks[cell][class]: the patterns that accept that class at that cell
+		long all = group.isEmpty() ? 0 : -1L >>> (64 - group.size());
+		long masks[][] = new long[NB_CELLS][NB_CLASSES];
+		for(int i = 0; i < NB_CELLS; i++)
+			for(int c = 0; c < NB_CLASSES; c++)
+				masks[i][c] = all;
+
+		for(int p = 0; p < group.size(); p++) {
+			List<List<String>> rows = group.get(p).getCellRegExps();
+			if(rows == null || rows.size() != 3) return none;
+			for(int y = 0; y < 3; y++) {
+				List<String> row = rows.get(y);
+				for(int x = 0; x < 3; x++) {
+					boolean accepted[];
+					if(row.size() != 3) {
+						//such a row can never match a 3-wide neighbourhood
+						accepted = new boolean[NB_CLASSES];
+					} else {
+						accepted = getAcceptedClasses(row.get(x));
+						if(accepted == null) return none;
+					}
+					for(int c = 0; c < NB_CLASSES; c++)
+						if(!accepted[c]) masks[y * 3 + x][c] &= ~(1L << p);
+				}
+			}
+		}
+
+		//merge the classes that are accepted by the same patterns
+		int offsets[][] = new int[NB_CELLS][NB_CLASSES];
+		long distinctMasks[][] = new long[NB_CELLS][];
+		long tableSize = 1;
+		for(int i = 0; i < NB_CELLS; i++) {
+			Map<Long, Integer> ids = new HashMap<Long, Integer>();
+			for(int c = 0; c < NB_CLASSES; c++) {
+				Integer id = ids.get(masks[i][c]);
+				if(id == null) {
+					id = ids.size();
+					ids.put(masks[i][c], id);
+				}
+				offsets[i][c] = id;
+			}
+			distinctMasks[i] = new long[ids.size()];
+			for(Map.Entry<Long, Integer> ent : ids.entrySet())
+				distinctMasks[i][ent.getValue()] = ent.getKey();
+			tableSize *= ids.size();
+		}
+		if(tableSize > MAX_TABLE_SIZE)
+			return new GridPatternTable(modCount, null, null, masks);
+
+		int stride = 1;
+		int strides[] = new int[NB_CELLS];
+		for(int i = NB_CELLS - 1; i >= 0; i--) {
+			strides[i] = stride;
+			for(int c = 0; c < NB_CLASSES; c++)
+				offsets[i][c] *= stride;
+			stride *= distinctMasks[i].length;
+		}
+
+		boolean matches[] = new boolean[(int) tableSize];
+		for(int index = 0; index < matches.length; index++) {
+			long mask = -1L;
+			int rest = index;
+			for(int i = 0; i < NB_CELLS; i++) {
+				mask &= distinctMasks[i][rest / strides[i]];
+				rest %= strides[i];
+			}
+			matches[index] = mask != 0;
+		}
+		return new GridPatternTable(modCount, offsets, matches, null);
+	}
+
+	private static boolean[] getAcceptedClasses(String cellRegExp) {
+		synchronized (acceptedClasses) {
+			if(acceptedClasses.containsKey(cellRegExp))
+				return acceptedClasses.get(cellRegExp);
+			boolean result[] = null;
+			if(isCompilable(cellRegExp)) {
+				Pattern pattern = Pattern.compile(cellRegExp);
+				result = new boolean[NB_CLASSES];
+				for(int c = 0; c < 128; c++)
+					result[c] = pattern.matcher(String.valueOf((char) c)).matches();
+				result[LINE_TERMINATOR] = pattern.matcher("\u2028").matches();
+				result[OTHER] = pattern.matcher("\u00e9").matches();
+			}
+			acceptedClasses.put(cellRegExp, result);
+			return result;
+		}
+	}
+
+	//a cell regexp must consume exactly one character, and only mention ASCII
+	//ones so that all the other characters behave alike
+	private static boolean isCompilable(String cellRegExp) {
+		if(cellRegExp.length() == 0) return false;
+		for(int i = 0; i < cellRegExp.length(); i++)
+			if(cellRegExp.charAt(i) >= 128) return false;
+		if(cellRegExp.length() == 1) return true;
+		if(cellRegExp.length() == 2 && cellRegExp.charAt(0) == '\\') return true;
+		return cellRegExp.charAt(0) == '[' && cellRegExp.indexOf(']', 2) == cellRegExp.length() - 1;
+	}
+
+	private static int classOf(char c) {
+		if(c < 128) return c;
+		if(c == '\u0085' || c == '\u2028' || c == '\u2029') return LINE_TERMINATOR;
+		return OTHER;
+	}
+
+	/**
+	 * Tells whether any pattern matches the neighbourhood of
+	 * (<code>x</code>, <code>y</code>), which must be fully inside
+	 * <code>grid</code>.
+	 *
+	 * @return the answer, or <code>null</code> if the group could not be
+	 * compiled or if the neighbourhood contains surrogates, which the
+	 * regular expressions see as a single character
+	 */
+	Boolean isAnyMatchedBy(TextGrid grid, int x, int y) {
+		if(matches == null && masks == null) return null;
+		int index = 0;
+		long mask = -1L;
+		for(int i = 0; i < NB_CELLS; i++) {
+			char c = grid.getRow(y - 1 + i / 3).charAt(x - 1 + i % 3);
+			if(Character.isSurrogate(c)) return null;
+			if(matches != null) index += offsets[i][classOf(c)];
+			else mask &= masks[i][classOf(c)];
+		}
+		if(matches != null) return matches[index];
+		return mask != 0;
+	}
+
+}
@@ -22,6 +22,7 @@ package org.stathissideris.ascii2image.text;
 import java.awt.Color;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -1184,8 +1185,7 @@ public class TextGrid {
 
 
 	public boolean matchesAny(Cell cell, GridPatternGroup criteria){
-		TextGrid subGrid = getTestingSubGrid(cell);
-		return subGrid.matchesAny(criteria);
+		return criteria.isAnyMatchedBy(this, cell.x, cell.y);
 	}
 	
 	public boolean isCorner1(Cell cell){
@@ -1317,25 +1317,22 @@ public class TextGrid {
 		if(oldChar == newChar) return cellsFilled;
 		if(isOutOfBounds(seed)) return cellsFilled;
 
-		Stack<Cell> stack = new Stack<Cell>();
+		CellStack stack = new CellStack();
 
-		stack.push(seed);
+		stack.push(seed.x, seed.y);
 		
 		while(!stack.isEmpty()){
-			Cell cell = (Cell) stack.pop();
+			stack.pop();
+			int x = stack.x;
+			int y = stack.y;
 			
 			//set(cell, newChar);
-			cellsFilled.add(cell);
+			cellsFilled.add(x, y);
 
-			Cell nCell = cell.getNorth();
-			Cell sCell = cell.getSouth();
-			Cell eCell = cell.getEast();
-			Cell wCell = cell.getWest();
-			
-			if(get(nCell) == oldChar && !cellsFilled.contains(nCell)) stack.push(nCell);
-			if(get(sCell) == oldChar && !cellsFilled.contains(sCell)) stack.push(sCell);
-			if(get(eCell) == oldChar && !cellsFilled.contains(eCell)) stack.push(eCell);
-			if(get(wCell) == oldChar && !cellsFilled.contains(wCell)) stack.push(wCell);
+			if(get(x, y - 1) == oldChar && !cellsFilled.contains(x, y - 1)) stack.push(x, y - 1);
+			if(get(x, y + 1) == oldChar && !cellsFilled.contains(x, y + 1)) stack.push(x, y + 1);
+			if(get(x + 1, y) == oldChar && !cellsFilled.contains(x + 1, y)) stack.push(x + 1, y);
+			if(get(x - 1, y) == oldChar && !cellsFilled.contains(x - 1, y)) stack.push(x - 1, y);
 		}
 		
 		return cellsFilled;
@@ -1348,25 +1345,23 @@ public class TextGrid {
 		if(oldChar == newChar) return cellsFilled;
 		if(isOutOfBounds(seed)) return cellsFilled;
 
-		Stack<Cell> stack = new Stack<Cell>();
+		//cells are filled when pushed, so that each one is pushed only once
+		CellStack stack = new CellStack();
 
-		stack.push(seed);
+		set(seed, newChar);
+		stack.push(seed.x, seed.y);
 		
 		while(!stack.isEmpty()){
-			Cell cell = (Cell) stack.pop();
+			stack.pop();
+			int x = stack.x;
+			int y = stack.y;
 			
-			set(cell, newChar);
-			cellsFilled.add(cell);
+			cellsFilled.add(x, y);
 
-			Cell nCell = cell.getNorth();
-			Cell sCell = cell.getSouth();
-			Cell eCell = cell.getEast();
-			Cell wCell = cell.getWest();
-			
-			if(get(nCell) == oldChar) stack.push(nCell);
-			if(get(sCell) == oldChar) stack.push(sCell);
-			if(get(eCell) == oldChar) stack.push(eCell);
-			if(get(wCell) == oldChar) stack.push(wCell);
+			if(get(x, y - 1) == oldChar) { set(x, y - 1, newChar); stack.push(x, y - 1); }
+			if(get(x, y + 1) == oldChar) { set(x, y + 1, newChar); stack.push(x, y + 1); }
+			if(get(x + 1, y) == oldChar) { set(x + 1, y, newChar); stack.push(x + 1, y); }
+			if(get(x - 1, y) == oldChar) { set(x - 1, y, newChar); stack.push(x - 1, y); }
 		}
 		
 		return cellsFilled;
@@ -1389,37 +1384,35 @@ public class TextGrid {
 
 		char newChar = 1; //TODO: kludge
 
-		Stack<Cell> stack = new Stack<Cell>();
+		//cells are filled when pushed, so that each one is pushed only once
+		CellStack stack = new CellStack();
 
-		stack.push(seed);
+		set(seed, newChar);
+		stack.push(seed.x, seed.y);
 		
 		while(!stack.isEmpty()){
-			Cell cell = (Cell) stack.pop();
-			
-			set(cell, newChar);
-
-			Cell nCell = cell.getNorth();
-			Cell sCell = cell.getSouth();
-			Cell eCell = cell.getEast();
-			Cell wCell = cell.getWest();
-			
-			if(get(nCell) == oldChar) stack.push(nCell);
-			else if(get(nCell) == '*') boundaries.add(nCell);
-			
-			if(get(sCell) == oldChar) stack.push(sCell);
-			else if(get(sCell) == '*') boundaries.add(sCell);
-			
-			if(get(eCell) == oldChar) stack.push(eCell);
-			else if(get(eCell) == '*') boundaries.add(eCell);
-			
-			if(get(wCell) == oldChar) stack.push(wCell);
-			else if(get(wCell) == '*') boundaries.add(wCell);
+			stack.pop();
+			int x = stack.x;
+			int y = stack.y;
+
+			expandTo(stack, boundaries, x, y - 1, oldChar, newChar);
+			expandTo(stack, boundaries, x, y + 1, oldChar, newChar);
+			expandTo(stack, boundaries, x + 1, y, oldChar, newChar);
+			expandTo(stack, boundaries, x - 1, y, oldChar, newChar);
 		}
 		
 		return boundaries;
 	}
 	
 	
+	private void expandTo(CellStack stack, CellSet boundaries, int x, int y, char oldChar, char newChar){
+		char c = get(x, y);
+		if(c == oldChar) {
+			set(x, y, newChar);
+			stack.push(x, y);
+		} else if(c == '*') boundaries.add(x, y);
+	}
+	
 	//TODO: incomplete method seedFillLine()
 	private CellSet seedFillLine(Cell cell, char newChar){
 		CellSet cellsFilled = new CellSet();
@@ -1657,6 +1650,32 @@ public class TextGrid {
 	}
 
 	
+	/**
+	 * A stack of cell coordinates, used by the flood fills instead of
+	 * a <code>Stack</code> of <code>Cell</code> objects.
+	 */
+	private static class CellStack{
+		private int[] coords = new int[64];
+		private int top;
+		//coordinates of the last popped cell
+		int x, y;
+
+		boolean isEmpty(){
+			return top == 0;
+		}
+
+		void push(int x, int y){
+			if(top + 2 > coords.length) coords = Arrays.copyOf(coords, coords.length * 2);
+			coords[top++] = x;
+			coords[top++] = y;
+		}
+
+		void pop(){
+			y = coords[--top];
+			x = coords[--top];
+		}
+	}
+
 	public class Cell{
 
 		public int x, y;
@@ -40,14 +40,10 @@ import h.ST_refstr_t;
 
 final public class CString extends UnsupportedC implements __ptr__ {
 
-	private static int UID = 100;
-
 	// private final Throwable creation = new Throwable();
 	private final StringBuilder data;
 	private final int currentStart;
 
-	private final int uid;
-
 	public boolean isSameThan(CString other) {
 		if (this.data != other.data) {
 			throw new UnsupportedOperationException();
@@ -90,8 +86,6 @@ final public class CString extends UnsupportedC implements __ptr__ {
 		else
 			this.data = data;
 		this.currentStart = currentStart;
-		this.uid = UID;
-		UID += 2;
 	}
 
 	public __ptr__ getTheField(FieldOffset bytes) {
@@ -231,8 +225,4 @@ final public class CString extends UnsupportedC implements __ptr__ {
 		return getContent().equals(other.getContent());
 	}
 
-	public int getUid() {
-		return uid;
-	}
-
 }
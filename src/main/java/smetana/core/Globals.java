@@ -46,6 +46,7 @@ import static smetana.core.Macro.ARR_TYPE_NORM;
 import static smetana.core.Macro.ARR_TYPE_TEE;
 
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 import com.plantuml.api.cheerpj.WasmLog;
@@ -105,6 +106,10 @@ final public class Globals {
 
 	public final Map<Integer, CString> all = new HashMap<Integer, CString>();
 
+	public final Map<CString, Integer> ids = new IdentityHashMap<CString, Integer>();
+
+	public int nextStringId = 100;
+
 	public final ST_dtmethod_s _Dttree = new ST_dtmethod_s();
 	public final ST_dtmethod_s Dttree = _Dttree;
 
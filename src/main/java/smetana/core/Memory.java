@@ -46,9 +46,15 @@ final public class Memory {
 		if (data == null)
 			return 0;
 
-		int result = data.getUid();
-		zz.all.put(result, data);
-		WasmLog.log("hashsize = " + zz.all.size());
+		Integer result = zz.ids.get(data);
+		if (result == null) {
+			// Identifiers are even, odd ones being used for anonymous objects (see idmap)
+			result = zz.nextStringId;
+			zz.nextStringId += 2;
+			zz.ids.put(data, result);
+			zz.all.put(result, data);
+			WasmLog.log("hashsize = " + zz.all.size());
+		}
 		return result;
 	}
 
@@ -0,0 +1,58 @@
+package net.atmp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.plantuml.SourceStringReader;
+import net.sourceforge.plantuml.abel.Entity;
+import net.sourceforge.plantuml.abel.Link;
+
+class CucaDiagramLinksTest {
+
+	private static CucaDiagram parse(String body) {
+		final String source = "@startuml\n" + body + "\n@enduml\n";
+		return (CucaDiagram) new SourceStringReader(source).getBlocks().get(0).getDiagram();
+	}
+
+	private static Entity leaf(CucaDiagram diagram, String name) {
+		for (Entity ent : diagram.leafs())
+			if (ent.getName().equals(name))
+				return ent;
+		throw new IllegalArgumentException(name);
+	}
+
+	@Test
+	void links_are_indexed_by_both_ends() {
+		final CucaDiagram diagram = parse("class A\nclass B\nclass C\nclass D\nA --> B\nB --> C\nC --> C");
+		assertEquals(1, diagram.getLinksOf(leaf(diagram, "A")).size());
+		assertEquals(2, diagram.getLinksOf(leaf(diagram, "B")).size());
+		// A self link is only indexed once
+		assertEquals(2, diagram.getLinksOf(leaf(diagram, "C")).size());
+		assertEquals(0, diagram.getLinksOf(leaf(diagram, "D")).size());
+
+		assertTrue(diagram.isStandalone(leaf(diagram, "D")));
+		assertEquals(false, diagram.isStandalone(leaf(diagram, "A")));
+	}
+
+	@Test
+	void single_links_are_not_duplicated() {
+		final CucaDiagram diagram = parse("class A\nclass B\nA -[single]-> B\nA -[single]-> B\nB -[single]-> A");
+		assertEquals(1, diagram.getLinks().size());
+		assertEquals(1, diagram.getLinksOf(leaf(diagram, "B")).size());
+	}
+
+	@Test
+	void removed_link_is_removed_from_the_index() {
+		final CucaDiagram diagram = parse("class A\nclass B\nA --> B");
+		final List<Link> links = diagram.getLinksOf(leaf(diagram, "A"));
+		diagram.removeLink(links.get(0));
+		assertEquals(0, diagram.getLinks().size());
+		assertTrue(diagram.isStandalone(leaf(diagram, "A")));
+		assertTrue(diagram.isStandalone(leaf(diagram, "B")));
+	}
+
+}
@@ -2,9 +2,12 @@ package net.sourceforge.plantuml;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static net.sourceforge.plantuml.FileFormat.PNG;
+import static net.sourceforge.plantuml.FileFormat.SVG;
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
@@ -68,6 +71,37 @@ class PSystemUtilsTest {
 				.hasSize(1);
 	}
 
+	@Test
+	void test_sequence_pages_share_one_layout(@TempDir Path tempDir) throws Exception {
+		for (String pragma : new String[] { "", "!pragma teoz true\n" }) {
+			final StringBuilder source = new StringBuilder("@startuml\n" + pragma);
+			source.append("header Page %page% of %lastpage%\n");
+			for (int page = 0; page < 12; page++) {
+				if (page > 0)
+					source.append("newpage page " + page + "\n");
+				source.append("Alice -> Bob : hello " + page + "\n");
+				source.append("Bob --> Alice : ok\n");
+				source.append("note over Bob : page " + page + "\n");
+			}
+			source.append("@enduml\n");
+
+			final Path dir = Files.createTempDirectory(tempDir, "seq");
+			final SourceStringReader reader = new SourceStringReader(Defines.createEmpty(), source.toString(),
+					UTF_8.name(), Collections.<String>emptyList());
+			final SuggestedFile suggestedFile = SuggestedFile.fromOutputFile(dir.resolve("output").toFile(), SVG, 0);
+			final List<FileImageData> fileImageData = PSystemUtils.exportDiagrams(
+					reader.getBlocks().get(0).getDiagram(), suggestedFile, new FileFormatOption(SVG), false);
+
+			assertThat(fileImageData).hasSize(12);
+			// Each page is the same as when the diagram is laid out just for it
+			for (int i = 0; i < 12; i++) {
+				final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+				new SourceStringReader(source.toString()).outputImage(baos, i, new FileFormatOption(SVG));
+				assertThat(fileImageData.get(i).getFile().conv()).hasBinaryContent(baos.toByteArray());
+			}
+		}
+	}
+
 	//
 	// Test DSL
 	//
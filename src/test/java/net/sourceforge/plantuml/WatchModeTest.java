@@ -0,0 +1,114 @@
+package net.sourceforge.plantuml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.api.parallel.Isolated;
+
+import net.sourceforge.plantuml.cli.CliParser;
+
+@Isolated
+class WatchModeTest {
+
+	private static File write(File dir, String name, String content) throws IOException {
+		final File file = new File(dir, name);
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	private static WatchMode watchMode(File dir) throws Exception {
+		return new WatchMode(CliParser.parse("-tsvg", dir.getPath()), "UTF-8");
+	}
+
+	private static void waitFor(File file, long notModifiedSince) throws InterruptedException {
+		final long limit = System.currentTimeMillis() + 30000;
+		while (file.lastModified() == notModifiedSince && System.currentTimeMillis() < limit)
+			Thread.sleep(50);
+	}
+
+	@Test
+	void includes_are_recorded_as_dependencies(@TempDir File dir) throws Exception {
+		final File style = write(dir, "style.iuml", "skinparam monochrome true\n");
+		final File a = write(dir, "a.puml", "@startuml\n!include style.iuml\nAlice -> Bob\n@enduml\n");
+		write(dir, "b.puml", "@startuml\nAlice -> Bob\n@enduml\n");
+
+		final WatchMode watchMode = watchMode(dir);
+		try {
+			watchMode.start();
+			watchMode.awaitIdle();
+			assertEquals(2, watchMode.getDiagrams().size());
+			assertEquals(Collections.singleton(WatchMode.key(a)), watchMode.getDependents(style));
+			assertTrue(new File(dir, "a.svg").exists());
+			assertTrue(new File(dir, "b.svg").exists());
+		} finally {
+			watchMode.close();
+		}
+	}
+
+	@Test
+	void changed_include_regenerates_only_its_dependents(@TempDir File dir) throws Exception {
+		write(dir, "style.iuml", "skinparam monochrome true\n");
+		write(dir, "a.puml", "@startuml\n!include style.iuml\nAlice -> Bob\n@enduml\n");
+		write(dir, "b.puml", "@startuml\nAlice -> Bob\n@enduml\n");
+		final File svgA = new File(dir, "a.svg");
+		final File svgB = new File(dir, "b.svg");
+
+		final WatchMode watchMode = watchMode(dir);
+		final Thread thread = new Thread(() -> {
+			try {
+				watchMode.watch();
+			} catch (IOException | InterruptedException e) {
+			}
+		});
+		try {
+			thread.start();
+			waitFor(svgA, 0L);
+			waitFor(svgB, 0L);
+			watchMode.awaitIdle();
+			svgA.setLastModified(1000L);
+			svgB.setLastModified(1000L);
+
+			write(dir, "style.iuml", "skinparam monochrome reverse\n");
+			waitFor(svgA, 1000L);
+			watchMode.awaitIdle();
+
+			assertTrue(svgA.lastModified() != 1000L);
+			assertEquals(1000L, svgB.lastModified());
+		} finally {
+			watchMode.close();
+			thread.join(5000);
+		}
+	}
+
+	@Test
+	void created_diagram_is_rendered(@TempDir File dir) throws Exception {
+		write(dir, "a.puml", "@startuml\nAlice -> Bob\n@enduml\n");
+		final WatchMode watchMode = watchMode(dir);
+		final Thread thread = new Thread(() -> {
+			try {
+				watchMode.watch();
+			} catch (IOException | InterruptedException e) {
+			}
+		});
+		try {
+			thread.start();
+			waitFor(new File(dir, "a.svg"), 0L);
+
+			write(dir, "c.puml", "@startuml\nX -> Y\n@enduml\n");
+			waitFor(new File(dir, "c.svg"), 0L);
+			assertTrue(new File(dir, "c.svg").exists());
+		} finally {
+			watchMode.close();
+			thread.join(5000);
+		}
+	}
+
+}
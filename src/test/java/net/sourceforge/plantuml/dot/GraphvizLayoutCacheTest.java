@@ -0,0 +1,128 @@
+package net.sourceforge.plantuml.dot;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GraphvizLayoutCacheTest {
+
+	static class FakeGraphviz implements Graphviz {
+		private final File exe;
+		private final String version;
+		private int versionCalls;
+
+		FakeGraphviz(File exe, String version) {
+			this.exe = exe;
+			this.version = version;
+		}
+
+		public ProcessState createFile3(OutputStream os) {
+			throw new UnsupportedOperationException();
+		}
+
+		public File getDotExe() {
+			return exe;
+		}
+
+		public String dotVersion() {
+			versionCalls++;
+			return version;
+		}
+
+		public ExeState getExeState() {
+			return ExeState.OK;
+		}
+
+		public boolean graphviz244onWindows() {
+			return false;
+		}
+	}
+
+	private static byte[] svg(String s) {
+		return s.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static File exe(File dir) throws IOException {
+		final File exe = new File(dir, "dot");
+		Files.write(exe.toPath(), svg("#!/bin/sh"));
+		return exe;
+	}
+
+	@Test
+	void key_depends_on_dot_string_and_version(@TempDir File dir) throws IOException {
+		final GraphvizLayoutCache cache = new GraphvizLayoutCache(1000, null, 0);
+		final FakeGraphviz v1 = new FakeGraphviz(exe(dir), "dot - graphviz version 2.43.0");
+		final FakeGraphviz v2 = new FakeGraphviz(new File(dir, "other"), "dot - graphviz version 9.0.0");
+
+		final String key = cache.getKey(v1, "digraph { a -> b }");
+		assertEquals(key, cache.getKey(v1, "digraph { a -> b }"));
+		assertNotEquals(key, cache.getKey(v1, "digraph { a -> c }"));
+		assertNotEquals(key, cache.getKey(v2, "digraph { a -> b }"));
+		assertEquals(1, v1.versionCalls);
+	}
+
+	@Test
+	void memory_tier_is_bounded_by_size(@TempDir File dir) throws IOException {
+		final GraphvizLayoutCache cache = new GraphvizLayoutCache(10, null, 0);
+		final FakeGraphviz graphviz = new FakeGraphviz(exe(dir), "2.43.0");
+		final String a = cache.getKey(graphviz, "a");
+		final String b = cache.getKey(graphviz, "b");
+
+		assertNull(cache.get(a));
+		cache.put(a, svg("123456"));
+		assertArrayEquals(svg("123456"), cache.get(a));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		cache.put(b, svg("7890ab"));
+		assertNull(cache.get(a));
+		assertArrayEquals(svg("7890ab"), cache.get(b));
+	}
+
+	@Test
+	void disk_tier_is_shared(@TempDir File dir) throws IOException {
+		final File store = new File(dir, "layouts");
+		final FakeGraphviz graphviz = new FakeGraphviz(exe(dir), "2.43.0");
+		final GraphvizLayoutCache first = new GraphvizLayoutCache(1000, store, 1000);
+		final GraphvizLayoutCache second = new GraphvizLayoutCache(1000, store, 1000);
+		final String key = first.getKey(graphviz, "digraph { a -> b }");
+
+		assertNull(second.get(key));
+		first.put(key, svg("<svg/>"));
+		assertArrayEquals(svg("<svg/>"), second.get(key));
+		assertEquals(1, second.getDirHits());
+		assertArrayEquals(svg("<svg/>"), new GraphvizLayoutCache(1000, store, 1000).get(key));
+	}
+
+	@Test
+	void disk_tier_is_bounded_by_size(@TempDir File dir) throws IOException {
+		final File store = new File(dir, "layouts");
+		final FakeGraphviz graphviz = new FakeGraphviz(exe(dir), "2.43.0");
+		final GraphvizLayoutCache cache = new GraphvizLayoutCache(1000, store, 10);
+		final String a = cache.getKey(graphviz, "a");
+		final String b = cache.getKey(graphviz, "b");
+
+		cache.put(a, svg("123456"));
+		cache.put(b, svg("7890ab"));
+		assertNull(new GraphvizLayoutCache(1000, store, 10).get(a));
+		assertEquals(1, store.list().length);
+	}
+
+	@Test
+	void disabled_cache_has_no_key(@TempDir File dir) throws IOException {
+		final GraphvizLayoutCache cache = new GraphvizLayoutCache(0, null, 0);
+		assertNull(cache.getKey(new FakeGraphviz(exe(dir), "2.43.0"), "a"));
+		assertNull(cache.get(null));
+	}
+
+}
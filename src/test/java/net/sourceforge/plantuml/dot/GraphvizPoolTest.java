@@ -0,0 +1,284 @@
+package net.sourceforge.plantuml.dot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Isolated;
+
+import net.sourceforge.plantuml.cli.GlobalConfig;
+import net.sourceforge.plantuml.cli.GlobalConfigKey;
+
+@Isolated
+class GraphvizPoolTest {
+
+	private final Object timeout = GlobalConfig.getInstance().value(GlobalConfigKey.TIMEOUT_MS);
+
+	@AfterEach
+	void restoreTimeout() {
+		GlobalConfig.getInstance().put(GlobalConfigKey.TIMEOUT_MS, timeout);
+	}
+
+	private static byte[] bytes(String s) {
+		return s.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String string(byte[] data) {
+		return new String(data, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns one chunk per read. An empty chunk is the end of the stream.
+	 */
+	static class ChunkedInputStream extends InputStream {
+		private final BlockingQueue<byte[]> chunks = new LinkedBlockingQueue<>();
+		private boolean eof;
+
+		void add(String chunk) {
+			chunks.add(bytes(chunk));
+		}
+
+		@Override
+		public int read() throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (eof)
+				return -1;
+
+			try {
+				final byte[] chunk = chunks.take();
+				if (chunk.length == 0) {
+					eof = true;
+					return -1;
+				}
+				System.arraycopy(chunk, 0, b, off, chunk.length);
+				return chunk.length;
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+		}
+	}
+
+	enum Behavior {
+		ANSWER, SILENT, DIE
+	}
+
+	/**
+	 * Process that answers each flushed graph with a small SVG document.
+	 */
+	static class FakeDot extends Process {
+		private final ChunkedInputStream stdout = new ChunkedInputStream();
+		private final Behavior behavior;
+		private volatile boolean alive = true;
+		private int jobs;
+
+		FakeDot(Behavior behavior) {
+			this.behavior = behavior;
+		}
+
+		@Override
+		public OutputStream getOutputStream() {
+			return new ByteArrayOutputStream() {
+				@Override
+				public void flush() {
+					if (behavior == Behavior.ANSWER)
+						stdout.add("<svg>" + (++jobs) + "</svg>\n");
+					else if (behavior == Behavior.DIE)
+						destroy();
+				}
+			};
+		}
+
+		@Override
+		public InputStream getInputStream() {
+			return stdout;
+		}
+
+		@Override
+		public InputStream getErrorStream() {
+			return new ByteArrayInputStream(new byte[0]);
+		}
+
+		@Override
+		public int waitFor() {
+			return 0;
+		}
+
+		@Override
+		public int exitValue() {
+			if (alive)
+				throw new IllegalThreadStateException();
+			return 0;
+		}
+
+		@Override
+		public boolean isAlive() {
+			return alive;
+		}
+
+		@Override
+		public void destroy() {
+			if (alive)
+				stdout.add("");
+			alive = false;
+		}
+	}
+
+	static class FakeFactory implements GraphvizPool.ProcessFactory {
+		private final Behavior behavior;
+		private final List<FakeDot> started = new ArrayList<>();
+
+		FakeFactory(Behavior behavior) {
+			this.behavior = behavior;
+		}
+
+		@Override
+		public Process start() {
+			final FakeDot result = new FakeDot(behavior);
+			started.add(result);
+			return result;
+		}
+	}
+
+	private static List<String> documents(ChunkedInputStream stdout) throws Exception {
+		final FakeDot process = new FakeDot(Behavior.SILENT) {
+			@Override
+			public InputStream getInputStream() {
+				return stdout;
+			}
+		};
+		final GraphvizPool.Worker worker = new GraphvizPool.Worker(process);
+		final List<String> result = new ArrayList<>();
+		while (true) {
+			final byte[] document = worker.render(new byte[0], 5000);
+			if (document.length == 0)
+				return result;
+			result.add(string(document));
+		}
+	}
+
+	@Test
+	void end_of_document_split_across_reads() throws Exception {
+		final ChunkedInputStream stdout = new ChunkedInputStream();
+		stdout.add("<svg>a</sv");
+		stdout.add("g>");
+		stdout.add("\n<svg>b</svg>");
+		stdout.add("\n");
+		stdout.add("");
+		assertEquals(List.of("<svg>a</svg>\n", "<svg>b</svg>\n"), documents(stdout));
+	}
+
+	@Test
+	void several_documents_in_one_read() throws Exception {
+		final ChunkedInputStream stdout = new ChunkedInputStream();
+		stdout.add("<svg>a</svg>\n<svg><</svg>\n<svg>c</svg>\n");
+		stdout.add("");
+		assertEquals(List.of("<svg>a</svg>\n", "<svg><</svg>\n", "<svg>c</svg>\n"), documents(stdout));
+	}
+
+	@Test
+	void end_of_stream_in_the_middle_of_a_document() throws Exception {
+		final ChunkedInputStream stdout = new ChunkedInputStream();
+		stdout.add("<svg>a</svg>\n<svg>b</sv");
+		stdout.add("");
+		assertEquals(List.of("<svg>a</svg>\n"), documents(stdout));
+	}
+
+	@Test
+	void worker_is_reused() {
+		final FakeFactory factory = new FakeFactory(Behavior.ANSWER);
+		final GraphvizPool pool = new GraphvizPool(factory, 2);
+		for (int i = 1; i <= 3; i++) {
+			final ByteArrayOutputStream os = new ByteArrayOutputStream();
+			assertEquals(ProcessState.TERMINATED_OK(), pool.run(bytes("digraph {}"), os));
+			assertEquals("<svg>" + i + "</svg>\n", string(os.toByteArray()));
+		}
+		assertEquals(1, factory.started.size());
+		assertEquals(1, pool.getCreated());
+	}
+
+	@Test
+	void worker_is_recycled_after_max_jobs() {
+		final FakeFactory factory = new FakeFactory(Behavior.ANSWER);
+		final GraphvizPool pool = new GraphvizPool(factory, 1);
+		for (int i = 0; i < GraphvizPool.MAX_JOBS_PER_WORKER; i++)
+			pool.run(bytes("digraph {}"), new ByteArrayOutputStream());
+
+		assertFalse(factory.started.get(0).isAlive());
+		assertEquals(0, pool.getCreated());
+
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		assertEquals(ProcessState.TERMINATED_OK(), pool.run(bytes("digraph {}"), os));
+		assertEquals("<svg>1</svg>\n", string(os.toByteArray()));
+		assertEquals(2, factory.started.size());
+	}
+
+	@Test
+	void timeout_discards_the_worker() {
+		GlobalConfig.getInstance().put(GlobalConfigKey.TIMEOUT_MS, 100L);
+		final FakeFactory factory = new FakeFactory(Behavior.SILENT);
+		final GraphvizPool pool = new GraphvizPool(factory, 1);
+		assertEquals(ProcessState.TIMEOUT(), pool.run(bytes("digraph {}"), new ByteArrayOutputStream()));
+		assertFalse(factory.started.get(0).isAlive());
+		assertEquals(0, pool.getCreated());
+	}
+
+	@Test
+	void dead_worker_is_discarded_and_replaced() {
+		final FakeFactory factory = new FakeFactory(Behavior.DIE);
+		final GraphvizPool pool = new GraphvizPool(factory, 1);
+		assertNull(pool.run(bytes("digraph {"), new ByteArrayOutputStream()));
+		assertEquals(0, pool.getCreated());
+
+		assertNull(pool.run(bytes("digraph {"), new ByteArrayOutputStream()));
+		assertEquals(2, factory.started.size());
+		assertEquals(0, pool.getCreated());
+	}
+
+	@Test
+	void failed_start_releases_the_slot() {
+		final GraphvizPool pool = new GraphvizPool(() -> {
+			throw new IOException("no dot");
+		}, 1);
+		assertNull(pool.run(bytes("digraph {}"), new ByteArrayOutputStream()));
+		assertEquals(0, pool.getCreated());
+	}
+
+	@Test
+	void pooled_falls_back_to_its_own_process() throws Exception {
+		final Graphviz direct = new GraphvizLayoutCacheTest.FakeGraphviz(new File("dot"), "2.44") {
+			@Override
+			public ProcessState createFile3(OutputStream os) {
+				try {
+					os.write(bytes("direct"));
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+				return ProcessState.TERMINATED_OK();
+			}
+		};
+		final GraphvizPool pool = new GraphvizPool(new FakeFactory(Behavior.DIE), 1);
+		final Graphviz pooled = new GraphvizPoolFactory.Pooled(pool, direct, bytes("digraph {"));
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		assertEquals(ProcessState.TERMINATED_OK(), pooled.createFile3(os));
+		assertEquals("direct", string(os.toByteArray()));
+	}
+
+}
@@ -0,0 +1,65 @@
+package net.sourceforge.plantuml.emoji;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.plantuml.FileFormat;
+import net.sourceforge.plantuml.klimt.UTranslate;
+import net.sourceforge.plantuml.klimt.color.HColor;
+import net.sourceforge.plantuml.klimt.color.HColors;
+import net.sourceforge.plantuml.klimt.drawing.svg.SvgOption;
+import net.sourceforge.plantuml.klimt.drawing.svg.UGraphicSvg;
+
+class SvgNanoParserTest {
+
+	private static final String SVG = "<svg viewBox=\"0 0 36 36\">"
+			+ "<g transform=\"translate(2 3)\" fill=\"#ff0000\" stroke=\"#0000ff\" stroke-width=\"2\">"
+			+ "<circle cx=\"10\" cy=\"10\" r=\"8\"/>" //
+			+ "<ellipse cx=\"20\" cy=\"12\" rx=\"6\" ry=\"3\" fill=\"none\"/>"
+			+ "<g transform=\"rotate(30 10 10)\"><path d=\"M2 2 L20 5 L10 15 Z\" stroke-width=\"0.5\"/></g>"
+			+ "<g style=\"fill:#00ff00\"><path d=\"M0 0 C5 5 10 5 15 0\"/></g>" //
+			+ "</g>" //
+			+ "<text x=\"2\" y=\"30\" font-size=\"8px\" fill=\"#123456\">Hi</text>" //
+			+ "</svg>";
+
+	private static String draw(SvgNanoParser parser, double scale, HColor forcedColor) throws IOException {
+		final UGraphicSvg ug = UGraphicSvg.build(SvgOption.basic().withBackcolor(HColors.WHITE), false, 42,
+				FileFormat.SVG.getDefaultStringBounder());
+		parser.drawU(ug.apply(new UTranslate(10, 10)), scale, HColors.BLACK, forcedColor);
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ug.writeToStream(baos, null, 96);
+		return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	void drawing_again_gives_the_same_result() throws IOException {
+		final SvgNanoParser parser = new SvgNanoParser(SVG);
+		final String first = draw(parser, 1, null);
+		assertEquals(first, draw(parser, 1, null));
+		assertEquals(first, draw(new SvgNanoParser(SVG), 1, null));
+	}
+
+	@Test
+	void each_scale_and_color_is_drawn_as_with_a_new_parser() throws IOException {
+		final SvgNanoParser parser = new SvgNanoParser(SVG);
+		draw(parser, 1, null);
+		assertEquals(draw(new SvgNanoParser(SVG), 2.5, null), draw(parser, 2.5, null));
+		assertEquals(draw(new SvgNanoParser(SVG), 1, HColors.RED), draw(parser, 1, HColors.RED));
+		assertEquals(draw(new SvgNanoParser(SVG), 2.5, HColors.BLUE), draw(parser, 2.5, HColors.BLUE));
+	}
+
+	@Test
+	void shapes_are_scaled_and_colored() throws IOException {
+		final SvgNanoParser parser = new SvgNanoParser("<svg><path d=\"M1 2 L3 4\" stroke=\"#00ff00\"/></svg>");
+		final String svg = draw(parser, 2, null);
+		assertTrue(svg.contains("d=\"M12,14 L16,18\""), svg);
+		assertTrue(svg.contains("stroke:#00FF00;"), svg);
+	}
+
+}
@@ -0,0 +1,105 @@
+package net.sourceforge.plantuml.klimt.compress;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Differential tests: the sorted SlotSet must give the same slots as merging
+ * them one by one in a list.
+ */
+class SlotSetTest {
+
+	private static List<Slot> addSlotReference(List<Slot> all, double start, double end) {
+		final List<Slot> collisions = new ArrayList<>();
+		Slot newSlot = new Slot(start, end);
+		for (final Iterator<Slot> it = all.iterator(); it.hasNext();) {
+			final Slot s = it.next();
+			if (s.intersect(newSlot)) {
+				it.remove();
+				collisions.add(s);
+			}
+		}
+		for (Slot s : collisions)
+			newSlot = newSlot.merge(s);
+
+		all.add(newSlot);
+		return all;
+	}
+
+	private static double compressDeltaReference(List<Slot> all, double v) {
+		double result = 0;
+		for (Slot s : all) {
+			if (s.getStart() > v)
+				continue;
+
+			if (v > s.getEnd())
+				result += s.size();
+			else
+				result += v - s.getStart();
+		}
+		return result;
+	}
+
+	private static String toString(List<Slot> slots) {
+		final List<Slot> sorted = new ArrayList<>(slots);
+		Collections.sort(sorted);
+		return sorted.toString();
+	}
+
+	@Test
+	void merged_slots_are_the_same_as_with_a_list() {
+		final Random random = new Random(42);
+		for (int i = 0; i < 200; i++) {
+			final SlotSet slotSet = new SlotSet();
+			final List<Slot> reference = new ArrayList<>();
+			final int nb = 1 + random.nextInt(100);
+			for (int j = 0; j < nb; j++) {
+				// Small integers, so that slots often touch each other
+				final double start = random.nextInt(300) / 2.0;
+				final double end = start + 0.5 + random.nextInt(20) / 2.0;
+				slotSet.addSlot(start, end);
+				addSlotReference(reference, start, end);
+				assertEquals(toString(reference), slotSet.toString());
+			}
+		}
+	}
+
+	@Test
+	void compression_is_the_same_as_with_a_list() {
+		final Random random = new Random(43);
+		for (int i = 0; i < 200; i++) {
+			final SlotSet slotSet = new SlotSet();
+			for (int j = 0; j < 50; j++) {
+				final double start = random.nextDouble() * 1000;
+				slotSet.addSlot(start, start + random.nextDouble() * 30);
+			}
+			final SlotSet compressed = slotSet.reverse().smaller(5.0);
+			final CompressionTransform transform = new CompressionTransform(compressed);
+			final List<Slot> reference = compressed.getSlots();
+			for (int j = 0; j < 200; j++) {
+				final double v = j % 4 == 0 ? reference.get(random.nextInt(reference.size())).getEnd()
+						: random.nextDouble() * 1100 - 50;
+				assertEquals(v - compressDeltaReference(reference, v), transform.transform(v), "" + v);
+			}
+		}
+	}
+
+	@Test
+	void reverse_gives_the_holes() {
+		final SlotSet slotSet = new SlotSet();
+		slotSet.addSlot(10, 20);
+		slotSet.addSlot(50, 60);
+		slotSet.addSlot(0, 5);
+		slotSet.addSlot(15, 30);
+		assertEquals("[(0.0,5.0), (10.0,30.0), (50.0,60.0)]", slotSet.toString());
+		assertEquals("[(5.0,10.0), (30.0,50.0)]", slotSet.reverse().toString());
+	}
+
+}
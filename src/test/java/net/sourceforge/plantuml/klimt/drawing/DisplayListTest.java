@@ -0,0 +1,92 @@
+package net.sourceforge.plantuml.klimt.drawing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.plantuml.FileFormat;
+import net.sourceforge.plantuml.klimt.UStroke;
+import net.sourceforge.plantuml.klimt.UTranslate;
+import net.sourceforge.plantuml.klimt.color.ColorMapper;
+import net.sourceforge.plantuml.klimt.color.HColors;
+import net.sourceforge.plantuml.klimt.drawing.svg.SvgOption;
+import net.sourceforge.plantuml.klimt.drawing.svg.UGraphicSvg;
+import net.sourceforge.plantuml.klimt.font.FontConfiguration;
+import net.sourceforge.plantuml.klimt.font.StringBounder;
+import net.sourceforge.plantuml.klimt.font.UFont;
+import net.sourceforge.plantuml.klimt.shape.UDrawable;
+import net.sourceforge.plantuml.klimt.shape.ULine;
+import net.sourceforge.plantuml.klimt.shape.URectangle;
+import net.sourceforge.plantuml.klimt.shape.UText;
+import net.sourceforge.plantuml.url.Url;
+import net.sourceforge.plantuml.url.UrlBuilder;
+import net.sourceforge.plantuml.url.UrlMode;
+
+class DisplayListTest {
+
+	private final StringBounder stringBounder = FileFormat.SVG.getDefaultStringBounder();
+
+	static class Sample implements UDrawable {
+		private int nbCalls;
+
+		@Override
+		public void drawU(UGraphic ug) {
+			nbCalls++;
+			final Url url = new UrlBuilder(null, UrlMode.STRICT).getUrl("[[http://plantuml.com]]");
+			ug = ug.apply(HColors.BLUE).apply(HColors.RED.bg());
+			for (int i = 0; i < 5; i++) {
+				final UGraphic row = ug.apply(UTranslate.dy(30 * i));
+				row.startUrl(url);
+				row.draw(URectangle.build(40 + i, 20).rounded(4));
+				row.closeUrl();
+				row.apply(new UTranslate(50, 15)).draw(UText.build("row " + i,
+						FontConfiguration.blackBlueTrue(UFont.sansSerif(12))));
+				// The drawable sees the real parameters, not the ones of a LimitFinder
+				row.apply(ug.getParam().getColor()).apply(UStroke.withThickness(2)).draw(ULine.hline(90));
+			}
+		}
+	}
+
+	private UGraphicSvg createSvg() {
+		return UGraphicSvg.build(SvgOption.basic().withBackcolor(HColors.WHITE), false, 42, stringBounder);
+	}
+
+	private static String toSvg(UGraphic ug) throws IOException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ug.writeToStream(baos, null, 96);
+		return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	void replay_is_identical_to_direct_drawing() throws IOException {
+		final UGraphicSvg direct = createSvg();
+		new Sample().drawU(direct.apply(new UTranslate(10, 10)));
+
+		final Sample sample = new Sample();
+		final DisplayList list = DisplayList.record(sample, stringBounder, ColorMapper.IDENTITY, HColors.WHITE,
+				"SVG");
+		final UGraphicSvg replayed = createSvg();
+		list.replay(replayed.apply(new UTranslate(10, 10)));
+
+		assertEquals(1, sample.nbCalls);
+		assertEquals(toSvg(direct), toSvg(replayed));
+		assertTrue(toSvg(replayed).contains("http://plantuml.com"));
+	}
+
+	@Test
+	void limits_are_the_same_as_limit_finder() {
+		final LimitFinder limitFinder = LimitFinder.create(stringBounder, true);
+		new Sample().drawU(limitFinder);
+
+		final DisplayList list = DisplayList.record(new Sample(), stringBounder, ColorMapper.IDENTITY,
+				HColors.WHITE);
+		assertEquals(limitFinder.getMaxX(), list.getMaxX(), 0);
+		assertEquals(limitFinder.getMaxY(), list.getMaxY(), 0);
+	}
+
+}
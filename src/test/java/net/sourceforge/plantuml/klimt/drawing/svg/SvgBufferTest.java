@@ -0,0 +1,156 @@
+package net.sourceforge.plantuml.klimt.drawing.svg;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import net.sourceforge.plantuml.xml.XmlFactories;
+
+/**
+ * Differential tests: the streaming writer must produce the same bytes as the
+ * DOM + <code>Transformer</code> pipeline it replaces.
+ */
+class SvgBufferTest {
+
+	private static String randomText(Random random) {
+		final StringBuilder sb = new StringBuilder();
+		final int len = 1 + random.nextInt(20);
+		for (int i = 0; i < len; i++) {
+			final int kind = random.nextInt(12);
+			if (kind < 6)
+				sb.append((char) (32 + random.nextInt(96)));
+			else if (kind < 8)
+				sb.append("&<>\"'-]\t\n\r".charAt(random.nextInt(10)));
+			else if (kind < 9)
+				sb.append((char) (1 + random.nextInt(31)));
+			else if (kind < 11)
+				sb.append((char) (0xA0 + random.nextInt(0x3000)));
+			else
+				sb.appendCodePoint(0x1F600 + random.nextInt(80));
+		}
+		return sb.toString();
+	}
+
+	private static String serialize(Node node) throws Exception {
+		final Transformer transformer = XmlFactories.newTransformer();
+		transformer.setOutputProperty(OutputKeys.STANDALONE, "no");
+		transformer.setOutputProperty(OutputKeys.ENCODING, "us-ascii");
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		transformer.transform(new DOMSource(node), new StreamResult(baos));
+		return new String(baos.toByteArray(), StandardCharsets.US_ASCII).replaceFirst("^<\\?xml [^<>]+?\\>", "");
+	}
+
+	private static String toString(SvgBuffer buffer) throws IOException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		buffer.writeTo(baos);
+		return new String(baos.toByteArray(), StandardCharsets.US_ASCII);
+	}
+
+	@Test
+	void text_and_attributes_are_escaped_like_the_jdk_serializer() throws Exception {
+		final Random random = new Random(42);
+		for (int i = 0; i < 500; i++) {
+			final String value = randomText(random);
+			final String text = random.nextInt(10) == 0 ? "" : randomText(random);
+
+			final Document document = XmlFactories.newDocumentBuilder().newDocument();
+			final Element elt = document.createElement("text");
+			elt.setAttribute("y", "1");
+			elt.setAttribute("x", value);
+			elt.setTextContent(text);
+			document.appendChild(elt);
+
+			final SvgBuffer buffer = new SvgBuffer(16);
+			new SvgElement("text").set("y", "1").set("x", value).writeWithText(buffer, text);
+			assertEquals(serialize(document), toString(buffer), value + " / " + text);
+		}
+	}
+
+	@Test
+	void comments_and_cdata_are_written_like_the_jdk_serializer() throws Exception {
+		final Random random = new Random(43);
+		for (int i = 0; i < 500; i++) {
+			final String text = randomText(random) + (random.nextBoolean() ? "]]>-" : "");
+
+			final Document document = XmlFactories.newDocumentBuilder().newDocument();
+			final Element root = document.createElement("g");
+			root.appendChild(document.createComment(text));
+			root.appendChild(document.createCDATASection(text));
+			document.appendChild(root);
+
+			final SvgBuffer buffer = new SvgBuffer(16);
+			buffer.append("<g>");
+			buffer.appendComment(text);
+			buffer.appendCdata(text);
+			buffer.append("</g>");
+			assertEquals(serialize(document), toString(buffer), text);
+		}
+	}
+
+	private static String formatReference(double x) {
+		if (x == 0.0)
+			return "0";
+
+		String s = String.format(Locale.US, "%.4f", x);
+		final int dot = s.indexOf('.');
+		if (dot >= 0) {
+			int end = s.length() - 1;
+			while (end > dot && s.charAt(end) == '0')
+				end--;
+
+			if (end == dot)
+				end--;
+
+			s = s.substring(0, end + 1);
+		}
+		return s;
+	}
+
+	@Test
+	void numbers_are_formatted_like_string_format() {
+		final Random random = new Random(44);
+		for (int i = 0; i < 200000; i++) {
+			final double x;
+			switch (i % 4) {
+			case 0:
+				x = (random.nextDouble() - 0.5) * 4000;
+				break;
+			case 1:
+				// Ties and near-ties after the fourth decimal
+				x = (random.nextInt(2000000) - 1000000) / 20000.0;
+				break;
+			case 2:
+				x = random.nextInt(3000) * 1.7;
+				break;
+			default:
+				x = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(14) - 4);
+			}
+			assertEquals(formatReference(x), SvgNumber.format(x), "" + x);
+		}
+		for (double x : new double[] { -0.0, 0.00004, -0.00004, 0.00005, 1E8, -1.5E12, 0.1 + 0.2, 12.34565 })
+			assertEquals(formatReference(x), SvgNumber.format(x), "" + x);
+	}
+
+	@Test
+	void attributes_are_sorted_and_last_value_wins() throws IOException {
+		final SvgBuffer buffer = new SvgBuffer(16);
+		new SvgElement("svg").set("width", "1").set("xmlns:xlink", "l").set("xmlns", "n").set("height", 2.5)
+				.set("width", "3").writeEmpty(buffer);
+		assertEquals("<svg xmlns=\"n\" xmlns:xlink=\"l\" height=\"2.5\" width=\"3\"/>", toString(buffer));
+	}
+
+}
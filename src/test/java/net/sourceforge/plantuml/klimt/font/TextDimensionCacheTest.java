@@ -0,0 +1,63 @@
+package net.sourceforge.plantuml.klimt.font;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.Font;
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.plantuml.FileFormat;
+import net.sourceforge.plantuml.klimt.geom.XDimension2D;
+
+class TextDimensionCacheTest {
+
+	private static final String FAMILIES[] = { "SansSerif", "Serif", "Monospaced" };
+
+	private static String randomText(Random random) {
+		final StringBuilder sb = new StringBuilder();
+		final int len = 1 + random.nextInt(30);
+		for (int i = 0; i < len; i++) {
+			final int kind = random.nextInt(10);
+			if (kind < 7)
+				sb.append((char) (32 + random.nextInt(95)));
+			else if (kind < 9)
+				sb.append((char) (0xA0 + random.nextInt(0x260)));
+			else
+				sb.append((char) (0x300 + random.nextInt(0x2000)));
+		}
+		return sb.toString();
+	}
+
+	@Test
+	void same_dimensions_as_java_font_metrics() {
+		final TextDimensionCache cache = new TextDimensionCache(FileFormat.gg.getFontRenderContext(), 1000);
+		final Random random = new Random(42);
+		for (String family : FAMILIES)
+			for (int style = 0; style < 4; style++)
+				for (int size : new int[] { 11, 14, 17 }) {
+					final UFont font = UFont.build(family, style, size);
+					for (int i = 0; i < 100; i++) {
+						final String text = randomText(random);
+						final Font javaFont = font.getUnderlayingFont(text);
+						final Rectangle2D expected = FileFormat.gg.getFontMetrics(javaFont).getStringBounds(text,
+								FileFormat.gg);
+						final XDimension2D actual = cache.getDimension(font, text);
+						assertEquals(expected.getWidth(), actual.getWidth(), text);
+						assertEquals(expected.getHeight(), actual.getHeight(), text);
+						// Second call comes from the cache
+						assertEquals(actual.getWidth(), cache.getDimension(font, text).getWidth(), text);
+					}
+				}
+	}
+
+	@Test
+	void empty_text_has_no_dimension() {
+		final TextDimensionCache cache = new TextDimensionCache(FileFormat.gg.getFontRenderContext(), 1000);
+		final XDimension2D dim = cache.getDimension(UFont.sansSerif(14), "");
+		assertEquals(0, dim.getWidth(), 0);
+		assertEquals(0, dim.getHeight(), 0);
+	}
+
+}
@@ -11,6 +11,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.ServerSocket;
+import java.net.Socket;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpClient.Redirect;
@@ -18,6 +19,7 @@ import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -86,6 +88,121 @@ class PicowebTest {
 		assertTrue(body(resp).contains("abstract"));
 	}
 
+	@Test
+	void get_serverinfo_exposes_scheduler() throws Exception {
+		final HttpResponse<byte[]> resp = http_get("/serverinfo");
+		assertStatus(resp, 200);
+		assertContentType(resp.headers(), "application/json");
+		final JsonObject scheduler = Json.parse(body(resp)).asObject().get("scheduler").asObject();
+		assertTrue(scheduler.get("maxRenders").asInt() >= 1);
+		assertEquals(0, scheduler.get("rejected").asLong());
+	}
+
+	@Test
+	void get_metrics_exposes_phase_durations() throws Exception {
+		assertStatus(http_get("/svg/" + getDefaultTranscoder().encode("A -> B")), 200);
+		final HttpResponse<byte[]> resp = http_get("/metrics");
+		assertStatus(resp, 200);
+		assertContentType(resp.headers(), "text/plain; version=0.0.4; charset=utf-8");
+		final String body = body(resp);
+		assertTrue(body.contains("# TYPE plantuml_phase_duration_seconds summary"), body);
+		assertTrue(body.contains("plantuml_phase_duration_seconds_count{phase=\"encode\",diagram=\"SequenceDiagram\",format=\"svg\"}"), body);
+	}
+
+	@Test
+	void pipelined_requests_share_one_connection() throws Exception {
+		try (Socket socket = new Socket("localhost", port)) {
+			socket.getOutputStream().write(("" //
+					+ "GET /serverinfo HTTP/1.1\r\n\r\n" //
+					+ "GET /foo HTTP/1.1\r\nConnection: close\r\n\r\n").getBytes(UTF_8));
+			final String responses = new String(socket.getInputStream().readAllBytes(), UTF_8);
+			assertTrue(responses.startsWith("HTTP/1.1 200"), responses);
+			assertTrue(responses.contains("HTTP/1.1 302 Found"), responses);
+		}
+	}
+
+	/**
+	 * Starts another server, closed by the returned socket.
+	 */
+	private ServerSocket startServer(RenderScheduler scheduler, int requestTimeoutMs) throws IOException {
+		final ServerSocket serverSocket = new ServerSocket(0, 0, InetAddress.getByName("localhost"));
+		final Thread thread = new Thread(() -> {
+			try {
+				PicoWebServer.serverLoop(serverSocket, scheduler, requestTimeoutMs);
+			} catch (IOException e) {
+				// closed by the test
+			}
+		});
+		thread.setDaemon(true);
+		thread.start();
+		return serverSocket;
+	}
+
+	private static String readHeaders(Socket socket) throws IOException {
+		final StringBuilder sb = new StringBuilder();
+		while (sb.indexOf("\r\n\r\n") == -1) {
+			final int c = socket.getInputStream().read();
+			if (c == -1)
+				break;
+			sb.append((char) c);
+		}
+		return sb.toString();
+	}
+
+	@Test
+	void incomplete_request_is_answered_with_408() throws Exception {
+		try (ServerSocket server = startServer(RenderScheduler.withThreads(1), 200);
+				Socket socket = new Socket("localhost", server.getLocalPort())) {
+			socket.getOutputStream().write("GET /serverinfo HTTP/1.1\r\nHost: local".getBytes(UTF_8));
+			final String response = new String(socket.getInputStream().readAllBytes(), UTF_8);
+			assertTrue(response.startsWith("HTTP/1.1 408"), response);
+		}
+	}
+
+	@Test
+	void idle_keep_alive_connections_give_their_worker_back() throws Exception {
+		// One render permit gives 4 workers
+		final List<Socket> idle = new ArrayList<>();
+		try (ServerSocket server = startServer(RenderScheduler.withThreads(1), 10_000)) {
+			for (int i = 0; i < 4; i++) {
+				final Socket socket = new Socket("localhost", server.getLocalPort());
+				idle.add(socket);
+				socket.getOutputStream().write("GET /serverinfo HTTP/1.1\r\n\r\n".getBytes(UTF_8));
+				assertTrue(readHeaders(socket).startsWith("HTTP/1.1 200"));
+			}
+			try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+				final long start = System.currentTimeMillis();
+				socket.getOutputStream().write("GET /serverinfo HTTP/1.1\r\nConnection: close\r\n\r\n".getBytes(UTF_8));
+				final String response = new String(socket.getInputStream().readAllBytes(), UTF_8);
+				assertTrue(response.startsWith("HTTP/1.1 200"), response);
+				// Without giving the workers back, this would wait for the 5 s keep-alive timeout
+				final long duration = System.currentTimeMillis() - start;
+				assertTrue(duration < 2_000, "" + duration);
+			}
+		} finally {
+			for (Socket socket : idle)
+				socket.close();
+		}
+	}
+
+	@Test
+	void request_line_without_version_returns_400() throws Exception {
+		try (Socket socket = new Socket("localhost", port)) {
+			socket.getOutputStream().write("GET /serverinfo\r\n\r\n".getBytes(UTF_8));
+			final String response = new String(socket.getInputStream().readAllBytes(), UTF_8);
+			assertTrue(response.startsWith("HTTP/1.1 400"), response);
+		}
+	}
+
+	@Test
+	void unknown_http_version_is_served() throws Exception {
+		try (Socket socket = new Socket("localhost", port)) {
+			socket.getOutputStream().write("GET /serverinfo FOO\r\n\r\n".getBytes(UTF_8));
+			final String response = new String(socket.getInputStream().readAllBytes(), UTF_8);
+			assertTrue(response.startsWith("HTTP/1.1 200"), response);
+		}
+	}
+
 	@Test
 	void get_txt_with_valid_source_returns_ascii() throws Exception {
 		final String ok = getDefaultTranscoder().encode("A -> B");
@@ -137,6 +254,25 @@ class PicowebTest {
 		assertTrue(image.getHeight() > 10);
 	}
 
+	@Test
+	void get_svg_twice_with_etag_returns_304() throws Exception {
+		final String ok = getDefaultTranscoder().encode("A -> B");
+		final HttpResponse<byte[]> first = http_get("/svg/" + ok);
+		assertStatus(first, 200);
+		final String etag = first.headers().firstValue("ETag").orElse(null);
+		assertTrue(etag != null && etag.startsWith("\""), String.valueOf(etag));
+
+		final HttpRequest req = HttpRequest.newBuilder() //
+				.uri(URI.create("http://localhost:" + port + "/svg/" + ok)) //
+				.timeout(Duration.ofSeconds(5)) //
+				.header("If-None-Match", etag) //
+				.GET() //
+				.build();
+		final HttpResponse<byte[]> second = http.send(req, HttpResponse.BodyHandlers.ofByteArray());
+		assertStatus(second, 304);
+		assertEquals(0, second.body().length);
+	}
+
 	@Test
 	void get_png_via_plantuml_alias_decodes_image() throws Exception {
 		final String ok = getDefaultTranscoder().encode("A -> B");
@@ -0,0 +1,68 @@
+package net.sourceforge.plantuml.picoweb;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RenderCacheTest {
+
+	private static DiagramResponse response(int size) {
+		return new DiagramResponse("200 OK", Arrays.asList("Content-type: image/png", "Content-length: " + size),
+				new byte[size]);
+	}
+
+	@Test
+	void hit_returns_same_response() {
+		final RenderCache cache = new RenderCache(10_000, null);
+		final DiagramResponse response = response(100);
+		cache.put("a", response);
+		assertSame(response, cache.get("a"));
+		assertNull(cache.get("b"));
+	}
+
+	@Test
+	void least_recently_used_is_evicted_first() {
+		final RenderCache cache = new RenderCache(2_500, null);
+		cache.put("a", response(800));
+		cache.put("b", response(800));
+		cache.get("a");
+		cache.put("c", response(800));
+		assertNotNull(cache.get("a"));
+		assertNull(cache.get("b"));
+		assertNotNull(cache.get("c"));
+	}
+
+	@Test
+	void disabled_cache_stores_nothing() {
+		final RenderCache cache = new RenderCache(0, null);
+		cache.put("a", response(10));
+		assertNull(cache.get("a"));
+	}
+
+	@Test
+	void evicted_entries_are_read_back_from_spill_directory(@TempDir File dir) {
+		final RenderCache cache = new RenderCache(2_000, dir);
+		final DiagramResponse first = response(1_500);
+		first.getData()[42] = 42;
+		cache.put("a", first);
+		cache.put("b", response(1_500));
+
+		final DiagramResponse back = cache.get("a");
+		assertNotNull(back);
+		assertEquals(first.getStatus(), back.getStatus());
+		assertEquals(first.getHeaders(), back.getHeaders());
+		assertArrayEquals(first.getData(), back.getData());
+
+		// A new cache on the same directory reuses the spilled entries
+		assertNotNull(new RenderCache(2_000, dir).get("b"));
+	}
+
+}
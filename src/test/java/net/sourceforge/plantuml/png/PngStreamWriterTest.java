@@ -0,0 +1,113 @@
+package net.sourceforge.plantuml.png;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.NodeList;
+
+class PngStreamWriterTest {
+
+	private static BufferedImage randomImage(int type, int width, int height) {
+		final BufferedImage image = new BufferedImage(width, height, type);
+		final Random random = new Random(42);
+		final Graphics2D g2d = image.createGraphics();
+		for (int i = 0; i < 50; i++) {
+			g2d.setColor(new Color(random.nextInt(), type == BufferedImage.TYPE_INT_ARGB));
+			g2d.fillOval(random.nextInt(width), random.nextInt(height), random.nextInt(width), random.nextInt(20));
+		}
+		g2d.dispose();
+		// Some noise, so that all the filters are used
+		for (int i = 0; i < 500; i++)
+			image.setRGB(random.nextInt(width), random.nextInt(height), random.nextInt());
+
+		return image;
+	}
+
+	// Writes the image band by band, as ImageBuilder does for large images
+	private static byte[] writeInBands(BufferedImage image, int bandHeight, String metadata, int dpi)
+			throws IOException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		final PngStreamWriter writer = new PngStreamWriter(baos, image.getWidth(), image.getHeight(),
+				image.getType() == BufferedImage.TYPE_INT_ARGB, metadata, dpi);
+		for (int y = 0; y < image.getHeight(); y += bandHeight) {
+			final int rows = Math.min(bandHeight, image.getHeight() - y);
+			writer.writeRows(image.getSubimage(0, y, image.getWidth(), rows), rows);
+		}
+		writer.close();
+		return baos.toByteArray();
+	}
+
+	private static void assertSamePixels(BufferedImage expected, BufferedImage actual) {
+		assertEquals(expected.getWidth(), actual.getWidth());
+		assertEquals(expected.getHeight(), actual.getHeight());
+		for (int y = 0; y < expected.getHeight(); y++)
+			for (int x = 0; x < expected.getWidth(); x++)
+				assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), x + "," + y);
+	}
+
+	@Test
+	void rgb_image_is_read_back_identical() throws IOException {
+		final BufferedImage image = randomImage(BufferedImage.TYPE_INT_RGB, 300, 257);
+		final byte png[] = writeInBands(image, 64, null, 96);
+		assertSamePixels(image, ImageIO.read(new ByteArrayInputStream(png)));
+	}
+
+	@Test
+	void argb_image_keeps_its_alpha() throws IOException {
+		final BufferedImage image = randomImage(BufferedImage.TYPE_INT_ARGB, 123, 400);
+		final byte png[] = writeInBands(image, 7, null, 96);
+		final BufferedImage read = ImageIO.read(new ByteArrayInputStream(png));
+		assertEquals(true, read.getColorModel().hasAlpha());
+		assertSamePixels(image, read);
+	}
+
+	@Test
+	void metadata_and_dpi_are_written() throws IOException {
+		final BufferedImage image = randomImage(BufferedImage.TYPE_INT_RGB, 20, 10);
+		final String source = "@startuml\nAlice -> Bob : héllo 中\n@enduml";
+		final byte png[] = writeInBands(image, 10, source, 300);
+
+		try (ImageInputStream iis = ImageIO.createImageInputStream(new ByteArrayInputStream(png))) {
+			final Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+			final ImageReader reader = readers.next();
+			reader.setInput(iis, true);
+			final IIOMetadataNode root = (IIOMetadataNode) reader.getImageMetadata(0)
+					.getAsTree("javax_imageio_png_1.0");
+
+			final IIOMetadataNode itxt = (IIOMetadataNode) root.getElementsByTagName("iTXtEntry").item(0);
+			assertEquals("plantuml", itxt.getAttribute("keyword"));
+			assertEquals(source, itxt.getAttribute("text"));
+
+			final NodeList text = root.getElementsByTagName("tEXtEntry");
+			assertEquals("copyleft", ((IIOMetadataNode) text.item(0)).getAttribute("keyword"));
+
+			final IIOMetadataNode phys = (IIOMetadataNode) root.getElementsByTagName("pHYs").item(0);
+			assertEquals("11811", phys.getAttribute("pixelsPerUnitXAxis"));
+			assertEquals("meter", phys.getAttribute("unitSpecifier"));
+			reader.dispose();
+		}
+	}
+
+	@Test
+	void all_rows_must_be_written() throws IOException {
+		final PngStreamWriter writer = new PngStreamWriter(new ByteArrayOutputStream(), 10, 10, false, null, 96);
+		writer.writeRows(new BufferedImage(10, 5, BufferedImage.TYPE_INT_RGB), 5);
+		assertThrows(IllegalStateException.class, () -> writer.close());
+	}
+
+}
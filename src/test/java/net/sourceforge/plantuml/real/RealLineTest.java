@@ -0,0 +1,70 @@
+package net.sourceforge.plantuml.real;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class RealLineTest {
+
+	@Test
+	void positions_are_pushed_by_the_constraints() {
+		final RealOrigin origin = RealUtils.createOrigin();
+		final Real a = origin.addAtLeast(0);
+		final Real b = a.addFixed(10);
+		final Real c = b.addAtLeast(5);
+		final Real max = RealUtils.max(b, c);
+		c.ensureBiggerThan(origin.addFixed(100));
+		a.ensureBiggerThan(origin.addFixed(20));
+
+		origin.compileNow();
+		assertEquals(20, a.getCurrentValue());
+		assertEquals(30, b.getCurrentValue());
+		assertEquals(100, c.getCurrentValue());
+		assertEquals(100, max.getCurrentValue());
+	}
+
+	@Test
+	void constraints_added_after_a_compilation_are_taken_into_account() {
+		final RealOrigin origin = RealUtils.createOrigin();
+		final Real a = origin.addAtLeast(0);
+		final Real b = a.addFixed(10);
+		final Real c = b.addAtLeast(5);
+		c.ensureBiggerThan(origin.addFixed(100));
+
+		origin.compileNow();
+		assertEquals(0, a.getCurrentValue());
+		assertEquals(100, c.getCurrentValue());
+
+		a.ensureBiggerThan(origin.addFixed(95));
+		origin.compileNow();
+		assertEquals(95, a.getCurrentValue());
+		assertEquals(105, b.getCurrentValue());
+		assertEquals(110, c.getCurrentValue());
+	}
+
+	@Test
+	void long_chains_need_several_passes() {
+		final RealOrigin origin = RealUtils.createOrigin();
+		// Positions chained like teoz participants
+		final List<Real> positions = new ArrayList<>();
+		Real current = origin.addAtLeast(0);
+		for (int i = 0; i < 50; i++) {
+			positions.add(current);
+			current = current.addFixed(10).addAtLeast(0);
+		}
+		// Added from the last to the first, so that each pass only moves one position
+		for (int i = positions.size() - 2; i >= 0; i--)
+			positions.get(i + 1).ensureBiggerThan(positions.get(i).addFixed(15));
+
+		positions.get(10).ensureBiggerThan(origin.addFixed(200));
+
+		origin.compileNow();
+		for (int i = 0; i < positions.size(); i++)
+			assertEquals(i < 10 ? 15 * i : 15 * i + 50, positions.get(i).getCurrentValue(), "" + i);
+
+	}
+
+}
@@ -0,0 +1,74 @@
+package net.sourceforge.plantuml.sdot;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.plantuml.FileFormat;
+import net.sourceforge.plantuml.FileFormatOption;
+import net.sourceforge.plantuml.SourceStringReader;
+
+/**
+ * Smetana layouts used to be serialized by a global lock. This checks that
+ * laying out many diagrams in parallel gives exactly the same result as laying
+ * them out one after the other.
+ */
+class SmetanaConcurrencyTest {
+
+	private static final int NB_DIAGRAMS = 24;
+	private static final int NB_THREADS = 8;
+
+	private static String source(int i) {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("@startuml\n");
+		sb.append("!pragma layout smetana\n");
+		sb.append("package p" + i + " {\n");
+		for (int j = 0; j < 3 + i % 5; j++)
+			sb.append("class C" + i + "_" + j + "\n");
+		sb.append("}\n");
+		for (int j = 0; j < 2 + i % 5; j++)
+			sb.append("C" + i + "_" + j + " --> C" + i + "_" + (j + 1) + " : link" + j + "\n");
+		sb.append("C" + i + "_0 <|-- Other" + i + "\n");
+		sb.append("@enduml\n");
+		return sb.toString();
+	}
+
+	private static String render(String source) throws IOException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		new SourceStringReader(source).outputImage(baos, 0, new FileFormatOption(FileFormat.SVG));
+		return new String(baos.toByteArray(), UTF_8);
+	}
+
+	@Test
+	void parallel_layouts_match_sequential_ones() throws Exception {
+		final List<String> sequential = new ArrayList<>();
+		for (int i = 0; i < NB_DIAGRAMS; i++)
+			sequential.add(render(source(i)));
+
+		final ExecutorService executor = Executors.newFixedThreadPool(NB_THREADS);
+		try {
+			for (int round = 0; round < 3; round++) {
+				final List<Future<String>> futures = new ArrayList<>();
+				for (int i = 0; i < NB_DIAGRAMS; i++) {
+					final String source = source(i);
+					futures.add(executor.submit((Callable<String>) () -> render(source)));
+				}
+				for (int i = 0; i < NB_DIAGRAMS; i++)
+					assertEquals(sequential.get(i), futures.get(i).get(), "Diagram " + i + " round " + round);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
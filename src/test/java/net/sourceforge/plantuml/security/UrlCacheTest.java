@@ -0,0 +1,195 @@
+package net.sourceforge.plantuml.security;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Checks the URL cache against a local HTTP server.
+ */
+class UrlCacheTest {
+
+	private HttpServer server;
+	private ExecutorService executor;
+	private String base;
+	private String oldAllowList;
+
+	private final AtomicInteger requests = new AtomicInteger();
+	private final AtomicInteger notModified = new AtomicInteger();
+	private volatile String content = "v1";
+	private volatile String cacheControl;
+	private volatile long delay;
+	private volatile boolean failing;
+
+	@BeforeEach
+	void startServer() throws IOException {
+		executor = Executors.newCachedThreadPool();
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.setExecutor(executor);
+		server.createContext("/", this::handle);
+		server.start();
+		base = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+
+		oldAllowList = System.getProperty(SecurityUtils.ALLOWLIST_URL);
+		System.setProperty(SecurityUtils.ALLOWLIST_URL, base);
+		SURL.resetBadHosts();
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.stop(0);
+		executor.shutdownNow();
+		if (oldAllowList != null)
+			System.setProperty(SecurityUtils.ALLOWLIST_URL, oldAllowList);
+		else
+			System.getProperties().remove(SecurityUtils.ALLOWLIST_URL);
+		SURL.resetBadHosts();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+		try {
+			Thread.sleep(delay);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		final String current = content;
+		final String etag = "\"" + current + "\"";
+		exchange.getResponseHeaders().set("ETag", etag);
+		if (cacheControl != null)
+			exchange.getResponseHeaders().set("Cache-Control", cacheControl);
+
+		if (failing) {
+			send(exchange, 500, "error");
+		} else if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+			notModified.incrementAndGet();
+			exchange.sendResponseHeaders(304, -1);
+		} else {
+			send(exchange, 200, current);
+		}
+		exchange.close();
+	}
+
+	private static void send(HttpExchange exchange, int code, String text) throws IOException {
+		final byte[] body = text.getBytes(UTF_8);
+		exchange.sendResponseHeaders(code, body.length);
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write(body);
+		}
+	}
+
+	private String read(UrlCache cache, String path) {
+		final byte[] data = cache.getBytes(SURL.create(base + path));
+		return data == null ? null : new String(data, UTF_8);
+	}
+
+	@Test
+	void fresh_resources_are_not_requested_again() {
+		final UrlCache cache = new UrlCache(1 << 20, null, 60_000, 0, false);
+		assertEquals("v1", read(cache, "style.puml"));
+		content = "v2";
+		assertEquals("v1", read(cache, "style.puml"));
+		assertEquals(1, requests.get());
+		assertEquals(1, cache.getHits());
+	}
+
+	@Test
+	void stale_resources_are_revalidated() {
+		final UrlCache cache = new UrlCache(1 << 20, null, 0, 0, false);
+		assertEquals("v1", read(cache, "style.puml"));
+		assertEquals("v1", read(cache, "style.puml"));
+		assertEquals(2, requests.get());
+		assertEquals(1, notModified.get());
+
+		content = "v2";
+		assertEquals("v2", read(cache, "style.puml"));
+		assertEquals(3, requests.get());
+		assertEquals(1, notModified.get());
+	}
+
+	@Test
+	void freshness_is_given_by_the_server() {
+		final UrlCache cache = new UrlCache(1 << 20, null, -1, -1, false);
+		cacheControl = "public, max-age=60";
+		assertEquals("v1", read(cache, "a.puml"));
+		assertEquals("v1", read(cache, "a.puml"));
+		assertEquals(1, requests.get());
+
+		cacheControl = "no-cache, max-age=60";
+		assertEquals("v1", read(cache, "b.puml"));
+		assertEquals("v1", read(cache, "b.puml"));
+		assertEquals(3, requests.get());
+	}
+
+	@Test
+	void concurrent_requests_share_one_download() throws Exception {
+		final UrlCache cache = new UrlCache(1 << 20, null, 60_000, 0, false);
+		delay = 300;
+		final ExecutorService clients = Executors.newFixedThreadPool(8);
+		try {
+			final List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < 8; i++)
+				results.add(clients.submit(() -> read(cache, "style.puml")));
+			for (Future<String> result : results)
+				assertEquals("v1", result.get());
+		} finally {
+			clients.shutdown();
+		}
+		assertEquals(1, requests.get());
+	}
+
+	@Test
+	void stale_resources_are_returned_while_revalidated() throws InterruptedException {
+		final UrlCache cache = new UrlCache(1 << 20, null, 0, 60_000, false);
+		assertEquals("v1", read(cache, "style.puml"));
+		content = "v2";
+		assertEquals("v1", read(cache, "style.puml"));
+		for (int i = 0; i < 100 && cache.getMisses() < 2; i++)
+			Thread.sleep(50);
+
+		assertEquals(2, cache.getMisses());
+		assertEquals("v2", read(cache, "style.puml"));
+	}
+
+	@Test
+	void stale_resources_are_returned_when_the_server_fails() {
+		final UrlCache cache = new UrlCache(1 << 20, null, 0, 0, false);
+		assertEquals("v1", read(cache, "style.puml"));
+		failing = true;
+		assertEquals("v1", read(cache, "style.puml"));
+		assertNull(read(cache, "other.puml"));
+	}
+
+	@Test
+	void the_directory_is_used_offline(@TempDir File dir) {
+		final UrlCache online = new UrlCache(1 << 20, dir, 0, 0, false);
+		assertEquals("v1", read(online, "style.puml"));
+
+		content = "v2";
+		final UrlCache offline = new UrlCache(1 << 20, dir, 0, 0, true);
+		assertEquals("v1", read(offline, "style.puml"));
+		assertNull(read(offline, "other.puml"));
+		assertEquals(1, requests.get());
+	}
+
+}
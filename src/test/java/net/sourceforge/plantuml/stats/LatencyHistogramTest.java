@@ -0,0 +1,70 @@
+package net.sourceforge.plantuml.stats;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+	@Test
+	void buckets_are_contiguous() {
+		for (int index = 1; index < LatencyHistogram.SUB_COUNT * 38; index++) {
+			final long lowest = LatencyHistogram.highestValueOf(index - 1) + 1;
+			assertEquals(index, LatencyHistogram.indexOf(lowest), "" + lowest);
+			assertEquals(index, LatencyHistogram.indexOf(LatencyHistogram.highestValueOf(index)));
+		}
+	}
+
+	@Test
+	void percentiles_are_within_one_sixteenth() {
+		final Random random = new Random(42);
+		final LatencyHistogram histogram = new LatencyHistogram();
+		final long[] values = new long[100000];
+		for (int i = 0; i < values.length; i++) {
+			// Log-normal like durations, from microseconds to minutes
+			values[i] = (long) Math.exp(random.nextGaussian() * 3 + 9);
+			histogram.recordValue(values[i]);
+		}
+		Arrays.sort(values);
+		for (double p : new double[] { 1, 50, 90, 99, 99.9, 100 }) {
+			final long expected = values[(int) Math.ceil(p / 100 * values.length) - 1];
+			final long actual = histogram.getValueAtPercentile(p);
+			assertTrue(actual >= expected, p + " " + expected + " " + actual);
+			assertTrue(actual <= expected + expected / 16 + 1, p + " " + expected + " " + actual);
+		}
+		assertEquals(values.length, histogram.getCount());
+		assertEquals(values[values.length - 1], histogram.getMax());
+		assertEquals(Arrays.stream(values).sum(), histogram.getSum());
+	}
+
+	@Test
+	void concurrent_recording_loses_nothing() throws InterruptedException {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		final Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(() -> {
+				for (int j = 0; j < 100000; j++)
+					histogram.recordNanos(j * 1000L);
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+
+		assertEquals(800000, histogram.getCount());
+		assertEquals(99999, histogram.getMax());
+		assertEquals(8L * 99999 * 100000 / 2, histogram.getSum());
+	}
+
+	@Test
+	void empty_histogram() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getValueAtPercentile(99));
+		assertEquals(0, histogram.getCount());
+	}
+
+}
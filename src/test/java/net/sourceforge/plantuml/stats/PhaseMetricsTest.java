@@ -0,0 +1,68 @@
+package net.sourceforge.plantuml.stats;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.plantuml.FileFormat;
+import net.sourceforge.plantuml.FileFormatOption;
+import net.sourceforge.plantuml.SourceStringReader;
+import net.sourceforge.plantuml.sequencediagram.SequenceDiagram;
+
+class PhaseMetricsTest {
+
+	private static long count(Phase phase, FileFormat format) {
+		final LatencyHistogram histogram = PhaseMetrics.getInstance().getHistogram(phase, SequenceDiagram.class,
+				format);
+		return histogram == null ? 0 : histogram.getCount();
+	}
+
+	@Test
+	void all_phases_of_a_generation_are_recorded() throws IOException {
+		final long[] before = new long[Phase.values().length];
+		for (Phase phase : Phase.values())
+			before[phase.ordinal()] = count(phase, phase.ordinal() <= Phase.PARSE.ordinal() ? null : FileFormat.SVG);
+
+		final SourceStringReader reader = new SourceStringReader("@startuml\n!$a = 1\nAlice -> Bob : $a\n@enduml\n");
+		reader.outputImage(new ByteArrayOutputStream(), new FileFormatOption(FileFormat.SVG));
+
+		for (Phase phase : Phase.values())
+			assertEquals(before[phase.ordinal()] + 1,
+					count(phase, phase.ordinal() <= Phase.PARSE.ordinal() ? null : FileFormat.SVG), phase.label());
+	}
+
+	@Test
+	void phase_outside_of_an_export_is_recorded_as_unknown() {
+		final PhaseMetrics metrics = new PhaseMetrics();
+		metrics.record(Phase.LAYOUT, System.nanoTime());
+		final StringBuilder sb = new StringBuilder();
+		metrics.appendPrometheus(sb);
+		assertTrue(sb.toString().contains(
+				"plantuml_phase_duration_seconds_count{phase=\"layout\",diagram=\"unknown\",format=\"\"} 1\n"),
+				sb.toString());
+	}
+
+	@Test
+	void prometheus_output_has_quantiles_sum_and_count() {
+		final PhaseMetrics metrics = new PhaseMetrics();
+		metrics.enterExport(SequenceDiagram.class, FileFormat.PNG);
+		try {
+			metrics.record(Phase.ENCODE, System.nanoTime() - 2500000L);
+		} finally {
+			metrics.exitExport();
+		}
+		final StringBuilder sb = new StringBuilder();
+		metrics.appendPrometheus(sb);
+		final String labels = "phase=\"encode\",diagram=\"SequenceDiagram\",format=\"png\"";
+		final String text = sb.toString();
+		assertTrue(text.startsWith("# HELP plantuml_phase_duration_seconds "), text);
+		assertTrue(text.contains("plantuml_phase_duration_seconds{" + labels + ",quantile=\"0.99\"} 0.002"), text);
+		assertTrue(text.contains("plantuml_phase_duration_seconds_count{" + labels + "} 1\n"), text);
+		assertTrue(text.contains("plantuml_phase_duration_seconds_sum{" + labels + "} 0.002"), text);
+	}
+
+}
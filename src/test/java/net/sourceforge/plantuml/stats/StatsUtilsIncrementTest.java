@@ -0,0 +1,199 @@
+package net.sourceforge.plantuml.stats;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.prefs.AbstractPreferences;
+import java.util.prefs.Preferences;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Isolated;
+
+import net.sourceforge.plantuml.FileFormat;
+import net.sourceforge.plantuml.api.NumberAnalyzed;
+import net.sourceforge.plantuml.core.Diagram;
+
+@Isolated
+class StatsUtilsIncrementTest {
+
+	/**
+	 * In-memory preferences that count how many times each key is written.
+	 */
+	static class MemoryPreferences extends AbstractPreferences {
+		private final Map<String, String> values = new HashMap<>();
+		private final Map<String, Integer> puts = new HashMap<>();
+
+		MemoryPreferences() {
+			super(null, "");
+		}
+
+		synchronized int puts(String key) {
+			return puts.getOrDefault(key, 0);
+		}
+
+		synchronized void clearPuts() {
+			puts.clear();
+		}
+
+		@Override
+		protected synchronized void putSpi(String key, String value) {
+			values.put(key, value);
+			puts.merge(key, 1, Integer::sum);
+		}
+
+		@Override
+		protected synchronized String getSpi(String key) {
+			return values.get(key);
+		}
+
+		@Override
+		protected synchronized void removeSpi(String key) {
+			values.remove(key);
+		}
+
+		@Override
+		protected void removeNodeSpi() {
+		}
+
+		@Override
+		protected synchronized String[] keysSpi() {
+			return values.keySet().toArray(new String[0]);
+		}
+
+		@Override
+		protected String[] childrenNamesSpi() {
+			return new String[0];
+		}
+
+		@Override
+		protected AbstractPreferences childSpi(String name) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		protected void syncSpi() {
+		}
+
+		@Override
+		protected void flushSpi() {
+		}
+	}
+
+	// Each test counts its samples under its own diagram type, whose name must
+	// end with "Diagram" to be kept by PhaseMetrics.diagramName()
+	abstract static class ParsedOnceDiagram implements Diagram {
+	}
+
+	abstract static class ParsedConcurrentlyDiagram implements Diagram {
+	}
+
+	abstract static class DrainedAtShutdownDiagram implements Diagram {
+	}
+
+	private final Preferences savedPrefs = StatsUtilsIncrement.prefs;
+	private final MemoryPreferences prefs = new MemoryPreferences();
+
+	@BeforeEach
+	void usePrefsInMemory() {
+		StatsUtilsIncrement.drain();
+		StatsUtilsIncrement.prefs = prefs;
+	}
+
+	@AfterEach
+	void restorePrefs() {
+		StatsUtilsIncrement.drain();
+		StatsUtilsIncrement.prefs = savedPrefs;
+	}
+
+	private static String key(Class<? extends Diagram> type) {
+		return "type." + PhaseMetrics.diagramName(type) + ".p.saved";
+	}
+
+	private long saved(Class<? extends Diagram> type) {
+		return NumberAnalyzed.load("type." + PhaseMetrics.diagramName(type) + ".p", prefs).getNb();
+	}
+
+	private static long counted(Class<? extends Diagram> type) {
+		return StatsUtils.byTypeEver.get(PhaseMetrics.diagramName(type)).parsed().getNb();
+	}
+
+	@Test
+	void samples_recorded_before_getStats_are_saved_once() {
+		// Holding the lock of drain() keeps the background flusher away
+		synchronized (StatsUtilsIncrement.class) {
+			for (int i = 0; i < 5; i++)
+				StatsUtilsIncrement.onceMoreParse(10, ParsedOnceDiagram.class);
+			StatsUtilsIncrement.onceMoreGenerate(20, ParsedOnceDiagram.class, FileFormat.SVG);
+		}
+
+		StatsUtils.getStats();
+		assertEquals(5, counted(ParsedOnceDiagram.class));
+		assertEquals(5, saved(ParsedOnceDiagram.class));
+		assertEquals(1, prefs.puts(key(ParsedOnceDiagram.class)));
+		assertEquals(1, prefs.puts("full.p.saved"));
+		assertEquals(1, prefs.puts("full.g.saved"));
+
+		prefs.clearPuts();
+		StatsUtilsIncrement.flush();
+		StatsUtils.getStats();
+		assertEquals(5, counted(ParsedOnceDiagram.class));
+		assertEquals(0, prefs.puts(key(ParsedOnceDiagram.class)));
+	}
+
+	@Test
+	void samples_recorded_during_a_flush_are_not_lost() throws InterruptedException {
+		final int threads = 4;
+		final int samples = 2000;
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Thread> renderers = new ArrayList<>();
+		for (int i = 0; i < threads; i++) {
+			final Thread thread = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int j = 0; j < samples; j++)
+					StatsUtilsIncrement.onceMoreParse(j, ParsedConcurrentlyDiagram.class);
+			});
+			thread.start();
+			renderers.add(thread);
+		}
+
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final Thread flusher = new Thread(() -> {
+			while (running.get())
+				StatsUtilsIncrement.flush();
+		});
+		flusher.start();
+		start.countDown();
+		for (Thread thread : renderers)
+			thread.join();
+		running.set(false);
+		flusher.join();
+
+		StatsUtilsIncrement.flush();
+		assertEquals(threads * samples, counted(ParsedConcurrentlyDiagram.class));
+		assertEquals(threads * samples, saved(ParsedConcurrentlyDiagram.class));
+	}
+
+	@Test
+	void shutdown_hook_saves_pending_samples() {
+		synchronized (StatsUtilsIncrement.class) {
+			for (int i = 0; i < 3; i++)
+				StatsUtilsIncrement.onceMoreParse(10, DrainedAtShutdownDiagram.class);
+		}
+
+		StatsUtils.endingHook();
+		assertEquals(3, saved(DrainedAtShutdownDiagram.class));
+		assertEquals(1, prefs.puts(key(DrainedAtShutdownDiagram.class)));
+	}
+
+}
@@ -0,0 +1,137 @@
+package net.sourceforge.plantuml.style;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Differential tests: {@link StyleStorage} must merge styles exactly like the
+ * straightforward linear scan it replaces.
+ */
+class StyleStorageTest {
+
+	private static final SName[] NAMES = { SName.root, SName.element, SName.classDiagram, SName.sequenceDiagram,
+			SName.class_, SName.arrow, SName.note, SName.participant };
+	private static final PName[] PROPERTIES = { PName.FontColor, PName.BackGroundColor, PName.LineColor,
+			PName.FontSize };
+	private static final String[] STEREOTYPES = { "foo", "bar" };
+
+	// The storage as it was before structural sharing: stereotyped styles
+	// first, then plain ones, both in insertion order
+	static class Reference {
+		private final Map<StyleSignatureBasic, Style> legacy = new LinkedHashMap<>();
+		private final Map<StyleKey, Style> plain = new LinkedHashMap<>();
+
+		void put(Style style) {
+			final StyleSignatureBasic signature = style.getSignature();
+			if (signature.getStereotypes().size() == 0)
+				plain.put(signature.getKey(), style);
+			else
+				legacy.put(signature, style);
+		}
+
+		void putAll(Reference other) {
+			legacy.putAll(other.legacy);
+			plain.putAll(other.plain);
+		}
+
+		Style computeMergedStyle(StyleSignatureBasic signature) {
+			final List<Style> all = new ArrayList<>(legacy.values());
+			all.addAll(plain.values());
+			Style result = null;
+			for (Style style : all)
+				if (style.getSignature().matchAll(signature))
+					result = result == null ? style : result.mergeWith(style, MergeStrategy.OVERWRITE_EXISTING_VALUE);
+
+			return result;
+		}
+	}
+
+	private static StyleSignatureBasic randomSignature(Random random, int maxNames) {
+		final int nb = random.nextInt(maxNames + 1);
+		final SName[] names = new SName[nb];
+		for (int i = 0; i < nb; i++)
+			names[i] = NAMES[random.nextInt(NAMES.length)];
+
+		StyleSignatureBasic result = StyleSignatureBasic.of(names);
+		if (random.nextInt(4) == 0)
+			result = result.addStereotype(STEREOTYPES[random.nextInt(STEREOTYPES.length)]);
+		return result;
+	}
+
+	private static Style randomStyle(Random random, int step) {
+		final Map<PName, Value> map = new EnumMap<PName, Value>(PName.class);
+		map.put(PROPERTIES[random.nextInt(PROPERTIES.length)], ValueImpl.regular("v" + step, random.nextInt(3)));
+		return new Style(randomSignature(random, 2), map);
+	}
+
+	private static void assertSameMerge(Reference expected, StyleStorage actual, Random random) {
+		for (int i = 0; i < 30; i++) {
+			final StyleSignatureBasic signature = randomSignature(random, 4);
+			assertEquals(String.valueOf(expected.computeMergedStyle(signature)),
+					String.valueOf(actual.computeMergedStyle(signature)), signature.toString());
+		}
+	}
+
+	@Test
+	void same_merge_as_linear_scan() {
+		final Random random = new Random(42);
+		final List<Reference> references = new ArrayList<>();
+		final List<StyleStorage> storages = new ArrayList<>();
+		references.add(new Reference());
+		storages.add(new StyleStorage());
+
+		for (int step = 0; step < 2000; step++) {
+			final int idx = random.nextInt(storages.size());
+			if (random.nextInt(20) == 0) {
+				// Copy an existing storage, the way StyleBuilder.muteStyle() does
+				final Reference reference = new Reference();
+				reference.putAll(references.get(idx));
+				final StyleStorage storage = new StyleStorage();
+				storage.putAll(storages.get(idx));
+				references.add(reference);
+				storages.add(storage);
+			} else {
+				final Style style = randomStyle(random, step);
+				references.get(idx).put(style);
+				storages.get(idx).put(style);
+			}
+			if (step % 50 == 0)
+				for (int i = 0; i < storages.size(); i++)
+					assertSameMerge(references.get(i), storages.get(i), random);
+		}
+		for (int i = 0; i < storages.size(); i++)
+			assertSameMerge(references.get(i), storages.get(i), random);
+	}
+
+	@Test
+	void copies_are_independent() {
+		final StyleStorage original = new StyleStorage();
+		final StyleSignatureBasic signature = StyleSignatureBasic.of(SName.root, SName.element);
+		original.put(style(signature, "red"));
+
+		final StyleStorage copy = new StyleStorage();
+		copy.putAll(original);
+		copy.put(style(signature, "blue"));
+		original.put(style(StyleSignatureBasic.of(SName.root), "green"));
+
+		assertEquals("red", original.get(signature).value(PName.FontColor).asString());
+		assertEquals("blue", copy.get(signature).value(PName.FontColor).asString());
+		assertEquals(2, original.getStyles().size());
+		assertEquals(1, copy.getStyles().size());
+	}
+
+	private static Style style(StyleSignatureBasic signature, String color) {
+		final Map<PName, Value> map = new EnumMap<PName, Value>(PName.class);
+		map.put(PName.FontColor, ValueImpl.regular(color, 0));
+		return new Style(signature, map);
+	}
+
+}
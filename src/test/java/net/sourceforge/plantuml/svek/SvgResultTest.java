@@ -0,0 +1,113 @@
+package net.sourceforge.plantuml.svek;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.plantuml.StringUtils;
+import net.sourceforge.plantuml.klimt.geom.XPoint2D;
+
+/**
+ * Differential tests: lookups through the index must give the same positions
+ * as plain <code>String.indexOf()</code> on the SVG text.
+ */
+class SvgResultTest {
+
+	private static final Point2DFunction IDENTITY = new Point2DFunction() {
+		@Override
+		public XPoint2D apply(XPoint2D point) {
+			return point;
+		}
+	};
+
+	private static String color(int i) {
+		return StringUtils.goLowerCase(StringUtils.sharp000000(i));
+	}
+
+	// Looks like what GraphViz generates for svek
+	private static String randomSvg(Random random, int nb) {
+		final StringBuilder sb = new StringBuilder("<svg width=\"800pt\" height=\"600pt\">\n");
+		for (int i = 0; i < nb; i++) {
+			final String c = color(random.nextInt(nb));
+			sb.append("<g id=\"node" + i + "\" class=\"node\">\n<title>sh" + random.nextInt(nb) + "</title>\n");
+			switch (random.nextInt(5)) {
+			case 0:
+				sb.append("<polygon fill=\"none\" stroke=\"" + c + "\" points=\"1,2 3,4 5,6\"/>\n");
+				break;
+			case 1:
+				sb.append("<path fill=\"" + c + "\" stroke=\"#FF0000\" d=\"M1,2C3,4 5,6 7,8\"/>\n");
+				break;
+			case 2:
+				sb.append("<path style=\"fill:none;stroke:" + c + ";\" d=\"M1,2C3,4 5,6 7,8\"/>\n");
+				break;
+			case 3:
+				sb.append("<path style=\"stroke:" + c + ";\" d=\"M1,2C3,4 5,6 7,8\"/>\n");
+				break;
+			default:
+				sb.append("<ellipse fill=\"" + c + "80\" stroke=\"" + c + "\" cx=\"1\" cy=\"2\" rx=\"3\" ry=\"4\"/>\n");
+			}
+			sb.append("</g>\n");
+		}
+		return sb.append("</svg>\n").toString();
+	}
+
+	private static int naiveIndexFromColor(String svg, int color) {
+		final String c = color(color);
+		int idx = svg.indexOf("stroke=\"" + c + "\"");
+		if (idx != -1)
+			return idx;
+		idx = svg.indexOf(";stroke:" + c + ";");
+		if (idx != -1)
+			return idx;
+		return svg.indexOf("fill=\"" + c + "\"");
+	}
+
+	private static int naiveIndexFromAnyColor(String svg, int color) {
+		final String c = color(color);
+		final int idx = svg.indexOf("=\"" + c + "\"");
+		if (idx != -1)
+			return idx;
+		return svg.indexOf("stroke:" + c + ";");
+	}
+
+	@Test
+	void same_positions_as_index_of() {
+		final Random random = new Random(42);
+		final int nb = 300;
+		final String svg = randomSvg(random, nb);
+		final SvgResult full = new SvgResult(svg, IDENTITY);
+
+		for (int i = 0; i < nb + 10; i++) {
+			assertEquals(svg.indexOf("<title>sh" + i + "</title>"), full.indexOfTitle("sh" + i));
+			assertEquals(naiveIndexFromColor(svg, i), full.getIndexFromColor(i));
+			assertEquals(naiveIndexFromAnyColor(svg, i), full.getIndexFromAnyColor(i));
+		}
+
+		for (int k = 0; k < 200; k++) {
+			final int offset = random.nextInt(svg.length());
+			final String tail = svg.substring(offset);
+			final SvgResult view = full.substring(offset);
+			final int color = random.nextInt(nb);
+			assertEquals(naiveIndexFromColor(tail, color), view.getIndexFromColor(color));
+			assertEquals(tail.indexOf("<title>sh" + color + "</title>"), view.indexOfTitle("sh" + color));
+			assertEquals(tail.indexOf(SvgResult.POINTS_EQUALS, 10), view.indexOf(SvgResult.POINTS_EQUALS, 10));
+			assertEquals(new SvgResult(tail, IDENTITY).extractList(SvgResult.POINTS_EQUALS),
+					view.extractList(SvgResult.POINTS_EQUALS));
+			assertEquals(tail, view.getSvg());
+		}
+	}
+
+	@Test
+	void path_of_a_tail() {
+		final String svg = "<g><path fill=\"none\" d=\"M1,2C3,4 5,6 7,8\"/></g>";
+		final SvgResult full = new SvgResult(svg, IDENTITY);
+		final int start = full.indexOf(SvgResult.D_EQUALS, 0) + 3;
+		final int end = full.indexOf("\"", start);
+		final SvgResult path = full.substring(start).substring(0, end - start);
+		assertEquals(true, path.isPathConsistent());
+		assertEquals(new XPoint2D(7, 8), path.toDotPath().getEndPoint());
+	}
+
+}
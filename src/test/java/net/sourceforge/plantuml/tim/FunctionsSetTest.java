@@ -0,0 +1,113 @@
+package net.sourceforge.plantuml.tim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.plantuml.preproc.Defines;
+import net.sourceforge.plantuml.preproc.ImportedFiles;
+import net.sourceforge.plantuml.text.StringLocated;
+import net.sourceforge.plantuml.tim.expression.TValue;
+
+class FunctionsSetTest {
+
+	private TContext load(String... lines) throws EaterException {
+		final TContext context = new TContext(ImportedFiles.createImportedFiles(null), Defines.createEmpty(),
+				StandardCharsets.UTF_8, null);
+		final StringLocated[] list = new StringLocated[lines.length];
+		for (int i = 0; i < lines.length; i++)
+			list[i] = new StringLocated(lines[i], null);
+
+		context.executeLines(new TMemoryGlobal(), Arrays.asList(list), null, false);
+		return context;
+	}
+
+	@Test
+	void lookup_by_name() throws EaterException {
+		final TContext context = load( //
+				"!define LEGACY(x) x", //
+				"!unquoted procedure $unq($a)", //
+				"!endprocedure", //
+				"!function $f($a)", //
+				"!return $a", //
+				"!endfunction", //
+				"!function $f($a, $b)", //
+				"!return $a + $b", //
+				"!endfunction");
+
+		assertTrue(context.doesFunctionExist("LEGACY"));
+		assertTrue(context.isLegacyDefine("LEGACY"));
+
+		assertTrue(context.isUnquoted("$unq"));
+		assertFalse(context.isLegacyDefine("$unq"));
+
+		assertTrue(context.doesFunctionExist("$f"));
+		assertFalse(context.isLegacyDefine("$f"));
+		assertTrue(context.doesFunctionExist("%strlen"));
+		assertFalse(context.doesFunctionExist("$g"));
+		assertFalse(context.doesFunctionExist("$"));
+	}
+
+	@Test
+	void overloads_are_found_by_arity() throws EaterException {
+		final TContext context = load( //
+				"!function $f($a)", //
+				"!return 1", //
+				"!endfunction", //
+				"!function $f($a, $b, $c=3)", //
+				"!return 2", //
+				"!endfunction");
+
+		final FunctionsSet set = context.functionsSet;
+		final TFunction one = set.getFunctionSmart(new TFunctionSignature("$f", 1));
+		final TFunction two = set.getFunctionSmart(new TFunctionSignature("$f", 2));
+		final TFunction three = set.getFunctionSmart(new TFunctionSignature("$f", 3));
+		assertEquals(1, one.getSignature().getNbArg());
+		assertEquals(3, two.getSignature().getNbArg());
+		assertEquals(3, three.getSignature().getNbArg());
+		assertNull(set.getFunctionSmart(new TFunctionSignature("$f", 4)));
+		assertNull(set.getFunctionSmart(new TFunctionSignature("$g", 1, Collections.<String>emptySet())));
+	}
+
+	@Test
+	void the_overload_with_the_fewest_arguments_wins() throws EaterException {
+		final TContext context = load( //
+				"!function $f($a=1, $b=2, $c=3, $d=4)", //
+				"!return 4", //
+				"!endfunction", //
+				"!function $f($a=1, $b=2, $c=3)", //
+				"!return 3", //
+				"!endfunction", //
+				"!function $f($a=1, $b=2, $c=3, $d=4, $e=5)", //
+				"!return 5", //
+				"!endfunction");
+
+		final FunctionsSet set = context.functionsSet;
+		assertEquals(3, set.getFunctionSmart(new TFunctionSignature("$f", 0)).getSignature().getNbArg());
+		assertEquals(3, set.getFunctionSmart(new TFunctionSignature("$f", 2)).getSignature().getNbArg());
+		assertEquals(4, set.getFunctionSmart(new TFunctionSignature("$f", 4)).getSignature().getNbArg());
+		assertEquals("3", context.applyFunctionsAndVariables(new TMemoryGlobal(), new StringLocated("$f(0)", null)));
+	}
+
+	@Test
+	void names_are_only_found_at_the_start_of_a_word() throws EaterException {
+		final TContext context = load( //
+				"!function f($a)", //
+				"!return $a", //
+				"!endfunction");
+
+		final TMemoryGlobal memory = new TMemoryGlobal();
+		memory.putVariable("$v", TValue.fromString("V"), TVariableScope.GLOBAL, null);
+		assertEquals("V af(x) aV x", context.applyFunctionsAndVariables(memory,
+				new StringLocated("$v af(x) a$v f(x)", null)));
+		assertEquals("a##V", context.applyFunctionsAndVariables(memory, new StringLocated("a####$v", null)));
+	}
+
+}
@@ -0,0 +1,158 @@
+package net.sourceforge.plantuml.tim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.api.parallel.Isolated;
+
+import net.sourceforge.plantuml.BlockUml;
+import net.sourceforge.plantuml.SourceStringReader;
+import net.sourceforge.plantuml.text.StringLocated;
+
+@Isolated
+class IncludeCacheTest {
+
+	private static List<String> preprocess(String diagram) {
+		final SourceStringReader reader = new SourceStringReader(diagram);
+		final BlockUml block = reader.getBlocks().get(0);
+		return block.getDefinition(false);
+	}
+
+	private static File write(File dir, String name, String content) throws IOException {
+		final File file = new File(dir, name);
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	private static String diagram(File included, String body) {
+		return "@startuml\n!include " + included.getAbsolutePath() + "\n" + body + "\n@enduml\n";
+	}
+
+	@Test
+	void second_include_is_replayed(@TempDir File dir) throws IOException {
+		final File lib = write(dir, "lib.puml", "!$greeting = \"Hello\"\n" //
+				+ "!procedure $say($who)\n" //
+				+ "Alice -> $who : $greeting\n" //
+				+ "!endprocedure\n" //
+				+ "skinparam monochrome true\n");
+		final String diagram = diagram(lib, "$say(\"Bob\")");
+
+		final IncludeCache cache = IncludeCache.getInstance();
+		final List<String> first = preprocess(diagram);
+		final long hits = cache.getHits();
+		final List<String> second = preprocess(diagram);
+
+		assertEquals(hits + 1, cache.getHits());
+		assertEquals(first, second);
+		assertEquals("skinparam monochrome true", second.get(0));
+		assertEquals("Alice -> Bob : Hello", second.get(1));
+	}
+
+	@Test
+	void modified_file_is_executed_again(@TempDir File dir) throws IOException {
+		final File lib = write(dir, "lib.puml", "!$v = 1\n");
+		final String diagram = diagram(lib, "title $v");
+		assertEquals("title 1", preprocess(diagram).get(0));
+
+		// Same date, other size
+		final long lastModified = lib.lastModified();
+		write(dir, "lib.puml", "!$v = 22\n");
+		lib.setLastModified(lastModified);
+		assertEquals("title 22", preprocess(diagram).get(0));
+
+		// Same size, other date
+		write(dir, "lib.puml", "!$v = 33\n");
+		lib.setLastModified(lastModified - 10_000);
+		assertEquals("title 33", preprocess(diagram).get(0));
+	}
+
+	@Test
+	void functions_defined_before_include_are_part_of_the_key(@TempDir File dir) throws IOException {
+		final File lib = write(dir, "lib.puml", "!$v = $f()\n");
+		final String path = lib.getAbsolutePath();
+		assertEquals("title 1", preprocess(
+				"@startuml\n!function $f()\n!return 1\n!endfunction\n!include " + path + "\ntitle $v\n@enduml\n")
+				.get(0));
+		assertEquals("title 2", preprocess(
+				"@startuml\n!function $f()\n!return 2\n!endfunction\n!include " + path + "\ntitle $v\n@enduml\n")
+				.get(0));
+	}
+
+	@Test
+	void include_after_a_replayed_one_is_replayed_too(@TempDir File dir) throws IOException {
+		final File a = write(dir, "a.puml", "!function $f()\n!return 1\n!endfunction\n");
+		final File b = write(dir, "b.puml", "!$v = $f()\n");
+		final String diagram = "@startuml\n!include " + a.getAbsolutePath() + "\n!include " + b.getAbsolutePath()
+				+ "\ntitle $v\n@enduml\n";
+
+		final IncludeCache cache = IncludeCache.getInstance();
+		preprocess(diagram);
+		final long hits = cache.getHits();
+		assertEquals("title 1", preprocess(diagram).get(0));
+		assertEquals(hits + 2, cache.getHits());
+	}
+
+	@Test
+	void entries_of_a_zip_file_are_cached_separately(@TempDir File dir) throws IOException {
+		final File zip = new File(dir, "lib.zip");
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip))) {
+			zos.putNextEntry(new ZipEntry("a.puml"));
+			zos.write("title A\n".getBytes(StandardCharsets.UTF_8));
+			zos.putNextEntry(new ZipEntry("b.puml"));
+			zos.write("title B\n".getBytes(StandardCharsets.UTF_8));
+		}
+		final String path = zip.getAbsolutePath();
+		assertEquals("title A", preprocess("@startuml\n!include " + path + "~a.puml\n@enduml\n").get(0));
+		assertEquals("title B", preprocess("@startuml\n!include " + path + "~b.puml\n@enduml\n").get(0));
+	}
+
+	@Test
+	void replayed_lines_are_located_at_the_current_include(@TempDir File dir) throws IOException {
+		final File lib = write(dir, "lib.puml", "Alice -> Bob\n");
+		final String first = "@startuml\n!include " + lib.getAbsolutePath() + "\n@enduml\n";
+		final String second = "@startuml\n'one\n'two\n!include " + lib.getAbsolutePath() + "\n@enduml\n";
+		assertEquals(1, includeLineOf(first));
+		assertEquals(3, includeLineOf(second));
+	}
+
+	private static int includeLineOf(String diagram) {
+		final BlockUml block = new SourceStringReader(diagram).getBlocks().get(0);
+		for (StringLocated line : block.getData())
+			if (line.getString().equals("Alice -> Bob"))
+				return line.getLocation().getParent().getPosition();
+
+		throw new IllegalStateException();
+	}
+
+	@Test
+	void state_before_include_is_part_of_the_key(@TempDir File dir) throws IOException {
+		final File lib = write(dir, "lib.puml", "!$v = %variable_exists(\"$before\")\n");
+		assertEquals("title 0", preprocess(diagram(lib, "title $v")).get(0));
+		assertEquals("title 1",
+				preprocess("@startuml\n!$before = 1\n!include " + lib.getAbsolutePath() + "\ntitle $v\n@enduml\n")
+						.get(0));
+	}
+
+	@Test
+	void non_reproducible_include_is_not_cached(@TempDir File dir) throws IOException {
+		final File lib = write(dir, "lib.puml", "!$v = %random(1000000)\n");
+		final String diagram = diagram(lib, "title $v");
+
+		final IncludeCache cache = IncludeCache.getInstance();
+		preprocess(diagram);
+		final long hits = cache.getHits();
+		preprocess(diagram);
+		assertEquals(hits, cache.getHits());
+	}
+
+}
@@ -0,0 +1,105 @@
+package net.sourceforge.plantuml.tim.expression;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.plantuml.preproc.Defines;
+import net.sourceforge.plantuml.preproc.ImportedFiles;
+import net.sourceforge.plantuml.text.StringLocated;
+import net.sourceforge.plantuml.tim.TContext;
+import net.sourceforge.plantuml.tim.TMemory;
+import net.sourceforge.plantuml.tim.TMemoryGlobal;
+import net.sourceforge.plantuml.tim.TVariableScope;
+
+/**
+ * Differential tests: {@link CompiledExpression} must give the same result as
+ * the reference interpreter {@link TokenStack#getResult}.
+ */
+class CompiledExpressionTest {
+
+	private static final String[] EXPRESSIONS = { //
+			"1 + 2 * 3", //
+			"(1 + 2) * 3", //
+			"10 - 4 - 3", //
+			"-2 + $a", //
+			"$a * $a - 1", //
+			"$a == 2 && $s != \"x\"", //
+			"$a > 1 || $a < 0", //
+			"$s + \"!\"", //
+			"%strlen($s) > 3", //
+			"%upper($s) + %lower(\"ABC\")", //
+			"%substr($s, 1, 2)", //
+			"$double($a) + 1", //
+			"$double($double($a + 1))", //
+			"$concat($s, $b = \"z\")", //
+			"$j.k + \"/\" + $j.n", //
+			"unknown", //
+	};
+
+	private TContext context;
+	private TMemory memory;
+
+	private void init() throws Exception {
+		context = new TContext(ImportedFiles.createImportedFiles(null), Defines.createEmpty(), StandardCharsets.UTF_8,
+				null);
+		memory = new TMemoryGlobal();
+		final StringLocated location = new StringLocated("", null);
+		memory.putVariable("$a", TValue.fromInt(2), TVariableScope.GLOBAL, location);
+		memory.putVariable("$s", TValue.fromString("hello"), TVariableScope.GLOBAL, location);
+		context.executeLines(memory, Arrays.asList( //
+				new StringLocated("!$j = { \"k\": \"key\", \"n\": 42 }", null), //
+				new StringLocated("!function $double($x)", null), //
+				new StringLocated("!return $x * 2", null), //
+				new StringLocated("!endfunction", null), //
+				new StringLocated("!function $concat($x, $b=\"y\")", null), //
+				new StringLocated("!return $x + $b", null), //
+				new StringLocated("!endfunction", null)), null, false);
+	}
+
+	@Test
+	void same_results_as_reference_interpreter() throws Exception {
+		init();
+		for (String expression : EXPRESSIONS) {
+			final StringLocated location = new StringLocated(expression, null);
+			final TokenStack tokens = new EaterMock(location).eatTokenStackPublic();
+			final TValue expected = tokens.getResult(location, context, memory);
+
+			final CompiledExpression compiled = CompiledExpression.compile(tokens, expression.length(), location);
+			final TValue actual = compiled.evaluate(location, context, memory);
+			assertEquals(expected.toString(), actual.toString(), expression);
+			assertEquals(expected.isNumber(), actual.isNumber(), expression);
+		}
+	}
+
+	@Test
+	void variables_are_resolved_on_each_evaluation() throws Exception {
+		init();
+		final StringLocated location = new StringLocated("$a + 1", null);
+		final CompiledExpression compiled = CompiledExpression
+				.compile(new EaterMock(location).eatTokenStackPublic(), location.length(), location);
+		assertEquals("3", compiled.evaluate(location, context, memory).toString());
+
+		memory.putVariable("$a", TValue.fromInt(40), TVariableScope.GLOBAL, location);
+		assertEquals("41", compiled.evaluate(location, context, memory).toString());
+	}
+
+	@Test
+	void compiled_form_is_shared_by_identical_lines() throws Exception {
+		init();
+		final String source = "$double($a) * 3 + 7";
+		final TValue first = new EaterMock(new StringLocated(source, null)).eatExpression(context, memory);
+		final CompiledExpression cached = CompiledExpression.getCached(source, false);
+		final TValue second = new EaterMock(new StringLocated(source, null)).eatExpression(context, memory);
+
+		assertEquals("19", first.toString());
+		assertEquals("19", second.toString());
+		assertSame(cached, CompiledExpression.getCached(source, false));
+		assertEquals(source.length(), cached.getLength());
+	}
+
+}
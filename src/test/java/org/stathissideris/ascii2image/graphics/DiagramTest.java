@@ -0,0 +1,82 @@
+package org.stathissideris.ascii2image.graphics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.stathissideris.ascii2image.core.ConversionOptions;
+import org.stathissideris.ascii2image.text.TextGrid;
+
+class DiagramTest {
+
+	private static final String[] DASHED_ELBOW = { //
+			"  |", //
+			"  :", //
+			"  |", //
+			"  +--------", //
+			"" };
+
+	private final ConversionOptions options = new ConversionOptions();
+
+	private Diagram diagram(String... rows) throws UnsupportedEncodingException {
+		final ArrayList<StringBuilder> lines = new ArrayList<>();
+		for (String row : rows)
+			lines.add(new StringBuilder(row));
+
+		final TextGrid grid = new TextGrid();
+		grid.initialiseWithLines(lines, null);
+		return new Diagram(grid, options);
+	}
+
+	private static DiagramShape onlyShape(Diagram diagram) {
+		final List<DiagramShape> shapes = diagram.getAllDiagramShapes();
+		assertEquals(1, shapes.size());
+		return shapes.get(0);
+	}
+
+	private static String point(DiagramShape shape, int i) {
+		final ShapePoint point = shape.getPoint(i);
+		return (int) point.x + "," + (int) point.y;
+	}
+
+	@Test
+	void open_lines_are_traced_from_their_top_left_end() throws UnsupportedEncodingException {
+		final DiagramShape line = onlyShape(diagram("", "  ---=---------", ""));
+		assertEquals(2, line.getPoints().size());
+		assertEquals("45,49", point(line, 0));
+		assertEquals("165,49", point(line, 1));
+
+		final DiagramShape elbow = onlyShape(diagram(DASHED_ELBOW));
+		assertEquals(3, elbow.getPoints().size());
+		assertEquals("45,35", point(elbow, 0));
+		assertEquals("45,77", point(elbow, 1));
+		assertEquals("125,77", point(elbow, 2));
+	}
+
+	@Test
+	void dashes_start_at_the_top_left_end() throws UnsupportedEncodingException {
+		final Diagram diagram = diagram(DASHED_ELBOW);
+		assertTrue(onlyShape(diagram).isStrokeDashed());
+
+		final BufferedImage image = (BufferedImage) new BitmapRenderer().renderToImage(diagram,
+				options.renderingOptions);
+		// The vertical part runs from y=35 to y=77, with dashes 6 pixels long every
+		// 10 pixels. Sample the middle of the first dashes and gaps: traced from the
+		// other end, they would be swapped.
+		final StringBuilder column = new StringBuilder();
+		for (int y : new int[] { 39, 43, 49, 53 })
+			column.append(isDark(image.getRGB(45, y)) ? '#' : '.');
+
+		assertEquals("#.#.", column.toString());
+	}
+
+	private static boolean isDark(int rgb) {
+		return (rgb & 0xFF) < 128;
+	}
+
+}
@@ -0,0 +1,89 @@
+package org.stathissideris.ascii2image.text;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class CellSetTest {
+
+	private static final TextGrid GRID = new TextGrid();
+
+	private static TextGrid.Cell cell(int x, int y) {
+		return GRID.new Cell(x, y);
+	}
+
+	@Test
+	void behaves_like_a_set() {
+		final Random random = new Random(42);
+		final Set<TextGrid.Cell> expected = new HashSet<>();
+		final CellSet set = new CellSet();
+		for (int i = 0; i < 5000; i++) {
+			final TextGrid.Cell cell = cell(random.nextInt(80) - 20, random.nextInt(60) - 10);
+			if (random.nextInt(4) == 0) {
+				expected.remove(cell);
+				set.remove(cell);
+			} else {
+				assertEquals(expected.add(cell), set.add(cell));
+			}
+			assertEquals(expected.size(), set.size());
+		}
+		final Set<TextGrid.Cell> actual = new HashSet<>();
+		for (TextGrid.Cell cell : set)
+			actual.add(cell);
+		assertEquals(expected, actual);
+		for (int y = -15; y < 55; y++)
+			for (int x = -25; x < 65; x++)
+				assertEquals(expected.contains(cell(x, y)), set.contains(cell(x, y)));
+	}
+
+	@Test
+	void iterates_row_by_row() {
+		final CellSet set = new CellSet();
+		set.add(cell(5, 2));
+		set.add(cell(-1, 3));
+		set.add(cell(9, 0));
+		set.add(cell(0, 2));
+		final Iterator<TextGrid.Cell> it = set.iterator();
+		assertEquals(cell(9, 0), it.next());
+		assertEquals(cell(0, 2), it.next());
+		assertEquals(cell(5, 2), it.next());
+		assertEquals(cell(-1, 3), it.next());
+		assertEquals(false, it.hasNext());
+		assertEquals(cell(9, 0), set.getFirst());
+	}
+
+	@Test
+	void translate_moves_all_cells() {
+		final CellSet set = new CellSet();
+		set.add(cell(1, 1));
+		set.add(cell(4, 2));
+		final CellSet copy = CellSet.copyCellSet(set);
+		copy.translate(-2, 3);
+		assertEquals(true, copy.contains(cell(-1, 4)));
+		assertEquals(true, copy.contains(cell(2, 5)));
+		assertEquals(false, copy.contains(cell(1, 1)));
+		assertEquals(-1, copy.getMinX());
+		assertEquals(5, copy.getMaxY());
+		assertEquals(true, set.contains(cell(1, 1)));
+	}
+
+	@Test
+	void sets_with_the_same_cells_are_equal() {
+		final CellSet a = new CellSet();
+		final CellSet b = new CellSet();
+		for (int i = 0; i < 10; i++) {
+			a.add(cell(i, 2 * i));
+			b.add(cell(9 - i, 18 - 2 * i));
+		}
+		assertEquals(a, b);
+		b.subtractSet(a);
+		assertEquals(0, b.size());
+		assertEquals(false, a.equals(b));
+	}
+
+}
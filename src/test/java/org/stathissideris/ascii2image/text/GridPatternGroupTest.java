@@ -0,0 +1,76 @@
+package org.stathissideris.ascii2image.text;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Differential tests: the lookup table must give the same answers as the
+ * regular expressions it replaces.
+ */
+class GridPatternGroupTest {
+
+	private static final String CHARS = "-=|:/\\+*^v<>.#o ab\u00e9\u2028";
+
+	private static List<GridPatternGroup> allGroups() throws IllegalAccessException {
+		final List<GridPatternGroup> result = new ArrayList<>();
+		for (Field field : GridPatternGroup.class.getFields())
+			if (Modifier.isStatic(field.getModifiers()) && field.getType() == GridPatternGroup.class)
+				result.add((GridPatternGroup) field.get(null));
+		return result;
+	}
+
+	private static TextGrid randomGrid(Random random, int width, int height) {
+		final TextGrid grid = new TextGrid(width, height);
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				grid.set(x, y, CHARS.charAt(random.nextInt(CHARS.length())));
+		return grid;
+	}
+
+	@Test
+	void table_matches_like_the_regular_expressions() throws IllegalAccessException {
+		final Random random = new Random(42);
+		final List<GridPatternGroup> groups = allGroups();
+		for (int i = 0; i < 300; i++) {
+			final TextGrid grid = randomGrid(random, 12, 12);
+			for (int y = 1; y < 11; y++)
+				for (int x = 1; x < 11; x++)
+					for (GridPatternGroup group : groups)
+						assertEquals(group.isAnyMatchedBy(grid.getSubGrid(x - 1, y - 1, 3, 3)),
+								group.isAnyMatchedBy(grid, x, y));
+		}
+	}
+
+	@Test
+	void usual_shapes_are_recognized() {
+		final TextGrid grid = new TextGrid(7, 5);
+		grid.setRow(0, new StringBuilder("       "));
+		grid.setRow(1, new StringBuilder(" +-+-\\ "));
+		grid.setRow(2, new StringBuilder(" | | | "));
+		grid.setRow(3, new StringBuilder(" +-+-/ "));
+		grid.setRow(4, new StringBuilder("       "));
+		assertEquals(true, grid.isCorner1(grid.new Cell(1, 1)));
+		assertEquals(true, grid.isT(grid.new Cell(3, 1)));
+		assertEquals(true, grid.isInverseT(grid.new Cell(3, 3)));
+		assertEquals(true, grid.isRoundCorner(grid.new Cell(5, 1)));
+		assertEquals(false, grid.isCorner(grid.new Cell(2, 1)));
+	}
+
+	@Test
+	void added_patterns_are_taken_into_account() {
+		final GridPatternGroup group = new GridPatternGroup();
+		final TextGrid grid = new TextGrid(3, 3);
+		grid.setRow(1, new StringBuilder(" * "));
+		assertEquals(false, group.isAnyMatchedBy(grid, 1, 1));
+		group.add(new GridPattern("...", ".*.", "..."));
+		assertEquals(true, group.isAnyMatchedBy(grid, 1, 1));
+	}
+
+}